@@ -4,8 +4,15 @@ import com.logviewer.api.LvFileAccessManager;
 import com.logviewer.api.LvFileNavigationManager;
 import com.logviewer.api.LvFilterStorage;
 import com.logviewer.api.LvPermalinkStorage;
+import com.logviewer.data2.FieldIndexStorage;
 import com.logviewer.data2.FileWatcherService;
+import com.logviewer.data2.FilterResultCache;
+import com.logviewer.data2.GzipIndexStorage;
 import com.logviewer.data2.LogService;
+import com.logviewer.data2.PageCache;
+import com.logviewer.data2.PageReadAhead;
+import com.logviewer.data2.ParallelLogScanner;
+import com.logviewer.data2.TimeIndexStorage;
 import com.logviewer.data2.RemoteLogChangeListenerService;
 import com.logviewer.data2.config.ConfigDirHolder;
 import com.logviewer.data2.config.ConfigDirHolderImpl;
@@ -14,6 +21,8 @@ import com.logviewer.impl.LvFileNavigationManagerImpl;
 import com.logviewer.services.FileSystemFilterStorage;
 import com.logviewer.services.LvPermalinkStorageImpl;
 import com.logviewer.utils.LvTimer;
+import com.logviewer.web.session.LoadCoalescer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
@@ -46,11 +55,57 @@ public class LvConfigBase {
         return new FileSystemFilterStorage(configDir);
     }
 
+    @Bean
+    public PageCache lvPageCache(@Value("${" + PageCache.SIZE_PROPERTY + ":33554432}") long size) { // 32Mb
+        return new PageCache(size);
+    }
+
+    @Bean
+    public FilterResultCache lvFilterResultCache(@Value("${" + FilterResultCache.SIZE_PROPERTY + ":16777216}") long size) { // 16Mb
+        return new FilterResultCache(size);
+    }
+
+    @Bean
+    public PageReadAhead lvPageReadAhead(@Value("${" + PageReadAhead.PAGES_PROPERTY + ":4}") int pageCount,
+                                         @Value("${" + PageReadAhead.THREADS_PROPERTY + ":2}") int threadCount) {
+        return new PageReadAhead(pageCount, threadCount);
+    }
+
+    @Bean
+    public ParallelLogScanner lvParallelLogScanner(@Value("${" + ParallelLogScanner.THREADS_PROPERTY + ":1}") int threadCount,
+                                                   @Value("${" + ParallelLogScanner.CHUNK_SIZE_PROPERTY + ":8388608}") long chunkSize) { // 8Mb
+        return new ParallelLogScanner(threadCount, chunkSize);
+    }
+
+    @Bean
+    public TimeIndexStorage lvTimeIndexStorage(ConfigDirHolder configDir, LvTimer timer,
+                                               @Value("${" + TimeIndexStorage.MAX_SIZE_PROPERTY + ":104857600}") long maxSize) { // 100Mb
+        return new TimeIndexStorage(configDir, timer, maxSize);
+    }
+
+    @Bean
+    public FieldIndexStorage lvFieldIndexStorage(ConfigDirHolder configDir, LvTimer timer,
+                                                 @Value("${" + FieldIndexStorage.BLOCK_SIZE_PROPERTY + ":1048576}") int blockSize) { // 1Mb
+        return new FieldIndexStorage(configDir, blockSize, timer);
+    }
+
+    @Bean
+    public GzipIndexStorage lvGzipIndexStorage(ConfigDirHolder configDir,
+                                               @Value("${" + GzipIndexStorage.BLOCK_SIZE_PROPERTY + ":1048576}") int blockSize, // 1Mb
+                                               @Value("${" + GzipIndexStorage.MAX_SIZE_PROPERTY + ":4294967296}") long maxSize) { // 4Gb
+        return new GzipIndexStorage(configDir, blockSize, maxSize);
+    }
+
     @Bean
     public LogService lvLogService() {
         return new LogService();
     }
 
+    @Bean
+    public LoadCoalescer lvLoadCoalescer() {
+        return new LoadCoalescer();
+    }
+
     @Bean
     public LvFileNavigationManager lvFileNavigationManager(LvFileAccessManager fileAccessManager, LogService logService) {
         return new LvFileNavigationManagerImpl(fileAccessManager, logService);
@@ -1,11 +1,15 @@
 package com.logviewer.data2;
 
 import com.logviewer.utils.Utils;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
 
 import static com.logviewer.data2.ParserConfig.WINDOW_SIZE;
 import static com.logviewer.data2.ParserConfig.WINDOW_SIZE_BITS;
@@ -25,11 +29,122 @@ public class BufferedFile {
 
     private final long size;
 
+    private PageCache pageCache;
+    private String logId;
+    private String hash;
+
+    private PageReadAhead readAhead;
+    private long lastSearchPage = -1;
+
+    private volatile CancellationToken cancellation;
+    private int sequentialPageCount;
+
     public BufferedFile(SeekableByteChannel channel, long size) {
         this.channel = channel;
         this.size = size;
     }
 
+    protected BufferedFile(long size) {
+        this(null, size);
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Makes the pages to be loaded through the shared cache.
+     *
+     * @param logId the id of the log, see {@link LogView#getId()}.
+     * @param hash the hash of the log content, see {@link Snapshot#getHash()}.
+     */
+    public void setPageCache(@Nullable PageCache pageCache, @NonNull String logId, @NonNull String hash) {
+        this.pageCache = pageCache;
+        this.logId = logId;
+        this.hash = hash;
+    }
+
+    /**
+     * Enables prefetching of the pages when the file is read sequentially. Works only if the page cache is set and
+     * the file is read from a {@link FileChannel}, the pages are loaded using positional reads that don't affect
+     * the channel position.
+     */
+    public void setReadAhead(@Nullable PageReadAhead readAhead) {
+        this.readAhead = readAhead;
+    }
+
+    /**
+     * Makes the page loading throw {@link java.util.concurrent.CancellationException} after the token is cancelled.
+     */
+    public void setCancellationToken(@Nullable CancellationToken cancellation) {
+        this.cancellation = cancellation;
+    }
+
+    private boolean isReadAheadEnabled() {
+        return readAhead != null && pageCache != null && channel instanceof FileChannel;
+    }
+
+    private void detectSequentialRead(long page, boolean forward) {
+        if (page == lastSearchPage)
+            return;
+
+        if (lastSearchPage >= 0 && page == (forward ? lastSearchPage + 1 : lastSearchPage - 1)) {
+            sequentialPageCount++;
+        } else {
+            sequentialPageCount = 0;
+        }
+
+        lastSearchPage = page;
+
+        if (sequentialPageCount >= 2)
+            readAhead.prefetch(this, page, forward);
+    }
+
+    boolean hasPage(long page) {
+        return page >= 0 && (page << WINDOW_SIZE_BITS) < size;
+    }
+
+    private int pageLength(long page) {
+        return (int) Math.min(size - (page << WINDOW_SIZE_BITS), WINDOW_SIZE);
+    }
+
+    PageCache.PageKey pageKey(long page) {
+        return new PageCache.PageKey(logId, hash, page);
+    }
+
+    boolean isPageCached(PageCache.PageKey key, long page) {
+        return pageCache.hasPage(key, pageLength(page));
+    }
+
+    /**
+     * Loads the page to the page cache, called on read-ahead threads.
+     */
+    void prefetchPage(PageCache.PageKey key, long page) throws IOException {
+        int length = pageLength(page);
+
+        if (pageCache.hasPage(key, length))
+            return;
+
+        ByteBuffer data = ByteBuffer.allocate(length);
+        long winPos = page << WINDOW_SIZE_BITS;
+
+        while (data.hasRemaining()) {
+            if (((FileChannel) channel).read(data, winPos + data.position()) < 0)
+                throw new EOFException();
+        }
+
+        pageCache.putPage(key, data.array());
+    }
+
+    /**
+     * Reads {@code buf.remaining()} bytes starting from {@code position} to {@code buf}.
+     */
+    protected void readData(long position, ByteBuffer buf) throws IOException {
+        channel.position(position);
+
+        Utils.readFully(channel, buf);
+    }
+
     public boolean search(long position, SearchConsumer consumer) throws IOException {
         if (position < 0)
             throw new IllegalArgumentException();
@@ -44,6 +159,10 @@ public class BufferedFile {
             }
 
             long page = position >>> WINDOW_SIZE_BITS;
+
+            if (isReadAheadEnabled())
+                detectSequentialRead(page, true);
+
             loadOnePage(page);
 
             long winOffset = loadedPage << WINDOW_SIZE_BITS;
@@ -66,6 +185,10 @@ public class BufferedFile {
 
         while (position > 0) {
             long page = (position - 1) >>> WINDOW_SIZE_BITS;
+
+            if (isReadAheadEnabled())
+                detectSequentialRead(page, false);
+
             loadOnePage(page);
 
             long winOffset = loadedPage << WINDOW_SIZE_BITS;
@@ -83,6 +206,71 @@ public class BufferedFile {
         return true;
     }
 
+    /**
+     * @return the position of the first occurrence of the pattern located within {@code [position, limit)} or -1.
+     */
+    public long indexOf(long position, long limit, @NonNull BytePattern pattern) throws IOException {
+        if (position < 0)
+            throw new IllegalArgumentException();
+
+        limit = Math.min(limit, size);
+
+        int overlap = pattern.length() - 1;
+
+        while (limit - position > overlap) {
+            int length = (int) Math.min(WINDOW_SIZE, limit - position);
+
+            if (isReadAheadEnabled())
+                detectSequentialRead((position + length - 1) >>> WINDOW_SIZE_BITS, true);
+
+            ByteBuffer b = read(position, length);
+
+            int idx = pattern.indexOf(b.array(), b.position(), b.limit());
+            if (idx >= 0)
+                return position + idx - b.position();
+
+            if (position + length >= limit)
+                break;
+
+            position += length - overlap;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the position of the last occurrence of the pattern located within {@code [limit, position)} or -1.
+     */
+    public long lastIndexOf(long position, long limit, @NonNull BytePattern pattern) throws IOException {
+        if (position > size)
+            throw new EOFException();
+
+        limit = Math.max(limit, 0);
+
+        int overlap = pattern.length() - 1;
+
+        while (position - limit > overlap) {
+            int length = (int) Math.min(WINDOW_SIZE, position - limit);
+            long start = position - length;
+
+            if (isReadAheadEnabled())
+                detectSequentialRead(start >>> WINDOW_SIZE_BITS, false);
+
+            ByteBuffer b = read(start, length);
+
+            int idx = pattern.lastIndexOf(b.array(), b.position(), b.limit());
+            if (idx >= 0)
+                return start + idx - b.position();
+
+            if (start <= limit)
+                break;
+
+            position = start + overlap;
+        }
+
+        return -1;
+    }
+
     private void loadOnePage(long page) throws IOException {
         if (loadedPageCount == 1) {
             if (loadedPage == page)
@@ -97,29 +285,21 @@ public class BufferedFile {
             return;
         }
 
-        long winPos = page << WINDOW_SIZE_BITS;
-
-        buf.position(0);
-        buf.limit((int) Math.min(size - winPos, WINDOW_SIZE));
+        loadedPageCount = 0;
 
-        channel.position(winPos);
-
-        Utils.readFully(channel, buf);
+        readPage(page, 0);
 
         this.loadedPage = page;
         loadedPageCount = 1;
     }
 
     private void loadTwoPages(long page) throws IOException {
-        long winPos = page << WINDOW_SIZE_BITS;
+        assert size - (page << WINDOW_SIZE_BITS) > WINDOW_SIZE;
 
-        buf.position(0);
-        buf.limit((int) Math.min(size - winPos, WINDOW_SIZE * 2));
-        assert buf.limit() > WINDOW_SIZE;
+        loadedPageCount = 0;
 
-        channel.position(winPos);
-
-        Utils.readFully(channel, buf);
+        readPage(page, 0);
+        readPage(page + 1, WINDOW_SIZE);
 
         this.loadedPage = page;
         loadedPageCount = 2;
@@ -128,16 +308,37 @@ public class BufferedFile {
     private void loadSecondPage() throws IOException {
         assert loadedPageCount == 1;
 
-        long winPos = (loadedPage + 1) << WINDOW_SIZE_BITS;
+        readPage(loadedPage + 1, WINDOW_SIZE);
 
-        buf.limit(WINDOW_SIZE + (int) Math.min(size - winPos, WINDOW_SIZE));
-        buf.position(WINDOW_SIZE);
+        loadedPageCount = 2;
+    }
 
-        channel.position(winPos);
+    private void readPage(long page, int arrayOffset) throws IOException {
+        CancellationToken cancellation = this.cancellation;
+        if (cancellation != null)
+            cancellation.checkCancelled();
 
-        Utils.readFully(channel, buf);
+        long winPos = page << WINDOW_SIZE_BITS;
+        int length = pageLength(page);
 
-        loadedPageCount = 2;
+        if (pageCache != null) {
+            if (readAhead != null)
+                readAhead.awaitPage(pageKey(page), cancellation);
+
+            byte[] cachedPage = pageCache.getPage(logId, hash, page, length);
+            if (cachedPage != null) {
+                System.arraycopy(cachedPage, 0, array, arrayOffset, length);
+                return;
+            }
+        }
+
+        buf.limit(arrayOffset + length);
+        buf.position(arrayOffset);
+
+        readData(winPos, buf);
+
+        if (pageCache != null)
+            pageCache.putPage(logId, hash, page, Arrays.copyOfRange(array, arrayOffset, arrayOffset + length));
     }
 
     public ByteBuffer read(long position, long length) throws IOException {
@@ -0,0 +1,138 @@
+package com.logviewer.data2;
+
+import com.logviewer.web.session.tasks.SearchPattern;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Substring encoded in the log charset, used to find the records that may contain the substring without decoding
+ * the file. The search uses Boyer-Moore-Horspool algorithm.
+ *
+ * @see BufferedFile#indexOf(long, long, BytePattern)
+ * @see Snapshot#processRecords(long, boolean, SearchPattern, java.util.function.Predicate)
+ */
+public final class BytePattern {
+
+    private final byte[] pattern;
+
+    /**
+     * The shift of the window for the forward search by the last byte of the window.
+     */
+    private final int[] shift = new int[256];
+
+    /**
+     * The shift of the window for the backward search by the first byte of the window.
+     */
+    private final int[] backShift = new int[256];
+
+    public BytePattern(@NonNull byte[] pattern) {
+        if (pattern.length == 0 || pattern.length > ParserConfig.MAX_LINE_LENGTH)
+            throw new IllegalArgumentException("Invalid pattern length: " + pattern.length);
+
+        this.pattern = pattern.clone();
+
+        int last = pattern.length - 1;
+
+        Arrays.fill(shift, pattern.length);
+        for (int i = 0; i < last; i++) {
+            shift[pattern[i] & 0xFF] = last - i;
+        }
+
+        Arrays.fill(backShift, pattern.length);
+        for (int i = last; i > 0; i--) {
+            backShift[pattern[i] & 0xFF] = i;
+        }
+    }
+
+    /**
+     * Creates a byte pattern that is found in the raw bytes of every record whose message matches the search pattern.
+     *
+     * @return the byte pattern or {@code null} if the search pattern cannot be checked on raw bytes: regular
+     * expressions, case-insensitive search, a multibyte charset other than UTF-8, a text containing line breaks.
+     */
+    @Nullable
+    public static BytePattern forSearchPattern(@Nullable SearchPattern searchPattern, @NonNull Charset charset) {
+        if (searchPattern == null || searchPattern.isRegex() || !searchPattern.isMatchCase())
+            return null;
+
+        String text = searchPattern.getText();
+        if (text == null || text.isEmpty())
+            return null;
+
+        if (!charset.equals(StandardCharsets.UTF_8) && !charset.equals(StandardCharsets.US_ASCII)
+                && !charset.equals(StandardCharsets.ISO_8859_1)) {
+            return null;
+        }
+
+        for (int i = 0; i < text.length(); i++) {
+            char a = text.charAt(i);
+
+            // The line breaks may differ from the message, malformed bytes are decoded to U+FFFD
+            if (a == '\n' || a == '\r' || a == '\uFFFD' || Character.isSurrogate(a))
+                return null;
+        }
+
+        if (!charset.newEncoder().canEncode(text))
+            return null;
+
+        byte[] bytes = text.getBytes(charset);
+        if (bytes.length > ParserConfig.MAX_LINE_LENGTH)
+            return null;
+
+        return new BytePattern(bytes);
+    }
+
+    public int length() {
+        return pattern.length;
+    }
+
+    /**
+     * @return the index of the first occurrence located within {@code [from, to)} or -1.
+     */
+    public int indexOf(@NonNull byte[] data, int from, int to) {
+        byte[] pattern = this.pattern;
+        int last = pattern.length - 1;
+
+        for (int i = from, max = to - pattern.length; i <= max; ) {
+            int j = last;
+
+            while (data[i + j] == pattern[j]) {
+                if (j == 0)
+                    return i;
+
+                j--;
+            }
+
+            i += shift[data[i + last] & 0xFF];
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the index of the last occurrence located within {@code [from, to)} or -1.
+     */
+    public int lastIndexOf(@NonNull byte[] data, int from, int to) {
+        byte[] pattern = this.pattern;
+        int last = pattern.length - 1;
+
+        for (int i = to - pattern.length; i >= from; ) {
+            int j = 0;
+
+            while (data[i + j] == pattern[j]) {
+                if (j == last)
+                    return i;
+
+                j++;
+            }
+
+            i -= backShift[data[i] & 0xFF];
+        }
+
+        return -1;
+    }
+}
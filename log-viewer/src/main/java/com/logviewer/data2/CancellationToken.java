@@ -0,0 +1,89 @@
+package com.logviewer.data2;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cooperative cancellation of a task reading a log. The task passes the token to the snapshot, the snapshot checks
+ * the token between the records and before loading a page of the file, and throws {@link CancellationException}.
+ * Unlike the thread interruption, the cancellation doesn't close the channel of the snapshot, so the snapshot can be
+ * reused.
+ *
+ * The time between {@link #cancel()} and the moment the task stops working with the file is collected to the
+ * process-wide counters, see {@link #getReleaseCount()}.
+ *
+ * @see Snapshot#setCancellationToken(CancellationToken)
+ */
+public class CancellationToken {
+
+    private static final LongAdder releaseCount = new LongAdder();
+    private static final LongAdder totalReleaseLatency = new LongAdder();
+    private static final LongAccumulator maxReleaseLatency = new LongAccumulator(Math::max, 0);
+
+    private volatile boolean cancelled;
+
+    private long cancelTime;
+
+    private boolean released;
+
+    public synchronized void cancel() {
+        if (cancelled)
+            return;
+
+        cancelTime = System.nanoTime();
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public void checkCancelled() throws CancellationException {
+        if (cancelled)
+            throw new CancellationException();
+    }
+
+    /**
+     * Called by the task when it has stopped working with the file, the call is ignored if the task has not been
+     * cancelled.
+     */
+    public synchronized void released() {
+        if (!cancelled || released)
+            return;
+
+        released = true;
+
+        long latency = System.nanoTime() - cancelTime;
+
+        releaseCount.increment();
+        totalReleaseLatency.add(latency);
+        maxReleaseLatency.accumulate(latency);
+    }
+
+    /**
+     * @return the number of the cancelled tasks that have stopped.
+     */
+    public static long getReleaseCount() {
+        return releaseCount.sum();
+    }
+
+    /**
+     * @return the average time in milliseconds between the cancellation of a task and its stop.
+     */
+    public static double getAverageReleaseLatencyMs() {
+        long count = releaseCount.sum();
+        if (count == 0)
+            return 0;
+
+        return (double) totalReleaseLatency.sum() / count / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the max time in milliseconds between the cancellation of a task and its stop.
+     */
+    public static long getMaxReleaseLatencyMs() {
+        return TimeUnit.NANOSECONDS.toMillis(maxReleaseLatency.get());
+    }
+}
@@ -0,0 +1,720 @@
+package com.logviewer.data2;
+
+import com.logviewer.filters.*;
+import com.logviewer.utils.Utils;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+
+/**
+ * Index of the values of the low-cardinality fields (level, thread, logger) of a log file. The file is divided into
+ * blocks of {@link #getBlockSize()} bytes, the index contains the set of the values found in the records starting
+ * within each block. The sets are stored as bitmaps, the bits are the numbers of the values in the dictionary of
+ * the field. The blocks where no record can match the filter are skipped by the scan, see {@link #createRegionFilter}.
+ *
+ * The index is built from the records read by the scans, a block is indexed when all records starting within it have
+ * been read by one scan.
+ *
+ * @see FieldIndexStorage
+ */
+public final class FieldIndex {
+
+    /**
+     * The maximum number of distinct values of a field, the field is not indexed if the log contains more values.
+     */
+    static final int MAX_VALUES = 256;
+
+    /**
+     * The values longer than this length are not indexed, the field is not indexed if the log contains such values.
+     */
+    static final int MAX_VALUE_LENGTH = 1024;
+
+    /**
+     * The records are separated by a line break, the records separated by a line break only are adjacent.
+     */
+    private static final int MAX_LINE_BREAK = 2;
+
+    private final LogView log;
+
+    @Nullable
+    private final FieldIndexStorage storage;
+
+    private final String formatFingerprint;
+
+    private String hash;
+    private long size;
+
+    private final int blockSize;
+
+    private final String[] fields;
+
+    private final List<List<String>> dictionaries = new ArrayList<>();
+    private final List<Map<String, Integer>> valueIds = new ArrayList<>();
+
+    private final boolean[] overflowed;
+
+    private final TreeMap<Long, BitSet[]> blocks = new TreeMap<>();
+
+    private boolean modified;
+
+    /**
+     * @param storage the storage the index is saved to when new blocks are indexed, see {@link #save()}.
+     */
+    FieldIndex(@NonNull LogView log, @Nullable FieldIndexStorage storage, @NonNull String formatFingerprint,
+               @NonNull String hash, long size, int blockSize) {
+        this.log = log;
+        this.storage = storage;
+        this.formatFingerprint = formatFingerprint;
+        this.hash = hash;
+        this.size = size;
+        this.blockSize = blockSize;
+
+        fields = indexedFields(log.getFormat());
+        overflowed = new boolean[fields.length];
+
+        for (int i = 0; i < fields.length; i++) {
+            dictionaries.add(new ArrayList<>());
+            valueIds.add(new HashMap<>());
+        }
+    }
+
+    /**
+     * @return the names of the fields to index: the level, the thread and the logger.
+     */
+    @NonNull
+    static String[] indexedFields(@NonNull LogFormat format) {
+        List<String> res = new ArrayList<>();
+
+        for (LogFormat.FieldDescriptor field : format.getFields()) {
+            String type = field.type();
+
+            if (FieldTypes.is(type, FieldTypes.LEVEL) || FieldTypes.is(type, FieldTypes.THREAD)
+                    || FieldTypes.is(type, FieldTypes.JAVA_CLASS)) {
+                res.add(field.name());
+            }
+        }
+
+        return res.toArray(new String[0]);
+    }
+
+    String getLogId() {
+        return log.getId();
+    }
+
+    String getFormatFingerprint() {
+        return formatFingerprint;
+    }
+
+    /**
+     * The hash of the log content the index was built for, see {@link Snapshot#getHash()}.
+     */
+    synchronized String getHash() {
+        return hash;
+    }
+
+    /**
+     * The size of the log the index was built for. All indexed blocks are located before this position.
+     */
+    synchronized long getSize() {
+        return size;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    String[] getFields() {
+        return fields;
+    }
+
+    synchronized boolean isModified() {
+        return modified;
+    }
+
+    synchronized void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
+    /**
+     * Saves the index to the storage if it has been modified. The state is copied under the lock, the file is written
+     * outside of it, so the scans and the filters don't wait for the disk.
+     */
+    void save() {
+        if (storage == null)
+            return;
+
+        FieldIndex copy;
+
+        synchronized (this) {
+            if (!modified)
+                return;
+
+            copy = new FieldIndex(log, null, formatFingerprint, hash, size, blockSize);
+
+            for (int i = 0; i < fields.length; i++) {
+                copy.loadField(i, overflowed[i], dictionaries.get(i));
+            }
+
+            copy.blocks.putAll(blocks); // The bitmaps of a block are not changed after the block is added
+
+            modified = false;
+        }
+
+        storage.save(copy);
+    }
+
+    /**
+     * Called when the index is used for a bigger file with the same beginning.
+     */
+    synchronized void update(@NonNull String hash, long size) {
+        assert size >= this.size;
+
+        if (size != this.size || !hash.equals(this.hash)) {
+            this.hash = hash;
+            this.size = size;
+            modified = true;
+        }
+    }
+
+    synchronized List<String> getDictionary(int fieldIdx) {
+        return new ArrayList<>(dictionaries.get(fieldIdx));
+    }
+
+    synchronized boolean isOverflowed(int fieldIdx) {
+        return overflowed[fieldIdx];
+    }
+
+    synchronized int getBlockCount() {
+        return blocks.size();
+    }
+
+    synchronized Map<Long, BitSet[]> getBlocks() {
+        return new TreeMap<>(blocks);
+    }
+
+    /**
+     * Restores the state of a field loaded from the storage.
+     */
+    synchronized void loadField(int fieldIdx, boolean overflowed, @NonNull List<String> dictionary) {
+        this.overflowed[fieldIdx] = overflowed;
+
+        for (String value : dictionary) {
+            valueId(fieldIdx, value);
+        }
+    }
+
+    /**
+     * Adds the block loaded from the storage or read by a scan.
+     *
+     * @param values the value bitmaps of the block, one bitmap per field.
+     */
+    synchronized void addBlock(long block, @NonNull BitSet[] values) {
+        assert values.length == fields.length;
+        assert (block + 1) * blockSize <= size;
+
+        blocks.put(block, values);
+        modified = true;
+    }
+
+    /**
+     * @return the number of the value in the dictionary of the field, -1 if the field has too many values.
+     */
+    private int valueId(int fieldIdx, @Nullable String value) {
+        if (overflowed[fieldIdx])
+            return -1;
+
+        Map<String, Integer> ids = valueIds.get(fieldIdx);
+
+        Integer res = ids.get(value);
+        if (res == null) {
+            List<String> dictionary = dictionaries.get(fieldIdx);
+
+            if (dictionary.size() >= MAX_VALUES || (value != null && value.length() > MAX_VALUE_LENGTH)) {
+                overflowed[fieldIdx] = true;
+                modified = true;
+                return -1;
+            }
+
+            res = dictionary.size();
+            dictionary.add(value);
+            ids.put(value, res);
+        }
+
+        return res;
+    }
+
+    /**
+     * @return the filter skipping the blocks where no record can match {@code filter}, {@code null} if the index
+     * doesn't allow to skip any block.
+     */
+    @Nullable
+    public synchronized RegionFilter createRegionFilter(@Nullable RecordPredicate filter) {
+        if (filter == null || blocks.isEmpty())
+            return null;
+
+        Condition condition;
+
+        LvPredicateChecker ctx = new LvPredicateChecker(log);
+
+        try {
+            condition = condition(filter, ctx);
+        } catch (RuntimeException e) {
+            return null;
+        } finally {
+            Utils.closeQuietly(ctx);
+        }
+
+        if (condition == null)
+            return null;
+
+        BitSet rejected = new BitSet();
+
+        for (Map.Entry<Long, BitSet[]> entry : blocks.entrySet()) {
+            if (entry.getKey() <= Integer.MAX_VALUE && !condition.mayMatch(entry.getValue()))
+                rejected.set(entry.getKey().intValue());
+        }
+
+        if (rejected.isEmpty())
+            return null;
+
+        return new BlockFilter(rejected, blockSize);
+    }
+
+    /**
+     * @return the condition checking whether a block may contain a record matching the filter, {@code null} if any
+     * block may contain such records.
+     */
+    @Nullable
+    private Condition condition(@NonNull RecordPredicate filter, LvPredicateChecker ctx) {
+        int fieldIdx = dependency(filter);
+
+        if (fieldIdx >= 0) {
+            if (overflowed[fieldIdx])
+                return null;
+
+            // The filter depends on one field only, check it against all known values of the field
+            BitSet allowed = new BitSet();
+
+            List<String> dictionary = dictionaries.get(fieldIdx);
+            for (int i = 0; i < dictionary.size(); i++) {
+                if (mayMatch(filter, fields[fieldIdx], dictionary.get(i), ctx))
+                    allowed.set(i);
+            }
+
+            return block -> block[fieldIdx].intersects(allowed);
+        }
+
+        if (filter instanceof CompositeRecordPredicate) {
+            CompositeRecordPredicate composite = (CompositeRecordPredicate) filter;
+
+            List<Condition> conditions = new ArrayList<>();
+
+            for (RecordPredicate predicate : composite.getPredicates()) {
+                Condition condition = condition(predicate, ctx);
+
+                if (condition != null) {
+                    conditions.add(condition);
+                } else if (!composite.isAnd()) {
+                    return null;
+                }
+            }
+
+            if (conditions.isEmpty())
+                return null;
+
+            if (composite.isAnd())
+                return block -> conditions.stream().allMatch(c -> c.mayMatch(block));
+
+            return block -> conditions.stream().anyMatch(c -> c.mayMatch(block));
+        }
+
+        return null;
+    }
+
+    private static boolean mayMatch(RecordPredicate filter, String field, @Nullable String value, LvPredicateChecker ctx) {
+        int[] fieldPositions = value == null ? new int[]{-1, -1} : new int[]{0, value.length()};
+
+        LogRecord record = new LogRecord(value == null ? "" : value, 0, 0, 0, false, fieldPositions,
+                Collections.singletonMap(field, 0));
+
+        try {
+            return filter.test(record, ctx);
+        } catch (Throwable e) {
+            return true; // The records failed by the filter are displayed
+        }
+    }
+
+    /**
+     * @return the number of the indexed field the result of the filter depends on, or -1 if the filter depends on
+     * other fields or on several fields.
+     */
+    private int dependency(@NonNull RecordPredicate filter) {
+        if (filter instanceof FieldArgPredicate)
+            return fieldIndex(((FieldArgPredicate) filter).getFieldName());
+
+        if (filter instanceof FieldValueSetPredicate) {
+            String fieldType = ((FieldValueSetPredicate) filter).getFieldType();
+            return fieldType == null ? -1 : fieldOfType(fieldType);
+        }
+
+        if (filter instanceof ThreadPredicate)
+            return fieldOfType(FieldTypes.THREAD);
+
+        if (filter instanceof NotPredicate)
+            return dependency(((NotPredicate) filter).getDelegate());
+
+        if (filter instanceof CompositeRecordPredicate) {
+            int res = -1;
+
+            for (RecordPredicate predicate : ((CompositeRecordPredicate) filter).getPredicates()) {
+                int fieldIdx = dependency(predicate);
+                if (fieldIdx < 0 || (res >= 0 && res != fieldIdx))
+                    return -1;
+
+                res = fieldIdx;
+            }
+
+            return res;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number of the indexed field having the type, or -1 if there is no such field or there are several
+     * fields of the type.
+     */
+    private int fieldOfType(@NonNull String fieldType) {
+        String res = null;
+
+        for (LogFormat.FieldDescriptor field : log.getFormat().getFields()) {
+            if (FieldTypes.is(field.type(), fieldType)) {
+                if (res != null)
+                    return -1;
+
+                res = field.name();
+            }
+        }
+
+        return res == null ? -1 : fieldIndex(res);
+    }
+
+    private int fieldIndex(String fieldName) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(fieldName))
+                return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Starts collecting the field values of the records read by a scan of the file.
+     *
+     * @param fileSize the size of the scanned snapshot.
+     */
+    @NonNull
+    public synchronized Recording startRecording(long fileSize) {
+        BitSet indexedBlocks = new BitSet();
+
+        for (Long block : blocks.keySet()) {
+            if (block <= Integer.MAX_VALUE)
+                indexedBlocks.set(block.intValue());
+        }
+
+        return new Recording(fileSize, indexedBlocks);
+    }
+
+    private interface Condition {
+        boolean mayMatch(BitSet[] block);
+    }
+
+    /**
+     * Skips the blocks where no record can match the filter.
+     */
+    private static final class BlockFilter implements RegionFilter {
+        private final BitSet rejected;
+        private final long blockSize;
+
+        BlockFilter(BitSet rejected, long blockSize) {
+            this.rejected = rejected;
+            this.blockSize = blockSize;
+        }
+
+        private boolean isRejected(long block) {
+            return block <= Integer.MAX_VALUE && rejected.get((int) block);
+        }
+
+        @Override
+        public long nextCandidate(long position, long limit) {
+            long res = position;
+
+            while (res < limit) {
+                long block = res / blockSize;
+                if (!isRejected(block))
+                    return res;
+
+                res = rejected.nextClearBit((int) block) * blockSize;
+            }
+
+            return -1;
+        }
+
+        @Override
+        public long prevCandidate(long position, long limit) {
+            long res = position - 1;
+
+            while (res >= limit && res >= 0) {
+                long block = res / blockSize;
+                if (!isRejected(block))
+                    return res;
+
+                // The last byte of the previous block that is not rejected
+                res = (rejected.previousClearBit((int) block) + 1) * blockSize - 1;
+            }
+
+            return -1;
+        }
+    }
+
+    /**
+     * The field values collected by one scan. The scan creates a {@link RunRecorder} for each sequence of the records
+     * it reads, the complete blocks are added to the index by {@link #finish()}.
+     */
+    public class Recording {
+
+        private final long fileSize;
+
+        /**
+         * The blocks indexed before the scan, the field values of their records are not collected.
+         */
+        private final BitSet indexedBlocks;
+
+        private final List<RunRecorder> recorders = new ArrayList<>();
+
+        Recording(long fileSize, BitSet indexedBlocks) {
+            this.fileSize = fileSize;
+            this.indexedBlocks = indexedBlocks;
+        }
+
+        @NonNull
+        public synchronized RunRecorder createRunRecorder() {
+            RunRecorder res = new RunRecorder(this);
+            recorders.add(res);
+            return res;
+        }
+
+        /**
+         * Adds the blocks read completely to the index and schedules saving of the index.
+         *
+         * @return {@code true} if the index has been changed.
+         */
+        public boolean finish() {
+            List<Run> runs = new ArrayList<>();
+
+            synchronized (this) {
+                for (RunRecorder recorder : recorders) {
+                    recorder.drainTo(runs);
+                }
+
+                recorders.clear();
+            }
+
+            if (runs.isEmpty())
+                return false;
+
+            runs.sort(Comparator.comparingLong(run -> run.from));
+
+            // The chunks of a parallel scan are adjacent
+            List<Run> merged = new ArrayList<>();
+            Run last = null;
+
+            for (Run run : runs) {
+                if (last != null && run.from >= last.to && run.from - last.to <= MAX_LINE_BREAK) {
+                    last.append(run);
+                } else {
+                    last = run;
+                    merged.add(run);
+                }
+            }
+
+            boolean res = false;
+
+            synchronized (FieldIndex.this) {
+                for (Run run : merged) {
+                    for (Map.Entry<Long, List<Set<String>>> entry : run.blocks.entrySet()) {
+                        long block = entry.getKey();
+
+                        if (block * blockSize < run.from || (block + 1) * blockSize > run.to || blocks.containsKey(block))
+                            continue;
+
+                        BitSet[] values = new BitSet[fields.length];
+
+                        for (int i = 0; i < fields.length; i++) {
+                            values[i] = new BitSet();
+
+                            Set<String> fieldValues = entry.getValue().get(i);
+                            if (fieldValues == null) {
+                                if (!overflowed[i]) {
+                                    overflowed[i] = true;
+                                    modified = true;
+                                }
+
+                                continue;
+                            }
+
+                            for (String value : fieldValues) {
+                                int id = valueId(i, value);
+                                if (id < 0)
+                                    break;
+
+                                values[i].set(id);
+                            }
+                        }
+
+                        addBlock(block, values);
+                        res = true;
+                    }
+                }
+            }
+
+            if (res && storage != null)
+                storage.scheduleSave(FieldIndex.this);
+
+            return res;
+        }
+    }
+
+    /**
+     * Collects the field values of the records read one after another in the same direction. A sequence of adjacent
+     * records is a run, the run is interrupted when the scan skips records.
+     */
+    public class RunRecorder {
+
+        private final Recording recording;
+
+        private final List<Run> runs = new ArrayList<>();
+
+        private Run run;
+
+        /**
+         * The value of each field in the previous recorded record. Most records have the same level, thread and logger
+         * as the previous one, such values are compared with the record text without decoding.
+         */
+        private final String[] lastValues = new String[fields.length];
+
+        private RunRecorder(Recording recording) {
+            this.recording = recording;
+        }
+
+        public synchronized void record(@NonNull LogRecord record) {
+            // The last record may be continued when the file grows
+            if (record.getEnd() + MAX_LINE_BREAK >= recording.fileSize) {
+                interrupt();
+                return;
+            }
+
+            if (run != null) {
+                if (record.getStart() >= run.to && record.getStart() - run.to <= MAX_LINE_BREAK) {
+                    run.to = record.getEnd();
+                } else if (record.getEnd() <= run.from && run.from - record.getEnd() <= MAX_LINE_BREAK) {
+                    run.from = record.getStart();
+                } else {
+                    interrupt();
+                }
+            }
+
+            if (run == null)
+                run = new Run(record.getStart(), record.getEnd());
+
+            long block = record.getStart() / blockSize;
+
+            if (block <= Integer.MAX_VALUE && recording.indexedBlocks.get((int) block))
+                return;
+
+            List<Set<String>> values = run.blocks.computeIfAbsent(block, b -> newValueSets());
+
+            for (int i = 0; i < fields.length; i++) {
+                Set<String> fieldValues = values.get(i);
+                if (fieldValues == null)
+                    continue;
+
+                String value = lastValues[i];
+
+                if (value == null || !record.fieldTextEquals(fields[i], value)) {
+                    value = record.getFieldText(fields[i]);
+                    lastValues[i] = value;
+                }
+
+                if (fieldValues.add(value) && fieldValues.size() > MAX_VALUES)
+                    values.set(i, null);
+            }
+        }
+
+        public synchronized void interrupt() {
+            if (run != null) {
+                runs.add(run);
+                run = null;
+            }
+        }
+
+        private synchronized void drainTo(List<Run> res) {
+            interrupt();
+
+            res.addAll(runs);
+            runs.clear();
+        }
+
+        private List<Set<String>> newValueSets() {
+            List<Set<String>> res = new ArrayList<>(fields.length);
+            for (int i = 0; i < fields.length; i++) {
+                res.add(new HashSet<>());
+            }
+
+            return res;
+        }
+    }
+
+    /**
+     * The adjacent records {@code [from, to)} read by a scan. {@link #blocks} contains the field values of the records
+     * by the blocks they start in, a {@code null} set means the field has too many values.
+     */
+    private static final class Run {
+        private long from;
+        private long to;
+
+        private final Map<Long, List<Set<String>>> blocks = new HashMap<>();
+
+        Run(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        void append(Run run) {
+            to = run.to;
+
+            for (Map.Entry<Long, List<Set<String>>> entry : run.blocks.entrySet()) {
+                List<Set<String>> values = blocks.get(entry.getKey());
+
+                if (values == null) {
+                    blocks.put(entry.getKey(), entry.getValue());
+                    continue;
+                }
+
+                for (int i = 0; i < values.size(); i++) {
+                    Set<String> existing = values.get(i);
+                    Set<String> added = entry.getValue().get(i);
+
+                    if (existing == null || added == null) {
+                        values.set(i, null);
+                    } else {
+                        existing.addAll(added);
+                        if (existing.size() > MAX_VALUES)
+                            values.set(i, null);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.logviewer.data2;
+
+import com.logviewer.data2.config.ConfigDirHolder;
+import com.logviewer.utils.LvTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores {@link FieldIndex} of the logs in the config directory, so the blocks indexed by the previous scans are
+ * skipped after restart too. The index file is bound to the log id and the log format, the index is validated by
+ * the hash of the log beginning ({@link Snapshot#isValidHash(String)}) when it is loaded.
+ */
+public class FieldIndexStorage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FieldIndexStorage.class);
+
+    public static final String ENABLED_PROPERTY = "log-viewer.field-index.enabled";
+    public static final String BLOCK_SIZE_PROPERTY = "log-viewer.field-index.block-size";
+
+    private static final int MAGIC = 0x4c564649; // "LVFI"
+    private static final int VERSION = 1;
+
+    private static final long SAVE_DELAY = 3000;
+
+    private final ConfigDirHolder configDir;
+
+    private final int blockSize;
+
+    @Nullable
+    private final LvTimer timer;
+
+    public FieldIndexStorage(@NonNull ConfigDirHolder configDir, int blockSize) {
+        this(configDir, blockSize, null);
+    }
+
+    /**
+     * @param timer the timer saving the modified indexes, the index is saved only by explicit {@link FieldIndex#save()}
+     *              calls if the timer is {@code null}.
+     */
+    public FieldIndexStorage(@NonNull ConfigDirHolder configDir, int blockSize, @Nullable LvTimer timer) {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("Invalid block size: " + blockSize);
+
+        this.configDir = configDir;
+        this.blockSize = blockSize;
+        this.timer = timer;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    private Path getIndexDir() {
+        return configDir.getConfigDir().resolve("field-index");
+    }
+
+    private Path indexFile(@NonNull String logId, @NonNull String formatFingerprint) {
+        return getIndexDir().resolve(logId + '-' + formatFingerprint + ".idx");
+    }
+
+    /**
+     * @return the stored index or {@code null} if there is no index for the log or the log was rewritten since
+     * the index has been saved.
+     */
+    @Nullable
+    FieldIndex load(@NonNull LogView log, @NonNull String formatFingerprint, @NonNull Snapshot snapshot) {
+        Path file = indexFile(log.getId(), formatFingerprint);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+
+            if (!formatFingerprint.equals(in.readUTF()))
+                return null;
+
+            String hash = in.readUTF();
+            long size = in.readLong();
+
+            if (in.readInt() != blockSize)
+                return null;
+
+            if (size > snapshot.getSize() || !snapshot.isValidHash(hash))
+                return null;
+
+            FieldIndex res = new FieldIndex(log, this, formatFingerprint, hash, size, blockSize);
+
+            String[] fields = res.getFields();
+
+            if (in.readInt() != fields.length)
+                return null;
+
+            for (int i = 0; i < fields.length; i++) {
+                if (!fields[i].equals(in.readUTF()))
+                    return null;
+
+                boolean overflowed = in.readBoolean();
+
+                int valueCount = in.readInt();
+                if (valueCount < 0 || valueCount > FieldIndex.MAX_VALUES)
+                    return null;
+
+                List<String> dictionary = new ArrayList<>(valueCount);
+                for (int j = 0; j < valueCount; j++) {
+                    dictionary.add(in.readBoolean() ? in.readUTF() : null);
+                }
+
+                res.loadField(i, overflowed, dictionary);
+            }
+
+            int blockCount = in.readInt();
+            if (blockCount < 0 || (long) blockCount * blockSize > size)
+                return null;
+
+            for (int i = 0; i < blockCount; i++) {
+                long block = in.readLong();
+
+                if (block < 0 || (block + 1) * blockSize > size)
+                    return null;
+
+                BitSet[] values = new BitSet[fields.length];
+
+                for (int j = 0; j < fields.length; j++) {
+                    int wordCount = in.readUnsignedByte();
+
+                    long[] words = new long[wordCount];
+                    for (int k = 0; k < wordCount; k++) {
+                        words[k] = in.readLong();
+                    }
+
+                    values[j] = BitSet.valueOf(words);
+                }
+
+                res.addBlock(block, values);
+            }
+
+            res.setModified(false);
+
+            return res;
+        } catch (IOException e) {
+            LOG.warn("Failed to load field index: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Saves the index on the timer thread, the scans completing several blocks in a row write the file once.
+     */
+    void scheduleSave(@NonNull FieldIndex index) {
+        if (timer != null)
+            timer.scheduleTask(index, index::save, SAVE_DELAY);
+    }
+
+    /**
+     * Writes the index to the file, the index must not be modified concurrently, see {@link FieldIndex#save()}.
+     */
+    void save(@NonNull FieldIndex index) {
+        Path file = indexFile(index.getLogId(), index.getFormatFingerprint());
+
+        try {
+            Files.createDirectories(file.getParent());
+
+            Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(index.getFormatFingerprint());
+                out.writeUTF(index.getHash());
+                out.writeLong(index.getSize());
+                out.writeInt(index.getBlockSize());
+
+                String[] fields = index.getFields();
+
+                out.writeInt(fields.length);
+
+                for (int i = 0; i < fields.length; i++) {
+                    out.writeUTF(fields[i]);
+                    out.writeBoolean(index.isOverflowed(i));
+
+                    List<String> dictionary = index.getDictionary(i);
+
+                    out.writeInt(dictionary.size());
+
+                    for (String value : dictionary) {
+                        out.writeBoolean(value != null);
+                        if (value != null)
+                            out.writeUTF(value);
+                    }
+                }
+
+                Map<Long, BitSet[]> blocks = index.getBlocks();
+
+                out.writeInt(blocks.size());
+
+                for (Map.Entry<Long, BitSet[]> entry : blocks.entrySet()) {
+                    out.writeLong(entry.getKey());
+
+                    for (BitSet values : entry.getValue()) {
+                        // The dictionary contains at most 256 values, 4 words
+                        long[] words = values.toLongArray();
+
+                        out.writeByte(words.length);
+                        for (long word : words) {
+                            out.writeLong(word);
+                        }
+                    }
+                }
+            }
+
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            LOG.warn("Failed to save field index: {}", file, e);
+        }
+    }
+}
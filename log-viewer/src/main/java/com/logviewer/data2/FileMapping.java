@@ -0,0 +1,93 @@
+package com.logviewer.data2;
+
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Keeps a file mapped into the memory. The file is mapped by regions of {@link #REGION_SIZE} bytes, because a single
+ * {@link MappedByteBuffer} cannot be larger than 2Gb. The mapping is shared between the snapshots of the same log,
+ * the tail region is remapped when the file grows. The mapping is dropped when the file is rewritten (the hash of
+ * the log changes), so the file is never truncated below the mapped size while the mapping is in use.
+ * <p>
+ * Each {@link #map(long)} call must be paired with {@link #release()}, the regions are dropped when the last user
+ * releases the mapping. The JVM unmaps a region when the buffer is garbage collected only, a file having a mapped
+ * region cannot be deleted or renamed on Windows, so the mapping must not outlive the snapshots reading it.
+ */
+public class FileMapping {
+
+    static final int REGION_SIZE_BITS = 30;
+
+    static final long REGION_SIZE = 1L << REGION_SIZE_BITS; // 1Gb
+
+    private static final MappedByteBuffer[] EMPTY = new MappedByteBuffer[0];
+
+    private final Path file;
+
+    private MappedByteBuffer[] regions = EMPTY;
+    private long mappedSize;
+
+    private int users;
+
+    public FileMapping(@NonNull Path file) {
+        this.file = file;
+    }
+
+    /**
+     * @return the regions covering first {@code size} bytes of the file. The returned array is never modified, so it
+     * can be used without synchronization. The caller must call {@link #release()} when the regions are not used
+     * anymore.
+     */
+    @NonNull
+    public synchronized MappedByteBuffer[] map(long size) throws IOException {
+        MappedByteBuffer[] res = doMap(size);
+        users++;
+        return res;
+    }
+
+    /**
+     * Drops the mapped regions if there are no other users of the mapping. The regions returned by
+     * {@link #map(long)} must not be read after this call.
+     */
+    public synchronized void release() {
+        assert users > 0;
+
+        if (--users == 0) {
+            regions = EMPTY;
+            mappedSize = 0;
+        }
+    }
+
+    private MappedByteBuffer[] doMap(long size) throws IOException {
+        if (size == mappedSize)
+            return regions;
+
+        int regionCount = (int) ((size + REGION_SIZE - 1) >>> REGION_SIZE_BITS);
+
+        // An older snapshot of a growing file, the mapped regions already cover it
+        if (size < mappedSize)
+            return regionCount == regions.length ? regions : Arrays.copyOf(regions, regionCount);
+
+        // The last region is mapped partially if the file was smaller, it must be remapped
+        int firstRegionToMap = (int) (mappedSize >>> REGION_SIZE_BITS);
+
+        MappedByteBuffer[] res = Arrays.copyOf(regions, regionCount);
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int i = firstRegionToMap; i < regionCount; i++) {
+                long regionStart = (long) i << REGION_SIZE_BITS;
+                res[i] = channel.map(FileChannel.MapMode.READ_ONLY, regionStart, Math.min(size - regionStart, REGION_SIZE));
+            }
+        }
+
+        regions = res;
+        mappedSize = size;
+
+        return res;
+    }
+}
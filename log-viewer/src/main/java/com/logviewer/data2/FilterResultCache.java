@@ -0,0 +1,498 @@
+package com.logviewer.data2;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.logviewer.filters.CompositeRecordPredicate;
+import com.logviewer.filters.RecordPredicate;
+import com.logviewer.utils.LvGsonUtils;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide cache of the filter results. For a log and a filter, the cache keeps the ranges of the file where
+ * the filter has been checked for every record, and the positions of the matching records within these ranges. When
+ * the same filter is applied again, the scan skips the rejected records without parsing them, see {@link RegionFilter}.
+ *
+ * The results are identified by the log id, the hash of the log ({@link Snapshot#getHash()}) and the fingerprint of
+ * the format and the filter. Every scan adds the ranges it has checked, so the results grow with the file. The cache is
+ * limited by the memory taken by the positions of the matching records, the eviction policy is Caffeine's W-TinyLFU.
+ */
+public class FilterResultCache {
+
+    public static final String SIZE_PROPERTY = "log-viewer.filter-cache.size";
+
+    private static final int ENTRY_OVERHEAD = 128;
+    private static final int RANGE_OVERHEAD = 64;
+    private static final int MATCH_SIZE = 2 * Long.BYTES;
+
+    /**
+     * The records are separated by a line break, the ranges separated by a line break only are merged.
+     */
+    private static final int MAX_LINE_BREAK = 2;
+
+    private final long maxSize;
+
+    private final Cache<ResultKey, Results> cache;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public FilterResultCache(long maxSize) {
+        this.maxSize = maxSize;
+
+        cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(maxSize, 0))
+                .weigher((ResultKey key, Results results) -> (int) Math.min(results.weight, Integer.MAX_VALUE))
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    /**
+     * @return the string identifying the results of the filter for the logs of the format, {@code null} if the filter
+     * is not specified or cannot be serialized. The filters combined in a different order have the same fingerprint.
+     */
+    @Nullable
+    public static String fingerprint(@NonNull LogFormat format, @Nullable RecordPredicate filter) {
+        if (filter == null)
+            return null;
+
+        String canonicalFilter;
+
+        try {
+            canonicalFilter = canonicalForm(filter);
+        } catch (RuntimeException e) {
+            return null;
+        }
+
+        byte[] filterBytes = canonicalFilter.getBytes(StandardCharsets.UTF_8);
+
+        return TimeIndexStorage.formatFingerprint(format) + '-' + DigestUtils.md5DigestAsHex(filterBytes);
+    }
+
+    private static String canonicalForm(RecordPredicate filter) {
+        if (!(filter instanceof CompositeRecordPredicate))
+            return LvGsonUtils.GSON.toJson(filter, RecordPredicate.class);
+
+        CompositeRecordPredicate composite = (CompositeRecordPredicate) filter;
+
+        List<String> predicates = new ArrayList<>();
+        for (RecordPredicate predicate : composite.getPredicates()) {
+            predicates.add(canonicalForm(predicate));
+        }
+
+        Collections.sort(predicates);
+
+        return (composite.isAnd() ? "and" : "or") + predicates;
+    }
+
+    /**
+     * Starts collecting the results of the filter checked during a scan of the snapshot.
+     *
+     * @return {@code null} if the results of the filter cannot be cached.
+     */
+    @Nullable
+    public Recording startRecording(@NonNull Snapshot snapshot, @Nullable RecordPredicate filter) {
+        // The positions of a virtual log don't match the positions in the files
+        if (!(snapshot instanceof Log.LogSnapshot) || snapshot.getError() != null || snapshot.getHash() == null)
+            return null;
+
+        String fingerprint = fingerprint(snapshot.getLog().getFormat(), filter);
+        if (fingerprint == null)
+            return null;
+
+        ResultKey key = new ResultKey(snapshot.getLog().getId(), snapshot.getHash(), fingerprint);
+
+        Results results = cache.getIfPresent(key);
+
+        // The file has been truncated and rewritten with the same beginning
+        if (results != null && results.fileSize > snapshot.getSize())
+            results = null;
+
+        if (results == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+
+        return new Recording(key, results, snapshot.getSize());
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        return "FilterResultCache[maxSize=" + maxSize + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ']';
+    }
+
+    /**
+     * The results collected by one scan. The scan creates a {@link ChunkRecorder} for each sequence of the records it
+     * checks, the results are added to the cache by {@link #finish()}.
+     */
+    public class Recording {
+
+        private final ResultKey key;
+
+        @Nullable
+        private final Results results;
+
+        private final long fileSize;
+
+        private final List<ChunkRecorder> recorders = new ArrayList<>();
+
+        private final AtomicLong recordedSize = new AtomicLong();
+
+        private volatile boolean abandoned;
+
+        Recording(ResultKey key, @Nullable Results results, long fileSize) {
+            this.key = key;
+            this.results = results;
+            this.fileSize = fileSize;
+        }
+
+        /**
+         * @return the filter skipping the records known to be rejected, {@code null} if there are no results yet.
+         */
+        @Nullable
+        public RegionFilter getRegionFilter() {
+            return results;
+        }
+
+        @NonNull
+        public synchronized ChunkRecorder createChunkRecorder() {
+            ChunkRecorder res = new ChunkRecorder(this);
+            recorders.add(res);
+            return res;
+        }
+
+        /**
+         * Adds the collected results to the cache. The recorders still used by the scan threads are flushed too, their
+         * results are valid up to the last checked record.
+         */
+        public void finish() {
+            List<Range> ranges = new ArrayList<>();
+
+            synchronized (this) {
+                for (ChunkRecorder recorder : recorders) {
+                    recorder.drainTo(ranges);
+                }
+
+                recorders.clear();
+            }
+
+            if (abandoned || ranges.isEmpty())
+                return;
+
+            cache.asMap().compute(key, (k, old) -> (old == null ? Results.EMPTY : old).merge(ranges, fileSize));
+        }
+
+        private void addRecordedSize(long size) {
+            // The filter matches too many records to keep them in memory, the results are not worth caching
+            if (recordedSize.addAndGet(size) > maxSize)
+                abandoned = true;
+        }
+    }
+
+    /**
+     * Collects the results of a sequence of records checked one after another in the same direction. The records
+     * skipped between the checked records must be known to be rejected by the filter, like the records skipped by
+     * {@link RegionFilter} or by the prefilter.
+     */
+    public class ChunkRecorder {
+
+        private final Recording recording;
+
+        private final List<Range> ranges = new ArrayList<>();
+
+        private long from = -1;
+        private long to;
+
+        private long[] matches = new long[16];
+        private int matchCount;
+
+        private ChunkRecorder(Recording recording) {
+            this.recording = recording;
+        }
+
+        /**
+         * Called after the filter has been checked for the record.
+         *
+         * @param matched {@code true} if the record is accepted by the filter, or the filter has failed.
+         */
+        public synchronized void record(@NonNull LogRecord record, boolean matched) {
+            // The last record may be continued when the file grows
+            if (record.getEnd() + MAX_LINE_BREAK >= recording.fileSize) {
+                interrupt();
+                return;
+            }
+
+            if (from < 0) {
+                from = record.getStart();
+                to = record.getEnd();
+            } else {
+                from = Math.min(from, record.getStart());
+                to = Math.max(to, record.getEnd());
+            }
+
+            if (matched) {
+                if (matchCount * 2 == matches.length)
+                    matches = Arrays.copyOf(matches, matches.length * 2);
+
+                matches[matchCount * 2] = record.getStart();
+                matches[matchCount * 2 + 1] = record.getEnd();
+                matchCount++;
+
+                recording.addRecordedSize(MATCH_SIZE);
+            }
+        }
+
+        /**
+         * Called when a record is passed without checking the filter, the checked records before and after it are not
+         * a continuous range.
+         */
+        public synchronized void interrupt() {
+            if (from < 0)
+                return;
+
+            ranges.add(new Range(from, to, Arrays.copyOf(matches, matchCount * 2)));
+            recording.addRecordedSize(RANGE_OVERHEAD);
+
+            from = -1;
+            matchCount = 0;
+        }
+
+        private synchronized void drainTo(List<Range> res) {
+            interrupt();
+
+            res.addAll(ranges);
+            ranges.clear();
+        }
+    }
+
+    /**
+     * The checked part of the file, {@code [from, to)}. {@link #matches} contains the start and the end of each matching
+     * record sorted by the position.
+     */
+    private static final class Range {
+        private final long from;
+        private final long to;
+        private final long[] matches;
+
+        Range(long from, long to, long[] matches) {
+            this.from = from;
+            this.to = to;
+
+            // The records of a backward scan are recorded in the reverse order
+            if (matches.length > 2 && matches[0] > matches[matches.length - 2]) {
+                for (int i = 0, j = matches.length - 2; i < j; i += 2, j -= 2) {
+                    long start = matches[i];
+                    long end = matches[i + 1];
+                    matches[i] = matches[j];
+                    matches[i + 1] = matches[j + 1];
+                    matches[j] = start;
+                    matches[j + 1] = end;
+                }
+            }
+
+            this.matches = matches;
+        }
+
+        int matchCount() {
+            return matches.length / 2;
+        }
+
+        /**
+         * @return the position of {@code position} if it belongs to a matching record, otherwise the start of the next
+         * matching record, or {@link #to} if there are no matching records after the position.
+         */
+        long nextMatch(long position) {
+            // The first match ending after the position
+            int lo = 0;
+            int hi = matchCount();
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (matches[mid * 2 + 1] > position) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+
+            if (lo == matchCount())
+                return to;
+
+            return Math.max(matches[lo * 2], position);
+        }
+
+        /**
+         * @return {@code position} if it belongs to a matching record, otherwise the last byte of the previous matching
+         * record, or {@code from - 1} if there are no matching records before the position.
+         */
+        long prevMatch(long position) {
+            // The last match starting at or before the position
+            int lo = 0;
+            int hi = matchCount();
+
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (matches[mid * 2] <= position) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+
+            if (lo == 0)
+                return from - 1;
+
+            return Math.min(matches[(lo - 1) * 2 + 1] - 1, position);
+        }
+
+        static Range merge(Range a, Range b) {
+            long[] res = new long[a.matches.length + b.matches.length];
+            int size = 0;
+
+            int i = 0;
+            int j = 0;
+
+            while (i < a.matches.length || j < b.matches.length) {
+                long[] src;
+                int idx;
+
+                if (j == b.matches.length || (i < a.matches.length && a.matches[i] <= b.matches[j])) {
+                    src = a.matches;
+                    idx = i;
+                    i += 2;
+
+                    // The same record checked by both scans
+                    if (j < b.matches.length && a.matches[idx] == b.matches[j])
+                        j += 2;
+                } else {
+                    src = b.matches;
+                    idx = j;
+                    j += 2;
+                }
+
+                res[size++] = src[idx];
+                res[size++] = src[idx + 1];
+            }
+
+            return new Range(Math.min(a.from, b.from), Math.max(a.to, b.to), Arrays.copyOf(res, size));
+        }
+    }
+
+    /**
+     * The results of a filter for a log, immutable. A new instance is created when the results are extended.
+     */
+    private static final class Results implements RegionFilter {
+
+        static final Results EMPTY = new Results(Collections.emptyNavigableMap(), 0);
+
+        private final NavigableMap<Long, Range> ranges;
+
+        private final long fileSize;
+
+        private final long weight;
+
+        Results(NavigableMap<Long, Range> ranges, long fileSize) {
+            this.ranges = ranges;
+            this.fileSize = fileSize;
+
+            long weight = ENTRY_OVERHEAD;
+            for (Range range : ranges.values()) {
+                weight += RANGE_OVERHEAD + (long) range.matchCount() * MATCH_SIZE;
+            }
+
+            this.weight = weight;
+        }
+
+        Results merge(List<Range> newRanges, long fileSize) {
+            TreeMap<Long, Range> res = new TreeMap<>(ranges);
+
+            for (Range range : newRanges) {
+                while (true) {
+                    Map.Entry<Long, Range> entry = res.floorEntry(range.to + MAX_LINE_BREAK);
+                    if (entry == null || entry.getValue().to + MAX_LINE_BREAK < range.from)
+                        break;
+
+                    res.remove(entry.getKey());
+                    range = Range.merge(entry.getValue(), range);
+                }
+
+                res.put(range.from, range);
+            }
+
+            return new Results(Collections.unmodifiableNavigableMap(res), Math.max(this.fileSize, fileSize));
+        }
+
+        @Override
+        public long nextCandidate(long position, long limit) {
+            long res = position;
+
+            Map.Entry<Long, Range> entry = ranges.floorEntry(position);
+            if (entry != null && entry.getValue().to > position)
+                res = entry.getValue().nextMatch(position);
+
+            return res < limit ? res : -1;
+        }
+
+        @Override
+        public long prevCandidate(long position, long limit) {
+            long res = position - 1;
+
+            Map.Entry<Long, Range> entry = ranges.floorEntry(res);
+            if (entry != null && entry.getValue().to > res)
+                res = entry.getValue().prevMatch(res);
+
+            return res >= limit ? res : -1;
+        }
+    }
+
+    private static final class ResultKey {
+        private final String logId;
+        private final String hash;
+        private final String fingerprint;
+
+        ResultKey(String logId, String hash, String fingerprint) {
+            this.logId = logId;
+            this.hash = hash;
+            this.fingerprint = fingerprint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ResultKey resultKey = (ResultKey) o;
+            return logId.equals(resultKey.logId) && hash.equals(resultKey.hash) && fingerprint.equals(resultKey.fingerprint);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(logId, hash, fingerprint);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.logviewer.data2;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read-only channel over the uncompressed content of a gzip archive, the content is read from the blocks built by
+ * {@link GzipIndexStorage}. The last decompressed block is kept in memory, so sequential reads decompress each block
+ * once.
+ */
+class GzipBlockChannel implements SeekableByteChannel {
+
+    private final GzipIndexStorage.GzipIndex index;
+
+    private final FileChannel data;
+
+    private final Inflater inflater = new Inflater(true);
+
+    private final byte[] block;
+    private int loadedBlock = -1;
+
+    private byte[] compressed = new byte[0];
+
+    private long position;
+
+    private boolean closed;
+
+    GzipBlockChannel(GzipIndexStorage.GzipIndex index) throws IOException {
+        this.index = index;
+        this.data = FileChannel.open(index.getDataFile(), StandardOpenOption.READ);
+        this.block = new byte[index.getBlockSize()];
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        if (closed)
+            throw new ClosedChannelException();
+
+        long size = index.getSize();
+
+        if (position >= size)
+            return -1;
+
+        int res = 0;
+
+        while (dst.hasRemaining() && position < size) {
+            int blockIdx = (int) (position / index.getBlockSize());
+            loadBlock(blockIdx);
+
+            int offset = (int) (position - (long) blockIdx * index.getBlockSize());
+            int length = Math.min(dst.remaining(), index.getBlockLength(blockIdx) - offset);
+
+            dst.put(block, offset, length);
+
+            position += length;
+            res += length;
+        }
+
+        return res;
+    }
+
+    private void loadBlock(int blockIdx) throws IOException {
+        if (loadedBlock == blockIdx)
+            return;
+
+        loadedBlock = -1;
+
+        int compressedLength = index.getCompressedLength(blockIdx);
+        if (compressed.length < compressedLength)
+            compressed = new byte[compressedLength];
+
+        ByteBuffer buf = ByteBuffer.wrap(compressed, 0, compressedLength);
+        long offset = index.getBlockOffset(blockIdx);
+
+        while (buf.hasRemaining()) {
+            if (data.read(buf, offset + buf.position()) < 0)
+                throw new EOFException();
+        }
+
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+
+        int blockLength = index.getBlockLength(blockIdx);
+        int length = 0;
+
+        try {
+            while (length < blockLength && !inflater.finished()) {
+                int n = inflater.inflate(block, length, blockLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    break;
+
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted gzip index: " + index.getDataFile(), e);
+        }
+
+        if (length != blockLength)
+            throw new IOException("Corrupted gzip index: " + index.getDataFile());
+
+        loadedBlock = blockIdx;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() {
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) {
+        if (newPosition < 0)
+            throw new IllegalArgumentException();
+
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return index.getSize();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
+        closed = true;
+        inflater.end();
+        data.close();
+    }
+}
@@ -0,0 +1,528 @@
+package com.logviewer.data2;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.logviewer.data2.config.ConfigDirHolder;
+import com.logviewer.files.ArchiveMember;
+import com.logviewer.utils.RuntimeInterruptedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.DigestUtils;
+
+import java.io.*;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Provides random access to the content of gzip archives and to the members of zip and tar.gz archives without
+ * unpacking them to a temporary file.
+ *
+ * A deflate stream can be decompressed from the beginning only, {@link java.util.zip.Inflater} cannot resume
+ * decompression from a checkpoint in the middle of a deflate block. So the archive is decompressed once, and its
+ * content is compressed again into independent blocks of a fixed uncompressed size. The blocks and the offsets of
+ * the blocks are stored in the config directory, reading a page requires decompressing one block only. The stored
+ * index is bound to the size and the modification time of the archive.
+ *
+ * The stored data takes about as much disk space as the archives, so the total size of the data files is limited by
+ * {@link #MAX_SIZE_PROPERTY}. After an index is built, the data of the archives that have been deleted or changed
+ * is removed, then the least recently opened indexes are evicted until the data fits the limit.
+ *
+ * @see GzipBlockChannel
+ */
+public class GzipIndexStorage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GzipIndexStorage.class);
+
+    public static final String BLOCK_SIZE_PROPERTY = "log-viewer.gz-index.block-size";
+    public static final String MAX_SIZE_PROPERTY = "log-viewer.gz-index.max-size";
+
+    private static final int MAGIC = 0x4c56475a; // "LVGZ"
+    private static final int VERSION = 2;
+
+    private static final int MAX_CACHED_INDEXES = 256;
+
+    private final ConfigDirHolder configDir;
+
+    private final int blockSize;
+
+    private final long maxSize;
+
+    private final Cache<String, GzipIndex> indexes = Caffeine.newBuilder().maximumSize(MAX_CACHED_INDEXES).build();
+
+    /**
+     * The indexes being loaded or built, the threads opening the same content wait for the first one.
+     */
+    private final Map<String, CompletableFuture<GzipIndex>> loading = new ConcurrentHashMap<>();
+
+    public GzipIndexStorage(@NonNull ConfigDirHolder configDir, int blockSize) {
+        this(configDir, blockSize, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxSize the limit of the total size of the stored data files.
+     */
+    public GzipIndexStorage(@NonNull ConfigDirHolder configDir, int blockSize, long maxSize) {
+        if (blockSize < ParserConfig.WINDOW_SIZE)
+            throw new IllegalArgumentException("Block size must not be less than " + ParserConfig.WINDOW_SIZE);
+
+        this.configDir = configDir;
+        this.blockSize = blockSize;
+        this.maxSize = maxSize;
+    }
+
+    private Path getIndexDir() {
+        return configDir.getConfigDir().resolve("gz-index");
+    }
+
+    /**
+     * Opens the uncompressed content of the archive. The index is built on the first access to the archive, it takes
+     * as long as unpacking the archive.
+     */
+    @NonNull
+    public SeekableByteChannel openChannel(@NonNull Path gzFile) throws IOException {
+        return new GzipBlockChannel(getIndex(gzFile));
+    }
+
+    /**
+     * Opens the content of the archive member, the index of the member is built on the first access. The members of
+     * the same archive are indexed independently.
+     */
+    @NonNull
+    public SeekableByteChannel openChannel(@NonNull ArchiveMember member) throws IOException {
+        return new GzipBlockChannel(getIndex(member.getArchive(), member.toString(), member::openStream));
+    }
+
+    GzipIndex getIndex(@NonNull Path gzFile) throws IOException {
+        return getIndex(gzFile, gzFile.toString(), () -> new GZIPInputStream(Files.newInputStream(gzFile), 64 * 1024));
+    }
+
+    /**
+     * @param source the file containing the compressed data, the index is rebuilt when the file changes.
+     * @param contentId the identifier of the content within the source file.
+     * @param contentOpener opens the uncompressed content.
+     */
+    GzipIndex getIndex(@NonNull Path source, @NonNull String contentId, @NonNull ContentOpener contentOpener) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(source, BasicFileAttributes.class);
+        long sourceSize = attrs.size();
+        long sourceLastModified = attrs.lastModifiedTime().toMillis();
+
+        while (true) {
+            GzipIndex res = indexes.getIfPresent(contentId);
+            if (res != null && res.matches(sourceSize, sourceLastModified))
+                return res;
+
+            CompletableFuture<GzipIndex> future = new CompletableFuture<>();
+
+            CompletableFuture<GzipIndex> loadingFuture = loading.putIfAbsent(contentId, future);
+            if (loadingFuture != null) {
+                res = await(loadingFuture);
+                if (res.matches(sourceSize, sourceLastModified))
+                    return res;
+
+                continue; // The source has changed since the index was started
+            }
+
+            boolean built = false;
+
+            try {
+                String key = DigestUtils.md5DigestAsHex(contentId.getBytes(StandardCharsets.UTF_8));
+                Path indexFile = getIndexDir().resolve(key + ".gzi");
+                Path dataFile = getIndexDir().resolve(key + ".gzd");
+
+                res = load(contentId, indexFile, dataFile, sourceSize, sourceLastModified);
+                if (res == null) {
+                    res = build(source, contentId, contentOpener, indexFile, dataFile, sourceSize, sourceLastModified);
+                    built = true;
+                } else {
+                    // The modification time of the index file is the time of the last use, see cleanUp()
+                    touch(indexFile);
+                }
+
+                indexes.put(contentId, res);
+                future.complete(res);
+            } catch (IOException | RuntimeException | Error e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                loading.remove(contentId, future);
+            }
+
+            if (built)
+                cleanUp(res);
+
+            return res;
+        }
+    }
+
+    private static GzipIndex await(CompletableFuture<GzipIndex> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException)
+                throw new IOException(cause.getMessage(), cause);
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+
+            throw new IOException(cause);
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // The order of the eviction is not critical
+        }
+    }
+
+    @Nullable
+    private GzipIndex load(String contentId, Path indexFile, Path dataFile, long sourceSize, long sourceLastModified) {
+        if (!Files.isRegularFile(indexFile) || !Files.isRegularFile(dataFile))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            IndexHeader header = readHeader(in);
+            if (header == null || !contentId.equals(header.contentId))
+                return null;
+
+            if (header.sourceSize != sourceSize || header.sourceLastModified != sourceLastModified || in.readInt() != blockSize)
+                return null;
+
+            long size = in.readLong();
+
+            int blockCount = in.readInt();
+            if (size < 0 || blockCount != (size + blockSize - 1) / blockSize)
+                return null;
+
+            long[] offsets = new long[blockCount + 1];
+            for (int i = 0; i < offsets.length; i++) {
+                offsets[i] = in.readLong();
+
+                if (i > 0 && offsets[i] < offsets[i - 1])
+                    return null;
+            }
+
+            if (offsets[blockCount] != Files.size(dataFile))
+                return null;
+
+            return new GzipIndex(dataFile, sourceSize, sourceLastModified, size, blockSize, offsets);
+        } catch (IOException e) {
+            LOG.warn("Failed to load gzip index: {}", indexFile, e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the header of the index file or {@code null} if the file has been written by another version.
+     */
+    @Nullable
+    private static IndexHeader readHeader(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            return null;
+
+        IndexHeader res = new IndexHeader();
+        res.contentId = in.readUTF();
+        res.source = in.readUTF();
+        res.sourceSize = in.readLong();
+        res.sourceLastModified = in.readLong();
+        return res;
+    }
+
+    /**
+     * Deletes the data of the sources that don't exist or have been changed, then deletes the least recently used
+     * data until the total size of the data files fits {@link #maxSize}.
+     *
+     * @param keep the index that must not be deleted.
+     */
+    synchronized void cleanUp(@Nullable GzipIndex keep) {
+        Path dir = getIndexDir();
+
+        List<StoredIndex> stored = new ArrayList<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.gzi")) {
+            for (Path indexFile : files) {
+                String name = indexFile.getFileName().toString();
+                Path dataFile = indexFile.resolveSibling(name.substring(0, name.length() - ".gzi".length()) + ".gzd");
+
+                if (keep != null && dataFile.equals(keep.getDataFile()))
+                    continue;
+
+                IndexHeader header;
+
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+                    header = readHeader(in);
+                } catch (IOException e) {
+                    header = null;
+                }
+
+                if (header != null && loading.containsKey(header.contentId))
+                    continue;
+
+                if (header == null || !header.isSourceValid()) {
+                    delete(header, indexFile, dataFile);
+                    continue;
+                }
+
+                long dataSize = Files.isRegularFile(dataFile) ? Files.size(dataFile) : 0;
+
+                stored.add(new StoredIndex(header, indexFile, dataFile, dataSize, Files.getLastModifiedTime(indexFile).toMillis()));
+            }
+        } catch (NoSuchFileException ignored) {
+            return;
+        } catch (IOException e) {
+            LOG.warn("Failed to clean up gzip indexes: {}", dir, e);
+            return;
+        }
+
+        long totalSize = keep == null ? 0 : keep.getDataSize();
+        for (StoredIndex index : stored) {
+            totalSize += index.dataSize;
+        }
+
+        stored.sort(Comparator.comparingLong(index -> index.lastUsed));
+
+        for (Iterator<StoredIndex> itr = stored.iterator(); totalSize > maxSize && itr.hasNext(); ) {
+            StoredIndex index = itr.next();
+
+            if (delete(index.header, index.indexFile, index.dataFile))
+                totalSize -= index.dataSize;
+        }
+    }
+
+    private boolean delete(@Nullable IndexHeader header, Path indexFile, Path dataFile) {
+        if (header != null)
+            indexes.invalidate(header.contentId);
+
+        try {
+            Files.deleteIfExists(indexFile);
+            Files.deleteIfExists(dataFile);
+            return true;
+        } catch (IOException e) {
+            // The data file is open on Windows
+            LOG.debug("Failed to delete gzip index: {}", indexFile, e);
+            return false;
+        }
+    }
+
+    private GzipIndex build(Path source, String contentId, ContentOpener contentOpener, Path indexFile, Path dataFile,
+                            long sourceSize, long sourceLastModified) throws IOException {
+        long startTime = System.currentTimeMillis();
+
+        Files.createDirectories(indexFile.getParent());
+
+        Path tmpDataFile = dataFile.resolveSibling(dataFile.getFileName() + ".tmp");
+
+        long[] offsets = new long[16];
+        int blockCount = 0;
+        long size = 0;
+
+        try (InputStream in = contentOpener.open();
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmpDataFile), 64 * 1024)) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+
+            try {
+                byte[] block = new byte[blockSize];
+                byte[] compressed = new byte[64 * 1024];
+
+                long offset = 0;
+
+                while (true) {
+                    int length = readBlock(in, block);
+                    if (length == 0)
+                        break;
+
+                    if (blockCount + 1 >= offsets.length)
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+
+                    offsets[blockCount++] = offset;
+
+                    deflater.reset();
+                    deflater.setInput(block, 0, length);
+                    deflater.finish();
+
+                    while (!deflater.finished()) {
+                        int n = deflater.deflate(compressed);
+                        out.write(compressed, 0, n);
+                        offset += n;
+                    }
+
+                    size += length;
+
+                    if (length < blockSize)
+                        break;
+                }
+
+                offsets[blockCount] = offset;
+            } finally {
+                deflater.end();
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tmpDataFile);
+            throw e;
+        }
+
+        offsets = Arrays.copyOf(offsets, blockCount + 1);
+
+        Files.move(tmpDataFile, dataFile, StandardCopyOption.REPLACE_EXISTING);
+
+        Path tmpIndexFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpIndexFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(contentId);
+            out.writeUTF(source.toString());
+            out.writeLong(sourceSize);
+            out.writeLong(sourceLastModified);
+            out.writeInt(blockSize);
+            out.writeLong(size);
+
+            out.writeInt(blockCount);
+            for (long offset : offsets) {
+                out.writeLong(offset);
+            }
+        }
+
+        Files.move(tmpIndexFile, indexFile, StandardCopyOption.REPLACE_EXISTING);
+
+        LOG.info("Gzip index has been built for {} in {}ms, uncompressed size: {}", contentId,
+                System.currentTimeMillis() - startTime, size);
+
+        return new GzipIndex(dataFile, sourceSize, sourceLastModified, size, blockSize, offsets);
+    }
+
+    private static int readBlock(InputStream in, byte[] block) throws IOException {
+        int length = 0;
+
+        while (length < block.length) {
+            int n = in.read(block, length, block.length - length);
+            if (n < 0)
+                break;
+
+            length += n;
+        }
+
+        return length;
+    }
+
+    @FunctionalInterface
+    interface ContentOpener {
+        InputStream open() throws IOException;
+    }
+
+    private static class IndexHeader {
+        private String contentId;
+        private String source;
+        private long sourceSize;
+        private long sourceLastModified;
+
+        boolean isSourceValid() {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(Paths.get(source), BasicFileAttributes.class);
+                return attrs.size() == sourceSize && attrs.lastModifiedTime().toMillis() == sourceLastModified;
+            } catch (IOException | InvalidPathException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class StoredIndex {
+        private final IndexHeader header;
+        private final Path indexFile;
+        private final Path dataFile;
+        private final long dataSize;
+        private final long lastUsed;
+
+        StoredIndex(IndexHeader header, Path indexFile, Path dataFile, long dataSize, long lastUsed) {
+            this.header = header;
+            this.indexFile = indexFile;
+            this.dataFile = dataFile;
+            this.dataSize = dataSize;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    static class GzipIndex {
+        private final Path dataFile;
+
+        private final long sourceSize;
+        private final long sourceLastModified;
+
+        private final long size;
+
+        private final int blockSize;
+
+        /**
+         * The offsets of the compressed blocks in {@link #dataFile}, the last element is the size of the data file.
+         */
+        private final long[] offsets;
+
+        GzipIndex(Path dataFile, long sourceSize, long sourceLastModified, long size, int blockSize, long[] offsets) {
+            this.dataFile = dataFile;
+            this.sourceSize = sourceSize;
+            this.sourceLastModified = sourceLastModified;
+            this.size = size;
+            this.blockSize = blockSize;
+            this.offsets = offsets;
+        }
+
+        boolean matches(long sourceSize, long sourceLastModified) {
+            return this.sourceSize == sourceSize && this.sourceLastModified == sourceLastModified;
+        }
+
+        Path getDataFile() {
+            return dataFile;
+        }
+
+        /**
+         * @return the size of the uncompressed content.
+         */
+        long getSize() {
+            return size;
+        }
+
+        int getBlockSize() {
+            return blockSize;
+        }
+
+        int getBlockCount() {
+            return offsets.length - 1;
+        }
+
+        /**
+         * @return the size of the compressed data in {@link #dataFile}.
+         */
+        long getDataSize() {
+            return offsets[offsets.length - 1];
+        }
+
+        long getBlockOffset(int block) {
+            return offsets[block];
+        }
+
+        int getCompressedLength(int block) {
+            return (int) (offsets[block + 1] - offsets[block]);
+        }
+
+        int getBlockLength(int block) {
+            return (int) Math.min(blockSize, size - (long) block * blockSize);
+        }
+    }
+}
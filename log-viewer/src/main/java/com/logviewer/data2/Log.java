@@ -1,6 +1,7 @@
 package com.logviewer.data2;
 
 import com.logviewer.api.LvFileAccessManager;
+import com.logviewer.files.ArchiveMember;
 import com.logviewer.filters.RecordPredicate;
 import com.logviewer.utils.*;
 import com.logviewer.web.session.*;
@@ -14,7 +15,6 @@ import org.springframework.lang.Nullable;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.Charset;
@@ -30,8 +30,8 @@ import java.util.concurrent.ExecutorService;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import java.util.zip.CRC32;
-import java.util.zip.GZIPInputStream;
 
 import static com.logviewer.files.FileTypes.GZ;
 
@@ -41,6 +41,14 @@ public class Log implements LogView {
 
     public static final String UNPACK_GZ_ARCHIVES = "log-viewer.unpack-gz-archives";
 
+    public static final String USE_MMAP = "log-viewer.parser.use-mmap";
+
+    /**
+     * A mapped file cannot be deleted or renamed on Windows until the buffer is garbage collected, this breaks the log
+     * rotation, so the memory mapping is never used on Windows.
+     */
+    private static final boolean MMAP_SUPPORTED = !System.getProperty("os.name", "").startsWith("Windows");
+
     public static Function<String, String> DEFAULT_ID_GENERATOR = path -> {
         try {
             MessageDigest digest = MessageDigest.getInstance("MD5");
@@ -60,12 +68,28 @@ public class Log implements LogView {
 
     public static final long CHANGE_NOTIFICATION_TIMEOUT = 50;
 
+    /**
+     * The max distance the record processing skips without passing a record to the consumer when the records are
+     * filtered by the raw bytes, see {@link Snapshot#processRecords(long, boolean, SearchPattern, Predicate)}.
+     */
+    static final long PREFILTER_MAX_SKIP = 1024 * 1024;
+
     private final Object logChangedTaskKey = new Object();
 
     private final Path file;
 
-    private volatile Path realDataFile;
-    private final Object realFileMux = new Object();
+    /**
+     * The file inside an archive that the log is read from, see {@link #dataFile}.
+     */
+    @Nullable
+    private final ArchiveMember archiveMember;
+
+    /**
+     * The file on the disk containing the log, the archive if the log is an archive member.
+     */
+    private final Path dataFile;
+
+    private FileMapping fileMapping;
 
     private final String id;
 
@@ -84,17 +108,43 @@ public class Log implements LogView {
     private FileWatcherService fileWatcherService;
     @Autowired
     private LvFileAccessManager accessManager;
+    @Autowired(required = false)
+    private PageCache pageCache;
+    @Autowired(required = false)
+    private PageReadAhead readAhead;
+    @Autowired(required = false)
+    private TimeIndexStorage timeIndexStorage;
+    @Autowired(required = false)
+    private ParallelLogScanner parallelScanner;
+    @Autowired(required = false)
+    private GzipIndexStorage gzipIndexStorage;
+    @Autowired(required = false)
+    private FilterResultCache filterResultCache;
+    @Autowired(required = false)
+    private FieldIndexStorage fieldIndexStorage;
     @Value("${log-viewer.parser.max-unparsable-block-size:2097152}") // 2Mb
     private long unparsableBlockMaxSize;
     @Value("${" + UNPACK_GZ_ARCHIVES + ":false}")
     private boolean unpackArchive;
+    @Value("${" + USE_MMAP + ":false}")
+    private boolean useMmap;
+    @Value("${" + TimeIndexStorage.ENABLED_PROPERTY + ":true}")
+    private boolean useTimeIndex;
+    @Value("${" + FieldIndexStorage.ENABLED_PROPERTY + ":false}")
+    private boolean useFieldIndex;
 
     private final MultiListener<Consumer<FileAttributes>> changeListener = new MultiListener<>(this::createFileListener);
 
     private LogIndex logIndex;
 
+    private final Object fieldIndexLock = new Object();
+    private FieldIndex fieldIndex;
+    private boolean fieldIndexLoaded;
+
     public Log(@NonNull Path path, @NonNull LogFormat format, @NonNull ExecutorService executor) {
         file = path;
+        archiveMember = ArchiveMember.fromPath(path);
+        dataFile = archiveMember == null ? path : archiveMember.getArchive();
         this.format = LvGsonUtils.copy(format);
         this.executor = executor;
 
@@ -127,6 +177,10 @@ public class Log implements LogView {
         return format;
     }
 
+    public Charset getEncoding() {
+        return encoding;
+    }
+
     @Override
     public boolean isConnected() {
         return true;
@@ -152,21 +206,49 @@ public class Log implements LogView {
         }
     }
 
-    private Path decompressAndCopyGZipFile() throws IOException {
-        Path tempFile = Files.createTempFile(Utils.getTempDir(), "unpacked-gz-", "-" + file.getName(file.getNameCount() - 1) + ".tmp");
-        tempFile.toFile().deleteOnExit();
-
-        try (GZIPInputStream gis = new GZIPInputStream(Files.newInputStream(file));
-             OutputStream fos = Files.newOutputStream(tempFile)) {
+    /**
+     * @return {@code true} if the log is a Gzip archive or a member of a zip or tar.gz archive.
+     */
+    private boolean isArchived() {
+        return archiveMember != null || GZ.getPattern().matcher(file.toString()).matches();
+    }
 
-            byte[] buffer = new byte[1024 * 10];
-            int len;
-            while ((len = gis.read(buffer)) > 0) {
-                fos.write(buffer, 0, len);
-            }
+    /**
+     * Opens the content of the log file, the content of an archive is read through {@link GzipIndexStorage}.
+     */
+    private SeekableByteChannel openDataChannel() throws IOException {
+        if (!isArchived())
+            return Files.newByteChannel(file, StandardOpenOption.READ);
+
+        if (!unpackArchive) {
+            throw new IOException("Cannot open " + (archiveMember == null ? "Gzip file" : "archive member") +
+                    " because unpacking Gzip archives is disabled. " +
+                    "It can be enabled using `" + UNPACK_GZ_ARCHIVES + "=true` configuration property. " +
+                    "Be caution, the index of an archive takes as much disk space as the archive itself.");
         }
 
-        return tempFile;
+        if (gzipIndexStorage == null)
+            throw new IOException("Cannot open archive, the index storage is not configured");
+
+        if (archiveMember != null)
+            return gzipIndexStorage.openChannel(archiveMember);
+
+        return gzipIndexStorage.openChannel(file);
+    }
+
+    private void checkFileVisible() throws IOException {
+        if (!file.isAbsolute())
+            throw new NoSuchFileException(file.toString());
+
+        if (!accessManager.isFileVisible(file))
+            throw new DirectoryNotVisibleException(file.toString(), accessManager.errorMessage(file));
+    }
+
+    private LogIndex createLogIndex() {
+        if (timeIndexStorage == null || !useTimeIndex)
+            return new LogIndex();
+
+        return new LogIndex(timeIndexStorage, id, TimeIndexStorage.formatFingerprint(format));
     }
 
     public class LogSnapshot implements Snapshot {
@@ -179,6 +261,17 @@ public class Log implements LogView {
         private SeekableByteChannel channel;
         private BufferedFile buf;
 
+        /**
+         * The mapping read by {@link #buf}, released when the snapshot is closed.
+         */
+        private FileMapping mapping;
+
+        @Nullable
+        private volatile CancellationToken cancellation;
+
+        @Nullable
+        private volatile RegionFilter regionFilter;
+
         private final LogIndex logIndex;
 
 //        private Exception stacktrace = new Exception();
@@ -190,23 +283,35 @@ public class Log implements LogView {
             String hash = null;
             LogIndex logIndex = null;
 
+            long archiveSize = 0;
+            IOException archiveError = null;
+
+            if (isArchived()) {
+                // Opening an archive may build its index, that takes as long as unpacking the archive. The index is
+                // built without holding the lock of the log, so the snapshots of other threads are not blocked
+                try {
+                    checkFileVisible();
+                    archiveSize = getChannel().size();
+                } catch (IOException e) {
+                    archiveError = e;
+                }
+            }
+
             synchronized (Log.this) {
                 boolean success = false;
 
                 try {
-                    if (!file.isAbsolute())
-                        throw new NoSuchFileException(file.toString());
+                    if (archiveError != null)
+                        throw archiveError;
 
-                    if (!accessManager.isFileVisible(file)) {
-                        throw new DirectoryNotVisibleException(file.toString(), accessManager.errorMessage(file));
-                    }
+                    checkFileVisible();
 
-                    BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                    BasicFileAttributes attrs = Files.readAttributes(dataFile, BasicFileAttributes.class);
 
                     if (!attrs.isRegularFile())
                         throw new IOException("Not a file");
 
-                    size = attrs.size();
+                    size = isArchived() ? archiveSize : attrs.size();
                     lastModification = attrs.lastModifiedTime().toMillis();
 
                     if (cachedHashTimestamp == lastModification) {
@@ -215,7 +320,8 @@ public class Log implements LogView {
                         hash = calculateHash(size);
 
                         if (!hash.equals(cachedHash)) {
-                            Log.this.logIndex = new LogIndex();
+                            Log.this.logIndex = createLogIndex();
+                            fileMapping = null;
                         }
 
                         cachedHash = hash;
@@ -240,6 +346,25 @@ public class Log implements LogView {
             this.logIndex = logIndex;
         }
 
+        private LogSnapshot(LogSnapshot parent) {
+            size = parent.size;
+            lastModification = parent.lastModification;
+            error = parent.error;
+            hash = parent.hash;
+            logIndex = parent.logIndex;
+            cancellation = parent.cancellation;
+            regionFilter = parent.regionFilter;
+        }
+
+        /**
+         * Creates a snapshot of the same file state with its own channel and buffer, so the snapshots can be read
+         * from different threads. The fork is cancelled by the cancellation token of this snapshot and skips the
+         * records rejected by its region filter.
+         */
+        LogSnapshot fork() {
+            return new LogSnapshot(this);
+        }
+
         @Override
         public long getSize() {
             return size;
@@ -249,30 +374,15 @@ public class Log implements LogView {
             return lastModification;
         }
 
-        public Path getDataRealFile() throws IOException {
-            Path res = realDataFile;
-            if (res == null) {
-                synchronized (realFileMux) {
-                    if (realDataFile != null)
-                        return realDataFile;
-
-                    if (GZ.getPattern().matcher(file.toString()).matches()) {
-                        if (!unpackArchive) {
-                            throw new IOException("Cannot open Gzip file because unpacking Gzip archives is disabled. " +
-                                    "It can be enabled using `" + UNPACK_GZ_ARCHIVES + "=true` configuration property. " +
-                                    "Be caution, automatic unpacking Gzip can fill up all the disk space.");
-                        }
-
-                        res = decompressAndCopyGZipFile();
-                    } else {
-                        res = file;
-                    }
-
-                    realDataFile = res;
-                }
-            }
+        /**
+         * Opens a new channel reading the content of the file, the content of a Gzip archive is returned uncompressed.
+         * The caller must close the channel.
+         */
+        public SeekableByteChannel openDataChannel() throws IOException {
+            if (error != null)
+                throw new IOException(error);
 
-            return res;
+            return Log.this.openDataChannel();
         }
 
         private SeekableByteChannel getChannel() throws IOException {
@@ -280,20 +390,67 @@ public class Log implements LogView {
                 if (error != null)
                     throw new IOException(error);
 
-                channel = Files.newByteChannel(getDataRealFile(), StandardOpenOption.READ);
+                channel = Log.this.openDataChannel();
             }
 
-            buf = new BufferedFile(channel, size);
-
             return channel;
         }
 
+        @Override
+        public void setCancellationToken(@Nullable CancellationToken cancellation) {
+            this.cancellation = cancellation;
+
+            if (buf != null)
+                buf.setCancellationToken(cancellation);
+        }
+
+        @Override
+        public void setRegionFilter(@Nullable RegionFilter regionFilter) {
+            this.regionFilter = regionFilter;
+        }
+
+        private void checkCancelled() {
+            CancellationToken cancellation = this.cancellation;
+            if (cancellation != null)
+                cancellation.checkCancelled();
+        }
+
         private BufferedFile getBuffer() throws IOException {
-            getChannel();
+            if (buf == null) {
+                if (useMmap && MMAP_SUPPORTED && !isArchived()) {
+                    if (error != null)
+                        throw new IOException(error);
+
+                    FileMapping mapping = getFileMapping();
+                    buf = new MappedBufferedFile(mapping.map(size), size);
+                    this.mapping = mapping;
+                } else {
+                    buf = new BufferedFile(getChannel(), size);
+
+                    if (pageCache != null && pageCache.isEnabled()) {
+                        buf.setPageCache(pageCache, id, hash);
+
+                        // The read-ahead reads the file channel concurrently, the archive channel is not thread-safe
+                        if (readAhead != null && readAhead.isEnabled() && !isArchived())
+                            buf.setReadAhead(readAhead);
+                    }
+                }
+
+                buf.setCancellationToken(cancellation);
+            }
 
             return buf;
         }
 
+        private FileMapping getFileMapping() throws IOException {
+            synchronized (Log.this) {
+                if (fileMapping == null)
+                    fileMapping = new FileMapping(file);
+
+                return fileMapping;
+            }
+        }
+
         private void assertUnparsedBlockSize(long blockStart, long blockEnd) throws IncorrectFormatException {
             assert blockStart <= blockEnd;
 
@@ -350,6 +507,17 @@ public class Log implements LogView {
 
         @Override
         public boolean processRecordsBack(long position, boolean fromPrevLine, Predicate<LogRecord> consumer) throws IOException {
+            return processRecordsBack(position, fromPrevLine, (BytePattern) null, consumer);
+        }
+
+        @Override
+        public boolean processRecordsBack(long position, boolean fromPrevLine, @Nullable SearchPattern prefilter,
+                                          Predicate<LogRecord> consumer) throws IOException {
+            return processRecordsBack(position, fromPrevLine, BytePattern.forSearchPattern(prefilter, encoding), consumer);
+        }
+
+        private boolean processRecordsBack(long position, boolean fromPrevLine, @Nullable BytePattern prefilter,
+                                           Predicate<LogRecord> consumer) throws IOException {
             if (position < 0)
                 throw new IllegalArgumentException();
 
@@ -362,6 +530,8 @@ public class Log implements LogView {
             if (size == 0)
                 return true;
 
+            RegionFilter regionFilter = this.regionFilter;
+
             BufferedFile buf = getBuffer();
 
             BufferedFile.Line firstLine = new BufferedFile.Line();
@@ -414,6 +584,14 @@ public class Log implements LogView {
             BufferedFile.Line line = new BufferedFile.Line();
 
             while (true) {
+                checkCancelled();
+
+                if (prefilter != null || regionFilter != null) {
+                    lastProcessedLineStart = skipBackward(buf, tmpReader, lastProcessedLineStart, prefilter, regionFilter);
+                    if (lastProcessedLineStart < 0)
+                        return true;
+                }
+
                 if (!buf.loadPrevLine(line, lastProcessedLineStart))
                     return true;
 
@@ -443,6 +621,17 @@ public class Log implements LogView {
 
         @Override
         public boolean processRecords(long position, boolean fromNextLine, Predicate<LogRecord> consumer) throws IOException {
+            return processRecords(position, fromNextLine, (BytePattern) null, consumer);
+        }
+
+        @Override
+        public boolean processRecords(long position, boolean fromNextLine, @Nullable SearchPattern prefilter,
+                                      Predicate<LogRecord> consumer) throws IOException {
+            return processRecords(position, fromNextLine, BytePattern.forSearchPattern(prefilter, encoding), consumer);
+        }
+
+        private boolean processRecords(long position, boolean fromNextLine, @Nullable BytePattern prefilter,
+                                       Predicate<LogRecord> consumer) throws IOException {
             if (position < 0)
                 throw new IllegalArgumentException();
 
@@ -456,6 +645,8 @@ public class Log implements LogView {
             if (size == 0)
                 return true;
 
+            RegionFilter regionFilter = this.regionFilter;
+
             BufferedFile buf = getBuffer();
 
             BufferedFile.Line line = new BufferedFile.Line();
@@ -540,6 +731,8 @@ public class Log implements LogView {
             while (true) {
                 assert reader.hasParsedRecord();
 
+                checkCancelled();
+
                 long parsedLineEnd = line.getEnd();
                 long unparsedStart = -1;
 
@@ -591,6 +784,121 @@ public class Log implements LogView {
                 LogReader tmp = reader;
                 reader = forwardReader;
                 forwardReader = tmp;
+
+                if ((prefilter != null || regionFilter != null) && !skipForward(buf, reader, line, prefilter, regionFilter))
+                    return true;
+            }
+        }
+
+        /**
+         * Moves {@code line} to the first line of the next record that may contain the pattern and is not rejected by
+         * the region filter. The records are not skipped further than {@link #PREFILTER_MAX_SKIP} bytes, so
+         * the consumer can check the time limits.
+         *
+         * @param line the first line of the next record, parsed by {@code reader}.
+         * @return {@code false} if there are no records containing the pattern till the end of the file.
+         */
+        private boolean skipForward(BufferedFile buf, LogReader reader, BufferedFile.Line line,
+                                    @Nullable BytePattern prefilter, @Nullable RegionFilter regionFilter) throws IOException {
+            long limit = line.getStart() + PREFILTER_MAX_SKIP;
+
+            long occurrence = nextCandidate(buf, line.getStart(), limit, prefilter, regionFilter);
+            if (occurrence < 0) {
+                if (limit >= size)
+                    return false;
+
+                occurrence = limit;
+            }
+
+            if (occurrence < line.getEnd())
+                return true;
+
+            buf.loadLine(line, occurrence);
+
+            while (!reader.parseRecord(line)) {
+                boolean hasPrevLine = buf.loadPrevLine(line, line.getStart());
+                assert hasPrevLine; // The line of the next record is parsed, the search can't go before it.
+            }
+
+            return true;
+        }
+
+        /**
+         * @param position the start of the last processed record.
+         * @return the start of the line following the last record before {@code position} that may contain
+         * the pattern and is not rejected by the region filter, or -1 if there are no such records.
+         */
+        private long skipBackward(BufferedFile buf, LogReader tmpReader, long position,
+                                  @Nullable BytePattern prefilter, @Nullable RegionFilter regionFilter) throws IOException {
+            long limit = position - PREFILTER_MAX_SKIP;
+
+            long occurrence = prevCandidate(buf, position, limit, prefilter, regionFilter);
+            if (occurrence < 0) {
+                if (limit <= 0)
+                    return -1;
+
+                occurrence = limit;
+            }
+
+            BufferedFile.Line line = new BufferedFile.Line();
+            buf.loadLine(line, occurrence);
+
+            while (buf.loadNextLine(line) && line.getStart() < position) {
+                if (tmpReader.parseRecord(line))
+                    return line.getStart();
+            }
+
+            return position;
+        }
+
+        /**
+         * @return the first position within {@code [position, limit)} that may belong to a record containing
+         * the pattern and not rejected by the region filter, or -1.
+         */
+        private long nextCandidate(BufferedFile buf, long position, long limit, @Nullable BytePattern prefilter,
+                                   @Nullable RegionFilter regionFilter) throws IOException {
+            while (true) {
+                long candidate = position;
+
+                if (prefilter != null) {
+                    candidate = buf.indexOf(candidate, limit, prefilter);
+                    if (candidate < 0 || regionFilter == null)
+                        return candidate;
+                }
+
+                candidate = regionFilter.nextCandidate(candidate, limit);
+
+                // The pattern must be searched again if the region filter has moved the position
+                if (candidate < 0 || prefilter == null || candidate == position)
+                    return candidate;
+
+                position = candidate;
+            }
+        }
+
+        /**
+         * @return the last position within {@code [limit, position)} that may belong to a record containing
+         * the pattern and not rejected by the region filter, or -1.
+         */
+        private long prevCandidate(BufferedFile buf, long position, long limit, @Nullable BytePattern prefilter,
+                                   @Nullable RegionFilter regionFilter) throws IOException {
+            while (true) {
+                long end = position;
+
+                if (prefilter != null) {
+                    long occurrence = buf.lastIndexOf(end, limit, prefilter);
+                    if (occurrence < 0 || regionFilter == null)
+                        return occurrence;
+
+                    end = occurrence + 1;
+                }
+
+                long candidate = regionFilter.prevCandidate(end, limit);
+
+                if (candidate < 0 || prefilter == null || candidate + 1 == end)
+                    return candidate;
+
+                position = candidate + 1;
             }
         }
 
@@ -611,6 +919,24 @@ public class Log implements LogView {
             return processRecordsBack(record.getStart(), true, consumer);
         }
 
+        @Override
+        public boolean processFromTimeBack(long timestampNanos, @Nullable SearchPattern prefilter,
+                                           Predicate<LogRecord> consumer) throws IOException {
+            if (error != null)
+                throw error;
+
+            Utils.assertValidTimestamp(timestampNanos);
+
+            LogRecord record = logIndex.findRecordBound(timestampNanos, true, this);
+            if (record == null)
+                return true;
+
+            if (!consumer.test(record))
+                return false;
+
+            return processRecordsBack(record.getStart(), true, prefilter, consumer);
+        }
+
         @Override
         public boolean processFromTime(long timestampNanos, Predicate<LogRecord> consumer) throws IOException {
             if (error != null)
@@ -628,6 +954,24 @@ public class Log implements LogView {
             return processRecords(record.getEnd(), true, consumer);
         }
 
+        @Override
+        public boolean processFromTime(long timestampNanos, @Nullable SearchPattern prefilter,
+                                       Predicate<LogRecord> consumer) throws IOException {
+            if (error != null)
+                throw error;
+
+            Utils.assertValidTimestamp(timestampNanos);
+
+            LogRecord record = logIndex.findRecordBound(timestampNanos, false, this);
+            if (record == null)
+                return true;
+
+            if (!consumer.test(record))
+                return false;
+
+            return processRecords(record.getEnd(), true, prefilter, consumer);
+        }
+
         @Override
         public Exception getError() {
             return error;
@@ -638,6 +982,18 @@ public class Log implements LogView {
             return Log.this;
         }
 
+        /**
+         * @return the recording of the time index entries of the records read from this snapshot, {@code null} if
+         * the time index is not stored.
+         */
+        @Nullable
+        public LogIndex.Recording startTimeIndexRecording() {
+            if (logIndex == null || error != null)
+                return null;
+
+            return logIndex.startRecording(this);
+        }
+
         private String calculateHash(long fileSize) throws LogCrashedException, IOException {
             int hashSize = hashSize(fileSize);
             ByteBuffer buf = ByteBuffer.allocate(hashSize);
@@ -690,12 +1046,23 @@ public class Log implements LogView {
                 Utils.closeQuietly(channel);
                 channel = null;
             }
+
+            releaseMapping();
+        }
+
+        private void releaseMapping() {
+            if (mapping != null) {
+                mapping.release();
+                mapping = null;
+                buf = null;
+            }
         }
 
         @Override
         protected void finalize() {
-            if (channel != null) {
+            if (channel != null || mapping != null) {
                 Utils.closeQuietly(channel);
+                releaseMapping();
                 LOG.error("Unclosed Log.Snapshot");
             }
         }
@@ -705,23 +1072,89 @@ public class Log implements LogView {
     public LogProcess loadRecords(RecordPredicate filter, int recordCountLimit,
                                   @Nullable Position start, boolean backward, String hash, long sizeLimit,
                                   @NonNull LogDataListener loadListener) {
-        return new LocalFileRecordLoader(this::createSnapshot, executor, loadListener, start, filter, backward,
-                recordCountLimit, sizeLimit, hash);
+        return loadRecords(filter, recordCountLimit, start, backward, hash, sizeLimit, null, loadListener);
+    }
+
+    @Override
+    public LogProcess loadRecords(RecordPredicate filter, int recordCountLimit,
+                                  @Nullable Position start, boolean backward, String hash, long sizeLimit,
+                                  @Nullable ReadCursorCache cursors, @NonNull LogDataListener loadListener) {
+        Supplier<Snapshot> snapshotFactory = cursors == null ? this::createSnapshot : () -> cursors.take(id, this::createSnapshot);
+
+        return new LocalFileRecordLoader(snapshotFactory, cursors, executor, getParallelScanner(), loadListener, start,
+                filter, backward, recordCountLimit, sizeLimit, hash);
     }
 
     @Override
     public LogProcess createRecordSearcher(@NonNull Position start, boolean backward, RecordPredicate recordPredicate,
                                            @Nullable String hash, int recordCount, @NonNull SearchPattern searchPattern,
                                            @NonNull Consumer<SearchResult> listener) {
-        return new LocalFileRecordSearcher(this::createSnapshot, executor, start, backward, recordPredicate, hash,
-                recordCount, searchPattern, listener);
+        return new LocalFileRecordSearcher(this::createSnapshot, executor, getParallelScanner(), start, backward,
+                recordPredicate, hash, recordCount, searchPattern, listener);
+    }
+
+    /**
+     * @return the cache of the filter results or {@code null} if the cache is disabled.
+     */
+    @Nullable
+    public FilterResultCache getFilterResultCache() {
+        return filterResultCache != null && filterResultCache.isEnabled() ? filterResultCache : null;
+    }
+
+    /**
+     * @return the index of the field values matching the snapshot, {@code null} if the index is disabled or the format
+     * has no fields to index.
+     */
+    @Nullable
+    public FieldIndex getFieldIndex(@NonNull Snapshot snapshot) {
+        if (fieldIndexStorage == null || !useFieldIndex || snapshot.getError() != null || snapshot.getHash() == null)
+            return null;
+
+        if (FieldIndex.indexedFields(format).length == 0)
+            return null;
+
+        synchronized (fieldIndexLock) {
+            String formatFingerprint = TimeIndexStorage.formatFingerprint(format);
+
+            FieldIndex res = fieldIndex;
+
+            if (!fieldIndexLoaded) {
+                res = fieldIndexStorage.load(this, formatFingerprint, snapshot);
+                fieldIndexLoaded = true;
+            }
+
+            if (res != null) {
+                // The snapshot is older than the index, or the file has been truncated
+                if (res.getSize() > snapshot.getSize())
+                    return null;
+
+                // The file has been rewritten
+                if (!snapshot.isValidHash(res.getHash()))
+                    res = null;
+            }
+
+            if (res == null) {
+                res = new FieldIndex(this, fieldIndexStorage, formatFingerprint, snapshot.getHash(), snapshot.getSize(),
+                        fieldIndexStorage.getBlockSize());
+            } else {
+                res.update(snapshot.getHash(), snapshot.getSize());
+            }
+
+            fieldIndex = res;
+
+            return res;
+        }
+    }
+
+    private ParallelLogScanner getParallelScanner() {
+        return parallelScanner == null ? ParallelLogScanner.SEQUENTIAL : parallelScanner;
     }
 
     private void notifyLogChanged() {
         FileAttributes attr;
 
         try {
-            attr = FileAttributes.fromPath(file);
+            attr = FileAttributes.fromPath(dataFile);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -740,8 +1173,8 @@ public class Log implements LogView {
 
     private Destroyer createFileListener() {
         try {
-            return fileWatcherService.watchDirectory(file.toAbsolutePath().getParent(), files -> {
-                if (files.contains(file)) {
+            return fileWatcherService.watchDirectory(dataFile.toAbsolutePath().getParent(), files -> {
+                if (files.contains(dataFile)) {
                     boolean scheduled = timer.scheduleTask(logChangedTaskKey, this::notifyLogChanged,
                             CHANGE_NOTIFICATION_TIMEOUT);
 
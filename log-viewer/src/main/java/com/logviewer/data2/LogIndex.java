@@ -3,20 +3,62 @@ package com.logviewer.data2;
 import com.logviewer.utils.LvDateUtils;
 import com.logviewer.utils.Utils;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Predicate;
 
 public class LogIndex {
 
 //    private static final Logger LOG = LoggerFactory.getLogger(LogIndex.class);
 
+    /**
+     * The search stops when the distance between the bounds is less than this value, the rest is scanned sequentially.
+     */
+    private static final int MIN_SEARCH_RANGE = 8 * 1024;
+
+    private static final int INTERPOLATION_GUARD = MIN_SEARCH_RANGE / 2;
+
+    /**
+     * The scans add a record to the time index every {@code RECORDING_INTERVAL} bytes, so a search for a timestamp
+     * that hasn't been searched before starts from a narrow range, see {@link #startRecording(Snapshot)}.
+     */
+    static final long RECORDING_INTERVAL = 1024 * 1024;
+
     private FindFirstProcessor firstRecord;
     private FindFirstProcessor lastRecord;
 
     private long size = 0;
 
+    @Nullable
+    private final TimeIndexStorage timeIndexStorage;
+    private final String logId;
+    private final String formatFingerprint;
+
+    private TimeIndex timeIndex;
+    private boolean timeIndexLoaded;
+
+    private long probeCount;
+
+    private SearchStrategy searchStrategy = SearchStrategy.INTERPOLATION;
+
+    public LogIndex() {
+        this(null, null, null);
+    }
+
+    /**
+     * @param timeIndexStorage the storage of the persistent index, the positions of the records found by the previous
+     *                         searches are loaded from the storage, so bisection is not required after restart.
+     */
+    public LogIndex(@Nullable TimeIndexStorage timeIndexStorage, String logId, String formatFingerprint) {
+        this.timeIndexStorage = timeIndexStorage;
+        this.logId = logId;
+        this.formatFingerprint = formatFingerprint;
+    }
+
 //    private Cache<Long, FindFirstProcessor> cache = CacheBuilder.newBuilder()
 //            .weigher((Weigher<Long, FindFirstProcessor>) (key, value) -> {
 //                return (8 + 12) + (12 + recordSize(value.firstRecordWithoutTime) + recordSize(value.result));
@@ -65,6 +107,8 @@ public class LogIndex {
             }
         }
 
+        TimeIndex timeIndex = useCache ? getTimeIndex(buffer) : null;
+
         if (firstRecord == null) {
             firstRecord = new FindFirstProcessor();
             buffer.processRecords(0, false, firstRecord);
@@ -104,11 +148,31 @@ public class LogIndex {
                 return null;
         }
 
-        LogRecord low = firstRecord.result;
-        LogRecord high = lastRecord.result;
+        TimeIndex.Entry low = new TimeIndex.Entry(firstRecord.result);
+        TimeIndex.Entry high = new TimeIndex.Entry(lastRecord.result);
+
+        if (timeIndex != null) {
+            // Narrow the range using the positions found by the previous searches
+            for (TimeIndex.Entry entry : timeIndex.getEntries(low.getStart(), high.getStart())) {
+                if (lastBound ? time >= entry.getTime() : time > entry.getTime()) {
+                    low = entry;
+                } else {
+                    high = entry;
+                    break;
+                }
+            }
+        }
+
+        int badInterpolationSteps = 0;
+
+        while (high.getStart() - low.getEnd() > MIN_SEARCH_RANGE) {
+            long range = high.getStart() - low.getEnd();
+
+            boolean interpolate = searchStrategy == SearchStrategy.INTERPOLATION && badInterpolationSteps < 2;
 
-        while (high.getStart() - low.getEnd() > 8 * 1024) {
-            long mid = (low.getEnd() + high.getStart()) >>> 1;
+            long mid = interpolate
+                    ? interpolatedPosition(low, high, time)
+                    : (low.getEnd() + high.getStart()) >>> 1;
 
             FindFirstProcessor processor;
 
@@ -116,6 +180,8 @@ public class LogIndex {
             buffer.processRecords(mid, false, processor);
             assert processor.result != null;
 
+            probeCount++;
+
 //            if (cache == null) {
 //                processor = new FindFirstProcessor();
 //                buffer.processRecords(mid, false, processor);
@@ -139,23 +205,27 @@ public class LogIndex {
             assert processor.result.getEnd() < high.getEnd();
 
             if (low.getTime() > processor.result.getTime())
-                throw new IOException("Incorrect record order: " + low.getMessage() + " > " + processor.result.getMessage());
+                throw new IOException("Incorrect record order: " + low + " > " + processor.result.getMessage());
 
             if (high.getTime() < processor.result.getTime())
-                throw new IOException("Incorrect record order: " + high.getMessage() + " < " + processor.result.getMessage());
-            
-            if (lastBound) {
-                if (time >= processor.result.getTime())
-                    low = processor.result;
-                else
-                    high = processor.result;
-            }
-            else {
-                if (time > processor.result.getTime())
-                    low = processor.result;
-                else
-                    high = processor.result;
-            }
+                throw new IOException("Incorrect record order: " + high + " < " + processor.result.getMessage());
+
+            TimeIndex.Entry probe = new TimeIndex.Entry(processor.result);
+
+            if (timeIndex != null)
+                timeIndex.add(processor.result);
+
+            if (lastBound ? time >= probe.getTime() : time > probe.getTime())
+                low = probe;
+            else
+                high = probe;
+
+            // The estimation is bad if the timestamps are not distributed evenly. Make a bisection step if two
+            // interpolation steps in a row have not halved the range.
+            if (!interpolate || high.getStart() - low.getEnd() <= range / 2)
+                badInterpolationSteps = 0;
+            else
+                badInterpolationSteps++;
         }
 
         LogRecord[] res = new LogRecord[1];
@@ -183,12 +253,200 @@ public class LogIndex {
 
         assert res[0] != null;
 
+        if (timeIndex != null) {
+            timeIndex.add(res[0]);
+
+            if (timeIndex.isModified())
+                timeIndexStorage.scheduleSave(this);
+        }
+
         return res[0];
     }
 
+    /**
+     * Estimates the position of the record with the given timestamp assuming the timestamps grow linearly with the offset.
+     * The position is shifted by {@link #INTERPOLATION_GUARD} bytes towards the bound that is far from the estimation,
+     * so two exact estimations move both bounds close to the target record.
+     */
+    private static long interpolatedPosition(TimeIndex.Entry low, TimeIndex.Entry high, long time) {
+        long from = low.getEnd();
+        long to = high.getStart();
+
+        long timeRange = high.getTime() - low.getTime();
+        if (timeRange <= 0)
+            return (from + to) >>> 1;
+
+        double k = (double) (time - low.getTime()) / timeRange;
+
+        long res = from + (long) (k * (to - from));
+
+        if (res - from > INTERPOLATION_GUARD)
+            res -= INTERPOLATION_GUARD;
+        else
+            res += INTERPOLATION_GUARD;
+
+        // The line containing "low.getEnd()" belongs to the "low" record
+        return Math.max(from + 1, Math.min(to - 1, res));
+    }
+
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    public void setSearchStrategy(@NonNull SearchStrategy searchStrategy) {
+        this.searchStrategy = searchStrategy;
+    }
+
+    /**
+     * Saves the time index if it has been modified. The entries are copied under the lock, the file is written
+     * outside of it, so the searches don't wait for the disk.
+     */
+    void saveTimeIndex() {
+        TimeIndex copy;
+
+        synchronized (this) {
+            if (timeIndex == null || !timeIndex.isModified())
+                return;
+
+            copy = timeIndex.copy();
+            timeIndex.setModified(false);
+        }
+
+        timeIndexStorage.save(copy);
+    }
+
+    /**
+     * Starts collecting the time index entries from the records read by a scan of the snapshot.
+     *
+     * @return the recording or {@code null} if the time index is not stored.
+     */
+    @Nullable
+    public Recording startRecording(@NonNull Snapshot snapshot) {
+        if (timeIndexStorage == null)
+            return null;
+
+        return new Recording(snapshot);
+    }
+
+    @Nullable
+    private TimeIndex getTimeIndex(Snapshot buffer) {
+        if (timeIndexStorage == null)
+            return null;
+
+        if (!timeIndexLoaded) {
+            timeIndex = timeIndexStorage.load(logId, formatFingerprint, buffer);
+            timeIndexLoaded = true;
+        }
+
+        if (timeIndex == null) {
+            timeIndex = new TimeIndex(logId, buffer.getLog().getPath().getFile(), formatFingerprint, buffer.getHash(),
+                    buffer.getSize());
+        }
+        else
+            timeIndex.update(buffer.getHash(), buffer.getSize());
+
+        return timeIndex;
+    }
+
+    /**
+     * The number of records parsed at the bisection points, for tests and benchmarks.
+     */
+    long getProbeCount() {
+        return probeCount;
+    }
+
 //    private static int req = 0;
 //    private static int search = 0;
 
+    public enum SearchStrategy {
+        /**
+         * Splits the range in half on each step.
+         */
+        BISECTION,
+        /**
+         * Estimates the position from the timestamps of the bounds, falls back to bisection when the estimation doesn't
+         * narrow the range fast enough.
+         */
+        INTERPOLATION,
+    }
+
+    /**
+     * Collects the time index entries of a scan. The records are read by several threads, each thread uses its own
+     * {@link Recorder}, the entries are added to the index by {@link #finish()}.
+     */
+    public final class Recording {
+
+        private final Snapshot snapshot;
+
+        private final List<Recorder> recorders = new ArrayList<>();
+
+        private Recording(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        public Recorder createRecorder() {
+            Recorder res = new Recorder();
+
+            synchronized (recorders) {
+                recorders.add(res);
+            }
+
+            return res;
+        }
+
+        /**
+         * Adds the collected entries to the index and schedules saving of the index.
+         */
+        public void finish() {
+            synchronized (LogIndex.this) {
+                // The snapshot is older than the index
+                if (timeIndex != null && timeIndex.getSize() > snapshot.getSize())
+                    return;
+
+                TimeIndex timeIndex = getTimeIndex(snapshot);
+                if (timeIndex == null)
+                    return;
+
+                synchronized (recorders) {
+                    for (Recorder recorder : recorders) {
+                        for (TimeIndex.Entry entry : recorder.entries) {
+                            timeIndex.add(entry);
+                        }
+                    }
+                }
+
+                if (timeIndex.isModified())
+                    timeIndexStorage.scheduleSave(LogIndex.this);
+            }
+        }
+    }
+
+    public static final class Recorder {
+
+        private final List<TimeIndex.Entry> entries = new ArrayList<>();
+
+        private long lastInterval = -1;
+
+        private Recorder() {
+
+        }
+
+        /**
+         * Remembers the first record with a timestamp in each {@link #RECORDING_INTERVAL} bytes of the file.
+         */
+        public void record(@NonNull LogRecord record) {
+            if (!record.hasTime())
+                return;
+
+            long interval = record.getStart() / RECORDING_INTERVAL;
+            if (interval == lastInterval)
+                return;
+
+            lastInterval = interval;
+            entries.add(new TimeIndex.Entry(record.getStart(), record.getEnd(), record.getTime()));
+        }
+    }
+
     private static class FindFirstProcessor implements Predicate<LogRecord> {
 
         private LogRecord firstRecordWithoutTime;
@@ -8,6 +8,7 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.nio.charset.Charset;
 import java.util.*;
 
 public class LogRecord implements Comparable<LogRecord>, Externalizable {
@@ -19,7 +20,17 @@ public class LogRecord implements Comparable<LogRecord>, Externalizable {
 
     private String logId;
 
-    private String message;
+    /**
+     * The text of the record: a {@link String} or the encoded text ({@code byte[]}) until the text is requested by
+     * {@link #getMessage()}. Most of the records are rejected by the filters that check a few fields only, so the text
+     * of such records is never decoded.
+     */
+    private Object message;
+
+    /**
+     * The charset of the encoded text, used while {@link #message} is not decoded.
+     */
+    private Charset charset;
 
     /**
      * Timestamp in NANOseconds.
@@ -62,6 +73,20 @@ public class LogRecord implements Comparable<LogRecord>, Externalizable {
         this.fieldNames = fieldNames;
     }
 
+    /**
+     * Creates a record whose text is decoded on the first access to {@link #getMessage()}.
+     *
+     * @param messageBytes the text of the record encoded by a charset that uses one byte per char for this text, so
+     *                     the field positions are the offsets in the byte array too.
+     */
+    public LogRecord(@NonNull byte[] messageBytes, @NonNull Charset charset, long timeNanos, long start, long end,
+                     boolean hasMore, @NonNull int[] fieldPositions, @NonNull Map<String, Integer> fieldNames) {
+        this("", timeNanos, start, end, hasMore, fieldPositions, fieldNames);
+
+        this.message = messageBytes;
+        this.charset = charset;
+    }
+
     public String getLogId() {
         return logId;
     }
@@ -71,6 +96,17 @@ public class LogRecord implements Comparable<LogRecord>, Externalizable {
         return this;
     }
 
+    /**
+     * @return a copy of the record moved by the offset, used when the file is a part of a larger address space.
+     */
+    LogRecord shift(long offset) {
+        LogRecord res = new LogRecord("", timeNanos, start + offset, end + offset, hasMore, fieldPositions, fieldNames);
+        res.message = message;
+        res.charset = charset;
+        res.logId = logId;
+        return res;
+    }
+
     public long getStart() {
         return start;
     }
@@ -96,7 +132,13 @@ public class LogRecord implements Comparable<LogRecord>, Externalizable {
     }
 
     public String getMessage() {
-        return message;
+        Object message = this.message;
+        if (message instanceof String)
+            return (String) message;
+
+        String res = new String((byte[]) message, charset);
+        this.message = res;
+        return res;
     }
 
     public TextRange getFieldOffset(String fieldName) {
@@ -122,7 +164,49 @@ public class LogRecord implements Comparable<LogRecord>, Externalizable {
         if (fieldPositions[i] == -1)
             return null;
 
-        return message.substring(fieldPositions[i], fieldPositions[i + 1]);
+        Object message = this.message;
+        if (message instanceof String)
+            return ((String) message).substring(fieldPositions[i], fieldPositions[i + 1]);
+
+        // Decode the field only, the record may be rejected by the filter
+        return new String((byte[]) message, fieldPositions[i], fieldPositions[i + 1] - fieldPositions[i], charset);
+    }
+
+    /**
+     * Checks if the field text equals to the value without decoding the field.
+     */
+    boolean fieldTextEquals(String fieldName, @NonNull String value) {
+        Integer fieldIndex = fieldNames.get(fieldName);
+        if (fieldIndex == null)
+            return false;
+
+        int i = fieldIndex * 2;
+
+        int start = fieldPositions[i];
+        if (start == -1)
+            return false;
+
+        int length = fieldPositions[i + 1] - start;
+
+        Object message = this.message;
+        if (message instanceof String)
+            return length == value.length() && ((String) message).startsWith(value, start);
+
+        if (length != value.length())
+            return false;
+
+        byte[] bytes = (byte[]) message;
+
+        for (int j = 0; j < length; j++) {
+            byte b = bytes[start + j];
+            if (b < 0)
+                return value.equals(getFieldText(fieldName)); // Not ASCII, compare the decoded text
+
+            if (b != value.charAt(j))
+                return false;
+        }
+
+        return true;
     }
 
     public Set<String> getFieldNames() {
@@ -131,7 +215,7 @@ public class LogRecord implements Comparable<LogRecord>, Externalizable {
 
     @Override
     public String toString() {
-        return message;
+        return getMessage();
     }
 
     @Override
@@ -150,7 +234,7 @@ public class LogRecord implements Comparable<LogRecord>, Externalizable {
     @Override
     public void writeExternal(ObjectOutput out) throws IOException {
         out.writeUTF(logId);
-        out.writeObject(message); // Don't use writeUTF(), it has a limit on string length!!!
+        out.writeObject(getMessage()); // Don't use writeUTF(), it has a limit on string length!!!
         out.writeLong(timeNanos);
         out.writeLong(start);
         out.writeLong(end);
@@ -202,13 +286,13 @@ public class LogRecord implements Comparable<LogRecord>, Externalizable {
         if (o == null || getClass() != o.getClass()) return false;
         LogRecord record = (LogRecord) o;
         return timeNanos == record.timeNanos && start == record.start && end == record.end && hasMore == record.hasMore
-                && logId.equals(record.logId) && message.equals(record.message)
+                && logId.equals(record.logId) && getMessage().equals(record.getMessage())
                 && Arrays.equals(fieldPositions, record.fieldPositions)
                 && fieldNames.keySet().equals(record.fieldNames.keySet());
     }
 
     @Override
     public int hashCode() {
-        return message.hashCode();
+        return getMessage().hashCode();
     }
 }
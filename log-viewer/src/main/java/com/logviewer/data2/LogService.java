@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.lang.NonNull;
@@ -26,7 +27,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
 
 public class LogService implements InitializingBean, DisposableBean {
 
@@ -34,9 +34,16 @@ public class LogService implements InitializingBean, DisposableBean {
 
     public static final LogFormat DEFAULT_FORMAT = new SimpleLogFormat(Charset.defaultCharset());
 
+    /**
+     * The interval of writing the state of the task queues to the debug log, see {@link LogTaskScheduler#logMetrics()}.
+     */
+    private static final long SCHEDULER_METRICS_INTERVAL = 60_000;
+
     private final Map<Pair<Path, Long>, Log> logs = new ConcurrentHashMap<>();
 
-    private ExecutorService executor;
+    private LogTaskScheduler executor;
+
+    private TimerTask schedulerMetricsTask;
 
     @Autowired
     private ApplicationContext applicationContext;
@@ -52,21 +59,62 @@ public class LogService implements InitializingBean, DisposableBean {
     private LvTimer timer;
     @Autowired(required = false)
     private List<LvFormatRecognizer> formatRecognizers = Collections.emptyList();
+    @Value("${" + RotatedLogGroup.ENABLED_PROPERTY + ":false}")
+    private boolean rotationGroups;
+    @Value("${" + LogTaskScheduler.THREADS_PROPERTY + ":8}")
+    private int threadCount = 8;
+    @Value("${" + LogTaskScheduler.INTERACTIVE_THREADS_PROPERTY + ":8}")
+    private int interactiveThreadCount = 8;
+    @Value("${" + LogTaskScheduler.PREFETCH_THREADS_PROPERTY + ":2}")
+    private int prefetchThreadCount = 2;
+    @Value("${" + LogTaskScheduler.SEARCH_THREADS_PROPERTY + ":4}")
+    private int searchThreadCount = 4;
+    @Value("${" + LogTaskScheduler.BULK_THREADS_PROPERTY + ":2}")
+    private int bulkThreadCount = 2;
+    @Value("${" + VirtualThreads.ENABLED_PROPERTY + ":false}")
+    private boolean virtualThreads;
+    @Value("${" + VirtualThreads.MAX_RUNNING_TASKS_PROPERTY + ":256}")
+    private int virtualMaxRunningTasks = 256;
 
     @Override
     public void afterPropertiesSet() {
-        AtomicInteger counter = new AtomicInteger();
+        initExecutor();
+
+        if (timer != null) {
+            schedulerMetricsTask = new TimerTask() {
+                @Override
+                public void run() {
+                    executor.logMetrics();
+                }
+            };
+
+            timer.schedule(schedulerMetricsTask, SCHEDULER_METRICS_INTERVAL, SCHEDULER_METRICS_INTERVAL);
+        }
+    }
+
+    private void initExecutor() {
+        if (virtualThreads && !VirtualThreads.isSupported()) {
+            LOG.warn("Virtual threads are not supported by the JVM (Java 21+ is required), the platform threads are used [{}=true]",
+                    VirtualThreads.ENABLED_PROPERTY);
+            virtualThreads = false;
+        }
 
-        ThreadPoolExecutor executor = new ThreadPoolExecutor(8, 8,
-                20L, TimeUnit.SECONDS,
-                new LinkedBlockingQueue<>(),
-                run -> {
-                    Thread res = new Thread(run, "log-service-" + counter.incrementAndGet());
-                    res.setUncaughtExceptionHandler((t, e) -> LOG.error("Unhandled error", e));
-                    return res;
-                });
-        executor.allowCoreThreadTimeOut(true);
-        this.executor = executor;
+        if (virtualThreads) {
+            // A blocked task doesn't hold a platform thread, so many more interactive tasks can run at once. The limits
+            // of prefetch, search and bulk tasks are kept, they protect the disk rather than the threads.
+            executor = new LogTaskScheduler(VirtualThreads.newThreadPerTaskExecutor("log-service-"),
+                    virtualMaxRunningTasks, virtualMaxRunningTasks, prefetchThreadCount, searchThreadCount, bulkThreadCount);
+        } else {
+            executor = new LogTaskScheduler("log-service-", threadCount, interactiveThreadCount, prefetchThreadCount,
+                    searchThreadCount, bulkThreadCount);
+        }
+    }
+
+    /**
+     * @return {@code true} if the tasks are executed on the virtual threads.
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
     }
 
     public RemoteNodeService getRemoteNodeService() {
@@ -85,6 +133,10 @@ public class LogService implements InitializingBean, DisposableBean {
         return executor;
     }
 
+    public LogTaskScheduler getScheduler() {
+        return executor;
+    }
+
     public LvFileAccessManager getAccessManager() {
         return accessManager;
     }
@@ -117,16 +169,40 @@ public class LogService implements InitializingBean, DisposableBean {
         Map<String, LogView> res = new LinkedHashMap<>();
         List<CompletableFuture<LogView>> remoteLogs = new ArrayList<>();
 
+        List<Path> localPaths = new ArrayList<>();
+
         for (LogPath logPath : paths) {
             if (logPath.getNode() == null) {
-                Log log = openLog(logPath.getFile());
-                res.put(log.getId(), log);
+                localPaths.add(normalizePath(Paths.get(logPath.getFile())));
             }
             else {
                 remoteLogs.add(openRemoteLog(logPath));
             }
         }
 
+        Map<Path, List<Path>> rotationSets = new HashMap<>();
+        if (rotationGroups) {
+            for (List<Path> rotationSet : RotatedLogGroup.findRotationSets(localPaths)) {
+                for (Path path : rotationSet) {
+                    rotationSets.put(path, rotationSet);
+                }
+            }
+        }
+
+        Set<List<Path>> openedRotationSets = new HashSet<>();
+
+        for (Path path : localPaths) {
+            List<Path> rotationSet = rotationSets.get(path);
+
+            if (rotationSet == null) {
+                Log log = openLog0(path, getFormatByPath(path));
+                res.put(log.getId(), log);
+            } else if (openedRotationSets.add(rotationSet)) {
+                RotatedLogGroup group = openRotationGroup(rotationSet);
+                res.put(group.getId(), group);
+            }
+        }
+
         if (remoteLogs.isEmpty())
             return CompletableFuture.completedFuture(res);
 
@@ -140,6 +216,23 @@ public class LogService implements InitializingBean, DisposableBean {
         });
     }
 
+    /**
+     * Opens the files of a rotated log as a single log, the format is detected by the active file.
+     *
+     * @param rotationSet the files in the rotation order, see {@link RotatedLogGroup#findRotationSets(Collection)}.
+     */
+    @NonNull
+    public RotatedLogGroup openRotationGroup(@NonNull List<Path> rotationSet) {
+        LogFormat format = getFormatByPath(rotationSet.get(rotationSet.size() - 1));
+
+        List<Log> segments = new ArrayList<>(rotationSet.size());
+        for (Path path : rotationSet) {
+            segments.add(openLog0(path, format));
+        }
+
+        return new RotatedLogGroup(segments, executor);
+    }
+
     @NonNull
     public CompletableFuture<LogView> openRemoteLog(@NonNull LogPath path) {
         assert path.getNode() != null;
@@ -220,6 +313,9 @@ public class LogService implements InitializingBean, DisposableBean {
 
     @Override
     public void destroy() {
+        if (schedulerMetricsTask != null)
+            schedulerMetricsTask.cancel();
+
         executor.shutdownNow();
 
         try {
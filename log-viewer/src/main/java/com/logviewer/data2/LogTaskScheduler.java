@@ -0,0 +1,415 @@
+package com.logviewer.data2;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes the tasks of {@link LogService}. The tasks are divided into priority classes, each class has a limit of
+ * concurrently running tasks, the total number of running tasks is limited by the number of threads. When a thread is
+ * free, it takes the task of the highest class that is below its limit. Within a class, the tasks of different owners
+ * (usually the sessions) are taken in turn, so an owner submitting many tasks doesn't delay the others.
+ *
+ * The class and the owner of a task are taken from the submitting thread, see {@link #runAs}. The tasks submitted
+ * by a running task get the class and the owner of that task.
+ *
+ * The tasks are started on a pool of platform threads or, on JDK 21+, on the virtual threads, see
+ * {@link com.logviewer.utils.VirtualThreads}. The limits are applied in both cases.
+ */
+public class LogTaskScheduler extends AbstractExecutorService {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LogTaskScheduler.class);
+
+    public static final String THREADS_PROPERTY = "log-viewer.scheduler.threads";
+    public static final String INTERACTIVE_THREADS_PROPERTY = "log-viewer.scheduler.interactive.threads";
+    public static final String PREFETCH_THREADS_PROPERTY = "log-viewer.scheduler.prefetch.threads";
+    public static final String SEARCH_THREADS_PROPERTY = "log-viewer.scheduler.search.threads";
+    public static final String BULK_THREADS_PROPERTY = "log-viewer.scheduler.bulk.threads";
+
+    private static final ThreadLocal<TaskContext> CONTEXT = new ThreadLocal<>();
+
+    private static final TaskContext DEFAULT_CONTEXT = new TaskContext(Priority.INTERACTIVE, null);
+
+    public enum Priority {
+        /**
+         * Loading of the records displayed to the user.
+         */
+        INTERACTIVE,
+        /**
+         * Speculative loading of the page the user will most likely request next. The page is not waited for yet, so
+         * it doesn't take the threads of {@link #INTERACTIVE} tasks.
+         */
+        PREFETCH,
+        /**
+         * Search of the text in the logs.
+         */
+        SEARCH,
+        /**
+         * Long operations that the user doesn't wait for interactively, like downloading of a whole log.
+         */
+        BULK,
+    }
+
+    private final int threadCount;
+
+    private final ExecutorService pool;
+
+    private final ClassQueue[] queues;
+
+    private int running;
+
+    private boolean shutdown;
+
+    /**
+     * @param threadCount the max number of running tasks.
+     * @param limits the max number of running tasks of each class, in the order of {@link Priority} constants.
+     */
+    public LogTaskScheduler(@NonNull String threadNamePrefix, int threadCount, int... limits) {
+        this(createPool(threadNamePrefix, threadCount), threadCount, limits);
+    }
+
+    /**
+     * @param pool the executor starting the tasks, the scheduler never passes it more than {@code threadCount} tasks
+     *             at once. The pool is shut down together with the scheduler.
+     * @param threadCount the max number of running tasks.
+     * @param limits the max number of running tasks of each class, in the order of {@link Priority} constants.
+     */
+    public LogTaskScheduler(@NonNull ExecutorService pool, int threadCount, int... limits) {
+        if (threadCount <= 0)
+            throw new IllegalArgumentException("Invalid thread count: " + threadCount);
+
+        if (limits.length != Priority.values().length)
+            throw new IllegalArgumentException("A limit must be specified for each priority class");
+
+        this.pool = pool;
+        this.threadCount = threadCount;
+
+        queues = new ClassQueue[limits.length];
+        for (int i = 0; i < limits.length; i++) {
+            queues[i] = new ClassQueue(Math.max(Math.min(limits[i], threadCount), 1));
+        }
+    }
+
+    private static ExecutorService createPool(String threadNamePrefix, int threadCount) {
+        if (threadCount <= 0)
+            throw new IllegalArgumentException("Invalid thread count: " + threadCount);
+
+        AtomicInteger counter = new AtomicInteger();
+
+        ThreadPoolExecutor res = new ThreadPoolExecutor(threadCount, threadCount,
+                20L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                run -> {
+                    Thread thread = new Thread(run, threadNamePrefix + counter.incrementAndGet());
+                    thread.setUncaughtExceptionHandler((t, e) -> LOG.error("Unhandled error", e));
+                    return thread;
+                });
+        res.allowCoreThreadTimeOut(true);
+
+        return res;
+    }
+
+    /**
+     * Runs the action, the tasks submitted by the action on the current thread get the specified class and owner.
+     *
+     * @param owner the object the tasks are shared fairly between, usually the session. {@code null} is a valid owner.
+     */
+    public static void runAs(@NonNull Priority priority, @Nullable Object owner, @NonNull Runnable action) {
+        TaskContext old = CONTEXT.get();
+
+        CONTEXT.set(new TaskContext(priority, owner));
+
+        try {
+            action.run();
+        } finally {
+            restoreContext(old);
+        }
+    }
+
+    private static void restoreContext(@Nullable TaskContext ctx) {
+        if (ctx == null) {
+            CONTEXT.remove();
+        } else {
+            CONTEXT.set(ctx);
+        }
+    }
+
+    @Override
+    public void execute(@NonNull Runnable command) {
+        TaskContext ctx = CONTEXT.get();
+        if (ctx == null)
+            ctx = DEFAULT_CONTEXT;
+
+        Task task = new Task(command, ctx);
+
+        synchronized (this) {
+            if (shutdown)
+                throw new RejectedExecutionException("Scheduler has been shut down");
+
+            queues[ctx.priority.ordinal()].add(task);
+
+            dispatch();
+        }
+    }
+
+    private void dispatch() {
+        assert Thread.holdsLock(this);
+
+        while (running < threadCount) {
+            Task task = nextTask();
+            if (task == null)
+                return;
+
+            ClassQueue queue = queues[task.ctx.priority.ordinal()];
+
+            running++;
+            queue.running++;
+            queue.addWaitTime(System.nanoTime() - task.submitTime);
+
+            pool.execute(task);
+        }
+    }
+
+    @Nullable
+    private Task nextTask() {
+        for (ClassQueue queue : queues) {
+            while (queue.size > 0 && queue.running < queue.limit) {
+                Task task = queue.poll();
+
+                // A cancelled task does nothing, it doesn't take a slot
+                if (!(task.command instanceof Future) || !((Future<?>) task.command).isCancelled())
+                    return task;
+            }
+        }
+
+        return null;
+    }
+
+    private void onFinished(Task task) {
+        boolean terminate;
+
+        synchronized (this) {
+            running--;
+            queues[task.ctx.priority.ordinal()].running--;
+
+            dispatch();
+
+            terminate = shutdown && getQueueDepth() == 0;
+        }
+
+        if (terminate)
+            pool.shutdown();
+    }
+
+    private int getQueueDepth() {
+        int res = 0;
+        for (ClassQueue queue : queues) {
+            res += queue.size;
+        }
+        return res;
+    }
+
+    /**
+     * @return the number of the tasks of the class waiting for a thread.
+     */
+    public synchronized int getQueueDepth(@NonNull Priority priority) {
+        return queues[priority.ordinal()].size;
+    }
+
+    public synchronized int getRunningCount(@NonNull Priority priority) {
+        return queues[priority.ordinal()].running;
+    }
+
+    /**
+     * @return the average time in milliseconds the tasks of the class have waited for a thread.
+     */
+    public synchronized double getAverageWaitMs(@NonNull Priority priority) {
+        ClassQueue queue = queues[priority.ordinal()];
+        if (queue.startedCount == 0)
+            return 0;
+
+        return (double) queue.totalWaitTime / queue.startedCount / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return the max time in milliseconds a task of the class has waited for a thread.
+     */
+    public synchronized long getMaxWaitMs(@NonNull Priority priority) {
+        return TimeUnit.NANOSECONDS.toMillis(queues[priority.ordinal()].maxWaitTime);
+    }
+
+    public int getLimit(@NonNull Priority priority) {
+        return queues[priority.ordinal()].limit;
+    }
+
+    /**
+     * @return the max number of running tasks.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    @Override
+    public void shutdown() {
+        synchronized (this) {
+            shutdown = true;
+
+            if (getQueueDepth() > 0)
+                return; // The pool is shut down when the queued tasks are started
+        }
+
+        pool.shutdown();
+    }
+
+    @NonNull
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> res = new ArrayList<>();
+
+        synchronized (this) {
+            shutdown = true;
+
+            for (ClassQueue queue : queues) {
+                while (queue.size > 0) {
+                    res.add(queue.poll().command);
+                }
+            }
+        }
+
+        for (Runnable task : pool.shutdownNow()) {
+            res.add(((Task) task).command);
+        }
+
+        return res;
+    }
+
+    @Override
+    public synchronized boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Writes the state of the queues to the debug log, called periodically by {@link LogService}.
+     */
+    public void logMetrics() {
+        if (LOG.isDebugEnabled())
+            LOG.debug("{}", this);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder res = new StringBuilder("LogTaskScheduler[threads=").append(threadCount);
+
+        for (Priority priority : Priority.values()) {
+            ClassQueue queue = queues[priority.ordinal()];
+
+            res.append(", ").append(priority).append("[limit=").append(queue.limit)
+                    .append(", running=").append(queue.running)
+                    .append(", queued=").append(queue.size)
+                    .append(", avgWaitMs=").append(queue.startedCount == 0 ? 0 :
+                            TimeUnit.NANOSECONDS.toMillis(queue.totalWaitTime / queue.startedCount))
+                    .append(", maxWaitMs=").append(TimeUnit.NANOSECONDS.toMillis(queue.maxWaitTime))
+                    .append(']');
+        }
+
+        return res.append(']').toString();
+    }
+
+    private static class TaskContext {
+        private final Priority priority;
+        @Nullable
+        private final Object owner;
+
+        TaskContext(Priority priority, @Nullable Object owner) {
+            this.priority = priority;
+            this.owner = owner;
+        }
+    }
+
+    private class Task implements Runnable {
+        private final Runnable command;
+        private final TaskContext ctx;
+        private final long submitTime = System.nanoTime();
+
+        Task(Runnable command, TaskContext ctx) {
+            this.command = command;
+            this.ctx = ctx;
+        }
+
+        @Override
+        public void run() {
+            TaskContext old = CONTEXT.get();
+            CONTEXT.set(ctx);
+
+            try {
+                command.run();
+            } finally {
+                restoreContext(old);
+                onFinished(this);
+            }
+        }
+    }
+
+    /**
+     * The tasks of one priority class. The tasks of each owner are kept in a separate queue, the owners are iterated
+     * in the round-robin order.
+     */
+    private static class ClassQueue {
+        private final int limit;
+
+        private final LinkedHashMap<Object, ArrayDeque<Task>> owners = new LinkedHashMap<>();
+
+        private int size;
+        private int running;
+
+        private long startedCount;
+        private long totalWaitTime;
+        private long maxWaitTime;
+
+        ClassQueue(int limit) {
+            this.limit = limit;
+        }
+
+        void add(Task task) {
+            owners.computeIfAbsent(task.ctx.owner, k -> new ArrayDeque<>()).add(task);
+            size++;
+        }
+
+        Task poll() {
+            assert size > 0;
+
+            Iterator<Map.Entry<Object, ArrayDeque<Task>>> itr = owners.entrySet().iterator();
+            Map.Entry<Object, ArrayDeque<Task>> entry = itr.next();
+            itr.remove();
+
+            Task res = entry.getValue().poll();
+            size--;
+
+            if (!entry.getValue().isEmpty())
+                owners.put(entry.getKey(), entry.getValue()); // The owner goes to the end of the turn
+
+            return res;
+        }
+
+        void addWaitTime(long waitTime) {
+            startedCount++;
+            totalWaitTime += waitTime;
+            maxWaitTime = Math.max(maxWaitTime, waitTime);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import com.logviewer.filters.RecordPredicate;
 import com.logviewer.utils.Destroyer;
 import com.logviewer.web.session.LogDataListener;
 import com.logviewer.web.session.LogProcess;
+import com.logviewer.web.session.ReadCursorCache;
 import com.logviewer.web.session.SearchResult;
 import com.logviewer.web.session.tasks.SearchPattern;
 import org.springframework.lang.NonNull;
@@ -28,6 +29,16 @@ public interface LogView {
                            @Nullable Position start, boolean backward, @Nullable String hash, long sizeLimit,
                            @NonNull LogDataListener loadListener);
 
+    /**
+     * The same as {@link #loadRecords(RecordPredicate, int, Position, boolean, String, long, LogDataListener)}, but
+     * a local log may reuse the snapshot kept in {@code cursors} by the previous loading.
+     */
+    default LogProcess loadRecords(RecordPredicate filter, int recordCount,
+                                   @Nullable Position start, boolean backward, @Nullable String hash, long sizeLimit,
+                                   @Nullable ReadCursorCache cursors, @NonNull LogDataListener loadListener) {
+        return loadRecords(filter, recordCount, start, backward, hash, sizeLimit, loadListener);
+    }
+
     LogProcess createRecordSearcher(@NonNull Position start, boolean backward, RecordPredicate recordPredicate,
                                     @Nullable String hash, int recordCount, @NonNull SearchPattern searchPattern,
                                     @NonNull Consumer<SearchResult> listener);
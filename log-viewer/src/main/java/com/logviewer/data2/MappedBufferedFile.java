@@ -0,0 +1,50 @@
+package com.logviewer.data2;
+
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+import static com.logviewer.data2.FileMapping.REGION_SIZE;
+import static com.logviewer.data2.FileMapping.REGION_SIZE_BITS;
+
+/**
+ * {@link BufferedFile} reading the data from the memory-mapped regions instead of the file channel. Switching the page
+ * is a plain memory copy, no system calls and channel repositioning are required.
+ *
+ * @see FileMapping
+ */
+public class MappedBufferedFile extends BufferedFile {
+
+    private final MappedByteBuffer[] regions;
+
+    public MappedBufferedFile(@NonNull MappedByteBuffer[] regions, long size) {
+        super(size);
+        this.regions = regions;
+
+        assert regions.length == (int) ((size + REGION_SIZE - 1) >>> REGION_SIZE_BITS);
+    }
+
+    @Override
+    protected void readData(long position, ByteBuffer buf) throws IOException {
+        byte[] array = buf.array();
+
+        try {
+            while (buf.hasRemaining()) {
+                MappedByteBuffer region = regions[(int) (position >>> REGION_SIZE_BITS)];
+                int regionOffset = (int) (position & (REGION_SIZE - 1));
+
+                int length = Math.min(buf.remaining(), region.limit() - regionOffset);
+
+                region.get(regionOffset, array, buf.arrayOffset() + buf.position(), length);
+
+                buf.position(buf.position() + length);
+                position += length;
+            }
+        } catch (InternalError e) {
+            // Access to the mapped memory after truncation of the file leads to SIGBUS, the JVM converts it to InternalError
+            throw new IOException("Failed to read memory mapped file, the file was probably truncated", e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.logviewer.data2;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.logviewer.data2.ParserConfig.WINDOW_SIZE;
+
+/**
+ * Process-wide cache of the file pages ({@link ParserConfig#WINDOW_SIZE} bytes each), shared between all snapshots
+ * and sessions. A page is identified by the log id, the hash of the log content and the page number.
+ * The cache is limited by the total size of cached pages, the eviction policy is Caffeine's W-TinyLFU.
+ */
+public class PageCache {
+
+    public static final String SIZE_PROPERTY = "log-viewer.page-cache.size";
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final long maxSize;
+
+    private final Cache<PageKey, byte[]> cache;
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+
+    public PageCache(long maxSize) {
+        this.maxSize = maxSize;
+
+        cache = Caffeine.newBuilder()
+                .maximumWeight(Math.max(maxSize, 0))
+                .weigher((PageKey key, byte[] page) -> page.length + ENTRY_OVERHEAD)
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return maxSize >= WINDOW_SIZE;
+    }
+
+    /**
+     * @param length the number of bytes required from the page. The last page of a growing file may be cached partially,
+     *               such page is not returned if it is shorter than required.
+     * @return the page data, the array may be longer than {@code length}.
+     */
+    @Nullable
+    public byte[] getPage(@NonNull String logId, @NonNull String hash, long page, int length) {
+        byte[] res = cache.getIfPresent(new PageKey(logId, hash, page));
+
+        if (res == null || res.length < length) {
+            missCount.increment();
+            return null;
+        }
+
+        hitCount.increment();
+        return res;
+    }
+
+    public void putPage(@NonNull String logId, @NonNull String hash, long page, @NonNull byte[] data) {
+        putPage(new PageKey(logId, hash, page), data);
+    }
+
+    void putPage(@NonNull PageKey key, @NonNull byte[] data) {
+        assert data.length <= WINDOW_SIZE;
+
+        cache.put(key, data);
+    }
+
+    /**
+     * The same as {@link #getPage(String, String, long, int)} != null, but doesn't affect the hit/miss counters.
+     */
+    boolean hasPage(@NonNull PageKey key, int length) {
+        byte[] res = cache.getIfPresent(key);
+        return res != null && res.length >= length;
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public String toString() {
+        return "PageCache[maxSize=" + maxSize + ", hits=" + getHitCount() + ", misses=" + getMissCount() + ']';
+    }
+
+    static final class PageKey {
+        private final String logId;
+        private final String hash;
+        private final long page;
+
+        PageKey(String logId, String hash, long page) {
+            this.logId = logId;
+            this.hash = hash;
+            this.page = page;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            PageKey pageKey = (PageKey) o;
+            return page == pageKey.page && logId.equals(pageKey.logId) && hash.equals(pageKey.hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(logId, hash, page);
+        }
+    }
+}
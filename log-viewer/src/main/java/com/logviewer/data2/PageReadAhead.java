@@ -0,0 +1,163 @@
+package com.logviewer.data2;
+
+import com.logviewer.utils.RuntimeInterruptedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads the pages following the pages being read sequentially into the {@link PageCache} on background threads,
+ * so parsing of the current page overlaps with reading the next ones from the disk.
+ *
+ * @see BufferedFile#search(long, BufferedFile.SearchConsumer)
+ * @see BufferedFile#searchBack(long, BufferedFile.SearchConsumer)
+ */
+public class PageReadAhead implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PageReadAhead.class);
+
+    public static final String PAGES_PROPERTY = "log-viewer.read-ahead.pages";
+    public static final String THREADS_PROPERTY = "log-viewer.read-ahead.threads";
+
+    /**
+     * How often a reader waiting for a page checks its cancellation token.
+     */
+    private static final long CANCELLATION_CHECK_INTERVAL_MS = 50;
+
+    private final int pageCount;
+
+    private final ExecutorService executor;
+
+    private final Map<PageCache.PageKey, PageLoad> inProgress = new ConcurrentHashMap<>();
+
+    public PageReadAhead(int pageCount, int threadCount) {
+        this.pageCount = pageCount;
+
+        AtomicInteger counter = new AtomicInteger();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threadCount, threadCount,
+                20L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                run -> {
+                    Thread res = new Thread(run, "log-read-ahead-" + counter.incrementAndGet());
+                    res.setDaemon(true);
+                    res.setUncaughtExceptionHandler((t, e) -> LOG.error("Unhandled error", e));
+                    return res;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        this.executor = executor;
+    }
+
+    public boolean isEnabled() {
+        return pageCount > 0;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Schedules loading of {@link #getPageCount()} pages after the {@code page} in the direction of reading.
+     */
+    void prefetch(@NonNull BufferedFile file, long page, boolean forward) {
+        for (int i = 1; i <= pageCount; i++) {
+            long p = forward ? page + i : page - i;
+
+            if (!file.hasPage(p))
+                break;
+
+            PageCache.PageKey key = file.pageKey(p);
+
+            if (file.isPageCached(key, p) || inProgress.containsKey(key))
+                continue;
+
+            PageLoad load = new PageLoad();
+
+            if (inProgress.putIfAbsent(key, load) != null)
+                continue;
+
+            try {
+                executor.execute(() -> {
+                    // The page has been claimed by a reader while the task was in the queue
+                    if (!load.started.compareAndSet(false, true))
+                        return;
+
+                    try {
+                        file.prefetchPage(key, p);
+                    } catch (IOException e) {
+                        // The snapshot may be closed already, it's not an error.
+                        LOG.debug("Failed to prefetch page", e);
+                    } finally {
+                        inProgress.remove(key, load);
+                        load.future.complete(null);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                inProgress.remove(key, load);
+                load.future.complete(null);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Waits for the page loading if the page is being read from the disk in background right now. If the loading
+     * has not started yet, the queued task is dropped and the caller reads the page itself, so a reader never waits
+     * behind the read-ahead of the other logs. If the background loading fails, the page is not cached and the
+     * caller reads it itself, getting the error of its own read.
+     */
+    void awaitPage(@NonNull PageCache.PageKey key, @Nullable CancellationToken cancellation) throws IOException {
+        PageLoad load = inProgress.get(key);
+        if (load == null)
+            return;
+
+        if (load.started.compareAndSet(false, true)) {
+            inProgress.remove(key, load);
+            load.future.complete(null);
+            return;
+        }
+
+        try {
+            while (true) {
+                if (cancellation != null)
+                    cancellation.checkCancelled();
+
+                try {
+                    load.future.get(CANCELLATION_CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                    return;
+                } catch (TimeoutException ignored) {
+                    // check the cancellation and wait again
+                }
+            }
+        } catch (InterruptedException e) {
+            throw new RuntimeInterruptedException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private static class PageLoad {
+        /**
+         * Set by the task when it starts reading the page, or by a reader claiming the page before that.
+         */
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+    }
+}
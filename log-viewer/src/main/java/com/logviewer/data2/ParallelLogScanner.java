@@ -0,0 +1,364 @@
+package com.logviewer.data2;
+
+import com.logviewer.utils.RuntimeInterruptedException;
+import com.logviewer.utils.Utils;
+import com.logviewer.web.session.tasks.SearchPattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Processes the records of a log on several threads. The first chunk of the file after the first record is processed
+ * on the caller thread, so a scan that finds enough records near the start position doesn't touch other threads. If
+ * the scan reaches the end of the first chunk, the rest of the file is split into chunks of {@link #chunkSize} bytes,
+ * the chunks are processed on a fork/join pool, the results of the chunks are passed to the consumer in the scan order.
+ * So the consumer receives the same items as if the records were processed sequentially by
+ * {@link Snapshot#processRecords(long, boolean, Predicate)}.
+ *
+ * A chunk contains the records starting within its bytes, each task finds the record boundaries itself. The chunks
+ * are submitted lazily, at most one chunk per thread ahead of the chunk being consumed, when the scan stops in some
+ * chunk, the chunks after it are cancelled.
+ */
+public class ParallelLogScanner implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelLogScanner.class);
+
+    public static final String THREADS_PROPERTY = "log-viewer.parallel-scan.threads";
+    public static final String CHUNK_SIZE_PROPERTY = "log-viewer.parallel-scan.chunk-size";
+
+    /**
+     * The scanner processing all records on the caller thread.
+     */
+    public static final ParallelLogScanner SEQUENTIAL = new ParallelLogScanner(1, Long.MAX_VALUE);
+
+    private final int parallelism;
+
+    private final long chunkSize;
+
+    @Nullable
+    private final ForkJoinPool pool;
+
+    /**
+     * @param threadCount the number of threads processing the chunks, {@code 0} means the number of available
+     *                    processors, {@code 1} disables the parallel processing.
+     * @param chunkSize the size of the part of the file processed by one task.
+     */
+    public ParallelLogScanner(int threadCount, long chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+
+        if (threadCount <= 0)
+            threadCount = Runtime.getRuntime().availableProcessors();
+
+        this.parallelism = threadCount;
+        this.chunkSize = chunkSize;
+
+        if (threadCount > 1) {
+            AtomicInteger counter = new AtomicInteger();
+
+            pool = new ForkJoinPool(threadCount, p -> {
+                ForkJoinWorkerThread res = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                res.setName("log-parallel-scan-" + counter.incrementAndGet());
+                return res;
+            }, (t, e) -> LOG.error("Unhandled error", e), false);
+        } else {
+            pool = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return pool != null;
+    }
+
+    /**
+     * @return {@code true} if the records after {@code first} don't fit into one chunk, so {@link #scan} may process
+     * them on several threads.
+     */
+    public boolean isParallel(@NonNull Snapshot snapshot, @NonNull LogRecord first, boolean backward) {
+        if (pool == null || !(snapshot instanceof Log.LogSnapshot))
+            return false;
+
+        return backward ? first.getStart() > chunkSize : snapshot.getSize() - first.getStart() > chunkSize;
+    }
+
+    /**
+     * Processes the records starting from {@code first} in the scan direction.
+     *
+     * @param first the first record to process. The scan starts from the start of this record, so the record must
+     *              be returned by the snapshot.
+     * @param prefilter the substring that the records passed to the processor may contain, see
+     *                  {@link Snapshot#processRecords(long, boolean, SearchPattern, Predicate)}.
+     * @param processorFactory creates a processor for each chunk, the processors of different chunks are called
+     *                         from different threads.
+     * @param consumer receives the items collected by the processors in the scan order.
+     * @return {@code false} if the scan has been stopped by the processor or by the consumer, {@code true} if all
+     * records till the end of the file have been processed.
+     */
+    public <T> boolean scan(@NonNull Snapshot snapshot, @NonNull LogRecord first, boolean backward,
+                            @Nullable SearchPattern prefilter, @NonNull Supplier<ChunkProcessor<T>> processorFactory,
+                            @NonNull Predicate<T> consumer) throws IOException {
+        long start = first.getStart();
+
+        if (!isParallel(snapshot, first, backward))
+            return scanSequentially(snapshot, start, backward, prefilter, processorFactory.get(), record -> true, consumer);
+
+        long firstChunkEnd = backward ? start - chunkSize : start + chunkSize;
+
+        boolean[] chunkEndReached = new boolean[1];
+
+        boolean res = scanSequentially(snapshot, start, backward, prefilter, processorFactory.get(), record -> {
+            if (backward ? record.getStart() < firstChunkEnd : record.getStart() >= firstChunkEnd) {
+                chunkEndReached[0] = true;
+                return false;
+            }
+
+            return true;
+        }, consumer);
+
+        if (!chunkEndReached[0])
+            return res;
+
+        return new ParallelScan<>((Log.LogSnapshot) snapshot, backward, prefilter, processorFactory).run(firstChunkEnd, consumer);
+    }
+
+    /**
+     * @param limit stops the scan before the first record that doesn't match the predicate.
+     */
+    private static <T> boolean scanSequentially(Snapshot snapshot, long start, boolean backward, @Nullable SearchPattern prefilter,
+                                                ChunkProcessor<T> processor, Predicate<LogRecord> limit,
+                                                Predicate<T> consumer) throws IOException {
+        // The items are not removed after passing to the consumer, the processor may check the size of the list
+        List<T> out = new ArrayList<>();
+        int[] passed = new int[1];
+
+        Predicate<LogRecord> predicate = record -> {
+            if (!limit.test(record))
+                return false;
+
+            boolean res = processor.process(record, out);
+
+            while (passed[0] < out.size()) {
+                if (!consumer.test(out.get(passed[0]++)))
+                    return false;
+            }
+
+            return res;
+        };
+
+        if (backward)
+            return snapshot.processRecordsBack(start, false, prefilter, predicate);
+
+        return snapshot.processRecords(start, false, prefilter, predicate);
+    }
+
+    @Override
+    public void destroy() {
+        if (pool != null)
+            pool.shutdownNow();
+    }
+
+    @FunctionalInterface
+    public interface ChunkProcessor<T> {
+        /**
+         * @param record the next record of the chunk.
+         * @param out the items collected in the chunk, the items are passed to the consumer of the scan.
+         * @return {@code false} if the scan must stop after this record.
+         */
+        boolean process(@NonNull LogRecord record, @NonNull List<T> out);
+    }
+
+    private static class Chunk<T> {
+        private final List<T> out = new ArrayList<>();
+        private boolean stopped;
+    }
+
+    private class ParallelScan<T> {
+
+        private final Log.LogSnapshot snapshot;
+        private final boolean backward;
+        private final SearchPattern prefilter;
+        private final Supplier<ChunkProcessor<T>> processorFactory;
+
+        /**
+         * The index of the first chunk where the scan has stopped, the chunks after it are not needed.
+         */
+        private final AtomicInteger stopChunk = new AtomicInteger(Integer.MAX_VALUE);
+
+        /**
+         * The forks released by the finished chunks, the next chunk reuses a fork instead of opening the file again.
+         * {@code null} when the scan is finished.
+         */
+        private Deque<Snapshot> idleForks = new ArrayDeque<>();
+
+        ParallelScan(Log.LogSnapshot snapshot, boolean backward, @Nullable SearchPattern prefilter,
+                     Supplier<ChunkProcessor<T>> processorFactory) {
+            this.snapshot = snapshot;
+            this.backward = backward;
+            this.prefilter = prefilter;
+            this.processorFactory = processorFactory;
+        }
+
+        /**
+         * @param start the position where the first chunk begins, the records before it in the scan direction have
+         *              been processed already.
+         */
+        boolean run(long start, Predicate<T> consumer) throws IOException {
+            Deque<ForkJoinTask<Chunk<T>>> tasks = new ArrayDeque<>();
+
+            long chunkStart = start;
+            int chunkIdx = 0;
+
+            try {
+                while (true) {
+                    while (tasks.size() < parallelism && (backward ? chunkStart > 0 : chunkStart < snapshot.getSize())) {
+                        int idx = chunkIdx++;
+                        long from = chunkStart;
+
+                        tasks.add(pool.submit(() -> processChunk(idx, from)));
+
+                        chunkStart = backward ? chunkStart - chunkSize : chunkStart + chunkSize;
+                    }
+
+                    ForkJoinTask<Chunk<T>> task = tasks.poll();
+                    if (task == null)
+                        return true;
+
+                    Chunk<T> chunk = getResult(task);
+
+                    for (T item : chunk.out) {
+                        if (!consumer.test(item))
+                            return false;
+                    }
+
+                    if (chunk.stopped)
+                        return false;
+                }
+            } finally {
+                stopChunk.set(-1);
+
+                for (ForkJoinTask<Chunk<T>> task : tasks) {
+                    task.cancel(false);
+                }
+
+                closeIdleForks();
+            }
+        }
+
+        /**
+         * Processes the records starting within {@code [from, from + chunkSize)}, or within
+         * {@code [from - chunkSize, from)} if the scan is backward.
+         */
+        private Chunk<T> processChunk(int idx, long from) throws IOException {
+            Chunk<T> res = new Chunk<>();
+
+            if (idx > stopChunk.get())
+                return res;
+
+            ChunkProcessor<T> processor = processorFactory.get();
+
+            long to = backward ? from - chunkSize : from + chunkSize;
+
+            Predicate<LogRecord> predicate = record -> {
+                if (idx > stopChunk.get())
+                    return false;
+
+                long recordStart = record.getStart();
+
+                // The record containing the chunk boundary belongs to the previous chunk
+                if (backward ? recordStart >= from : recordStart < from)
+                    return true;
+
+                if (backward ? recordStart < to : recordStart >= to)
+                    return false;
+
+                if (!processor.process(record, res.out)) {
+                    res.stopped = true;
+                    stopChunk.accumulateAndGet(idx, Math::min);
+                    return false;
+                }
+
+                return true;
+            };
+
+            Snapshot fork = acquireFork();
+
+            try {
+                if (backward) {
+                    fork.processRecordsBack(from - 1, false, prefilter, predicate);
+                } else {
+                    fork.processRecords(from, false, prefilter, predicate);
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                Utils.closeQuietly(fork);
+                throw e;
+            }
+
+            releaseFork(fork);
+
+            return res;
+        }
+
+        private synchronized Snapshot acquireFork() {
+            Snapshot res = idleForks == null ? null : idleForks.poll();
+            return res != null ? res : snapshot.fork();
+        }
+
+        private void releaseFork(Snapshot fork) {
+            synchronized (this) {
+                if (idleForks != null) {
+                    idleForks.add(fork);
+                    return;
+                }
+            }
+
+            Utils.closeQuietly(fork);
+        }
+
+        private void closeIdleForks() {
+            Deque<Snapshot> forks;
+
+            synchronized (this) {
+                forks = idleForks;
+                idleForks = null;
+            }
+
+            for (Snapshot fork : forks) {
+                Utils.closeQuietly(fork);
+            }
+        }
+
+        private Chunk<T> getResult(ForkJoinTask<Chunk<T>> task) throws IOException {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                throw new RuntimeInterruptedException(e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof IOException)
+                    throw (IOException) cause;
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException) cause;
+                if (cause instanceof Error)
+                    throw (Error) cause;
+
+                throw new IOException(cause);
+            }
+        }
+    }
+}
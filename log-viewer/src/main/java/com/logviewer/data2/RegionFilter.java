@@ -0,0 +1,70 @@
+package com.logviewer.data2;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * Tells which parts of a log file may contain the records matching a filter. The snapshot skips the records outside
+ * these parts without parsing them, like the records not containing the prefilter pattern, see
+ * {@link Snapshot#setRegionFilter(RegionFilter)}.
+ *
+ * The positions are the offsets in the file. A filter may return a position inside a record, the record containing
+ * the position is processed.
+ */
+public interface RegionFilter {
+
+    /**
+     * @return the first position within {@code [position, limit)} that may belong to a matching record, or -1 if there
+     * is no such position.
+     */
+    long nextCandidate(long position, long limit);
+
+    /**
+     * @return the last position within {@code [limit, position)} that may belong to a matching record, or -1 if there
+     * is no such position.
+     */
+    long prevCandidate(long position, long limit);
+
+    /**
+     * @return the filter skipping the records rejected by any of the filters, {@code null} if both filters are
+     * {@code null}.
+     */
+    @Nullable
+    static RegionFilter and(@Nullable RegionFilter a, @Nullable RegionFilter b) {
+        if (a == null)
+            return b;
+        if (b == null)
+            return a;
+
+        return new RegionFilter() {
+            @Override
+            public long nextCandidate(long position, long limit) {
+                while (true) {
+                    long candidate = a.nextCandidate(position, limit);
+                    if (candidate < 0)
+                        return -1;
+
+                    long res = b.nextCandidate(candidate, limit);
+                    if (res < 0 || res == candidate)
+                        return res;
+
+                    position = res;
+                }
+            }
+
+            @Override
+            public long prevCandidate(long position, long limit) {
+                while (true) {
+                    long candidate = a.prevCandidate(position, limit);
+                    if (candidate < 0)
+                        return -1;
+
+                    long res = b.prevCandidate(candidate + 1, limit);
+                    if (res < 0 || res == candidate)
+                        return res;
+
+                    position = res + 1;
+                }
+            }
+        };
+    }
+}
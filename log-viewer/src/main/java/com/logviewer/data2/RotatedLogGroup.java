@@ -0,0 +1,535 @@
+package com.logviewer.data2;
+
+import com.logviewer.filters.RecordPredicate;
+import com.logviewer.utils.Destroyer;
+import com.logviewer.utils.Utils;
+import com.logviewer.web.session.LocalFileRecordLoader;
+import com.logviewer.web.session.LocalFileRecordSearcher;
+import com.logviewer.web.session.LogDataListener;
+import com.logviewer.web.session.LogProcess;
+import com.logviewer.web.session.ReadCursorCache;
+import com.logviewer.web.session.SearchResult;
+import com.logviewer.web.session.tasks.SearchPattern;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The files of a rotated log ({@code app.log.2}, {@code app.log.1}, {@code app.log}) shown as a single log. The files
+ * are concatenated in the rotation order, the oldest file first, the position of a record is the offset in the
+ * concatenation. So the records are loaded by one cursor moving across the file boundaries instead of merging the
+ * files by timestamp, and the search by time seeks in one file only using the index of that file.
+ *
+ * The active file is the last segment, it can grow without changing the positions of the records.
+ */
+public class RotatedLogGroup implements LogView {
+
+    public static final String ENABLED_PROPERTY = "log-viewer.rotation-groups.enabled";
+
+    /**
+     * {@code app.log.1}, {@code app.log.2020-01-31}.
+     */
+    private static final Pattern ROTATED_FILE = Pattern.compile("(.+)\\.(\\d+|\\d{4}([-.])\\d\\d\\3\\d\\d)");
+
+    private final String id;
+
+    /**
+     * The files in the rotation order, the oldest file first.
+     */
+    private final List<Log> segments;
+
+    private final ExecutorService executor;
+
+    /**
+     * The timestamp of the first record of the segment by the segment state, see {@link #stateKey(Snapshot)}.
+     */
+    private final Map<String, Long> firstRecordTimes = new ConcurrentHashMap<>();
+
+    public RotatedLogGroup(@NonNull List<Log> segments, @NonNull ExecutorService executor) {
+        if (segments.size() < 2)
+            throw new IllegalArgumentException("Rotation group must contain at least two files");
+
+        this.segments = List.copyOf(segments);
+        this.executor = executor;
+
+        id = Log.LOG_ID_GENERATOR.apply(segments.stream().map(s -> s.getFile().toString()).collect(Collectors.joining("|")));
+    }
+
+    /**
+     * Finds the sets of rotated files among the paths. The files of a set are located in the same directory, their
+     * names are the name of the active file with a numeric or a date suffix. The active file must be among the paths,
+     * the files like {@code node.1}, {@code node.2} are not the rotated files of a log in general, they are kept
+     * separate.
+     *
+     * @return the sets containing two files or more, each set is sorted in the rotation order, the oldest file first.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    public static List<List<Path>> findRotationSets(@NonNull Collection<Path> paths) {
+        Map<Path, List<Path>> sets = new LinkedHashMap<>();
+
+        for (Path path : paths) {
+            Path fileName = path.getFileName();
+            if (fileName == null)
+                continue;
+
+            Matcher matcher = ROTATED_FILE.matcher(fileName.toString());
+            Path activeFile = matcher.matches() ? path.resolveSibling(matcher.group(1)) : path;
+
+            sets.computeIfAbsent(activeFile, f -> new ArrayList<>()).add(path);
+        }
+
+        List<List<Path>> res = new ArrayList<>();
+
+        for (Map.Entry<Path, List<Path>> entry : sets.entrySet()) {
+            List<Path> set = entry.getValue();
+            if (set.size() < 2 || !set.contains(entry.getKey()))
+                continue;
+
+            List<Path> sorted = new ArrayList<>(new LinkedHashSet<>(set));
+            if (sorted.size() < 2)
+                continue;
+
+            Map<Path, Comparable<?>> rotationKeys = new HashMap<>();
+            boolean numeric = false;
+            boolean dated = false;
+
+            for (Path path : sorted) {
+                Matcher matcher = ROTATED_FILE.matcher(path.getFileName().toString());
+                if (!matcher.matches())
+                    continue;
+
+                String suffix = matcher.group(2);
+                if (matcher.group(3) == null) {
+                    numeric = true;
+                    rotationKeys.put(path, -Long.parseLong(suffix.length() > 18 ? suffix.substring(0, 18) : suffix));
+                } else {
+                    dated = true;
+                    rotationKeys.put(path, suffix.replace('.', '-'));
+                }
+            }
+
+            if (numeric && dated)
+                continue; // The order of the files is ambiguous
+
+            sorted.sort((a, b) -> {
+                Comparable<Object> keyA = (Comparable<Object>) rotationKeys.get(a);
+                Comparable<Object> keyB = (Comparable<Object>) rotationKeys.get(b);
+
+                if (keyA == null)
+                    return keyB == null ? 0 : 1; // The active file is the newest
+                if (keyB == null)
+                    return -1;
+
+                return keyA.compareTo(keyB);
+            });
+
+            res.add(sorted);
+        }
+
+        return res;
+    }
+
+    public List<Log> getSegments() {
+        return segments;
+    }
+
+    private Log getActiveFile() {
+        return segments.get(segments.size() - 1);
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public LogPath getPath() {
+        return getActiveFile().getPath();
+    }
+
+    @Override
+    public String getHostname() {
+        return Utils.LOCAL_HOST_NAME;
+    }
+
+    @Override
+    public LogFormat getFormat() {
+        return getActiveFile().getFormat();
+    }
+
+    @Override
+    public boolean isConnected() {
+        return true;
+    }
+
+    public Snapshot createSnapshot() {
+        List<Snapshot> snapshots = new ArrayList<>(segments.size());
+
+        try {
+            for (Log segment : segments) {
+                snapshots.add(segment.createSnapshot());
+            }
+        } catch (RuntimeException | Error e) {
+            snapshots.forEach(Snapshot::close);
+            throw e;
+        }
+
+        return new GroupSnapshot(snapshots);
+    }
+
+    @Override
+    public LogProcess loadRecords(RecordPredicate filter, int recordCount, @Nullable Position start, boolean backward,
+                                  @Nullable String hash, long sizeLimit, @NonNull LogDataListener loadListener) {
+        return loadRecords(filter, recordCount, start, backward, hash, sizeLimit, null, loadListener);
+    }
+
+    @Override
+    public LogProcess loadRecords(RecordPredicate filter, int recordCount, @Nullable Position start, boolean backward,
+                                  @Nullable String hash, long sizeLimit, @Nullable ReadCursorCache cursors,
+                                  @NonNull LogDataListener loadListener) {
+        Supplier<Snapshot> snapshotFactory = cursors == null ? this::createSnapshot : () -> cursors.take(id, this::createSnapshot);
+
+        return new LocalFileRecordLoader(snapshotFactory, cursors, executor, ParallelLogScanner.SEQUENTIAL,
+                loadListener, start, filter, backward, recordCount, sizeLimit, hash);
+    }
+
+    @Override
+    public LogProcess createRecordSearcher(@NonNull Position start, boolean backward, RecordPredicate recordPredicate,
+                                           @Nullable String hash, int recordCount, @NonNull SearchPattern searchPattern,
+                                           @NonNull Consumer<SearchResult> listener) {
+        return new LocalFileRecordSearcher(this::createSnapshot, executor, ParallelLogScanner.SEQUENTIAL, start,
+                backward, recordPredicate, hash, recordCount, searchPattern, listener);
+    }
+
+    /**
+     * The listeners receive the total size of the files and the latest modification time.
+     */
+    @Override
+    public Destroyer addChangeListener(Consumer<FileAttributes> changeListener) {
+        List<Destroyer> destroyers = new ArrayList<>(segments.size());
+
+        for (Log segment : segments) {
+            destroyers.add(segment.addChangeListener(attrs -> changeListener.accept(getAttributes())));
+        }
+
+        return () -> destroyers.forEach(Destroyer::close);
+    }
+
+    private FileAttributes getAttributes() {
+        long size = 0;
+        long modifiedTime = 0;
+
+        for (Log segment : segments) {
+            try {
+                FileAttributes attrs = FileAttributes.fromPath(segment.getFile());
+                if (attrs != null) {
+                    size += attrs.getSize();
+                    modifiedTime = Math.max(modifiedTime, attrs.getModifiedTime());
+                }
+            } catch (IOException ignored) {
+
+            }
+        }
+
+        return new FileAttributes(size, modifiedTime);
+    }
+
+    @Override
+    public CompletableFuture<Throwable> tryRead() {
+        try (Snapshot snapshot = createSnapshot()) {
+            return CompletableFuture.completedFuture(snapshot.getError());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return segments.toString();
+    }
+
+    private static String stateKey(Snapshot snapshot) {
+        return snapshot.getLog().getId() + ':' + snapshot.getHash() + ':' + snapshot.getLastModification();
+    }
+
+    private class GroupSnapshot implements Snapshot {
+
+        private final List<Snapshot> snapshots;
+
+        /**
+         * The positions of the segments in the concatenation.
+         */
+        private final long[] offsets;
+
+        private final long size;
+
+        GroupSnapshot(List<Snapshot> snapshots) {
+            this.snapshots = snapshots;
+
+            offsets = new long[snapshots.size()];
+
+            long size = 0;
+            for (int i = 0; i < snapshots.size(); i++) {
+                offsets[i] = size;
+
+                if (snapshots.get(i).getError() == null)
+                    size += snapshots.get(i).getSize();
+            }
+
+            this.size = size;
+        }
+
+        private long getSegmentSize(int segmentIdx) {
+            return segmentIdx == offsets.length - 1 ? size - offsets[segmentIdx] : offsets[segmentIdx + 1] - offsets[segmentIdx];
+        }
+
+        /**
+         * @return the segment containing the byte at the position, the last non-empty segment for the end of the
+         * concatenation.
+         */
+        private int segmentAt(long position) {
+            int res = 0;
+
+            for (int i = 0; i < offsets.length; i++) {
+                if (getSegmentSize(i) > 0 && offsets[i] <= position)
+                    res = i;
+            }
+
+            return res;
+        }
+
+        /**
+         * @return the last segment whose first timestamp is not greater than the time, or {@code -1} if there is no
+         * such segment.
+         */
+        private int segmentByTime(long time) throws IOException {
+            int res = -1;
+
+            for (int i = 0; i < snapshots.size(); i++) {
+                Long firstTime = getFirstRecordTime(i);
+                if (firstTime != null && firstTime <= time)
+                    res = i;
+            }
+
+            return res;
+        }
+
+        @Nullable
+        private Long getFirstRecordTime(int segmentIdx) throws IOException {
+            Snapshot snapshot = snapshots.get(segmentIdx);
+            if (getSegmentSize(segmentIdx) == 0)
+                return null;
+
+            String key = stateKey(snapshot);
+
+            Long res = firstRecordTimes.get(key);
+            if (res == null) {
+                long[] time = {0};
+
+                snapshot.processRecords(0, false, record -> {
+                    if (!record.hasTime())
+                        return true;
+
+                    time[0] = record.getTime();
+                    return false;
+                });
+
+                res = time[0];
+                firstRecordTimes.put(key, res);
+            }
+
+            return res == 0 ? null : res;
+        }
+
+        private Predicate<LogRecord> toGroupRecords(int segmentIdx, Predicate<LogRecord> consumer) {
+            long offset = offsets[segmentIdx];
+
+            return record -> consumer.test(record.shift(offset).setLogId(id));
+        }
+
+        @Override
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public long getLastModification() {
+            return snapshots.stream().mapToLong(Snapshot::getLastModification).max().orElse(0);
+        }
+
+        @Override
+        public boolean processRecords(long position, boolean fromNextLine, Predicate<LogRecord> consumer) throws IOException {
+            return processRecords(position, fromNextLine, null, consumer);
+        }
+
+        @Override
+        public boolean processRecords(long position, boolean fromNextLine, @Nullable SearchPattern prefilter,
+                                      Predicate<LogRecord> consumer) throws IOException {
+            int segmentIdx = segmentAt(position);
+
+            if (!segmentProcessRecords(segmentIdx, position - offsets[segmentIdx], fromNextLine, prefilter, consumer))
+                return false;
+
+            return processNextSegments(segmentIdx, prefilter, consumer);
+        }
+
+        private boolean processNextSegments(int segmentIdx, @Nullable SearchPattern prefilter, Predicate<LogRecord> consumer) throws IOException {
+            for (int i = segmentIdx + 1; i < snapshots.size(); i++) {
+                if (!segmentProcessRecords(i, 0, false, prefilter, consumer))
+                    return false;
+            }
+
+            return true;
+        }
+
+        private boolean segmentProcessRecords(int segmentIdx, long position, boolean fromNextLine,
+                                              @Nullable SearchPattern prefilter, Predicate<LogRecord> consumer) throws IOException {
+            if (getSegmentSize(segmentIdx) == 0)
+                return true;
+
+            return snapshots.get(segmentIdx).processRecords(position, fromNextLine, prefilter, toGroupRecords(segmentIdx, consumer));
+        }
+
+        @Override
+        public boolean processRecordsBack(long position, boolean fromNextLine, Predicate<LogRecord> consumer) throws IOException {
+            return processRecordsBack(position, fromNextLine, null, consumer);
+        }
+
+        @Override
+        public boolean processRecordsBack(long position, boolean fromNextLine, @Nullable SearchPattern prefilter,
+                                          Predicate<LogRecord> consumer) throws IOException {
+            int segmentIdx = segmentAt(position);
+
+            if (!segmentProcessRecordsBack(segmentIdx, position - offsets[segmentIdx], fromNextLine, prefilter, consumer))
+                return false;
+
+            return processPrevSegments(segmentIdx, prefilter, consumer);
+        }
+
+        private boolean processPrevSegments(int segmentIdx, @Nullable SearchPattern prefilter, Predicate<LogRecord> consumer) throws IOException {
+            for (int i = segmentIdx - 1; i >= 0; i--) {
+                if (!segmentProcessRecordsBack(i, getSegmentSize(i), false, prefilter, consumer))
+                    return false;
+            }
+
+            return true;
+        }
+
+        private boolean segmentProcessRecordsBack(int segmentIdx, long position, boolean fromNextLine,
+                                                  @Nullable SearchPattern prefilter, Predicate<LogRecord> consumer) throws IOException {
+            if (getSegmentSize(segmentIdx) == 0)
+                return true;
+
+            return snapshots.get(segmentIdx).processRecordsBack(position, fromNextLine, prefilter, toGroupRecords(segmentIdx, consumer));
+        }
+
+        @Override
+        public boolean processFromTime(long time, Predicate<LogRecord> consumer) throws IOException {
+            return processFromTime(time, null, consumer);
+        }
+
+        @Override
+        public boolean processFromTime(long time, @Nullable SearchPattern prefilter, Predicate<LogRecord> consumer) throws IOException {
+            int segmentIdx = segmentByTime(time);
+            if (segmentIdx < 0)
+                return processRecords(0, false, prefilter, consumer);
+
+            if (getSegmentSize(segmentIdx) > 0) {
+                Snapshot snapshot = snapshots.get(segmentIdx);
+                if (!snapshot.processFromTime(time, prefilter, toGroupRecords(segmentIdx, consumer)))
+                    return false;
+            }
+
+            return processNextSegments(segmentIdx, prefilter, consumer);
+        }
+
+        @Override
+        public boolean processFromTimeBack(long time, Predicate<LogRecord> consumer) throws IOException {
+            return processFromTimeBack(time, null, consumer);
+        }
+
+        @Override
+        public boolean processFromTimeBack(long time, @Nullable SearchPattern prefilter, Predicate<LogRecord> consumer) throws IOException {
+            int segmentIdx = segmentByTime(time);
+            if (segmentIdx < 0)
+                return true; // All records are after the time
+
+            if (getSegmentSize(segmentIdx) > 0) {
+                Snapshot snapshot = snapshots.get(segmentIdx);
+                if (!snapshot.processFromTimeBack(time, prefilter, toGroupRecords(segmentIdx, consumer)))
+                    return false;
+            }
+
+            return processPrevSegments(segmentIdx, prefilter, consumer);
+        }
+
+        @Nullable
+        @Override
+        public Exception getError() {
+            for (Snapshot snapshot : snapshots) {
+                if (snapshot.getError() != null)
+                    return snapshot.getError();
+            }
+
+            return null;
+        }
+
+        /**
+         * @return the active file of the group, the records of the snapshot have the id of the group, see
+         * {@link #getView()}.
+         */
+        @Override
+        public Log getLog() {
+            return snapshots.get(snapshots.size() - 1).getLog();
+        }
+
+        @Override
+        public LogView getView() {
+            return RotatedLogGroup.this;
+        }
+
+        /**
+         * The hash of the group is the list of the hashes of the segments.
+         */
+        @Override
+        public boolean isValidHash(@NonNull String hash) {
+            String[] hashes = hash.split(",");
+            if (hashes.length != snapshots.size())
+                return false;
+
+            for (int i = 0; i < hashes.length; i++) {
+                Snapshot snapshot = snapshots.get(i);
+                if (snapshot.getError() != null || !snapshot.isValidHash(hashes[i]))
+                    return false;
+            }
+
+            return true;
+        }
+
+        @Override
+        public String getHash() {
+            return snapshots.stream().map(Snapshot::getHash).map(String::valueOf).collect(Collectors.joining(","));
+        }
+
+        @Override
+        public void setCancellationToken(@Nullable CancellationToken cancellation) {
+            snapshots.forEach(s -> s.setCancellationToken(cancellation));
+        }
+
+        @Override
+        public void close() {
+            snapshots.forEach(Snapshot::close);
+        }
+    }
+}
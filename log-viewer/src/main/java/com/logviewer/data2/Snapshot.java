@@ -1,5 +1,6 @@
 package com.logviewer.data2;
 
+import com.logviewer.web.session.tasks.SearchPattern;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
@@ -23,13 +24,73 @@ public interface Snapshot extends AutoCloseable {
 
     boolean processFromTime(long time, Predicate<LogRecord> consumer) throws IOException;
 
+    /**
+     * The same as {@link #processRecords(long, boolean, Predicate)}, but the records that cannot match
+     * {@code prefilter} may be skipped without parsing. Some of the records passed to the consumer may not match
+     * the pattern, the consumer must check the pattern itself.
+     */
+    default boolean processRecords(long position, boolean fromNextLine, @Nullable SearchPattern prefilter,
+                                   Predicate<LogRecord> consumer) throws IOException {
+        return processRecords(position, fromNextLine, consumer);
+    }
+
+    /**
+     * The same as {@link #processRecordsBack(long, boolean, Predicate)}, but the records that cannot match
+     * {@code prefilter} may be skipped, see {@link #processRecords(long, boolean, SearchPattern, Predicate)}.
+     */
+    default boolean processRecordsBack(long position, boolean fromNextLine, @Nullable SearchPattern prefilter,
+                                       Predicate<LogRecord> consumer) throws IOException {
+        return processRecordsBack(position, fromNextLine, consumer);
+    }
+
+    /**
+     * The same as {@link #processFromTimeBack(long, Predicate)}, but the records that cannot match
+     * {@code prefilter} may be skipped, see {@link #processRecords(long, boolean, SearchPattern, Predicate)}.
+     */
+    default boolean processFromTimeBack(long time, @Nullable SearchPattern prefilter, Predicate<LogRecord> consumer) throws IOException {
+        return processFromTimeBack(time, consumer);
+    }
+
+    /**
+     * The same as {@link #processFromTime(long, Predicate)}, but the records that cannot match
+     * {@code prefilter} may be skipped, see {@link #processRecords(long, boolean, SearchPattern, Predicate)}.
+     */
+    default boolean processFromTime(long time, @Nullable SearchPattern prefilter, Predicate<LogRecord> consumer) throws IOException {
+        return processFromTime(time, consumer);
+    }
+
     @Nullable
     Exception getError();
 
     Log getLog();
 
+    /**
+     * @return the view the records of the snapshot belong to, the records have the id of this view. It's the log
+     * itself unless the file is a part of a virtual log.
+     */
+    default LogView getView() {
+        return getLog();
+    }
+
     boolean isValidHash(@NonNull String hash);
 
+    /**
+     * Makes the processing of the records stop with {@link java.util.concurrent.CancellationException} when
+     * the token is cancelled. The token is used until it's replaced, {@code null} removes it.
+     */
+    default void setCancellationToken(@Nullable CancellationToken cancellation) {
+
+    }
+
+    /**
+     * Makes the processing of the records skip the parts of the file that don't contain the matching records, see
+     * {@link RegionFilter}. The first record is always passed to the consumer, some of the records passed to the
+     * consumer may not match, the consumer must check the records itself. {@code null} removes the filter.
+     */
+    default void setRegionFilter(@Nullable RegionFilter regionFilter) {
+
+    }
+
     String getHash();
 
     @Override
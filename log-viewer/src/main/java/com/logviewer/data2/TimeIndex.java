@@ -0,0 +1,174 @@
+package com.logviewer.data2;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.TreeMap;
+
+/**
+ * Sparse timestamp->offset index of a log file. Contains the positions of the records found by the previous searches
+ * by time and the records read by the scans at {@link LogIndex#RECORDING_INTERVAL}, the entries are used to narrow
+ * the search range before bisection.
+ *
+ * @see LogIndex
+ * @see TimeIndexStorage
+ */
+final class TimeIndex {
+
+    static final int MAX_ENTRIES = 32 * 1024;
+
+    private final String logId;
+    private final String logFile;
+    private final String formatFingerprint;
+
+    private String hash;
+    private long size;
+
+    private final TreeMap<Long, Entry> entries = new TreeMap<>();
+
+    private boolean modified;
+
+    TimeIndex(@NonNull String logId, @NonNull String logFile, @NonNull String formatFingerprint, @NonNull String hash,
+              long size) {
+        this.logId = logId;
+        this.logFile = logFile;
+        this.formatFingerprint = formatFingerprint;
+        this.hash = hash;
+        this.size = size;
+    }
+
+    String getLogId() {
+        return logId;
+    }
+
+    /**
+     * The path of the log file, the indexes of the deleted files are removed by {@link TimeIndexStorage#cleanUp()}.
+     */
+    String getLogFile() {
+        return logFile;
+    }
+
+    String getFormatFingerprint() {
+        return formatFingerprint;
+    }
+
+    /**
+     * The hash of the log content the index was built for, see {@link Snapshot#getHash()}.
+     */
+    String getHash() {
+        return hash;
+    }
+
+    /**
+     * The size of the log the index was built for. All entries are located before this position.
+     */
+    long getSize() {
+        return size;
+    }
+
+    boolean isModified() {
+        return modified;
+    }
+
+    void setModified(boolean modified) {
+        this.modified = modified;
+    }
+
+    /**
+     * Called when the index is used for a bigger file with the same beginning.
+     */
+    void update(@NonNull String hash, long size) {
+        assert size >= this.size;
+
+        if (size != this.size || !hash.equals(this.hash)) {
+            this.hash = hash;
+            this.size = size;
+            modified = true;
+        }
+    }
+
+    @NonNull
+    TimeIndex copy() {
+        TimeIndex res = new TimeIndex(logId, logFile, formatFingerprint, hash, size);
+        res.entries.putAll(entries);
+        res.modified = modified;
+        return res;
+    }
+
+    void add(@NonNull LogRecord record) {
+        assert record.hasTime();
+
+        add(new Entry(record.getStart(), record.getEnd(), record.getTime()));
+    }
+
+    void add(@NonNull Entry entry) {
+        assert entry.getEnd() <= size;
+
+        if (entries.size() >= MAX_ENTRIES || entries.containsKey(entry.getStart()))
+            return;
+
+        entries.put(entry.getStart(), entry);
+        modified = true;
+    }
+
+    /**
+     * @return the entries having {@code from < start < to}, sorted by the start position.
+     */
+    Collection<Entry> getEntries(long from, long to) {
+        if (from >= to)
+            return Collections.emptyList();
+
+        return entries.subMap(from, false, to, false).values();
+    }
+
+    Collection<Entry> getEntries() {
+        return entries.values();
+    }
+
+    int getEntryCount() {
+        return entries.size();
+    }
+
+    static final class Entry {
+        private final long start;
+        private final long end;
+        private final long time;
+
+        @Nullable
+        private final LogRecord record;
+
+        Entry(long start, long end, long time) {
+            this(start, end, time, null);
+        }
+
+        Entry(@NonNull LogRecord record) {
+            this(record.getStart(), record.getEnd(), record.getTime(), record);
+        }
+
+        private Entry(long start, long end, long time, @Nullable LogRecord record) {
+            this.start = start;
+            this.end = end;
+            this.time = time;
+            this.record = record;
+        }
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        long getTime() {
+            return time;
+        }
+
+        @Override
+        public String toString() {
+            return record != null ? record.getMessage() : "[record at " + start + ']';
+        }
+    }
+}
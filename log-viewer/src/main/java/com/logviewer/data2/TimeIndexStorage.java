@@ -0,0 +1,294 @@
+package com.logviewer.data2;
+
+import com.logviewer.data2.config.ConfigDirHolder;
+import com.logviewer.files.ArchiveMember;
+import com.logviewer.utils.LvGsonUtils;
+import com.logviewer.utils.LvTimer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+import org.springframework.util.DigestUtils;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Stores {@link TimeIndex} of the logs in the config directory, so the search by time doesn't need to bisect the file
+ * again after restart. The index file is bound to the log id and the log format, the index is validated by
+ * the hash of the log beginning ({@link Snapshot#isValidHash(String)}) when it is loaded.
+ *
+ * The indexes of the deleted logs are removed by {@link #cleanUp()}, then the least recently used indexes are removed
+ * until the total size of the index files fits {@link #MAX_SIZE_PROPERTY}.
+ */
+public class TimeIndexStorage {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimeIndexStorage.class);
+
+    public static final String ENABLED_PROPERTY = "log-viewer.time-index.enabled";
+    public static final String MAX_SIZE_PROPERTY = "log-viewer.time-index.max-size";
+
+    private static final int MAGIC = 0x4c565449; // "LVTI"
+    private static final int VERSION = 2;
+
+    /**
+     * The delay between a change of the index and the save, the changes made by the subsequent searches are saved
+     * together.
+     */
+    private static final long SAVE_DELAY = 3000;
+
+    /**
+     * The minimal interval between the cleanups, the directory is checked by the first save after the start.
+     */
+    private static final long CLEANUP_INTERVAL = 60 * 60 * 1000;
+
+    private final ConfigDirHolder configDir;
+
+    @Nullable
+    private final LvTimer timer;
+
+    private final long maxSize;
+
+    private long lastCleanUp;
+
+    public TimeIndexStorage(@NonNull ConfigDirHolder configDir) {
+        this(configDir, null);
+    }
+
+    public TimeIndexStorage(@NonNull ConfigDirHolder configDir, @Nullable LvTimer timer) {
+        this(configDir, timer, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param timer the timer saving the modified indexes, if {@code null}, the index is saved only by
+     *              {@link LogIndex#saveTimeIndex()}.
+     * @param maxSize the limit of the total size of the index files.
+     */
+    public TimeIndexStorage(@NonNull ConfigDirHolder configDir, @Nullable LvTimer timer, long maxSize) {
+        this.configDir = configDir;
+        this.timer = timer;
+        this.maxSize = maxSize;
+    }
+
+    private Path getIndexDir() {
+        return configDir.getConfigDir().resolve("time-index");
+    }
+
+    @NonNull
+    public static String formatFingerprint(@NonNull LogFormat format) {
+        byte[] json = (format.getClass().getName() + LvGsonUtils.GSON.toJson(format)).getBytes(StandardCharsets.UTF_8);
+        return DigestUtils.md5DigestAsHex(json).substring(0, 16);
+    }
+
+    private Path indexFile(@NonNull String logId, @NonNull String formatFingerprint) {
+        return getIndexDir().resolve(logId + '-' + formatFingerprint + ".idx");
+    }
+
+    /**
+     * @return the stored index or {@code null} if there is no index for the log or the log was rewritten since
+     * the index has been saved.
+     */
+    @Nullable
+    TimeIndex load(@NonNull String logId, @NonNull String formatFingerprint, @NonNull Snapshot snapshot) {
+        Path file = indexFile(logId, formatFingerprint);
+        if (!Files.isRegularFile(file))
+            return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+
+            if (!formatFingerprint.equals(in.readUTF()))
+                return null;
+
+            String logFile = in.readUTF();
+            String hash = in.readUTF();
+            long size = in.readLong();
+
+            if (size > snapshot.getSize() || !snapshot.isValidHash(hash))
+                return null;
+
+            TimeIndex res = new TimeIndex(logId, logFile, formatFingerprint, hash, size);
+
+            int count = in.readInt();
+            if (count < 0 || count > TimeIndex.MAX_ENTRIES)
+                return null;
+
+            for (int i = 0; i < count; i++) {
+                long start = in.readLong();
+                long end = in.readLong();
+                long time = in.readLong();
+
+                if (start < 0 || end <= start || end > size)
+                    return null;
+
+                res.add(new TimeIndex.Entry(start, end, time));
+            }
+
+            res.setModified(false);
+
+            // The modification time of the index file is the time of the last use, see cleanUp()
+            touch(file);
+
+            return res;
+        } catch (IOException e) {
+            LOG.warn("Failed to load time index: {}", file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Schedules saving the time index of {@code logIndex}. Called under the lock of the log index, the file is
+     * written later by the timer thread.
+     */
+    void scheduleSave(@NonNull LogIndex logIndex) {
+        if (timer != null)
+            timer.scheduleTask(logIndex, logIndex::saveTimeIndex, SAVE_DELAY);
+    }
+
+    void save(@NonNull TimeIndex index) {
+        Path file = indexFile(index.getLogId(), index.getFormatFingerprint());
+
+        try {
+            Files.createDirectories(file.getParent());
+
+            Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeUTF(index.getFormatFingerprint());
+                out.writeUTF(index.getLogFile());
+                out.writeUTF(index.getHash());
+                out.writeLong(index.getSize());
+
+                out.writeInt(index.getEntryCount());
+
+                for (TimeIndex.Entry entry : index.getEntries()) {
+                    out.writeLong(entry.getStart());
+                    out.writeLong(entry.getEnd());
+                    out.writeLong(entry.getTime());
+                }
+            }
+
+            try {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            index.setModified(false);
+        } catch (IOException e) {
+            LOG.warn("Failed to save time index: {}", file, e);
+        }
+
+        if (System.currentTimeMillis() - lastCleanUp >= CLEANUP_INTERVAL)
+            cleanUp();
+    }
+
+    /**
+     * Deletes the indexes of the logs that don't exist anymore and the indexes of the previous versions, then deletes
+     * the least recently used indexes until the total size of the index files fits {@link #maxSize}.
+     */
+    synchronized void cleanUp() {
+        lastCleanUp = System.currentTimeMillis();
+
+        Path dir = getIndexDir();
+
+        List<StoredIndex> stored = new ArrayList<>();
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.idx")) {
+            for (Path file : files) {
+                String logFile;
+
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                        logFile = null;
+                    } else {
+                        in.readUTF(); // format fingerprint
+                        logFile = in.readUTF();
+                    }
+                } catch (IOException e) {
+                    logFile = null;
+                }
+
+                if (logFile == null || !logExists(logFile)) {
+                    delete(file);
+                    continue;
+                }
+
+                stored.add(new StoredIndex(file, Files.size(file), Files.getLastModifiedTime(file).toMillis()));
+            }
+        } catch (NoSuchFileException ignored) {
+            return;
+        } catch (IOException e) {
+            LOG.warn("Failed to clean up time indexes: {}", dir, e);
+            return;
+        }
+
+        long totalSize = 0;
+        for (StoredIndex index : stored) {
+            totalSize += index.size;
+        }
+
+        stored.sort(Comparator.comparingLong(index -> index.lastUsed));
+
+        for (int i = 0; totalSize > maxSize && i < stored.size(); i++) {
+            StoredIndex index = stored.get(i);
+
+            if (delete(index.file))
+                totalSize -= index.size;
+        }
+    }
+
+    private static boolean logExists(String logFile) {
+        Path path;
+
+        try {
+            path = Paths.get(logFile);
+        } catch (InvalidPathException e) {
+            return false;
+        }
+
+        if (Files.exists(path))
+            return true;
+
+        ArchiveMember member = ArchiveMember.fromPath(path);
+        return member != null && Files.exists(member.getArchive());
+    }
+
+    private static boolean delete(Path file) {
+        try {
+            Files.deleteIfExists(file);
+            return true;
+        } catch (IOException e) {
+            LOG.debug("Failed to delete time index: {}", file, e);
+            return false;
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // The order of the eviction is not critical
+        }
+    }
+
+    private static class StoredIndex {
+        private final Path file;
+        private final long size;
+        private final long lastUsed;
+
+        StoredIndex(Path file, long size, long lastUsed) {
+            this.file = file;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
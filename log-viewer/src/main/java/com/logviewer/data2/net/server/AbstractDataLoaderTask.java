@@ -1,5 +1,6 @@
 package com.logviewer.data2.net.server;
 
+import com.logviewer.data2.LogTaskScheduler;
 import com.logviewer.data2.net.server.api.RemoteTask;
 import com.logviewer.data2.net.server.api.RemoteTaskContext;
 import com.logviewer.web.session.LogProcess;
@@ -13,6 +14,13 @@ public abstract class AbstractDataLoaderTask<T> implements RemoteTask<T> {
 
     protected abstract LogProcess createLogProcessTask(RemoteTaskContext<T> ctx);
 
+    /**
+     * @return the class of the task in the scheduler of the server, see {@link LogTaskScheduler}.
+     */
+    protected LogTaskScheduler.Priority getPriority() {
+        return LogTaskScheduler.Priority.INTERACTIVE;
+    }
+
     @Override
     public final void start(@NonNull RemoteTaskContext<T> ctx) {
         assert logProcess == null;
@@ -21,7 +29,8 @@ public abstract class AbstractDataLoaderTask<T> implements RemoteTask<T> {
         if (initialTimeLimit != null)
             logProcess.setTimeLimit(initialTimeLimit);
 
-        logProcess.start();
+        // The remote tasks are shared fairly with the local sessions, each task is an owner
+        LogTaskScheduler.runAs(getPriority(), this, logProcess::start);
     }
 
     public void setTimeLimit(long timeLimit) {
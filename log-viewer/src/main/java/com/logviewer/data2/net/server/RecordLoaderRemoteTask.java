@@ -2,6 +2,7 @@ package com.logviewer.data2.net.server;
 
 import com.logviewer.data2.Log;
 import com.logviewer.data2.LogFormat;
+import com.logviewer.data2.LogTaskScheduler;
 import com.logviewer.data2.Position;
 import com.logviewer.data2.RecordList;
 import com.logviewer.data2.net.server.api.RemoteTaskContext;
@@ -37,6 +38,12 @@ public class RecordLoaderRemoteTask extends AbstractDataLoaderTask<Object> {
         this.sizeLimit = sizeLimit;
     }
 
+    @Override
+    protected LogTaskScheduler.Priority getPriority() {
+        // Whole log is loaded when the log is downloaded
+        return recordCountLimit == Integer.MAX_VALUE ? LogTaskScheduler.Priority.BULK : LogTaskScheduler.Priority.INTERACTIVE;
+    }
+
     @Override
     public LogProcess createLogProcessTask(RemoteTaskContext<Object> ctx) {
         Log log = ctx.getLogService().openLog(file, LvGsonUtils.GSON.fromJson(format, LogFormat.class));
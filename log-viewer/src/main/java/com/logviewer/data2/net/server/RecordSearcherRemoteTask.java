@@ -2,6 +2,7 @@ package com.logviewer.data2.net.server;
 
 import com.logviewer.data2.Log;
 import com.logviewer.data2.LogFormat;
+import com.logviewer.data2.LogTaskScheduler;
 import com.logviewer.data2.Position;
 import com.logviewer.data2.net.server.api.RemoteTaskContext;
 import com.logviewer.filters.RecordPredicate;
@@ -34,6 +35,11 @@ public class RecordSearcherRemoteTask extends AbstractDataLoaderTask<SearchResul
         this.searchPattern = searchPattern;
     }
 
+    @Override
+    protected LogTaskScheduler.Priority getPriority() {
+        return LogTaskScheduler.Priority.SEARCH;
+    }
+
     @Override
     protected LogProcess createLogProcessTask(RemoteTaskContext<SearchResult> ctx) {
         Log log = ctx.getLogService().openLog(file, LvGsonUtils.GSON.fromJson(format, LogFormat.class));
@@ -0,0 +1,245 @@
+package com.logviewer.files;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A file inside a zip or tar.gz archive. The path of the member is the path of the archive followed by {@code "!"} and
+ * the name of the member: {@code /var/log/logs.tar.gz!/app/server.log}.
+ */
+public final class ArchiveMember {
+
+    public static final String SEPARATOR = "!";
+
+    private final Path archive;
+
+    private final String name;
+
+    public ArchiveMember(@NonNull Path archive, @NonNull String name) {
+        this.archive = archive;
+        this.name = name;
+    }
+
+    public Path getArchive() {
+        return archive;
+    }
+
+    /**
+     * @return the name of the member inside the archive, the names of the directories are separated by {@code '/'}.
+     */
+    public String getName() {
+        return name;
+    }
+
+    public Path toPath() {
+        return archive.resolveSibling(archive.getFileName() + SEPARATOR).resolve(name);
+    }
+
+    /**
+     * @return {@code true} if the members of the file can be opened, see {@link #list(Path)}.
+     */
+    public static boolean isArchive(@NonNull Path path) {
+        String str = path.toString();
+        return FileTypes.ZIP.getPattern().matcher(str).matches() || FileTypes.TGZ.getPattern().matcher(str).matches();
+    }
+
+    /**
+     * @return the archive member addressed by the path or {@code null} if the path doesn't point into an archive.
+     */
+    @Nullable
+    public static ArchiveMember fromPath(@NonNull Path path) {
+        Path archive = path.getRoot();
+
+        for (int i = 0; i < path.getNameCount() - 1; i++) {
+            String name = path.getName(i).toString();
+
+            if (name.endsWith(SEPARATOR)) {
+                Path candidate = resolve(archive, name.substring(0, name.length() - SEPARATOR.length()));
+
+                if (isArchive(candidate)) {
+                    StringBuilder member = new StringBuilder();
+                    for (int j = i + 1; j < path.getNameCount(); j++) {
+                        if (member.length() > 0)
+                            member.append('/');
+                        member.append(path.getName(j));
+                    }
+
+                    return new ArchiveMember(candidate, member.toString());
+                }
+            }
+
+            archive = resolve(archive, name);
+        }
+
+        return null;
+    }
+
+    private static Path resolve(@Nullable Path parent, String name) {
+        return parent == null ? Path.of(name) : parent.resolve(name);
+    }
+
+    /**
+     * Lists the regular files of the archive. The content of a tar.gz archive is read till the end, a zip archive
+     * is listed using its central directory.
+     */
+    @NonNull
+    public static List<Entry> list(@NonNull Path archive) throws IOException {
+        List<Entry> res = new ArrayList<>();
+
+        if (FileTypes.TGZ.getPattern().matcher(archive.toString()).matches()) {
+            try (TarReader reader = new TarReader(new GZIPInputStream(Files.newInputStream(archive), 64 * 1024))) {
+                TarReader.Header header;
+                while ((header = reader.next()) != null) {
+                    res.add(new Entry(new ArchiveMember(archive, header.getName()), header.getSize(), header.getModificationTime()));
+                }
+            }
+        } else {
+            long archiveTime = Files.getLastModifiedTime(archive).toMillis();
+
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        long time = entry.getTime() < 0 ? archiveTime : entry.getTime();
+                        res.add(new Entry(new ArchiveMember(archive, entry.getName()), entry.getSize(), time));
+                    }
+                }
+            }
+        }
+
+        return res;
+    }
+
+    /**
+     * Reads the content of the archive members in one pass, a tar.gz archive is decompressed once. The stream passed
+     * to the visitor is valid until the visitor returns and must not be closed by the visitor.
+     */
+    public static void readMembers(@NonNull Path archive, @NonNull MemberVisitor visitor) throws IOException {
+        if (FileTypes.TGZ.getPattern().matcher(archive.toString()).matches()) {
+            try (TarReader reader = new TarReader(new GZIPInputStream(Files.newInputStream(archive), 64 * 1024))) {
+                TarReader.Header header;
+                while ((header = reader.next()) != null) {
+                    visitor.visit(new ArchiveMember(archive, header.getName()), reader);
+                }
+            }
+        } else {
+            try (ZipFile zip = new ZipFile(archive.toFile())) {
+                for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                    ZipEntry entry = entries.nextElement();
+                    if (!entry.isDirectory()) {
+                        try (InputStream in = zip.getInputStream(entry)) {
+                            visitor.visit(new ArchiveMember(archive, entry.getName()), in);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens the uncompressed content of the member. The members of a tar.gz archive preceding this one are read and
+     * skipped, the archive is not extracted.
+     */
+    @NonNull
+    public InputStream openStream() throws IOException {
+        if (FileTypes.TGZ.getPattern().matcher(archive.toString()).matches()) {
+            TarReader reader = new TarReader(new GZIPInputStream(Files.newInputStream(archive), 64 * 1024));
+
+            try {
+                TarReader.Header header;
+                while ((header = reader.next()) != null) {
+                    if (header.getName().equals(name))
+                        return reader;
+                }
+            } catch (IOException | RuntimeException e) {
+                reader.close();
+                throw e;
+            }
+
+            reader.close();
+        } else {
+            ZipFile zip = new ZipFile(archive.toFile());
+
+            ZipEntry entry = zip.getEntry(name);
+            if (entry != null && !entry.isDirectory()) {
+                return new FilterInputStream(zip.getInputStream(entry)) {
+                    @Override
+                    public void close() throws IOException {
+                        try {
+                            super.close();
+                        } finally {
+                            zip.close();
+                        }
+                    }
+                };
+            }
+
+            zip.close();
+        }
+
+        throw new NoSuchFileException(toPath().toString(), null, "No such member in the archive");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ArchiveMember)) return false;
+        ArchiveMember that = (ArchiveMember) o;
+        return archive.equals(that.archive) && name.equals(that.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(archive, name);
+    }
+
+    @Override
+    public String toString() {
+        return toPath().toString();
+    }
+
+    public interface MemberVisitor {
+        void visit(@NonNull ArchiveMember member, @NonNull InputStream content) throws IOException;
+    }
+
+    public static class Entry {
+        private final ArchiveMember member;
+        private final long size;
+        private final long modificationTime;
+
+        public Entry(@NonNull ArchiveMember member, long size, long modificationTime) {
+            this.member = member;
+            this.size = size;
+            this.modificationTime = modificationTime;
+        }
+
+        public ArchiveMember getMember() {
+            return member;
+        }
+
+        /**
+         * @return the uncompressed size of the member or -1 if it's unknown.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        public long getModificationTime() {
+            return modificationTime;
+        }
+    }
+}
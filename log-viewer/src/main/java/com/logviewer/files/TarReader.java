@@ -0,0 +1,276 @@
+package com.logviewer.files;
+
+import org.springframework.lang.Nullable;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the entries of a tar stream. The reader is the stream of the data of the current entry. Supports ustar
+ * headers, GNU long names and the "path" and "size" records of pax headers, the entries other than regular files are
+ * skipped.
+ */
+class TarReader extends InputStream {
+
+    private static final int BLOCK_SIZE = 512;
+
+    private final InputStream in;
+
+    private final byte[] header = new byte[BLOCK_SIZE];
+
+    /**
+     * The number of data bytes of the current entry that haven't been read yet.
+     */
+    private long remaining;
+
+    /**
+     * The number of padding bytes after the data of the current entry.
+     */
+    private long padding;
+
+    TarReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Skips the rest of the current entry and reads the header of the next regular file.
+     *
+     * @return the header or {@code null} if there are no more entries.
+     */
+    @Nullable
+    Header next() throws IOException {
+        String longName = null;
+        Long paxSize = null;
+
+        while (true) {
+            skipFully(remaining + padding);
+            remaining = 0;
+            padding = 0;
+
+            if (!readHeader())
+                return null;
+
+            char type = (char) header[156];
+            long size = parseNumber(124, 12);
+
+            if (type == 'L' || type == 'x') {
+                byte[] data = readData(size);
+
+                if (type == 'L') {
+                    longName = parseString(data, 0, data.length);
+                } else {
+                    String paxPath = parsePax(data, "path");
+                    if (paxPath != null)
+                        longName = paxPath;
+
+                    String size0 = parsePax(data, "size");
+                    if (size0 != null)
+                        paxSize = Long.parseLong(size0);
+                }
+
+                continue;
+            }
+
+            if (paxSize != null)
+                size = paxSize;
+
+            remaining = size;
+            padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+
+            if (type != '0' && type != '\0' && type != '7') {
+                longName = null;
+                paxSize = null;
+                continue;
+            }
+
+            String name = longName;
+            if (name == null) {
+                name = parseString(header, 0, 100);
+
+                if (parseString(header, 257, 5).equals("ustar")) {
+                    String prefix = parseString(header, 345, 155);
+                    if (!prefix.isEmpty())
+                        name = prefix + '/' + name;
+                }
+            }
+
+            if (name.startsWith("./"))
+                name = name.substring(2);
+
+            return new Header(name, size, parseNumber(136, 12) * 1000);
+        }
+    }
+
+    private boolean readHeader() throws IOException {
+        int length = 0;
+        while (length < BLOCK_SIZE) {
+            int n = in.read(header, length, BLOCK_SIZE - length);
+            if (n < 0) {
+                if (length == 0)
+                    return false;
+
+                throw new EOFException("Unexpected end of tar archive");
+            }
+
+            length += n;
+        }
+
+        for (byte b : header) {
+            if (b != 0)
+                return true;
+        }
+
+        return false; // The end of archive marker
+    }
+
+    private byte[] readData(long size) throws IOException {
+        if (size > Integer.MAX_VALUE - BLOCK_SIZE)
+            throw new IOException("Invalid tar header");
+
+        byte[] res = in.readNBytes((int) size);
+        if (res.length != size)
+            throw new EOFException("Unexpected end of tar archive");
+
+        skipFully((BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE);
+
+        return res;
+    }
+
+    private void skipFully(long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0)
+                    throw new EOFException("Unexpected end of tar archive");
+
+                skipped = 1;
+            }
+
+            n -= skipped;
+        }
+    }
+
+    private long parseNumber(int offset, int length) throws IOException {
+        if ((header[offset] & 0x80) != 0) { // base-256 encoding
+            long res = header[offset] & 0x7f;
+            for (int i = 1; i < length; i++) {
+                res = (res << 8) | (header[offset + i] & 0xff);
+            }
+
+            return res;
+        }
+
+        String str = parseString(header, offset, length).trim();
+        if (str.isEmpty())
+            return 0;
+
+        try {
+            return Long.parseLong(str, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid tar header", e);
+        }
+    }
+
+    private static String parseString(byte[] data, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && data[end] != 0) {
+            end++;
+        }
+
+        return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Pax records have the format "%d %s=%s\n", the number is the length of the record.
+     */
+    @Nullable
+    private static String parsePax(byte[] data, String key) throws IOException {
+        String res = null;
+
+        int pos = 0;
+        while (pos < data.length) {
+            int space = pos;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+
+            int length;
+            try {
+                length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.US_ASCII));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid pax header", e);
+            }
+
+            if (length <= 0 || pos + length > data.length)
+                throw new IOException("Invalid pax header");
+
+            String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+            if (record.startsWith(key + '='))
+                res = record.substring(key.length() + 1);
+
+            pos += length;
+        }
+
+        return res;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (remaining <= 0)
+            return -1;
+
+        int res = in.read();
+        if (res < 0)
+            throw new EOFException("Unexpected end of tar archive");
+
+        remaining--;
+        return res;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0)
+            return 0;
+
+        if (remaining <= 0)
+            return -1;
+
+        int n = in.read(b, off, (int) Math.min(len, remaining));
+        if (n < 0)
+            throw new EOFException("Unexpected end of tar archive");
+
+        remaining -= n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    static class Header {
+        private final String name;
+        private final long size;
+        private final long modificationTime;
+
+        Header(String name, long size, long modificationTime) {
+            this.name = name;
+            this.size = size;
+            this.modificationTime = modificationTime;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getSize() {
+            return size;
+        }
+
+        long getModificationTime() {
+            return modificationTime;
+        }
+    }
+}
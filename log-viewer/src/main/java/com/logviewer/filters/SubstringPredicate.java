@@ -17,6 +17,10 @@ public class SubstringPredicate implements RecordPredicate {
         this.search = search;
     }
 
+    public SearchPattern getSearch() {
+        return search;
+    }
+
     @Override
     public boolean test(LogRecord record, LogFilterContext ctx) {
         Predicate<String> matcher = this.matcher;
@@ -6,6 +6,7 @@ import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.LongSupplier;
@@ -25,11 +26,30 @@ public class DefaultFieldSet {
 
     private final int dateNodeIndex;
 
+    /**
+     * {@code true} if the lines can be parsed without decoding to String, see {@link LvLayoutNode#parse(byte[], int, int)}.
+     */
+    private final boolean byteParsing;
+
+    /**
+     * {@code true} if a byte of a non-ASCII char may be a part of multibyte sequence, such lines are parsed as strings.
+     */
+    private final boolean asciiLinesOnly;
+
+    /**
+     * Whether the text nodes are inlined into the byte parsing, see {@link LvLayoutParser#LvLayoutParser(LvLayoutNode[], boolean)}.
+     */
+    private final boolean compileLayout;
+
     public DefaultFieldSet(@Nullable Charset charset, LvLayoutNode ... layout) {
         this(charset, canAppendTail(layout), layout);
     }
 
     public DefaultFieldSet(@Nullable Charset charset, boolean canAppendTail, LvLayoutNode ... layout) {
+        this(charset, canAppendTail, true, layout);
+    }
+
+    public DefaultFieldSet(@Nullable Charset charset, boolean canAppendTail, boolean compileLayout, LvLayoutNode ... layout) {
         this.charset = charset == null ? Charset.defaultCharset() : charset;
         this.layout = layout.clone();
         this.canAppendTail = canAppendTail;
@@ -71,6 +91,13 @@ public class DefaultFieldSet {
         this.dateNodeIndex = dateNodeIndex;
         this.fields = fields.toArray(LogFormat.FieldDescriptor.EMPTY_ARRAY);
         this.fieldIndex = fieldIndex;
+
+        boolean singleByteCharset = this.charset.equals(StandardCharsets.ISO_8859_1);
+
+        this.byteParsing = (singleByteCharset || this.charset.equals(StandardCharsets.UTF_8) || this.charset.equals(StandardCharsets.US_ASCII))
+                && Arrays.stream(layout).allMatch(LvLayoutNode::supportsBytes);
+        this.asciiLinesOnly = !singleByteCharset;
+        this.compileLayout = compileLayout && byteParsing;
     }
 
     public LvLayoutNode[] getLayout() {
@@ -112,9 +139,9 @@ public class DefaultFieldSet {
         return lastNode instanceof LvLayoutStretchNode;
     }
 
-    private static boolean spacesOnlyAfter(String s, int offset, int end) {
+    private static boolean isAscii(byte[] data, int offset, int end) {
         for (; offset < end; offset++) {
-            if (s.charAt(offset) != ' ')
+            if (data[offset] < 0)
                 return false;
         }
 
@@ -129,7 +156,16 @@ public class DefaultFieldSet {
 
         private final LongSupplier dateExtractor;
 
-        private final int[] stretchFields;
+        private final LvLayoutParser parser;
+
+        private final int[] nodeValueStart;
+        private final int[] nodeValueEnd;
+
+        /**
+         * The line parsed by the byte path, the string is created by the record on demand, see {@link #buildRecord()}.
+         */
+        private byte[] lineBytes = new byte[256];
+        private int lineLength = -1;
 
         private String s;
         private long start;
@@ -144,7 +180,10 @@ public class DefaultFieldSet {
             }
 
             dateExtractor = createDateExtractor();
-            stretchFields = new int[layoutCopy.length];
+            parser = new LvLayoutParser(layoutCopy, compileLayout);
+
+            nodeValueStart = new int[layoutCopy.length];
+            nodeValueEnd = new int[layoutCopy.length];
         }
 
         @Nullable
@@ -166,135 +205,46 @@ public class DefaultFieldSet {
 
         @Override
         public boolean parseRecord(byte[] data, int offset, int length, long start, long end) {
-            String s = new String(data, offset, length, charset);
-
-            int idx = 0;
-            int endStr = s.length();
-
-            int stretchFieldSize = 0;
-
-            mainLoop:
-            for (int i = 0; ; ) {
-                int nextIdx;
-
-                if (i == layoutCopy.length) {
-                    if (idx == endStr || spacesOnlyAfter(s, idx, endStr))
-                        break;
-
-                    nextIdx = LvLayoutNode.PARSE_FAILED;
-                } else {
-                    LvLayoutNode part = layoutCopy[i];
-
-                    if (part.removeSpacesBefore()) {
-                        while (idx < endStr && s.charAt(idx) == ' ') {
-                            idx++;
-                        }
-                    }
-
-                    if (part instanceof LvLayoutStretchNode) {
-                        LvLayoutStretchNode stretchNode = (LvLayoutStretchNode) part;
-
-                        if (stretchNode.reset(s, idx, endStr)) {
-                            if (i + 1 < layoutCopy.length) {
-                                stretchFields[stretchFieldSize++] = i;
-
-                                idx = stretchNode.getEnd();
-                                assert idx <= endStr;
-                                i++;
-                                continue;
-                            }
+            if (byteParsing && (!asciiLinesOnly || isAscii(data, offset, offset + length))) {
+                if (!parser.parse(data, offset, offset + length, nodeValueStart, nodeValueEnd))
+                    return false;
 
-                            if (stretchNode.grow(s, endStr, endStr)) {
-                                assert stretchNode.getEnd() == endStr;
-                                stretchFields[stretchFieldSize++] = i;
+                setFieldOffsets();
 
-                                break; // parsing finished successfully
-                            }
-                        }
+                if (lineBytes.length < length)
+                    lineBytes = new byte[Math.max(length, lineBytes.length * 2)];
 
-                        nextIdx = LvLayoutNode.PARSE_FAILED;
-                    } else {
-                        nextIdx = part.parse(s, idx, endStr);
-                    }
-                }
+                System.arraycopy(data, offset, lineBytes, 0, length);
+                lineLength = length;
+                this.s = null;
+            } else {
+                String s = new String(data, offset, length, charset);
 
-                if (nextIdx == LvLayoutNode.PARSE_FAILED) {
-                    while (true) {
-                        if (stretchFieldSize == 0)
-                            return false;
-
-                        i = stretchFields[stretchFieldSize - 1];
-                        LvLayoutStretchNode stretchNode = (LvLayoutStretchNode) layoutCopy[i];
-
-                        if (stretchNode.getEnd() < endStr) {
-                            i++;
-                            LvLayoutNode nextNode = layoutCopy[i];
-
-                            if (!(nextNode instanceof LvLayoutNodeSearchable)) {
-                                if (stretchNode.grow(s, stretchNode.getEnd() + 1, endStr)) {
-                                    idx = stretchNode.getEnd();
-                                    continue mainLoop;
-                                }
-                            } else {
-                                idx = stretchNode.getEnd() + 1;
-                                while (true) {
-                                    int searchNext = ((LvLayoutNodeSearchable)nextNode).search(s, idx, endStr);
-                                    if (searchNext < 0)
-                                        break;
-
-                                    if (!stretchNode.grow(s, searchNext, endStr))
-                                        break;
-
-                                    idx = stretchNode.getEnd();
-                                    if (idx == searchNext)
-                                        continue mainLoop;
-
-                                    assert idx > searchNext;
-                                }
-                            }
-                        }
-
-                        stretchFieldSize--;
-                    }
-                }
+                if (!parser.parse(s, nodeValueStart, nodeValueEnd))
+                    return false;
 
-                int fieldIdx = fieldIndex[i];
+                setFieldOffsets();
 
-                if (nextIdx == LvLayoutNode.SKIP_FIELD) {
-                    if (fieldIdx >= 0) {
-                        fieldOffset[fieldIdx * 2] = -1;
-                        fieldOffset[fieldIdx * 2 + 1] = -1;
-                    }
-                } else {
-                    if (fieldIdx >= 0) {
-                        fieldOffset[fieldIdx * 2] = layoutCopy[i].getValueStart(s, idx, endStr);
-                        fieldOffset[fieldIdx * 2 + 1] = nextIdx;
-                    }
-
-                    idx = nextIdx;
-                }
-
-                i++;
+                this.s = s;
+                lineLength = -1;
             }
 
-            this.s = s;
             this.start = start;
             this.end = end;
             hasMore = length < end - start;
 
-            for (int i = 0; i < stretchFieldSize; i++) {
-                int nodeIdx = stretchFields[i];
-                LvLayoutStretchNode stretchField = (LvLayoutStretchNode) layoutCopy[nodeIdx];
+            return true;
+        }
 
-                int fieldIdx = fieldIndex[nodeIdx];
+        private void setFieldOffsets() {
+            for (int i = 0; i < fieldIndex.length; i++) {
+                int fieldIdx = fieldIndex[i];
 
                 if (fieldIdx >= 0) {
-                    fieldOffset[fieldIdx * 2] = stretchField.getValueStart(s, stretchField.getStart(), stretchField.getEnd());
-                    fieldOffset[fieldIdx * 2 + 1] = stretchField.getEnd();
+                    fieldOffset[fieldIdx * 2] = nodeValueStart[i];
+                    fieldOffset[fieldIdx * 2 + 1] = nodeValueEnd[i];
                 }
             }
-
-            return true;
         }
 
         @Override
@@ -312,6 +262,8 @@ public class DefaultFieldSet {
             if (hasMore)
                 return;
 
+            decodeLine();
+
             int lastFieldOffset = (fields.length - 1) * 2;
 
             if (fieldOffset[lastFieldOffset] == -1)
@@ -324,19 +276,27 @@ public class DefaultFieldSet {
             fieldOffset[lastFieldOffset + 1] = s.length();
         }
 
+        private void decodeLine() {
+            if (lineLength >= 0) {
+                s = new String(lineBytes, 0, lineLength, charset);
+                lineLength = -1;
+            }
+        }
+
         @Override
         public boolean hasParsedRecord() {
-            return s != null;
+            return s != null || lineLength >= 0;
         }
 
         @Override
         public void clear() {
             s = null;
+            lineLength = -1;
         }
 
         @Override
         public LogRecord buildRecord() {
-            if (s == null)
+            if (s == null && lineLength < 0)
                 throw new IllegalStateException();
 
             long time = 0;
@@ -345,9 +305,18 @@ public class DefaultFieldSet {
                 time = dateExtractor.getAsLong();
             }
 
-            LogRecord res = new LogRecord(s, time, start, end, hasMore, fieldOffset.clone(), fieldNameIndexes);
+            LogRecord res;
 
-            s = null;
+            if (lineLength >= 0) {
+                // The line was parsed by the byte path, so one byte is one char. The text is decoded only if the record
+                // passes the filters.
+                res = new LogRecord(Arrays.copyOf(lineBytes, lineLength), charset, time, start, end, hasMore,
+                        fieldOffset.clone(), fieldNameIndexes);
+                lineLength = -1;
+            } else {
+                res = new LogRecord(s, time, start, end, hasMore, fieldOffset.clone(), fieldNameIndexes);
+                s = null;
+            }
 
             return res;
         }
@@ -4,6 +4,7 @@ import com.logviewer.data2.DefaultFieldDesciptor;
 import com.logviewer.data2.LogFormat;
 import com.logviewer.data2.LogReader;
 import com.logviewer.data2.LogRecord;
+import com.logviewer.formats.utils.CachingDateParser;
 import com.logviewer.formats.utils.FastDateTimeParser;
 import com.logviewer.utils.LvDateUtils;
 import com.logviewer.utils.Utils;
@@ -180,6 +181,7 @@ public class RegexLogFormat implements LogFormat, Cloneable {
         private boolean hasMore;
 
         private BiFunction<String, ParsePosition, Supplier<Instant>> dateFormat;
+        private CachingDateParser dateCache;
 
         private final Charset charset = RegexLogFormat.this.charset == null ? Charset.defaultCharset() : RegexLogFormat.this.charset;
 
@@ -296,14 +298,27 @@ public class RegexLogFormat implements LogFormat, Cloneable {
             }
 
             if (dateFieldIdx != null) {
-                if (fields[dateFieldIdx * 2] >= 0) {
-                    if (dateFormat == null)
+                int dateStart = fields[dateFieldIdx * 2];
+
+                if (dateStart >= 0) {
+                    if (dateFormat == null) {
                         dateFormat = FastDateTimeParser.createFormatter(datePattern, null);
+                        dateCache = CachingDateParser.forPattern(datePattern);
+                    }
+
+                    if (dateCache != null && dateCache.parse(s, dateStart, s.length()) != CachingDateParser.PARSE_FAILED) {
+                        time = dateCache.getTime();
+                    } else {
+                        ParsePosition position = new ParsePosition(dateStart);
+
+                        Supplier<Instant> timestamp = dateFormat.apply(s, position);
+                        if (timestamp != null) {
+                            Instant instant = timestamp.get();
+                            time = LvDateUtils.toNanos(instant);
 
-                    Supplier<Instant> timestamp = dateFormat.apply(s, new ParsePosition(fields[dateFieldIdx * 2]));
-                    if (timestamp != null) {
-                        Instant instant = timestamp.get();
-                        time = LvDateUtils.toNanos(instant);
+                            if (dateCache != null)
+                                dateCache.remember(s, dateStart, position.getIndex(), time);
+                        }
                     }
                 }
             }
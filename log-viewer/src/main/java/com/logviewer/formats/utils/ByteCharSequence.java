@@ -0,0 +1,40 @@
+package com.logviewer.formats.utils;
+
+import org.springframework.lang.NonNull;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Presents the raw bytes of a line as chars, one char per byte, so the same parsing code works for strings and for
+ * bytes, see {@link LvLayoutNode#parse(byte[], int, int)}. The instance is reused for the lines parsed by a node.
+ */
+final class ByteCharSequence implements CharSequence {
+
+    private byte[] data;
+
+    ByteCharSequence set(@NonNull byte[] data) {
+        this.data = data;
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return data.length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return (char) (data[index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new String(data, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return new String(data, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,70 @@
+package com.logviewer.formats.utils;
+
+/**
+ * Helpers for parsing raw bytes of a line, see {@link LvLayoutNode#parse(byte[], int, int)}.
+ */
+public final class ByteParseUtils {
+
+    private ByteParseUtils() {
+
+    }
+
+    public static boolean startsWith(byte[] data, int offset, int end, String prefix) {
+        int length = prefix.length();
+
+        if (end - offset < length)
+            return false;
+
+        for (int i = 0; i < length; i++) {
+            if ((data[offset + i] & 0xFF) != prefix.charAt(i))
+                return false;
+        }
+
+        return true;
+    }
+
+    public static int indexOf(byte[] data, int offset, int end, String str) {
+        if (str.isEmpty())
+            return offset;
+
+        int length = str.length();
+        char first = str.charAt(0);
+
+        outer:
+        for (int i = offset, max = end - length; i <= max; i++) {
+            if ((data[i] & 0xFF) != first)
+                continue;
+
+            for (int j = 1; j < length; j++) {
+                if ((data[i + j] & 0xFF) != str.charAt(j))
+                    continue outer;
+            }
+
+            return i;
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the number or -1 if the bytes in the range are not digits.
+     */
+    public static int readInt(byte[] data, int offset, int end) {
+        int res = 0;
+
+        while (offset < end) {
+            int a = data[offset++];
+
+            if (a < '0' || a > '9')
+                return -1;
+
+            res = res * 10 + (a - '0');
+        }
+
+        return res;
+    }
+
+    public static char charAt(byte[] data, int idx) {
+        return (char) (data[idx] & 0xFF);
+    }
+}
@@ -0,0 +1,260 @@
+package com.logviewer.formats.utils;
+
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Cache of the last parsed date. Consecutive records usually have the same date, hour and minute, so the parser
+ * remembers the text of the last date before the seconds and the epoch time of that prefix. If the next date starts
+ * with the same prefix, only the seconds and the fraction digits are parsed, without allocations.
+ *
+ * The date must end with the seconds, optionally followed by a separator and the fraction of the second. The caller
+ * parses the dates that don't match the cached prefix itself and passes the result to {@link #remember(String, int, int, long)}.
+ */
+public final class CachingDateParser {
+
+    public static final int PARSE_FAILED = -1;
+
+    private static final Pattern CACHEABLE_PATTERN = Pattern.compile("(?:.*[^s'])?ss(?:(?<separator>[^A-Za-z'])?(?<fraction>S{1,9}))?");
+
+    private static final long[] FRACTION_TO_NANO = {0, 100_000_000, 10_000_000, 1000_000, 100_000, 10_000, 1000, 100, 10, 1};
+
+    /**
+     * The chars allowed between the seconds and the fraction, an empty string if there is no separator.
+     */
+    private final String fractionSeparators;
+    private final int fractionDigits;
+
+    private final int suffixLength;
+
+    private String prefix;
+    private boolean asciiPrefix;
+    private long prefixTime;
+
+    private long time;
+
+    /**
+     * @param fractionSeparators the chars allowed between the seconds and the fraction, an empty string if the fraction
+     *                           follows the seconds immediately.
+     * @param fractionDigits the number of digits in the fraction of the second, 0 if the date ends with the seconds.
+     */
+    public CachingDateParser(@NonNull String fractionSeparators, int fractionDigits) {
+        if (fractionDigits < 0 || fractionDigits > 9)
+            throw new IllegalArgumentException("Invalid fraction length: " + fractionDigits);
+
+        this.fractionSeparators = fractionDigits == 0 ? "" : fractionSeparators;
+        this.fractionDigits = fractionDigits;
+
+        suffixLength = 2 + (this.fractionSeparators.isEmpty() ? 0 : 1) + fractionDigits;
+    }
+
+    /**
+     * @param pattern the pattern in {@link java.time.format.DateTimeFormatter} format.
+     * @return the cache or {@code null} if the pattern doesn't end with fixed-width seconds and fraction.
+     */
+    @Nullable
+    public static CachingDateParser forPattern(@NonNull String pattern) {
+        Matcher matcher = CACHEABLE_PATTERN.matcher(pattern);
+        if (!matcher.matches())
+            return null;
+
+        String fraction = matcher.group("fraction");
+        if (fraction == null)
+            return new CachingDateParser("", 0);
+
+        String separator = matcher.group("separator");
+
+        return new CachingDateParser(separator == null ? "" : separator, fraction.length());
+    }
+
+    /**
+     * @return the time of the last parsed date in nanoseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Parses the date if it starts with the cached prefix.
+     *
+     * @return the position after the date or {@link #PARSE_FAILED} if the date must be parsed by the full parser.
+     */
+    public int parse(@NonNull String s, int offset, int end) {
+        String prefix = this.prefix;
+        if (prefix == null)
+            return PARSE_FAILED;
+
+        int suffixStart = offset + prefix.length();
+        if (suffixStart + suffixLength > end || !s.startsWith(prefix, offset))
+            return PARSE_FAILED;
+
+        int sec = readInt(s.charAt(suffixStart), s.charAt(suffixStart + 1));
+        if (sec < 0 || sec > 59)
+            return PARSE_FAILED;
+
+        int idx = suffixStart + 2;
+
+        long nano = 0;
+
+        if (fractionDigits > 0) {
+            if (!fractionSeparators.isEmpty()) {
+                if (fractionSeparators.indexOf(s.charAt(idx)) < 0)
+                    return PARSE_FAILED;
+
+                idx++;
+            }
+
+            for (int i = 0; i < fractionDigits; i++) {
+                char a = s.charAt(idx++);
+                if (a < '0' || a > '9')
+                    return PARSE_FAILED;
+
+                nano = nano * 10 + (a - '0');
+            }
+
+            nano *= FRACTION_TO_NANO[fractionDigits];
+        }
+
+        time = prefixTime + sec * 1000_000_000L + nano;
+
+        return idx;
+    }
+
+    /**
+     * The same as {@link #parse(String, int, int)}, but works with the bytes of an ASCII compatible charset.
+     */
+    public int parse(@NonNull byte[] data, int offset, int end) {
+        String prefix = this.prefix;
+        if (prefix == null || !asciiPrefix)
+            return PARSE_FAILED;
+
+        int suffixStart = offset + prefix.length();
+        if (suffixStart + suffixLength > end || !ByteParseUtils.startsWith(data, offset, end, prefix))
+            return PARSE_FAILED;
+
+        int sec = readInt((char) data[suffixStart], (char) data[suffixStart + 1]);
+        if (sec < 0 || sec > 59)
+            return PARSE_FAILED;
+
+        int idx = suffixStart + 2;
+
+        long nano = 0;
+
+        if (fractionDigits > 0) {
+            if (!fractionSeparators.isEmpty()) {
+                if (fractionSeparators.indexOf(data[idx]) < 0)
+                    return PARSE_FAILED;
+
+                idx++;
+            }
+
+            for (int i = 0; i < fractionDigits; i++) {
+                byte a = data[idx++];
+                if (a < '0' || a > '9')
+                    return PARSE_FAILED;
+
+                nano = nano * 10 + (a - '0');
+            }
+
+            nano *= FRACTION_TO_NANO[fractionDigits];
+        }
+
+        time = prefixTime + sec * 1000_000_000L + nano;
+
+        return idx;
+    }
+
+    /**
+     * Remembers the date parsed by the full parser.
+     *
+     * @param s the text containing the date.
+     * @param dateStart the position of the date.
+     * @param dateEnd the position after the date, the date must end with the seconds and the fraction.
+     * @param time the parsed time in nanoseconds.
+     */
+    public void remember(@NonNull String s, int dateStart, int dateEnd, long time) {
+        this.time = time;
+
+        int suffixStart = dateEnd - suffixLength;
+        if (suffixStart < dateStart) {
+            clear();
+            return;
+        }
+
+        long suffixNanos = suffixNanos(s, suffixStart);
+        if (suffixNanos < 0) {
+            clear();
+            return;
+        }
+
+        prefix = s.substring(dateStart, suffixStart);
+        asciiPrefix = isAscii(prefix);
+        prefixTime = time - suffixNanos;
+    }
+
+    /**
+     * The same as {@link #remember(String, int, int, long)}, but works with the bytes of an ASCII compatible charset.
+     */
+    public void remember(@NonNull byte[] data, int dateStart, int dateEnd, long time) {
+        for (int i = dateStart; i < dateEnd; i++) {
+            if (data[i] < 0) {
+                this.time = time;
+                clear();
+                return;
+            }
+        }
+
+        remember(new String(data, dateStart, dateEnd - dateStart, StandardCharsets.US_ASCII), 0, dateEnd - dateStart, time);
+    }
+
+    public void clear() {
+        prefix = null;
+    }
+
+    private long suffixNanos(String s, int idx) {
+        int sec = readInt(s.charAt(idx), s.charAt(idx + 1));
+        if (sec < 0)
+            return -1;
+
+        idx += 2;
+
+        if (!fractionSeparators.isEmpty()) {
+            if (fractionSeparators.indexOf(s.charAt(idx)) < 0)
+                return -1;
+
+            idx++;
+        }
+
+        long nano = 0;
+
+        for (int i = 0; i < fractionDigits; i++) {
+            char a = s.charAt(idx++);
+            if (a < '0' || a > '9')
+                return -1;
+
+            nano = nano * 10 + (a - '0');
+        }
+
+        return sec * 1000_000_000L + nano * FRACTION_TO_NANO[fractionDigits];
+    }
+
+    private static int readInt(char a, char b) {
+        if (a < '0' || a > '9' || b < '0' || b > '9')
+            return -1;
+
+        return (a - '0') * 10 + (b - '0');
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80)
+                return false;
+        }
+
+        return true;
+    }
+}
@@ -0,0 +1,194 @@
+package com.logviewer.formats.utils;
+
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Raw line bytes specialized for a fixed sequence of layout nodes. The text and the fixed-text nodes are resolved once
+ * when the input is created and inlined as byte anchors, so parsing a line doesn't call them virtually.
+ *
+ * @see LvLayoutParser#LvLayoutParser(LvLayoutNode[], boolean)
+ */
+final class LvLayoutCompiledInput extends LvLayoutParser.BytesInput {
+
+    private static final byte KIND_NODE = 0;
+    private static final byte KIND_TEXT = 1;
+    private static final byte KIND_FIXED_TEXT = 2;
+
+    private final byte[] kinds;
+
+    /**
+     * For {@link #KIND_TEXT} nodes.
+     */
+    private final byte[][] anchors;
+    private final boolean[] anchorAfterSpaces;
+    private final int[] anchorMinSpaces;
+
+    /**
+     * The text to search after a stretch node for {@link #KIND_TEXT} nodes, see {@link LvLayoutTextNode#search(byte[], int, int)}.
+     */
+    private final byte[][] searchTexts;
+
+    /**
+     * For {@link #KIND_FIXED_TEXT} nodes.
+     */
+    private final byte[][][] fixedValues;
+
+    LvLayoutCompiledInput(LvLayoutNode[] nodes) {
+        super(nodes);
+
+        int n = nodes.length;
+
+        kinds = new byte[n];
+        anchors = new byte[n][];
+        anchorAfterSpaces = new boolean[n];
+        anchorMinSpaces = new int[n];
+        searchTexts = new byte[n][];
+        fixedValues = new byte[n][][];
+
+        for (int i = 0; i < n; i++) {
+            LvLayoutNode node = nodes[i];
+
+            if (isBuiltInTextNode(node)) {
+                LvLayoutTextNode textNode = (LvLayoutTextNode) node;
+
+                byte[] anchor = toBytes(textNode.getAnchorText());
+                byte[] searchText = toBytes(textNode.toString());
+
+                if (anchor != null && searchText != null) {
+                    kinds[i] = KIND_TEXT;
+                    anchors[i] = anchor;
+                    anchorAfterSpaces[i] = textNode.isAnchorAfterSpaces();
+                    anchorMinSpaces[i] = textNode.getAnchorMinSpaces();
+                    searchTexts[i] = searchText;
+                }
+            } else if (node.getClass() == LvLayoutFixedTextNode.class) {
+                String[] values = ((LvLayoutFixedTextNode) node).getValues();
+
+                byte[][] bytes = new byte[values.length][];
+
+                for (int j = 0; j < values.length; j++) {
+                    bytes[j] = toBytes(values[j]);
+                    if (bytes[j] == null) {
+                        bytes = null;
+                        break;
+                    }
+                }
+
+                if (bytes != null) {
+                    kinds[i] = KIND_FIXED_TEXT;
+                    fixedValues[i] = bytes;
+                }
+            }
+        }
+    }
+
+    /**
+     * The text node created by {@link LvLayoutTextNode#of(String)}, other subclasses may override parsing.
+     */
+    private static boolean isBuiltInTextNode(LvLayoutNode node) {
+        Class<?> cls = node.getClass();
+        return cls == LvLayoutTextNode.class || (cls.isAnonymousClass() && cls.getEnclosingClass() == LvLayoutTextNode.class);
+    }
+
+    /**
+     * Converts the text to bytes that are compared with the line bytes char-per-byte.
+     */
+    @Nullable
+    private static byte[] toBytes(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) > 0xFF)
+                return null;
+        }
+
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int end, byte[] prefix) {
+        if (end - offset < prefix.length)
+            return false;
+
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[offset + i] != prefix[i])
+                return false;
+        }
+
+        return true;
+    }
+
+    private static int indexOf(byte[] data, int offset, int end, byte[] str) {
+        if (str.length == 0)
+            return offset;
+
+        byte first = str[0];
+
+        outer:
+        for (int i = offset, max = end - str.length; i <= max; i++) {
+            if (data[i] != first)
+                continue;
+
+            for (int j = 1; j < str.length; j++) {
+                if (data[i + j] != str[j])
+                    continue outer;
+            }
+
+            return i;
+        }
+
+        return -1;
+    }
+
+    @Override
+    int parse(int nodeIdx, int offset, int end) {
+        switch (kinds[nodeIdx]) {
+            case KIND_TEXT:
+                return parseText(nodeIdx, offset, end);
+
+            case KIND_FIXED_TEXT:
+                return parseFixedText(nodeIdx, offset, end);
+
+            default:
+                return super.parse(nodeIdx, offset, end);
+        }
+    }
+
+    @Override
+    int getValueStart(int nodeIdx, int offset, int end) {
+        return kinds[nodeIdx] == KIND_NODE ? super.getValueStart(nodeIdx, offset, end) : offset;
+    }
+
+    @Override
+    int search(int nodeIdx, int offset, int end) {
+        if (kinds[nodeIdx] == KIND_TEXT)
+            return indexOf(data, offset, end, searchTexts[nodeIdx]);
+
+        return super.search(nodeIdx, offset, end);
+    }
+
+    private int parseText(int nodeIdx, int offset, int end) {
+        byte[] anchor = anchors[nodeIdx];
+
+        if (!anchorAfterSpaces[nodeIdx])
+            return startsWith(data, offset, end, anchor) ? offset + anchor.length : LvLayoutNode.PARSE_FAILED;
+
+        int nonSpaceIdx = skipSpaces(offset, end);
+
+        if (nonSpaceIdx - offset < anchorMinSpaces[nodeIdx])
+            return LvLayoutNode.PARSE_FAILED;
+
+        if (!startsWith(data, nonSpaceIdx, end, anchor))
+            return LvLayoutNode.PARSE_FAILED;
+
+        return nonSpaceIdx + anchor.length;
+    }
+
+    private int parseFixedText(int nodeIdx, int offset, int end) {
+        for (byte[] value : fixedValues[nodeIdx]) {
+            if (startsWith(data, offset, end, value))
+                return offset + value.length;
+        }
+
+        return LvLayoutNode.PARSE_FAILED;
+    }
+}
@@ -27,6 +27,28 @@ public class LvLayoutFixedTextNode extends LvLayoutCustomTypeNode implements LvL
         return PARSE_FAILED;
     }
 
+    @Override
+    public int parse(byte[] data, int offset, int end) {
+        for (String value : values) {
+            if (ByteParseUtils.startsWith(data, offset, end, value))
+                return offset + value.length();
+        }
+
+        return PARSE_FAILED;
+    }
+
+    @Override
+    public boolean supportsBytes() {
+        return true;
+    }
+
+    /**
+     * @return the possible values sorted by length descending.
+     */
+    String[] getValues() {
+        return values;
+    }
+
     @Override
     public LvLayoutFixedTextNode clone() {
         return new LvLayoutFixedTextNode(getFieldName(), getFieldType(), values);
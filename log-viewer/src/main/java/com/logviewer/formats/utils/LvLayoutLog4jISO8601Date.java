@@ -33,6 +33,10 @@ public class LvLayoutLog4jISO8601Date extends LvLayoutDateNode {
 
     private transient String currentTimezoneStr;
 
+    private transient CachingDateParser cache;
+
+    private transient ByteCharSequence chars;
+
     public LvLayoutLog4jISO8601Date(boolean hasMilliseconds) {
         this(hasMilliseconds ? 3 : 0, false, null);
     }
@@ -49,6 +53,51 @@ public class LvLayoutLog4jISO8601Date extends LvLayoutDateNode {
 
     @Override
     public int parse(String s, int offset, int end) {
+        CachingDateParser cache = getCache();
+        if (cache != null) {
+            int res = cache.parse(s, offset, end);
+            if (res != CachingDateParser.PARSE_FAILED) {
+                currentDate = cache.getTime();
+                return res;
+            }
+        }
+
+        int res = parseDate(s, offset, end);
+
+        if (res != PARSE_FAILED && cache != null)
+            cache.remember(s, offset, res, currentDate);
+
+        return res;
+    }
+
+    @Override
+    public int parse(byte[] data, int offset, int end) {
+        assert !hasTimezone;
+
+        CachingDateParser cache = getCache();
+
+        int res = cache.parse(data, offset, end);
+        if (res != CachingDateParser.PARSE_FAILED) {
+            currentDate = cache.getTime();
+            return res;
+        }
+
+        if (chars == null)
+            chars = new ByteCharSequence();
+
+        res = parseDate(chars.set(data), offset, end);
+
+        if (res != PARSE_FAILED)
+            cache.remember(data, offset, res, currentDate);
+
+        return res;
+    }
+
+    /**
+     * Parses the date from a string or from the bytes presented as chars by {@link ByteCharSequence}, sets
+     * {@link #currentDate}.
+     */
+    private int parseDate(CharSequence s, int offset, int end) {
         int expectedLength = 19 + (milliseconds == 0 ? 0 : milliseconds + 1);
 
         if (end - offset < expectedLength) {
@@ -125,6 +174,40 @@ public class LvLayoutLog4jISO8601Date extends LvLayoutDateNode {
             nano = 0;
         }
 
+        Calendar calendar = getCalendar();
+
+        if (hasTimezone) {
+            // The bytes are not parsed if the date has a timezone, see supportsBytes()
+            offset = parseAndSetTimezone((String) s, offset, calendar);
+            if (offset < 0)
+                return PARSE_FAILED;
+        }
+
+        setCurrentDate(calendar, year, mm, dd, hh, min, sec, nano);
+
+        return offset;
+    }
+
+    /**
+     * The timezone is parsed by {@link FastDateTimeParser#parseTimezone(String, ParsePosition)} that works with strings only.
+     */
+    @Override
+    public boolean supportsBytes() {
+        return !hasTimezone;
+    }
+
+    /**
+     * The cache is not used if the date has a timezone, because the timezone follows the seconds.
+     */
+    @Nullable
+    private CachingDateParser getCache() {
+        if (cache == null && !hasTimezone)
+            cache = new CachingDateParser(",.", milliseconds);
+
+        return cache;
+    }
+
+    private Calendar getCalendar() {
         if (calendar == null) {
             calendar = Calendar.getInstance();
             calendar.set(Calendar.MILLISECOND, 0);
@@ -133,12 +216,10 @@ public class LvLayoutLog4jISO8601Date extends LvLayoutDateNode {
                 calendar.setTimeZone(zone);
         }
 
-        if (hasTimezone) {
-            offset = parseAndSetTimezone(s, offset, calendar);
-            if (offset < 0)
-                return PARSE_FAILED;
-        }
+        return calendar;
+    }
 
+    private void setCurrentDate(Calendar calendar, int year, int mm, int dd, int hh, int min, int sec, int nano) {
         calendar.set(Calendar.YEAR, year);
         calendar.set(Calendar.MONTH, mm - 1);
         calendar.set(Calendar.DAY_OF_MONTH, dd);
@@ -147,8 +228,6 @@ public class LvLayoutLog4jISO8601Date extends LvLayoutDateNode {
         calendar.set(Calendar.SECOND, sec);
 
         this.currentDate = LvDateUtils.toNanos(calendar.getTimeInMillis()) + nano;
-
-        return offset;
     }
 
     private int parseAndSetTimezone(String s, int offset, Calendar calendar) {
@@ -169,7 +248,7 @@ public class LvLayoutLog4jISO8601Date extends LvLayoutDateNode {
         return position.getIndex();
     }
 
-    private static int readInt(String s, int offset, int end) {
+    private static int readInt(CharSequence s, int offset, int end) {
         int res = 0;
 
         while (offset < end) {
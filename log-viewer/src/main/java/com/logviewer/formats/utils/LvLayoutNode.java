@@ -15,6 +15,24 @@ public interface LvLayoutNode extends Cloneable {
      */
     int parse(String s, int offset, int end);
 
+    /**
+     * The same as {@link #parse(String, int, int)}, but works with raw bytes of the line. Used only if the line can be
+     * decoded char-per-byte (ASCII line or ISO-8859-1 encoding), so the offsets in the byte array are equal to the offsets
+     * in the decoded string. The char at the position {@code i} is {@code (char)(data[i] & 0xFF)}.
+     *
+     * @see #supportsBytes()
+     */
+    default int parse(byte[] data, int offset, int end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return {@code true} if the node implements {@link #parse(byte[], int, int)}.
+     */
+    default boolean supportsBytes() {
+        return false;
+    }
+
     default boolean removeSpacesBefore() {
         return true;
     }
@@ -23,5 +41,9 @@ public interface LvLayoutNode extends Cloneable {
         return idx;
     }
 
+    default int getValueStart(byte[] data, int idx, int end) {
+        return idx;
+    }
+
     LvLayoutNode clone();
 }
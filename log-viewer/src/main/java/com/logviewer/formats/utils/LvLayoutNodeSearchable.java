@@ -4,4 +4,11 @@ public interface LvLayoutNodeSearchable {
 
     int search(String s, int offset, int end);
 
+    /**
+     * Byte version of {@link #search(String, int, int)}, see {@link LvLayoutNode#parse(byte[], int, int)}.
+     */
+    default int search(byte[] data, int offset, int end) {
+        throw new UnsupportedOperationException();
+    }
+
 }
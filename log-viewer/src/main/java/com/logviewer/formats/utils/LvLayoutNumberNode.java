@@ -71,6 +71,59 @@ public class LvLayoutNumberNode extends LvLayoutCustomTypeNode {
         return offset;
     }
 
+    @Override
+    public int parse(byte[] data, int offset, int end) {
+        if (offset == end)
+            return PARSE_FAILED;
+
+        char c = (char) (data[offset] & 0xFF);
+
+        if (c == '-' && canBeNegative) {
+            offset++;
+
+            if (offset == end)
+                return PARSE_FAILED;
+
+            c = (char) (data[offset] & 0xFF);
+        }
+
+        if (c < '0' || c > '9')
+            return PARSE_FAILED;
+
+        do {
+            offset++;
+            if (offset == end)
+                return offset;
+
+            c = (char) (data[offset] & 0xFF);
+        } while (c >= '0' && c <= '9');
+
+        if (canHaveFraction && c == '.') {
+            if (offset + 1 < end) {
+                c = (char) (data[offset + 1] & 0xFF);
+                if (c >= '0' && c <= '9') {
+                    offset += 2;
+
+                    while (offset < end) {
+                        c = (char) (data[offset] & 0xFF);
+                        if (c >= '0' && c <= '9') {
+                            offset++;
+                        } else {
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+
+        return offset;
+    }
+
+    @Override
+    public boolean supportsBytes() {
+        return true;
+    }
+
     @Override
     public LvLayoutNumberNode clone() {
         return new LvLayoutNumberNode(getFieldName(), getFieldType(), canBeNegative, canHaveFraction);
@@ -0,0 +1,299 @@
+package com.logviewer.formats.utils;
+
+import org.springframework.lang.NonNull;
+
+/**
+ * Matches a line against a sequence of layout nodes. A stretch node takes the shortest text first, if the rest of the
+ * line doesn't match, the last stretch node grows to the next position where the following node may start.
+ *
+ * The same algorithm parses the decoded lines and the raw line bytes, the nodes are called through {@link Input}.
+ * The input of the raw bytes may be compiled for the layout, see {@link LvLayoutCompiledInput}.
+ *
+ * @see LvLayoutNode#parse(byte[], int, int)
+ */
+public final class LvLayoutParser {
+
+    private final LvLayoutNode[] nodes;
+
+    private final boolean[] removeSpacesBefore;
+
+    private final LvLayoutStretchNode[] stretchNodes;
+
+    private final boolean[] searchable;
+
+    private final int[] stretchFields;
+
+    private final StringInput stringInput;
+
+    private final BytesInput bytesInput;
+
+    /**
+     * @param nodes the nodes, the parser changes their state, so the array must not be shared between threads.
+     * @param compile whether the text nodes are inlined into the parsing of the raw bytes, the nodes must support
+     *                byte parsing, see {@link LvLayoutNode#supportsBytes()}.
+     */
+    public LvLayoutParser(@NonNull LvLayoutNode[] nodes, boolean compile) {
+        this.nodes = nodes;
+
+        int n = nodes.length;
+
+        removeSpacesBefore = new boolean[n];
+        stretchNodes = new LvLayoutStretchNode[n];
+        searchable = new boolean[n];
+        stretchFields = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            LvLayoutNode node = nodes[i];
+
+            removeSpacesBefore[i] = node.removeSpacesBefore();
+            searchable[i] = node instanceof LvLayoutNodeSearchable;
+
+            if (node instanceof LvLayoutStretchNode)
+                stretchNodes[i] = (LvLayoutStretchNode) node;
+        }
+
+        stringInput = new StringInput(nodes);
+        bytesInput = compile ? new LvLayoutCompiledInput(nodes) : new BytesInput(nodes);
+    }
+
+    /**
+     * Parses the line.
+     *
+     * @param valueStart the start offsets of the node values, -1 if the node is skipped.
+     * @param valueEnd the end offsets of the node values, -1 if the node is skipped.
+     * @return {@code false} if the line doesn't match the layout.
+     */
+    public boolean parse(@NonNull String s, int[] valueStart, int[] valueEnd) {
+        stringInput.s = s;
+        return parse(stringInput, 0, s.length(), valueStart, valueEnd);
+    }
+
+    /**
+     * The same as {@link #parse(String, int[], int[])}, but works with the raw bytes of the line. The offsets of the
+     * values are relative to {@code from}.
+     */
+    public boolean parse(@NonNull byte[] data, int from, int to, int[] valueStart, int[] valueEnd) {
+        bytesInput.data = data;
+        return parse(bytesInput, from, to, valueStart, valueEnd);
+    }
+
+    private boolean parse(Input in, int from, int to, int[] valueStart, int[] valueEnd) {
+        int idx = from;
+        int n = nodes.length;
+
+        int stretchFieldSize = 0;
+
+        mainLoop:
+        for (int i = 0; ; ) {
+            int nextIdx;
+
+            if (i == n) {
+                idx = in.skipSpaces(idx, to);
+                if (idx == to)
+                    break;
+
+                nextIdx = LvLayoutNode.PARSE_FAILED;
+            } else {
+                if (removeSpacesBefore[i])
+                    idx = in.skipSpaces(idx, to);
+
+                LvLayoutStretchNode stretchNode = stretchNodes[i];
+
+                if (stretchNode != null) {
+                    if (in.reset(stretchNode, idx, to)) {
+                        if (i + 1 < n) {
+                            stretchFields[stretchFieldSize++] = i;
+
+                            idx = stretchNode.getEnd();
+                            assert idx <= to;
+                            i++;
+                            continue;
+                        }
+
+                        if (in.grow(stretchNode, to, to)) {
+                            assert stretchNode.getEnd() == to;
+                            stretchFields[stretchFieldSize++] = i;
+
+                            break; // parsing finished successfully
+                        }
+                    }
+
+                    nextIdx = LvLayoutNode.PARSE_FAILED;
+                } else {
+                    nextIdx = in.parse(i, idx, to);
+                }
+            }
+
+            if (nextIdx == LvLayoutNode.PARSE_FAILED) {
+                while (true) {
+                    if (stretchFieldSize == 0)
+                        return false;
+
+                    i = stretchFields[stretchFieldSize - 1];
+                    LvLayoutStretchNode stretchNode = stretchNodes[i];
+
+                    if (stretchNode.getEnd() < to) {
+                        i++;
+
+                        if (!searchable[i]) {
+                            if (in.grow(stretchNode, stretchNode.getEnd() + 1, to)) {
+                                idx = stretchNode.getEnd();
+                                continue mainLoop;
+                            }
+                        } else {
+                            idx = stretchNode.getEnd() + 1;
+                            while (true) {
+                                int searchNext = in.search(i, idx, to);
+                                if (searchNext < 0)
+                                    break;
+
+                                if (!in.grow(stretchNode, searchNext, to))
+                                    break;
+
+                                idx = stretchNode.getEnd();
+                                if (idx == searchNext)
+                                    continue mainLoop;
+
+                                assert idx > searchNext;
+                            }
+                        }
+                    }
+
+                    stretchFieldSize--;
+                }
+            }
+
+            if (nextIdx == LvLayoutNode.SKIP_FIELD) {
+                valueStart[i] = -1;
+                valueEnd[i] = -1;
+            } else {
+                valueStart[i] = in.getValueStart(i, idx, to) - from;
+                valueEnd[i] = nextIdx - from;
+
+                idx = nextIdx;
+            }
+
+            i++;
+        }
+
+        for (int i = 0; i < stretchFieldSize; i++) {
+            int nodeIdx = stretchFields[i];
+            LvLayoutStretchNode stretchNode = stretchNodes[nodeIdx];
+
+            valueStart[nodeIdx] = in.getValueStart(nodeIdx, stretchNode.getStart(), stretchNode.getEnd()) - from;
+            valueEnd[nodeIdx] = stretchNode.getEnd() - from;
+        }
+
+        return true;
+    }
+
+    /**
+     * The line being parsed, calls the String or the byte methods of the nodes.
+     */
+    abstract static class Input {
+
+        final LvLayoutNode[] nodes;
+
+        Input(LvLayoutNode[] nodes) {
+            this.nodes = nodes;
+        }
+
+        abstract int skipSpaces(int offset, int end);
+
+        abstract int parse(int nodeIdx, int offset, int end);
+
+        abstract int getValueStart(int nodeIdx, int offset, int end);
+
+        abstract int search(int nodeIdx, int offset, int end);
+
+        abstract boolean reset(LvLayoutStretchNode node, int start, int end);
+
+        abstract boolean grow(LvLayoutStretchNode node, int targetPosition, int end);
+    }
+
+    private static final class StringInput extends Input {
+
+        private String s;
+
+        StringInput(LvLayoutNode[] nodes) {
+            super(nodes);
+        }
+
+        @Override
+        int skipSpaces(int offset, int end) {
+            while (offset < end && s.charAt(offset) == ' ') {
+                offset++;
+            }
+
+            return offset;
+        }
+
+        @Override
+        int parse(int nodeIdx, int offset, int end) {
+            return nodes[nodeIdx].parse(s, offset, end);
+        }
+
+        @Override
+        int getValueStart(int nodeIdx, int offset, int end) {
+            return nodes[nodeIdx].getValueStart(s, offset, end);
+        }
+
+        @Override
+        int search(int nodeIdx, int offset, int end) {
+            return ((LvLayoutNodeSearchable) nodes[nodeIdx]).search(s, offset, end);
+        }
+
+        @Override
+        boolean reset(LvLayoutStretchNode node, int start, int end) {
+            return node.reset(s, start, end);
+        }
+
+        @Override
+        boolean grow(LvLayoutStretchNode node, int targetPosition, int end) {
+            return node.grow(s, targetPosition, end);
+        }
+    }
+
+    static class BytesInput extends Input {
+
+        byte[] data;
+
+        BytesInput(LvLayoutNode[] nodes) {
+            super(nodes);
+        }
+
+        @Override
+        final int skipSpaces(int offset, int end) {
+            while (offset < end && data[offset] == ' ') {
+                offset++;
+            }
+
+            return offset;
+        }
+
+        @Override
+        int parse(int nodeIdx, int offset, int end) {
+            return nodes[nodeIdx].parse(data, offset, end);
+        }
+
+        @Override
+        int getValueStart(int nodeIdx, int offset, int end) {
+            return nodes[nodeIdx].getValueStart(data, offset, end);
+        }
+
+        @Override
+        int search(int nodeIdx, int offset, int end) {
+            return ((LvLayoutNodeSearchable) nodes[nodeIdx]).search(data, offset, end);
+        }
+
+        @Override
+        final boolean reset(LvLayoutStretchNode node, int start, int end) {
+            return node.reset(data, start, end);
+        }
+
+        @Override
+        final boolean grow(LvLayoutStretchNode node, int targetPosition, int end) {
+            return node.grow(data, targetPosition, end);
+        }
+    }
+}
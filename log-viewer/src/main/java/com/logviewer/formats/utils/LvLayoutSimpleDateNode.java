@@ -4,6 +4,7 @@ import com.logviewer.utils.LvDateUtils;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
 import java.time.Instant;
@@ -13,12 +14,19 @@ import java.util.function.Supplier;
 
 public class LvLayoutSimpleDateNode extends LvLayoutDateNode {
 
+    private static final int MAX_DATE_LENGTH = 100;
+
     private final String format;
 
     private transient BiFunction<String, ParsePosition, Supplier<Instant>> formatter;
 
     protected transient Supplier<Instant> timestamp;
 
+    /**
+     * {@code null} if the pattern is not full or doesn't end with the seconds.
+     */
+    private transient CachingDateParser cache;
+
     public LvLayoutSimpleDateNode(@NonNull String format) {
         this(format, null);
     }
@@ -33,12 +41,36 @@ public class LvLayoutSimpleDateNode extends LvLayoutDateNode {
         return format;
     }
 
+    private void init() {
+        formatter = FastDateTimeParser.createFormatter(format, zone);
+
+        cache = CachingDateParser.forPattern(format);
+
+        if (cache != null) {
+            try {
+                if (!isFull())
+                    cache = null;
+            } catch (RuntimeException e) {
+                cache = null; // the pattern is not supported by SimpleDateFormat
+            }
+        }
+    }
+
     @Override
     public int parse(String s, int offset, int end) {
-        ParsePosition position = new ParsePosition(offset);
-
         if (formatter == null)
-            formatter = FastDateTimeParser.createFormatter(format, zone);
+            init();
+
+        if (cache != null) {
+            int res = cache.parse(s, offset, end);
+            if (res != CachingDateParser.PARSE_FAILED) {
+                timestamp = null;
+                currentDate = cache.getTime();
+                return res;
+            }
+        }
+
+        ParsePosition position = new ParsePosition(offset);
 
         timestamp = formatter.apply(s, position);
         if (timestamp == null || position.getIndex() > end) {
@@ -46,11 +78,49 @@ public class LvLayoutSimpleDateNode extends LvLayoutDateNode {
             return PARSE_FAILED;
         }
 
+        if (cache != null) {
+            currentDate = LvDateUtils.toNanos(timestamp.get());
+            timestamp = null;
+            cache.remember(s, offset, position.getIndex(), currentDate);
+        }
+
         return position.getIndex();
     }
 
+    /**
+     * The date is parsed by {@link java.text.Format} that requires a string, so a short string is created from the bytes
+     * at the date position instead of decoding the whole line.
+     */
+    @Override
+    public int parse(byte[] data, int offset, int end) {
+        if (cache != null) {
+            int res = cache.parse(data, offset, end);
+            if (res != CachingDateParser.PARSE_FAILED) {
+                timestamp = null;
+                currentDate = cache.getTime();
+                return res;
+            }
+        }
+
+        int length = Math.min(end - offset, MAX_DATE_LENGTH);
+
+        int res = parse(new String(data, offset, length, StandardCharsets.ISO_8859_1), 0, length);
+        if (res == PARSE_FAILED)
+            return PARSE_FAILED;
+
+        return offset + res;
+    }
+
+    @Override
+    public boolean supportsBytes() {
+        return true;
+    }
+
     @Override
     public long getCurrentDate() {
+        if (timestamp == null)
+            return currentDate;
+
         Instant instant = timestamp.get();
 
         return LvDateUtils.toNanos(instant);
@@ -39,11 +39,35 @@ public class LvLayoutStretchNode extends LvLayoutCustomTypeNode {
         return true;
     }
 
+    public boolean reset(byte[] data, int start, int endStr) {
+        this.start = start;
+
+        if (start + minSize > endStr)
+            return false;
+
+        this.end = start + minSize;
+
+        return true;
+    }
+
     @Override
     public final int parse(String s, int offset, int end) {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public final int parse(byte[] data, int offset, int end) {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * @return {@code true} if {@link #reset(byte[], int, int)} and {@link #grow(byte[], int, int)} are supported.
+     */
+    @Override
+    public boolean supportsBytes() {
+        return true;
+    }
+
     @Override
     public boolean removeSpacesBefore() {
         return removeSpacesBefore && minSize > 0;
@@ -61,6 +85,18 @@ public class LvLayoutStretchNode extends LvLayoutCustomTypeNode {
         return idx;
     }
 
+    @Override
+    public int getValueStart(byte[] data, int idx, int end) {
+        if (!removeSpacesBefore)
+            return idx;
+
+        while (idx < end && data[idx] == ' ') {
+            idx++;
+        }
+
+        return idx;
+    }
+
     public int getMinSize() {
         return minSize;
     }
@@ -87,4 +123,14 @@ public class LvLayoutStretchNode extends LvLayoutCustomTypeNode {
 
         return true;
     }
+
+    public boolean grow(byte[] data, int targetPosition, int endStr) {
+        assert targetPosition <= endStr;
+
+        if (end < targetPosition) {
+            end = targetPosition;
+        }
+
+        return true;
+    }
 }
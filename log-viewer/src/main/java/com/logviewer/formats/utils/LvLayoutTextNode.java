@@ -33,11 +33,53 @@ public class LvLayoutTextNode implements LvLayoutNode, LvLayoutNodeSearchable, C
         return nonSpaceIdx + trimmedStartTxt.length();
     }
 
+    @Override
+    public int parse(byte[] data, int offset, int end) {
+        int nonSpaceIdx = offset;
+        while (nonSpaceIdx < end && data[nonSpaceIdx] == ' ') {
+            nonSpaceIdx++;
+        }
+
+        int spaceCount = nonSpaceIdx - offset;
+        if (spaceCount < prefixSpaces)
+            return PARSE_FAILED;
+
+        if (!ByteParseUtils.startsWith(data, nonSpaceIdx, end, trimmedStartTxt))
+            return PARSE_FAILED;
+
+        return nonSpaceIdx + trimmedStartTxt.length();
+    }
+
+    @Override
+    public boolean supportsBytes() {
+        return true;
+    }
+
     @Override
     public boolean removeSpacesBefore() {
         return false;
     }
 
+    /**
+     * The text expected at the node position after the spaces, used by {@link LvLayoutCompiledInput} to inline
+     * the node.
+     */
+    String getAnchorText() {
+        return trimmedStartTxt;
+    }
+
+    /**
+     * @return {@code true} if any number of spaces (but not less than {@link #getAnchorMinSpaces()}) may be before
+     * {@link #getAnchorText()}.
+     */
+    boolean isAnchorAfterSpaces() {
+        return true;
+    }
+
+    int getAnchorMinSpaces() {
+        return prefixSpaces;
+    }
+
     @Override
     public LvLayoutTextNode clone() {
         try {
@@ -57,6 +99,11 @@ public class LvLayoutTextNode implements LvLayoutNode, LvLayoutNodeSearchable, C
         return s.indexOf(txt, offset);
     }
 
+    @Override
+    public int search(byte[] data, int offset, int end) {
+        return ByteParseUtils.indexOf(data, offset, end, txt);
+    }
+
     public static LvLayoutTextNode of(@NonNull String txt) {
         assert txt.length() > 0;
 
@@ -73,6 +120,29 @@ public class LvLayoutTextNode implements LvLayoutNode, LvLayoutNodeSearchable, C
 
                         return PARSE_FAILED;
                     }
+
+                    @Override
+                    public int parse(byte[] data, int offset, int end) {
+                        if (ByteParseUtils.startsWith(data, offset, end, this.txt))
+                            return offset + this.prefixSpaces;
+
+                        return PARSE_FAILED;
+                    }
+
+                    @Override
+                    String getAnchorText() {
+                        return this.txt;
+                    }
+
+                    @Override
+                    boolean isAnchorAfterSpaces() {
+                        return false;
+                    }
+
+                    @Override
+                    int getAnchorMinSpaces() {
+                        return 0;
+                    }
                 };
             }
 
@@ -96,10 +166,29 @@ public class LvLayoutTextNode implements LvLayoutNode, LvLayoutNodeSearchable, C
                     return PARSE_FAILED;
                 }
 
+                @Override
+                public int parse(byte[] data, int offset, int end) {
+                    int next = offset + 1;
+                    if (next <= end && (data[offset] & 0xFF) == a)
+                        return next;
+
+                    return PARSE_FAILED;
+                }
+
                 @Override
                 public boolean removeSpacesBefore() {
                     return true;
                 }
+
+                @Override
+                String getAnchorText() {
+                    return this.txt;
+                }
+
+                @Override
+                int getAnchorMinSpaces() {
+                    return 0;
+                }
             };
         }
 
@@ -0,0 +1,44 @@
+package com.logviewer.impl;
+
+import com.logviewer.api.LvFileNavigationManager;
+import com.logviewer.files.ArchiveMember;
+import com.logviewer.files.FileType;
+import com.logviewer.files.FileTypes;
+import org.springframework.lang.Nullable;
+
+import java.nio.file.Path;
+
+public class LvArchiveMemberItem implements LvFileNavigationManager.LvFsItem {
+
+    private final ArchiveMember.Entry entry;
+
+    public LvArchiveMemberItem(ArchiveMember.Entry entry) {
+        this.entry = entry;
+    }
+
+    @Override
+    public Path getPath() {
+        return entry.getMember().toPath();
+    }
+
+    @Override
+    public boolean isDirectory() {
+        return false;
+    }
+
+    @Override
+    public FileType getType() {
+        return FileTypes.detectType(entry.getMember().getName());
+    }
+
+    @Override
+    public long getSize() {
+        return entry.getSize();
+    }
+
+    @Nullable
+    @Override
+    public Long getModificationTime() {
+        return entry.getModificationTime();
+    }
+}
@@ -1,9 +1,12 @@
 package com.logviewer.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.logviewer.api.LvFileAccessManager;
 import com.logviewer.api.LvFileNavigationManager;
 import com.logviewer.data2.Log;
 import com.logviewer.data2.LogService;
+import com.logviewer.files.ArchiveMember;
 import com.logviewer.utils.Grep;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,24 +15,37 @@ import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.file.AccessDeniedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class LvFileNavigationManagerImpl implements LvFileNavigationManager {
 
     private static final Logger LOG = LoggerFactory.getLogger(LvFileNavigationManagerImpl.class);
 
+    private static final int MAX_CACHED_ARCHIVES = 64;
+
     private final LogService logService;
     private final LvFileAccessManager fileAccessManager;
 
+    /**
+     * Listing of a tar.gz archive decompresses the whole archive, the members are cached until the archive changes.
+     */
+    private final Cache<Path, ArchiveListing> archiveListings = Caffeine.newBuilder().maximumSize(MAX_CACHED_ARCHIVES).build();
+
     @Value("${log-viewer.default-directory:}")
     private String defaultDirectory;
 
@@ -66,6 +82,9 @@ public class LvFileNavigationManagerImpl implements LvFileNavigationManager {
         if (path != null && !path.isAbsolute())
             throw new SecurityException("path must be absolute");
 
+        if (path != null && ArchiveMember.isArchive(path) && Files.isRegularFile(path))
+            return getArchiveMembers(path, filter);
+
         if (path != null && !fileAccessManager.isDirectoryVisible(path))
             throw new SecurityException(fileAccessManager.errorMessage(path));
 
@@ -96,12 +115,88 @@ public class LvFileNavigationManagerImpl implements LvFileNavigationManager {
         }
     }
 
+    private List<LvFsItem> getArchiveMembers(@NonNull Path archive, Filter filter) throws IOException {
+        if (!fileAccessManager.isFileVisible(archive))
+            throw new SecurityException(fileAccessManager.errorMessage(archive));
+
+        var fsItems = listArchive(archive).stream()
+                .sorted((e1, e2) -> Long.compare(e2.getModificationTime(), e1.getModificationTime()))
+                .map(it -> (LvFsItem) new LvArchiveMemberItem(it));
+
+        if (filter != null) {
+            List<LvFsItem> candidates = fsItems.filter(it -> isInDateRange(it, filter)).toList();
+            if (candidates.isEmpty())
+                return candidates;
+
+            Set<Path> matched = grepArchive(archive, candidates, filter);
+
+            return candidates.stream().filter(it -> matched.contains(it.getPath())).toList();
+        }
+
+        return fsItems.toList();
+    }
+
+    /**
+     * Searches the text in the members of the archive reading the archive once. The members are not opened as logs,
+     * so no indexes are created for them.
+     *
+     * @return the paths of the candidates containing the text.
+     */
+    private Set<Path> grepArchive(@NonNull Path archive, List<LvFsItem> candidates, Filter filter) {
+        Set<Path> candidatePaths = candidates.stream().map(LvFsItem::getPath).collect(Collectors.toSet());
+
+        Set<Path> res = new HashSet<>();
+
+        try {
+            ArchiveMember.readMembers(archive, (member, content) -> {
+                Path path = member.toPath();
+
+                if (candidatePaths.contains(path) && Grep.grep(Channels.newChannel(content), filter.text()))
+                    res.add(path);
+            });
+        } catch (IOException e) {
+            LOG.error(e.getMessage());
+        }
+
+        return res;
+    }
+
+    private List<ArchiveMember.Entry> listArchive(@NonNull Path archive) throws IOException {
+        BasicFileAttributes attrs = Files.readAttributes(archive, BasicFileAttributes.class);
+        long size = attrs.size();
+        long modificationTime = attrs.lastModifiedTime().toMillis();
+
+        ArchiveListing listing = archiveListings.getIfPresent(archive);
+
+        if (listing == null || listing.size != size || listing.modificationTime != modificationTime) {
+            listing = new ArchiveListing(size, modificationTime, ArchiveMember.list(archive));
+            archiveListings.put(archive, listing);
+        }
+
+        return listing.entries;
+    }
+
     private boolean containsText(LvFsItem fsItem, Filter filter) {
         if (fsItem.isDirectory()) {
             LOG.debug("FsItem is directory{}", fsItem);
             return false;
         }
 
+        if (!isInDateRange(fsItem, filter))
+            return false;
+
+        Log log = logService.openLog(fsItem.getPath().toString());
+
+        try (Log.LogSnapshot snapshot = (Log.LogSnapshot) log.createSnapshot();
+             SeekableByteChannel channel = snapshot.openDataChannel()) {
+            return Grep.grep(channel, filter.text());
+        } catch (Exception e) {
+            LOG.error(e.getMessage());
+            return false;
+        }
+    }
+
+    private static boolean isInDateRange(LvFsItem fsItem, Filter filter) {
         assert fsItem.getModificationTime() != null;
 
         LocalDate modificationDate = Instant.ofEpochMilli(fsItem.getModificationTime())
@@ -111,14 +206,7 @@ public class LvFileNavigationManagerImpl implements LvFileNavigationManager {
             return false;
         }
 
-        Log log = logService.openLog(fsItem.getPath().toString());
-
-        try (Log.LogSnapshot snapshot = (Log.LogSnapshot) log.createSnapshot()) {
-            return Grep.grep(snapshot.getDataRealFile().toFile(), filter.text());
-        } catch (Exception e) {
-            LOG.error(e.getMessage());
-            return false;
-        }
+        return true;
     }
 
     // For tests only.
@@ -126,4 +214,16 @@ public class LvFileNavigationManagerImpl implements LvFileNavigationManager {
         this.defaultDirectory = defaultDirectory;
         return this;
     }
+
+    private static class ArchiveListing {
+        private final long size;
+        private final long modificationTime;
+        private final List<ArchiveMember.Entry> entries;
+
+        ArchiveListing(long size, long modificationTime, List<ArchiveMember.Entry> entries) {
+            this.size = size;
+            this.modificationTime = modificationTime;
+            this.entries = entries;
+        }
+    }
 }
@@ -1,6 +1,7 @@
 package com.logviewer.impl;
 
 import com.logviewer.api.LvFileNavigationManager;
+import com.logviewer.files.ArchiveMember;
 import com.logviewer.files.FileType;
 import com.logviewer.files.FileTypes;
 import org.springframework.lang.Nullable;
@@ -20,9 +21,12 @@ public class LvFsItemImpl implements LvFileNavigationManager.LvFsItem {
         this.attributes = attributes;
     }
 
+    /**
+     * Zip and tar.gz archives are listed as directories, the members of an archive are its children.
+     */
     @Override
     public boolean isDirectory() {
-        return attributes.isDirectory();
+        return attributes.isDirectory() || (attributes.isRegularFile() && ArchiveMember.isArchive(path));
     }
 
     @Override
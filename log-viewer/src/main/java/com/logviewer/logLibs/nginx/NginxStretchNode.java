@@ -78,6 +78,11 @@ public class NginxStretchNode extends LvLayoutStretchNode {
         return true;
     }
 
+    @Override
+    public boolean supportsBytes() {
+        return false;
+    }
+
     @Override
     public NginxStretchNode clone() {
         return new NginxStretchNode(getFieldName(), getFieldType(), removeSpacesBefore, minSize);
@@ -1,6 +1,7 @@
 package com.logviewer.services;
 
 import com.logviewer.api.LvFileAccessManager;
+import com.logviewer.files.ArchiveMember;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
@@ -79,6 +80,11 @@ public class LvFileAccessManagerImpl implements LvFileAccessManager {
         if (!file.isAbsolute())
             return false;
 
+        // A member of an archive is visible if the archive is visible
+        ArchiveMember member = ArchiveMember.fromPath(file);
+        if (member != null)
+            file = member.getArchive();
+
         if (descriptors == null)
             return true;
 
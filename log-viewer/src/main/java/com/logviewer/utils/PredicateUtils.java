@@ -1,8 +1,9 @@
 package com.logviewer.utils;
 
-import com.logviewer.filters.CompositeRecordPredicate;
-import com.logviewer.filters.DatePredicate;
-import com.logviewer.filters.RecordPredicate;
+import com.logviewer.data2.LogRecord;
+import com.logviewer.data2.LvPredicateChecker;
+import com.logviewer.filters.*;
+import com.logviewer.web.session.tasks.SearchPattern;
 import org.springframework.lang.Nullable;
 
 import java.util.List;
@@ -49,4 +50,46 @@ public class PredicateUtils {
         return null;
     }
 
+    /**
+     * Finds a substring that must be present in the message of every record accepted by the filter. The substring
+     * predicate is used only if the predicates evaluated before it cannot fail with an error, because the records
+     * failed with an error are returned to the user as well.
+     *
+     * @see LvPredicateChecker#applyFilter(LogRecord, RecordPredicate)
+     */
+    @Nullable
+    public static SearchPattern extractSearchPattern(@Nullable RecordPredicate filter) {
+        if (filter instanceof SubstringPredicate)
+            return ((SubstringPredicate) filter).getSearch();
+
+        if (filter instanceof CompositeRecordPredicate) {
+            CompositeRecordPredicate comp = (CompositeRecordPredicate) filter;
+            if (!comp.isAnd())
+                return null;
+
+            for (RecordPredicate predicate : comp.getPredicates()) {
+                SearchPattern res = extractSearchPattern(predicate);
+                if (res != null)
+                    return res;
+
+                if (mayFail(predicate))
+                    return null;
+            }
+        }
+
+        return null;
+    }
+
+    private static boolean mayFail(RecordPredicate predicate) {
+        if (predicate instanceof JsPredicate)
+            return true;
+
+        if (predicate instanceof NotPredicate)
+            return mayFail(((NotPredicate) predicate).getDelegate());
+
+        if (predicate instanceof CompositeRecordPredicate)
+            return ((CompositeRecordPredicate) predicate).getPredicates().stream().anyMatch(PredicateUtils::mayFail);
+
+        return false;
+    }
 }
@@ -29,9 +29,12 @@ public class TestPredicate implements RecordPredicate {
                         if (!added) {
                             waited.add(record);
                             added = true;
+
+                            // Wakes up waitForLocked(). Notifying on every iteration makes two locked records wake
+                            // each other up endlessly, so unlock() may never get the monitor
+                            TestPredicate.class.notifyAll();
                         }
 
-                        TestPredicate.class.notifyAll();
                         TestPredicate.class.wait();
                     }
 
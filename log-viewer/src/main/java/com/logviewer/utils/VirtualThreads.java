@@ -0,0 +1,35 @@
+package com.logviewer.utils;
+
+import org.springframework.lang.NonNull;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access to the virtual threads. The virtual threads appeared in Java 21, but the baseline of the project is Java 17,
+ * so this class is a stub, the multi-release jar contains the Java 21 version of the class
+ * ({@code src/main/java21}) that is loaded on JDK 21+.
+ */
+public final class VirtualThreads {
+
+    public static final String ENABLED_PROPERTY = "log-viewer.virtual-threads.enabled";
+    public static final String MAX_RUNNING_TASKS_PROPERTY = "log-viewer.virtual-threads.max-running-tasks";
+
+    private VirtualThreads() {
+
+    }
+
+    /**
+     * @return {@code true} if the JVM supports the virtual threads.
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     */
+    @NonNull
+    public static ExecutorService newThreadPerTaskExecutor(@NonNull String threadNamePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21+");
+    }
+}
@@ -196,7 +196,8 @@ public class LogViewController extends AbstractRestRequestHandler {
                     }
                 });
 
-        logProcess.start();
+        // A download must not delay the pages loaded by the sessions
+        LogTaskScheduler.runAs(LogTaskScheduler.Priority.BULK, out, logProcess::start);
 
         try {
             cnt.await();
@@ -0,0 +1,231 @@
+package com.logviewer.web.session;
+
+import com.logviewer.data2.LogTaskScheduler;
+import com.logviewer.data2.LogView;
+import com.logviewer.data2.Position;
+import com.logviewer.filters.RecordPredicate;
+import com.logviewer.utils.LvGsonUtils;
+import com.logviewer.web.session.tasks.LoadNextResponse;
+import com.logviewer.web.session.tasks.LoadRecordTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Shares the loading of a page between the sessions requesting the same page at the same time. When an alert fires,
+ * many users open the same permalink, the sessions load the same records from the same position. The first task is
+ * executed, the identical tasks started before it finishes wait for its result, each of them gets its own copy of the
+ * response.
+ *
+ * The tasks are identical if they have the same logs, hashes, filter, start position, direction and record count.
+ * The loading is cancelled when all the waiting tasks are cancelled.
+ */
+public class LoadCoalescer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LoadCoalescer.class);
+
+    private final Map<Key, SharedLoad> loads = new HashMap<>();
+
+    private final LongAdder coalescedCount = new LongAdder();
+
+    /**
+     * @return the task loading the same page as {@code task}, the task is executed only if there is no identical
+     * task in progress.
+     */
+    @NonNull
+    public SessionTask<LoadNextResponse> coalesce(@NonNull LoadRecordTask task) {
+        Key key = Key.of(task);
+        if (key == null)
+            return task;
+
+        return new CoalescedLoadTask(key, task);
+    }
+
+    /**
+     * @return the number of the tasks served by the loading started by another task.
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.sum();
+    }
+
+    /**
+     * @return the number of the loadings in progress.
+     */
+    public synchronized int getLoadCount() {
+        return loads.size();
+    }
+
+    /**
+     * @return the loading task executed by {@code task}, {@code null} if {@code task} doesn't load a page.
+     */
+    @Nullable
+    static LoadRecordTask getLoadTask(@NonNull SessionTask<?> task) {
+        if (task instanceof LoadRecordTask)
+            return (LoadRecordTask) task;
+
+        if (task instanceof CoalescedLoadTask)
+            return ((CoalescedLoadTask) task).task;
+
+        return null;
+    }
+
+    private class CoalescedLoadTask extends SessionTask<LoadNextResponse> {
+
+        private final Key key;
+        private final LoadRecordTask task;
+
+        private SharedLoad load;
+        private BiConsumer<LoadNextResponse, Throwable> consumer;
+
+        CoalescedLoadTask(Key key, LoadRecordTask task) {
+            super(task.sender, task.logs);
+            this.key = key;
+            this.task = task;
+        }
+
+        @Override
+        public void execute(BiConsumer<LoadNextResponse, Throwable> consumer) {
+            SharedLoad load;
+            boolean start = false;
+
+            synchronized (LoadCoalescer.this) {
+                load = loads.get(key);
+
+                if (load == null) {
+                    load = new SharedLoad(key, task);
+                    loads.put(key, load);
+                    start = true;
+                } else {
+                    coalescedCount.increment();
+                }
+
+                this.load = load;
+                this.consumer = consumer;
+                load.waiters.add(this);
+            }
+
+            if (start)
+                load.start();
+        }
+
+        @Override
+        public LogTaskScheduler.Priority getPriority() {
+            return task.getPriority();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized (LoadCoalescer.this) {
+                if (load == null || !load.waiters.remove(this))
+                    return;
+
+                if (!load.waiters.isEmpty())
+                    return;
+
+                loads.remove(key, load);
+            }
+
+            load.task.cancel();
+        }
+    }
+
+    private class SharedLoad {
+        private final Key key;
+        private final LoadRecordTask task;
+
+        private final List<CoalescedLoadTask> waiters = new ArrayList<>();
+
+        SharedLoad(Key key, LoadRecordTask task) {
+            this.key = key;
+            this.task = task;
+        }
+
+        void start() {
+            task.execute((res, e) -> {
+                List<CoalescedLoadTask> waiters;
+
+                synchronized (LoadCoalescer.this) {
+                    loads.remove(key, this);
+
+                    waiters = new ArrayList<>(this.waiters);
+                    this.waiters.clear();
+                }
+
+                for (CoalescedLoadTask waiter : waiters) {
+                    try {
+                        waiter.consumer.accept(res == null ? null : res.copy(), e);
+                    } catch (Throwable ex) {
+                        LOG.error("Failed to call callback", ex);
+                    }
+                }
+            });
+        }
+    }
+
+    private static class Key {
+        private final List<String> logIds;
+        @Nullable
+        private final Map<String, String> hashes;
+        @Nullable
+        private final String filter;
+        @Nullable
+        private final Position start;
+        private final boolean backward;
+        private final int recordCount;
+
+        private Key(List<String> logIds, @Nullable Map<String, String> hashes, @Nullable String filter,
+                    @Nullable Position start, boolean backward, int recordCount) {
+            this.logIds = logIds;
+            this.hashes = hashes == null ? null : new HashMap<>(hashes);
+            this.filter = filter;
+            this.start = start;
+            this.backward = backward;
+            this.recordCount = recordCount;
+        }
+
+        /**
+         * @return the key of the task, {@code null} if the filter of the task cannot be serialized, such tasks are not
+         * coalesced.
+         */
+        @Nullable
+        static Key of(@NonNull LoadRecordTask task) {
+            String filter = null;
+
+            if (task.getFilter() != null) {
+                try {
+                    filter = LvGsonUtils.GSON.toJson(task.getFilter(), RecordPredicate.class);
+                } catch (RuntimeException e) {
+                    return null;
+                }
+            }
+
+            List<String> logIds = Stream.of(task.logs).map(LogView::getId).sorted().collect(Collectors.toList());
+
+            return new Key(logIds, task.getHashes(), filter, task.getStart(), task.isBackward(), task.getRecordCount());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+
+            Key key = (Key) o;
+
+            return backward == key.backward && recordCount == key.recordCount && logIds.equals(key.logIds)
+                    && Objects.equals(hashes, key.hashes) && Objects.equals(filter, key.filter)
+                    && Objects.equals(start, key.start);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(logIds, hashes, filter, start, backward, recordCount);
+        }
+    }
+}
@@ -4,27 +4,60 @@ import com.logviewer.data2.*;
 import com.logviewer.filters.RecordPredicate;
 import com.logviewer.utils.Pair;
 import com.logviewer.utils.PredicateUtils;
+import com.logviewer.web.session.tasks.SearchPattern;
 import org.springframework.lang.NonNull;
 import org.springframework.lang.Nullable;
 
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 
 public class LocalFileRecordLoader implements LogProcess {
+
+    /**
+     * The item collected by the chunk processor when the record is out of the time range specified by the filter.
+     */
+    private static final Pair<LogRecord, Throwable> FILTER_TIME_LIMIT_REACHED = new Pair<>();
+
+    /**
+     * The found records are delivered to the listener in batches, every call of {@link LogDataListener#onData} takes
+     * the lock of the loading task or sends a message for a remote log. The first record is delivered alone, so the
+     * task can limit the time range of other logs early, then the size of a batch grows from {@link #MIN_BATCH_SIZE}
+     * to {@link #MAX_BATCH_SIZE} chars.
+     */
+    static final int MIN_BATCH_SIZE = 4 * 1024;
+    static final int MAX_BATCH_SIZE = 64 * 1024;
+
+    /**
+     * A batch is delivered when its first record waits longer than this time. The time is checked for every record
+     * read by the scan, not only for the found ones, so a found record is not held back while the scan reads
+     * the records rejected by the filter.
+     */
+    static final long BATCH_TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+
     private final Supplier<Snapshot> snapshotFactory;
 
+    /**
+     * The cache the snapshot has been taken from, {@code null} if the snapshot is created for this loader only.
+     */
+    @Nullable
+    private final ReadCursorCache cursors;
+
     private final ExecutorService executor;
 
+    private final ParallelLogScanner scanner;
+
     private final LogDataListener listener;
 
     private final Position start;
 
     private final RecordPredicate filter;
     private final Long timeLimitFomFilter;
+    private final SearchPattern prefilter;
     private final int recordCountLimit;
     private final boolean backward;
 
@@ -38,12 +71,30 @@ public class LocalFileRecordLoader implements LogProcess {
 
     private volatile Future<?> future;
 
+    private final CancellationToken cancellation = new CancellationToken();
+
     public LocalFileRecordLoader(Supplier<Snapshot> snapshotFactory, @NonNull ExecutorService executor,
-                                 LogDataListener listener,
+                                 @NonNull ParallelLogScanner scanner, LogDataListener listener,
+                                 @Nullable Position start, RecordPredicate filter, boolean backward,
+                                 int recordCountLimit, long sizeLimit, @Nullable String hash) {
+        this(snapshotFactory, null, executor, scanner, listener, start, filter, backward, recordCountLimit, sizeLimit,
+                hash);
+    }
+
+    /**
+     * @param snapshotFactory takes the snapshot from {@code cursors} if the cache is specified, the snapshot is
+     *                        returned to the cache after loading.
+     */
+    public LocalFileRecordLoader(Supplier<Snapshot> snapshotFactory, @Nullable ReadCursorCache cursors,
+                                 @NonNull ExecutorService executor,
+                                 @NonNull ParallelLogScanner scanner, LogDataListener listener,
                                  @Nullable Position start, RecordPredicate filter, boolean backward,
                                  int recordCountLimit, long sizeLimit, @Nullable String hash) {
         this.snapshotFactory = snapshotFactory;
+        this.cursors = cursors;
         this.executor = executor;
+        // Without a filter every record is loaded, the page is filled long before the end of the first chunk
+        this.scanner = filter == null ? ParallelLogScanner.SEQUENTIAL : scanner;
         this.listener = listener;
         this.start = start;
         this.filter = filter;
@@ -53,6 +104,7 @@ public class LocalFileRecordLoader implements LogProcess {
         this.hash = hash;
 
         timeLimitFomFilter = PredicateUtils.extractTimeLimit(filter, !backward);
+        prefilter = PredicateUtils.extractSearchPattern(filter);
     }
 
     @Override
@@ -63,39 +115,93 @@ public class LocalFileRecordLoader implements LogProcess {
         assert future == null;
 
         future = executor.submit(() -> {
-            try (Snapshot snapshot = snapshotFactory.get()) {
-                boolean processedAllLined;
-                Status status;
+            Snapshot snapshot = snapshotFactory.get();
+            snapshot.setCancellationToken(cancellation);
 
-                try {
-                    if (hash != null && !snapshot.isValidHash(hash))
-                        throw new LogCrashedException();
+            FilterResultCache.Recording filterResults = null;
+            FieldIndex.Recording fieldValues = null;
+            LogIndex.Recording timeIndexEntries = null;
 
-                    MyRecordPredicate predicate = new MyRecordPredicate(snapshot);
+            boolean processedAllLined;
+            Status status;
+            boolean reusable = false;
 
-                    boolean hasMoreLine;
+            try {
+                if (hash != null && !snapshot.isValidHash(hash))
+                    throw new LogCrashedException();
 
-                    if (start == null) {
-                        assert backward;
-                        Long startTime = PredicateUtils.extractTimeLimit(filter, true);
-                        if (startTime != null) {
-                            hasMoreLine = snapshot.processFromTimeBack(startTime, predicate);
-                        } else {
-                            hasMoreLine = snapshot.processRecordsBack(snapshot.getSize(), false, predicate);
-                        }
+                MyRecordPredicate predicate = new MyRecordPredicate();
+
+                boolean hasMoreLine;
+
+                try {
+                    LogRecord firstRecord = findFirstRecord(snapshot);
+                    if (firstRecord == null) {
+                        hasMoreLine = true;
                     } else {
-                        hasMoreLine = searchFromPosition(snapshot, predicate);
+                        RegionFilter regionFilter = null;
+
+                        filterResults = startFilterResultRecording(snapshot);
+                        if (filterResults != null)
+                            regionFilter = filterResults.getRegionFilter();
+
+                        FieldIndex fieldIndex = getFieldIndex(snapshot);
+                        if (fieldIndex != null) {
+                            fieldValues = fieldIndex.startRecording(snapshot.getSize());
+                            regionFilter = RegionFilter.and(regionFilter, fieldIndex.createRegionFilter(filter));
+                        }
+
+                        snapshot.setRegionFilter(regionFilter);
+
+                        timeIndexEntries = startTimeIndexRecording(snapshot);
+
+                        FilterResultCache.Recording filterResultRecording = filterResults;
+                        FieldIndex.Recording fieldValueRecording = fieldValues;
+                        LogIndex.Recording timeIndexRecording = timeIndexEntries;
+
+                        hasMoreLine = scanner.scan(snapshot, firstRecord, backward, prefilter,
+                                () -> createChunkProcessor(snapshot, predicate, filterResultRecording,
+                                        fieldValueRecording, timeIndexRecording),
+                                predicate);
                     }
+                } finally {
+                    predicate.flush();
+                }
+
+                processedAllLined = hasMoreLine || predicate.stoppedByFilterTimeLimit;
+                status = new Status(snapshot);
+                reusable = true;
+            } catch (Throwable e) {
+                processedAllLined = false;
+                status = new Status(e);
+
+                // The cancellation stops the reading between the pages, the snapshot stays consistent
+                reusable = e instanceof CancellationException;
+            } finally {
+                snapshot.setCancellationToken(null);
+
+                snapshot.setRegionFilter(null);
 
-                    processedAllLined = hasMoreLine || predicate.stoppedByFilterTimeLimit;
-                    status = new Status(snapshot);
-                } catch (Throwable e) {
-                    processedAllLined = false;
-                    status = new Status(e);
+                if (filterResults != null)
+                    filterResults.finish();
+
+                if (fieldValues != null)
+                    fieldValues.finish();
+
+                if (timeIndexEntries != null)
+                    timeIndexEntries.finish();
+
+                if (cursors == null) {
+                    snapshot.close();
+                } else {
+                    // The snapshot is returned before the notification, the next page may be requested at once
+                    cursors.release(snapshot, reusable);
                 }
 
-                listener.onFinish(status, processedAllLined);
+                cancellation.released();
             }
+
+            listener.onFinish(status, processedAllLined);
         });
 
         state = 1;
@@ -124,7 +230,9 @@ public class LocalFileRecordLoader implements LogProcess {
             throw new IllegalStateException("Loader is not started");
 
         if (state == 1) {
-            future.cancel(true);
+            // The thread is not interrupted, the interruption closes the channel of the snapshot
+            cancellation.cancel();
+            future.cancel(false);
             state = 2;
         }
     }
@@ -134,48 +242,37 @@ public class LocalFileRecordLoader implements LogProcess {
         this.timeLimit = limit;
     }
 
-    private boolean searchFromPosition(Snapshot snapshot, Predicate<LogRecord> predicate) throws IOException {
+    /**
+     * @return the first record to load or {@code null} if there are no records in the loading direction.
+     */
+    @Nullable
+    private LogRecord findFirstRecord(Snapshot snapshot) throws IOException {
+        if (start == null) {
+            assert backward;
+            Long startTime = PredicateUtils.extractTimeLimit(filter, true);
+            if (startTime != null)
+                return firstRecord(consumer -> snapshot.processFromTimeBack(startTime, consumer));
+
+            return firstRecord(consumer -> snapshot.processRecordsBack(snapshot.getSize(), false, consumer));
+        }
+
         Long startTimeFromFilters = PredicateUtils.extractTimeLimit(filter, backward);
 
-        int idCmp = start.getLogId().compareTo(snapshot.getLog().getId());
+        int idCmp = start.getLogId().compareTo(snapshot.getView().getId());
         if (idCmp == 0) {
-            AtomicBoolean wrongDateFlag = new AtomicBoolean();
-            AtomicBoolean firstRecordProcessedFlag = new AtomicBoolean();
-
-            boolean res;
+            LogRecord res;
 
             if (backward) {
-                res = snapshot.processRecordsBack(start.getLocalPosition(), true, rec -> {
-                    if (startTimeFromFilters != null && rec.hasTime() && !firstRecordProcessedFlag.get()) {
-                        if (rec.getTime() > startTimeFromFilters) {
-                            wrongDateFlag.set(true);
-                            return false;
-                        }
-                    }
-                    firstRecordProcessedFlag.set(true);
+                res = firstRecord(consumer -> snapshot.processRecordsBack(start.getLocalPosition(), true, consumer));
 
-                    return predicate.test(rec);
-                });
-
-                if (wrongDateFlag.get())
-                    return snapshot.processFromTimeBack(startTimeFromFilters, predicate);
+                if (res != null && startTimeFromFilters != null && res.hasTime() && res.getTime() > startTimeFromFilters)
+                    return firstRecord(consumer -> snapshot.processFromTimeBack(startTimeFromFilters, consumer));
             }
             else {
-                res = snapshot.processRecords(start.getLocalPosition(), true, rec -> {
-                    if (startTimeFromFilters != null && rec.hasTime() && !firstRecordProcessedFlag.get()) {
-                        if (rec.getTime() < startTimeFromFilters) {
-                            wrongDateFlag.set(true);
-                            return false;
-                        }
-                    }
+                res = firstRecord(consumer -> snapshot.processRecords(start.getLocalPosition(), true, consumer));
 
-                    firstRecordProcessedFlag.set(true);
-
-                    return predicate.test(rec);
-                });
-
-                if (wrongDateFlag.get())
-                    return snapshot.processFromTime(startTimeFromFilters, predicate);
+                if (res != null && startTimeFromFilters != null && res.hasTime() && res.getTime() < startTimeFromFilters)
+                    return firstRecord(consumer -> snapshot.processFromTime(startTimeFromFilters, consumer));
             }
 
             return res;
@@ -191,7 +288,8 @@ public class LocalFileRecordLoader implements LogProcess {
             if (startTimeFromFilters != null && startTime > startTimeFromFilters)
                 startTime = startTimeFromFilters;
 
-            return snapshot.processFromTimeBack(startTime, predicate);
+            long time = startTime;
+            return firstRecord(consumer -> snapshot.processFromTimeBack(time, consumer));
         }
         else {
             long startTime;
@@ -203,45 +301,195 @@ public class LocalFileRecordLoader implements LogProcess {
             if (startTimeFromFilters != null && startTime < startTimeFromFilters)
                 startTime = startTimeFromFilters;
 
-            return snapshot.processFromTime(startTime, predicate);
+            long time = startTime;
+            return firstRecord(consumer -> snapshot.processFromTime(time, consumer));
         }
     }
 
-    private class MyRecordPredicate implements Predicate<LogRecord> {
+    @Nullable
+    private static LogRecord firstRecord(RecordSource source) throws IOException {
+        LogRecord[] res = new LogRecord[1];
 
-        private final LvPredicateChecker predicateChecker;
-        private long readSize;
-        private int recordCount;
+        source.process(record -> {
+            res[0] = record;
+            return false;
+        });
 
-        private boolean stoppedByFilterTimeLimit;
+        return res[0];
+    }
 
-        public MyRecordPredicate(Snapshot snapshot) {
-            this.predicateChecker = new LvPredicateChecker(snapshot.getLog());
-        }
+    /**
+     * @return the recording of the filter results, {@code null} if the results of the filter are not cached.
+     */
+    @Nullable
+    private FilterResultCache.Recording startFilterResultRecording(Snapshot snapshot) {
+        if (filter == null || !(snapshot instanceof Log.LogSnapshot))
+            return null;
+
+        FilterResultCache cache = ((Log.LogSnapshot) snapshot).getLog().getFilterResultCache();
+        if (cache == null)
+            return null;
+
+        return cache.startRecording(snapshot, filter);
+    }
+
+    /**
+     * @return the index of the field values to skip the blocks rejected by the filter and to collect the values of
+     * the read records, {@code null} if the log is not indexed.
+     */
+    @Nullable
+    private static FieldIndex getFieldIndex(Snapshot snapshot) {
+        if (!(snapshot instanceof Log.LogSnapshot))
+            return null;
+
+        return ((Log.LogSnapshot) snapshot).getLog().getFieldIndex(snapshot);
+    }
+
+    /**
+     * @return the recording of the time index entries of the read records, {@code null} if the time index is not
+     * stored.
+     */
+    @Nullable
+    private static LogIndex.Recording startTimeIndexRecording(Snapshot snapshot) {
+        if (!(snapshot instanceof Log.LogSnapshot))
+            return null;
+
+        return ((Log.LogSnapshot) snapshot).startTimeIndexRecording();
+    }
+
+    private ParallelLogScanner.ChunkProcessor<Pair<LogRecord, Throwable>> createChunkProcessor(Snapshot snapshot,
+                                                                        MyRecordPredicate predicate,
+                                                                        @Nullable FilterResultCache.Recording filterResults,
+                                                                        @Nullable FieldIndex.Recording fieldValues,
+                                                                        @Nullable LogIndex.Recording timeIndexEntries) {
+        LvPredicateChecker predicateChecker = new LvPredicateChecker(snapshot.getView());
+
+        FilterResultCache.ChunkRecorder recorder = filterResults == null ? null : filterResults.createChunkRecorder();
+        FieldIndex.RunRecorder fieldRecorder = fieldValues == null ? null : fieldValues.createRunRecorder();
+        LogIndex.Recorder timeRecorder = timeIndexEntries == null ? null : timeIndexEntries.createRecorder();
+
+        return (record, out) -> {
+            predicate.checkTimeBudget();
+
+            if (fieldRecorder != null)
+                fieldRecorder.record(record);
+
+            if (timeRecorder != null)
+                timeRecorder.record(record);
 
-        @Override
-        public boolean test(LogRecord record) {
             if (timeLimitFomFilter != null && record.hasTime()) {
                 if (backward ? record.getTime() < timeLimitFomFilter : record.getTime() > timeLimitFomFilter) {
-                    stoppedByFilterTimeLimit = true;
+                    if (recorder != null)
+                        recorder.interrupt();
+
+                    out.add(FILTER_TIME_LIMIT_REACHED);
                     return false;
                 }
             }
 
-            if (!timeOk(record))
+            if (!timeOk(record)) {
+                if (recorder != null)
+                    recorder.interrupt();
+
                 return false;
+            }
 
             Pair<LogRecord, Throwable> restRecord = predicateChecker.applyFilter(record, filter);
 
+            if (recorder != null)
+                recorder.record(record, restRecord != null);
+
             if (restRecord != null) {
-                recordCount++;
-                readSize += record.getMessage().length();
+                out.add(restRecord);
+                return out.size() < recordCountLimit;
+            }
+
+            return true;
+        };
+    }
+
+    private interface RecordSource {
+        boolean process(Predicate<LogRecord> consumer) throws IOException;
+    }
+
+    private class MyRecordPredicate implements Predicate<Pair<LogRecord, Throwable>> {
+
+        private long readSize;
+        private int recordCount;
 
-                listener.onData(new RecordList(restRecord));
+        private boolean stoppedByFilterTimeLimit;
+
+        private RecordList batch = new RecordList();
+        private int batchSize;
+        private long batchStartTime;
+
+        /**
+         * {@code true} if the batch is not empty, read without the lock by the threads scanning the chunks.
+         */
+        private volatile boolean hasPendingBatch;
+        private int batchSizeLimit;
+
+        private long lastTimeLimit;
+
+        @Override
+        public synchronized boolean test(Pair<LogRecord, Throwable> restRecord) {
+            if (restRecord == FILTER_TIME_LIMIT_REACHED) {
+                stoppedByFilterTimeLimit = true;
+                return false;
+            }
+
+            recordCount++;
+
+            int length = restRecord.getFirst().getMessage().length();
+            readSize += length;
+
+            if (batch.isEmpty()) {
+                batchStartTime = System.nanoTime();
+                hasPendingBatch = true;
+            }
+
+            batch.add(restRecord);
+            batchSize += length;
+
+            long timeLimit = LocalFileRecordLoader.this.timeLimit;
+
+            if (batchSize >= batchSizeLimit || timeLimit != lastTimeLimit
+                    || System.nanoTime() - batchStartTime >= BATCH_TIME_BUDGET_NANOS) {
+                lastTimeLimit = timeLimit; // The task has a new last record, the records close to it are sent at once
+                flush();
             }
 
             return recordCount < recordCountLimit && readSize < sizeLimit;
         }
+
+        /**
+         * Delivers the batch if its first record waits longer than {@link #BATCH_TIME_BUDGET_NANOS}. Called for every
+         * record read by the scan, possibly from the threads scanning the chunks of the file.
+         */
+        void checkTimeBudget() {
+            if (!hasPendingBatch)
+                return;
+
+            synchronized (this) {
+                if (!batch.isEmpty() && System.nanoTime() - batchStartTime >= BATCH_TIME_BUDGET_NANOS)
+                    flush();
+            }
+        }
+
+        synchronized void flush() {
+            if (batch.isEmpty())
+                return;
+
+            hasPendingBatch = false;
+
+            RecordList data = batch;
+
+            batch = new RecordList();
+            batchSize = 0;
+            batchSizeLimit = Math.min(Math.max(batchSizeLimit * 2, MIN_BATCH_SIZE), MAX_BATCH_SIZE);
+
+            listener.onData(data);
+        }
     }
 
 }
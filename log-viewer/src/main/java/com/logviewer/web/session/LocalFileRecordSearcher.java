@@ -5,9 +5,10 @@ import com.logviewer.filters.RecordPredicate;
 import com.logviewer.utils.Pair;
 import com.logviewer.utils.PredicateUtils;
 import com.logviewer.web.session.tasks.SearchPattern;
+import org.springframework.lang.Nullable;
 
-import java.util.ArrayDeque;
-import java.util.Queue;
+import java.io.IOException;
+import java.util.*;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
@@ -19,6 +20,7 @@ public class LocalFileRecordSearcher implements LogProcess {
     private final Supplier<Snapshot> snapshotFactory;
 
     private final ExecutorService executor;
+    private final ParallelLogScanner scanner;
     private final Position start;
     private final boolean backward;
     private final RecordPredicate filter;
@@ -36,11 +38,14 @@ public class LocalFileRecordSearcher implements LogProcess {
 
     private volatile Future<?> future;
 
+    private final CancellationToken cancellation = new CancellationToken();
+
     public LocalFileRecordSearcher(Supplier<Snapshot> snapshotFactory, ExecutorService executor,
-                                   Position start, boolean backward, RecordPredicate filter, String hash, int recordCount,
-                                   SearchPattern pattern, Consumer<SearchResult> listener) {
+                                   ParallelLogScanner scanner, Position start, boolean backward, RecordPredicate filter,
+                                   String hash, int recordCount, SearchPattern pattern, Consumer<SearchResult> listener) {
         this.snapshotFactory = snapshotFactory;
         this.executor = executor;
+        this.scanner = scanner;
         this.start = start;
         this.backward = backward;
         this.filter = filter;
@@ -63,86 +68,214 @@ public class LocalFileRecordSearcher implements LogProcess {
 
         future = executor.submit(() -> {
             try (Snapshot snapshot = snapshotFactory.get()) {
+                snapshot.setCancellationToken(cancellation);
+
                 try {
                     if (hash != null && !snapshot.isValidHash(hash))
                         throw new LogCrashedException();
 
-                    Queue<Pair<LogRecord, Throwable>> queue = new ArrayDeque<>(recordCount);
-                    boolean[] hasSkippedLined = new boolean[1];
-                    boolean[] found = new boolean[1];
-
-                    Predicate<String> matcher = pattern.matcher();
-
-                    final Status status = new Status(snapshot);
-
-                    LvPredicateChecker predicateChecker = new LvPredicateChecker(snapshot.getLog());
-
-                    Predicate<LogRecord> predicate = record -> {
-                        if (timeLimitFomFilter != null && record.hasTime()) {
-                            if (backward ? record.getTime() < timeLimitFomFilter : record.getTime() > timeLimitFomFilter)
-                                return false;
-                        }
-
-                        if (!timeOk(record))
-                            return false;
-
-                        Pair<LogRecord, Throwable> restRecord = predicateChecker.applyFilter(record, filter);
-
-                        if (restRecord != null) {
-                            if (queue.size() == recordCount) {
-                                hasSkippedLined[0] = true;
-                                queue.remove();
-                            }
-
-                            queue.add(restRecord);
-
-                            if (matcher.test(record.getMessage())) {
-                                found[0] = true;
-                                return false;
-                            }
-                        }
-
-                        return true;
-                    };
-
-                    int idCmp = start.getLogId().compareTo(snapshot.getLog().getId());
-                    if (idCmp == 0) {
-                        if (backward)
-                            snapshot.processRecordsBack(start.getLocalPosition(), true, predicate);
-                        else
-                            snapshot.processRecords(start.getLocalPosition(), true, predicate);
-                    }
-                    else {
-                        if (backward) {
-                            long startTime;
-                            if (idCmp < 0)
-                                startTime = start.getTime() - 1;
-                            else
-                                startTime = start.getTime();
-
-                            snapshot.processFromTimeBack(startTime, predicate);
-                        }
-                        else {
-                            long startTime;
-                            if (idCmp < 0)
-                                startTime = start.getTime();
-                            else
-                                startTime = start.getTime() + 1;
-
-                            snapshot.processFromTime(startTime, predicate);
-                        }
-                    }
-
-                    listener.accept(new SearchResult(new RecordList(queue), status, hasSkippedLined[0], found[0]));
+                    listener.accept(search(snapshot));
                 } catch (Throwable e) {
                     listener.accept(new SearchResult(e));
                 }
+            } finally {
+                cancellation.released();
             }
         });
 
         state = 1;
     }
 
+    private SearchResult search(Snapshot snapshot) throws IOException {
+        LogRecord[] firstRecord = new LogRecord[1];
+
+        process(snapshot, record -> {
+            firstRecord[0] = record;
+            return false;
+        });
+
+        if (firstRecord[0] == null)
+            return new SearchResult(new RecordList(Collections.emptyList()), new Status(snapshot), false, false);
+
+        if (BytePattern.forSearchPattern(pattern, snapshot.getLog().getEncoding()) == null
+                && !scanner.isParallel(snapshot, firstRecord[0], backward)) {
+            return searchInOnePass(snapshot);
+        }
+
+        return searchAndLoadContext(snapshot, firstRecord[0]);
+    }
+
+    private SearchResult searchInOnePass(Snapshot snapshot) throws IOException {
+        Queue<Pair<LogRecord, Throwable>> queue = new ArrayDeque<>(recordCount);
+        boolean[] hasSkippedLined = new boolean[1];
+        boolean[] found = new boolean[1];
+
+        Predicate<String> matcher = pattern.matcher();
+
+        final Status status = new Status(snapshot);
+
+        LvPredicateChecker predicateChecker = new LvPredicateChecker(snapshot.getView());
+
+        Predicate<LogRecord> predicate = record -> {
+            if (!isInTimeRange(record))
+                return false;
+
+            Pair<LogRecord, Throwable> restRecord = predicateChecker.applyFilter(record, filter);
+
+            if (restRecord != null) {
+                if (queue.size() == recordCount) {
+                    hasSkippedLined[0] = true;
+                    queue.remove();
+                }
+
+                queue.add(restRecord);
+
+                if (matcher.test(record.getMessage())) {
+                    found[0] = true;
+                    return false;
+                }
+            }
+
+            return true;
+        };
+
+        process(snapshot, predicate);
+
+        return new SearchResult(new RecordList(queue), status, hasSkippedLined[0], found[0]);
+    }
+
+    /**
+     * Finds the matching record, then loads the records preceding the found one in the search direction. Unlike
+     * {@link #searchInOnePass(Snapshot)}, the records before the match may be processed on several threads and may be
+     * skipped by the raw-byte search of the pattern. The result is the same.
+     */
+    private SearchResult searchAndLoadContext(Snapshot snapshot, LogRecord firstRecord) throws IOException {
+        final Status status = new Status(snapshot);
+
+        List<StopEvent> stopEvents = new ArrayList<>(1);
+
+        scanner.scan(snapshot, firstRecord, backward, pattern, () -> createChunkProcessor(snapshot), event -> {
+            stopEvents.add(event);
+            return false;
+        });
+
+        Deque<Pair<LogRecord, Throwable>> queue = new ArrayDeque<>(recordCount);
+
+        StopEvent stop = stopEvents.isEmpty() ? null : stopEvents.get(0);
+        boolean found = stop != null && stop.foundRecord != null;
+
+        LvPredicateChecker predicateChecker = new LvPredicateChecker(snapshot.getView());
+
+        long firstRecordStart = firstRecord.getStart();
+        int contextSize = found ? recordCount - 1 : recordCount;
+        boolean[] hasSkippedLined = new boolean[1];
+
+        Predicate<LogRecord> contextCollector = record -> {
+            if (backward ? record.getStart() > firstRecordStart : record.getStart() < firstRecordStart)
+                return false;
+
+            if (!isInTimeRange(record))
+                return true;
+
+            Pair<LogRecord, Throwable> restRecord = predicateChecker.applyFilter(record, filter);
+
+            if (restRecord != null) {
+                if (queue.size() == contextSize) {
+                    hasSkippedLined[0] = true;
+                    return false;
+                }
+
+                queue.addFirst(restRecord);
+            }
+
+            return true;
+        };
+
+        if (backward) {
+            if (stop == null) {
+                snapshot.processRecords(0, false, contextCollector);
+            } else {
+                snapshot.processRecords(stop.record.getEnd(), true, contextCollector);
+            }
+        } else {
+            if (stop == null) {
+                snapshot.processRecordsBack(snapshot.getSize(), false, contextCollector);
+            } else {
+                snapshot.processRecordsBack(stop.record.getStart(), true, contextCollector);
+            }
+        }
+
+        if (found)
+            queue.addLast(stop.foundRecord);
+
+        return new SearchResult(new RecordList(queue), status, hasSkippedLined[0], found);
+    }
+
+    /**
+     * Creates the processor that stops at the first record out of the time range or at the first record matching
+     * the filter and the pattern.
+     */
+    private ParallelLogScanner.ChunkProcessor<StopEvent> createChunkProcessor(Snapshot snapshot) {
+        Predicate<String> matcher = pattern.matcher();
+
+        LvPredicateChecker predicateChecker = new LvPredicateChecker(snapshot.getView());
+
+        return (record, out) -> {
+            if (!isInTimeRange(record)) {
+                out.add(new StopEvent(record, null));
+                return false;
+            }
+
+            Pair<LogRecord, Throwable> restRecord = predicateChecker.applyFilter(record, filter);
+
+            if (restRecord != null && matcher.test(record.getMessage())) {
+                out.add(new StopEvent(record, restRecord));
+                return false;
+            }
+
+            return true;
+        };
+    }
+
+    private void process(Snapshot snapshot, Predicate<LogRecord> predicate) throws IOException {
+        int idCmp = start.getLogId().compareTo(snapshot.getView().getId());
+        if (idCmp == 0) {
+            if (backward)
+                snapshot.processRecordsBack(start.getLocalPosition(), true, predicate);
+            else
+                snapshot.processRecords(start.getLocalPosition(), true, predicate);
+        }
+        else {
+            if (backward) {
+                long startTime;
+                if (idCmp < 0)
+                    startTime = start.getTime() - 1;
+                else
+                    startTime = start.getTime();
+
+                snapshot.processFromTimeBack(startTime, predicate);
+            }
+            else {
+                long startTime;
+                if (idCmp < 0)
+                    startTime = start.getTime();
+                else
+                    startTime = start.getTime() + 1;
+
+                snapshot.processFromTime(startTime, predicate);
+            }
+        }
+    }
+
+    private boolean isInTimeRange(LogRecord record) {
+        if (timeLimitFomFilter != null && record.hasTime()) {
+            if (backward ? record.getTime() < timeLimitFomFilter : record.getTime() > timeLimitFomFilter)
+                return false;
+        }
+
+        return timeOk(record);
+    }
+
     private boolean timeOk(LogRecord record) {
         long timeLimit = this.timeLimit;
         if (timeLimit <= 0)
@@ -166,7 +299,8 @@ public class LocalFileRecordSearcher implements LogProcess {
             throw new IllegalStateException("Loader is not started");
 
         if (state == 1) {
-            future.cancel(true);
+            cancellation.cancel();
+            future.cancel(false);
             state = 2;
         }
     }
@@ -176,5 +310,14 @@ public class LocalFileRecordSearcher implements LogProcess {
         this.timeLimit = limit;
     }
 
+    private static class StopEvent {
+        private final LogRecord record;
+        @Nullable
+        private final Pair<LogRecord, Throwable> foundRecord;
 
+        StopEvent(LogRecord record, @Nullable Pair<LogRecord, Throwable> foundRecord) {
+            this.record = record;
+            this.foundRecord = foundRecord;
+        }
+    }
 }
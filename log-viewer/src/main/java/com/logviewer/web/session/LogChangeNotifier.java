@@ -3,12 +3,12 @@ package com.logviewer.web.session;
 import com.logviewer.data2.FileAttributes;
 import com.logviewer.data2.LogView;
 import com.logviewer.utils.Destroyer;
-import com.logviewer.web.dto.events.EventLogChanged;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.lang.Nullable;
 
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 public class LogChangeNotifier implements AutoCloseable {
@@ -21,19 +21,23 @@ public class LogChangeNotifier implements AutoCloseable {
 
     private final Destroyer[] watcherCloser;
 
-    private final SessionAdapter sender;
+    private final Consumer<Map<String, FileAttributes>> changeListener;
 
     private final Timer timer;
 
     private Map<String, FileAttributes> changedLogs;
 
-    public LogChangeNotifier(LogView[] logs, SessionAdapter sender, Timer timer) {
+    /**
+     * @param changeListener receives the attributes of the changed logs, the notifications about the changes made
+     *                       within {@link #SEND_NOTIFICATION_DELAY} are merged.
+     */
+    public LogChangeNotifier(LogView[] logs, Consumer<Map<String, FileAttributes>> changeListener, Timer timer) {
         this.logs = logs;
 
         watcherCloser = Stream.of(logs).map(log -> log.addChangeListener(attr -> logChanged(log, attr)))
                 .filter(Objects::nonNull)
                 .toArray(Destroyer[]::new);
-        this.sender = sender;
+        this.changeListener = changeListener;
 
         this.timer = timer;
     }
@@ -63,7 +67,7 @@ public class LogChangeNotifier implements AutoCloseable {
 
                     LOG.debug("Sending notification about log update: {}", changedLogs.keySet());
 
-                    sender.send(new EventLogChanged(changedLogs));
+                    changeListener.accept(changedLogs);
                 }
             }, SEND_NOTIFICATION_DELAY);
 
@@ -7,6 +7,7 @@ import com.logviewer.filters.CompositeRecordPredicate;
 import com.logviewer.filters.RecordPredicate;
 import com.logviewer.filters.SubstringPredicate;
 import com.logviewer.utils.LvTimer;
+import com.logviewer.utils.Pair;
 import com.logviewer.utils.Utils;
 import com.logviewer.utils.Wrappers;
 import com.logviewer.web.dto.LogList;
@@ -42,6 +43,11 @@ public class LogSession {
 
     public static final Exception NO_DATE_EXCEPTION = new Exception("No date field, log cannot be merged");
 
+    /**
+     * A time in the distant past (1970-01-02 03:46:40), used as the start position of an empty view of merged logs.
+     */
+    private static final long EMPTY_VIEW_TIME = 100000000000000L;
+
     private final SessionAdapter sender;
 
     @Autowired
@@ -53,6 +59,8 @@ public class LogSession {
     @Autowired
     private LvTimer lvTimer;
     @Autowired
+    private LoadCoalescer loadCoalescer;
+    @Autowired
     private LvPermalinkStorage permalinkStorage;
     @Autowired(required = false)
     private List<LvFilterPanelStateProvider> filterSetProviders = Collections.emptyList();
@@ -69,10 +77,47 @@ public class LogSession {
     private LogView[] logs;
     private LogChangeNotifier logChangeNotifier;
 
+    /**
+     * The end of the last record sent to the UI when the UI shows the end of the logs, {@code null} if the UI doesn't
+     * follow the logs. When the logs change, the records after this position are pushed to the UI without waiting for
+     * a {@link #loadNext} request.
+     */
+    @Nullable
+    private Position tailPosition;
+    private Map<String, String> tailHashes;
+    private int tailRecordCount;
+
+    @Nullable
+    private LoadRecordTask tailTask;
+    private boolean tailChanged;
+
+    /**
+     * The snapshots of the logs kept open between the page loads, see {@link ReadCursorCache}.
+     */
+    private ReadCursorCache cursors;
+
+    /**
+     * The page following the last page sent by {@link #loadNext}, loaded before the UI requests it.
+     */
+    @Nullable
+    private PrefetchedPage prefetch;
+
     private static volatile Config defaultConfig;
 
     @Value("${log-viewer.wait-for-data-timeout:100}")
     private int waitForDataTimeoutMS = 100;
+
+    @Value("${log-viewer.live-tail.enabled:false}")
+    private boolean liveTail;
+
+    @Value("${log-viewer.read-cursors.ttl:30000}")
+    private long readCursorTtl = 30000;
+
+    @Value("${log-viewer.prefetch.enabled:false}")
+    private boolean prefetchEnabled;
+
+    @Value("${log-viewer.coalesce-loads.enabled:false}")
+    private boolean coalesceLoads;
     
     public LogSession(SessionAdapter sessionAdapter) {
         this.sender = sessionAdapter;
@@ -85,6 +130,10 @@ public class LogSession {
     public void setWaitForDataTimeoutMS(int waitForDataTimeoutMS) {
         this.waitForDataTimeoutMS = waitForDataTimeoutMS;
     }
+
+    public void setPrefetchEnabled(boolean prefetchEnabled) {
+        this.prefetchEnabled = prefetchEnabled;
+    }
     
     
     public LogView[] getLogs() {
@@ -109,7 +158,12 @@ public class LogSession {
             }
         }
 
-        logChangeNotifier = new LogChangeNotifier(logs, sender, logService.getTimer());
+        if (cursors != null)
+            cursors.close();
+
+        cursors = new ReadCursorCache(lvTimer, readCursorTtl);
+
+        logChangeNotifier = new LogChangeNotifier(logs, this::onLogsChanged, logService.getTimer());
 
         Map<String, String> globalSavedFilters = new LinkedHashMap<>();
         for (LvFilterPanelStateProvider filterSetProvider : filterSetProviders) {
@@ -168,8 +222,8 @@ public class LogSession {
 
         filter = CompositeRecordPredicate.and(filters);
 
-        CompletableFuture<LoadNextResponse> execution = execute(new LoadRecordTask(sender, logs, recordCount, filter, permalink.getOffset(),
-                false, permalink.getHashes()));
+        CompletableFuture<LoadNextResponse> execution = executeLoad(new LoadRecordTask(sender, logs, recordCount, filter,
+                permalink.getOffset(), false, permalink.getHashes(), cursors));
 
         execution.whenComplete(new LogExecutionHandler<LoadNextResponse>() {
 
@@ -228,6 +282,13 @@ public class LogSession {
 
         executions.clear();
 
+        tailPosition = null;
+        tailTask = null;
+
+        cancelPrefetch();
+
+        cursors.invalidateAll();
+
         this.filter = CompositeRecordPredicate.and(filter);
 
         return true;
@@ -246,12 +307,15 @@ public class LogSession {
         }
 
         CompletableFuture<LoadNextResponse> future = execute(new LoadRecordTask(sender, logs, recordCount, this.filter,
-                pos, !isScrollToBegin, null));
+                pos, !isScrollToBegin, null, cursors));
 
         future.whenComplete(new LogExecutionHandler<LoadNextResponse>() {
             @Override
             protected void handle(LoadNextResponse res) {
                 sender.send(new EventScrollToEdgeResponse(res.getStatuses(), stateVersion, res, isScrollToBegin));
+
+                if (!isScrollToBegin || !res.hasNextLine())
+                    followTail(res, null, recordCount);
             }
         });
     }
@@ -261,7 +325,7 @@ public class LogSession {
         if (!updateStateVersionAndFilters(stateVersion, filter))
             return;
 
-        LoadRecordTask task = new LoadRecordTask(sender, logs, recordCount, this.filter, null, true, null);
+        LoadRecordTask task = new LoadRecordTask(sender, logs, recordCount, this.filter, null, true, null, cursors);
 
         CompletableFuture<LoadNextResponse> ex = execute(task);
 
@@ -269,6 +333,8 @@ public class LogSession {
             @Override
             protected void handle(LoadNextResponse res) {
                 sender.send(new EventResponseAfterFilterChangedSingle(res.getStatuses(), stateVersion, res));
+
+                followTail(res, null, recordCount);
             }
         });
     }
@@ -280,8 +346,8 @@ public class LogSession {
         if (!updateStateVersionAndFilters(stateVersion, filter))
             return;
 
-        LoadRecordTask topLoadTask = new LoadRecordTask(sender, logs, topRecordCount, this.filter, start, true, hashes);
-        LoadRecordTask bottomLoadTask = new LoadRecordTask(sender, logs, bottomRecordCount, this.filter, start, false, hashes);
+        LoadRecordTask topLoadTask = new LoadRecordTask(sender, logs, topRecordCount, this.filter, start, true, hashes, cursors);
+        LoadRecordTask bottomLoadTask = new LoadRecordTask(sender, logs, bottomRecordCount, this.filter, start, false, hashes, cursors);
 
         CompletableFuture<LoadNextResponse> topLoadFut = execute(topLoadTask);
         CompletableFuture<LoadNextResponse> bottomLoadFut = execute(bottomLoadTask);
@@ -307,8 +373,13 @@ public class LogSession {
         bottomLoadFut.whenComplete(errorConsumer);
 
         topLoadFut.thenAcceptBoth(bottomLoadFut, (top, bottom) -> {
-            if (stateVersion == this.stateVersion) {
-                sender.send(new EventResponseAfterFilterChanged(bottom.getStatuses(), stateVersion, top, bottom));
+            synchronized (LogSession.this) {
+                if (stateVersion == this.stateVersion) {
+                    sender.send(new EventResponseAfterFilterChanged(bottom.getStatuses(), stateVersion, top, bottom));
+
+                    if (!bottom.hasNextLine())
+                        followTail(bottom, start, bottomRecordCount);
+                }
             }
         });
     }
@@ -319,19 +390,193 @@ public class LogSession {
             return;
 
         for (SessionTask<?> task : executions) {
-            if (task instanceof LoadRecordTask) {
-                LoadRecordTask t = (LoadRecordTask) task;
-
+            LoadRecordTask t = LoadCoalescer.getLoadTask(task);
+            if (t != null) {
                 if (Objects.equals(t.getStart(), start) && t.isBackward() == backward && Objects.equals(t.getHashes(), hashes))
                     return; // duplicated request
             }
         }
 
-        CompletableFuture<LoadNextResponse> execution = execute(new LoadRecordTask(sender, logs, recordCount, filter, start, backward, hashes));
+        if (backward) {
+            // The UI may drop the bottom records to keep the size of the view, the records appended to the log are
+            // not pushed until the UI loads the end of the log again
+            tailPosition = null;
+        }
+
+        CompletableFuture<LoadNextResponse> execution;
+
+        PrefetchedPage page = prefetch;
+        prefetch = null;
+
+        if (page != null && page.matches(stateVersion, start, backward, recordCount, hashes)) {
+            execution = adopt(page, recordCount);
+        } else {
+            if (page != null)
+                page.cancel();
+
+            execution = executeLoad(new LoadRecordTask(sender, logs, recordCount, filter, start, backward, hashes, cursors));
+        }
+
         execution.whenComplete(new LogExecutionHandler<LoadNextResponse>() {
             @Override
             protected void handle(LoadNextResponse res) {
                 sender.send(new EventNextDataLoaded(res.getStatuses(), stateVersion, res, start, backward));
+
+                prefetchNext(res, backward, recordCount, hashes);
+
+                if (!backward) {
+                    if (res.hasNextLine()) {
+                        tailPosition = null;
+                    } else {
+                        followTail(res, start, recordCount);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts loading the page following {@code res} in the same direction, the next scroll of the user will most likely
+     * request it.
+     */
+    private void prefetchNext(@NonNull LoadNextResponse res, boolean backward, int recordCount,
+                              @Nullable Map<String, String> hashes) {
+        assert Thread.holdsLock(this);
+
+        if (!prefetchEnabled || prefetch != null)
+            return;
+
+        Position next = PrefetchedPage.nextPageStart(res, backward);
+        if (next == null)
+            return;
+
+        prefetch = new PrefetchedPage(stateVersion, new LoadRecordTask(sender, logs, recordCount, filter, next,
+                backward, hashes, cursors));
+
+        // The page is not requested yet, the real page loads go first
+        LogTaskScheduler.runAs(LogTaskScheduler.Priority.PREFETCH, this, prefetch::start);
+    }
+
+    /**
+     * Registers the prefetched page as a running task of the session, so the page is cancelled by the filter change
+     * and the duplicated requests are ignored until it's loaded.
+     */
+    private CompletableFuture<LoadNextResponse> adopt(@NonNull PrefetchedPage page, int recordCount) {
+        assert Thread.holdsLock(this);
+
+        executions.add(page.getTask());
+
+        return page.getPage(recordCount).whenComplete((res, e) -> {
+            synchronized (LogSession.this) {
+                executions.remove(page.getTask());
+            }
+        });
+    }
+
+    private void cancelPrefetch() {
+        assert Thread.holdsLock(this);
+
+        if (prefetch != null) {
+            prefetch.cancel();
+            prefetch = null;
+        }
+    }
+
+    /**
+     * Remembers the end of the data sent to the UI, called when the UI has received the last record of the logs.
+     *
+     * @param start the position the records were loaded from, used when no records were loaded.
+     */
+    private void followTail(@NonNull LoadNextResponse res, @Nullable Position start, int recordCount) {
+        assert Thread.holdsLock(this);
+
+        if (!liveTail || logs.length == 0)
+            return;
+
+        if (res.getStatuses().values().stream().anyMatch(s -> s.getError() != null)) {
+            tailPosition = null;
+            return;
+        }
+
+        List<Pair<LogRecord, Throwable>> data = res.getData();
+
+        if (!data.isEmpty()) {
+            tailPosition = new Position(data.get(data.size() - 1).getFirst(), false);
+        } else if (start != null) {
+            tailPosition = start;
+        } else {
+            // The same position the UI loads the records of an empty view from
+            tailPosition = logs.length == 1 ? new Position(logs[0].getId(), 0, 0) : new Position("", EMPTY_VIEW_TIME, 0);
+        }
+
+        tailHashes = new HashMap<>();
+        res.getStatuses().forEach((logId, status) -> tailHashes.put(logId, status.getHash()));
+
+        tailRecordCount = recordCount;
+    }
+
+    private void onLogsChanged(Map<String, FileAttributes> changedLogs) {
+        try {
+            synchronized (this) {
+                cursors.invalidate(changedLogs.keySet());
+
+                cancelPrefetch();
+
+                if (tailPosition == null) {
+                    sender.send(new EventLogChanged(changedLogs));
+                    return;
+                }
+
+                if (tailTask != null) {
+                    tailChanged = true;
+                    return;
+                }
+
+                loadTail();
+            }
+        } catch (RuntimeException e) {
+            LOG.error("Failed to handle log changes", e);
+        }
+    }
+
+    /**
+     * Loads the records appended after {@link #tailPosition} and sends them as if the UI requested them by
+     * {@link #loadNext}. Only the appended part of the logs is parsed.
+     */
+    private void loadTail() {
+        assert Thread.holdsLock(this);
+
+        Position start = tailPosition;
+
+        LoadRecordTask task = new LoadRecordTask(sender, logs, tailRecordCount, filter, start, false, tailHashes, cursors);
+        tailTask = task;
+        tailChanged = false;
+
+        execute(task).whenComplete(new LogExecutionHandler<LoadNextResponse>() {
+            @Override
+            public void accept(LoadNextResponse res, Throwable e) {
+                synchronized (LogSession.this) {
+                    if (tailTask == task)
+                        tailTask = null;
+                }
+
+                super.accept(res, e);
+            }
+
+            @Override
+            protected void handle(LoadNextResponse res) {
+                if (Objects.equals(tailPosition, start)) {
+                    sender.send(new EventNextDataLoaded(res.getStatuses(), stateVersion, res, start, false));
+
+                    if (res.hasNextLine()) {
+                        tailPosition = null; // Too many new records, the UI will load them when the user scrolls down
+                    } else {
+                        followTail(res, start, tailRecordCount);
+                    }
+                }
+
+                if (tailChanged && tailPosition != null && tailTask == null)
+                    loadTail();
             }
         });
     }
@@ -347,6 +592,9 @@ public class LogSession {
         if (!checkStateVersion(stateVersion))
             return;
 
+        if (loadNext)
+            tailPosition = null; // The UI shows the records around the found one instead of the end of the log
+
         SearchTask searchTask = new SearchTask(sender, logs, start, recordCount, backward, pattern, hashes, filter);
 
         execute(searchTask).whenComplete(new LogExecutionHandler<SearchTask.SearchResponse>() {
@@ -372,7 +620,7 @@ public class LogSession {
                 lvTimer.schedule(sendEventTask, waitForDataTimeoutMS);
 
                 LoadRecordTask loadRecordTask = new LoadRecordTask(sender, logs, recordCount, filter,
-                        new Position(found, backward), backward, hashes);
+                        new Position(found, backward), backward, hashes, cursors);
 
                 execute(loadRecordTask).whenComplete(new LogExecutionHandler<LoadNextResponse>() {
                     @Override
@@ -411,6 +659,14 @@ public class LogSession {
         }
     }
 
+    /**
+     * Executes the loading of a page, the loading is shared with the other sessions requesting the same page at the
+     * same time, see {@link LoadCoalescer}.
+     */
+    private CompletableFuture<LoadNextResponse> executeLoad(LoadRecordTask task) {
+        return execute(coalesceLoads ? loadCoalescer.coalesce(task) : task);
+    }
+
     private <T> CompletableFuture<T> execute(SessionTask<T> task) {
         assert Thread.holdsLock(this);
 
@@ -418,7 +674,8 @@ public class LogSession {
 
         executions.add(task);
 
-        task.execute((res, e) -> {
+        // The tasks of the session are shared fairly with the other sessions
+        LogTaskScheduler.runAs(task.getPriority(), this, () -> task.execute((res, e) -> {
             synchronized (LogSession.this) {
                 executions.remove(task);
 
@@ -428,7 +685,7 @@ public class LogSession {
                     future.complete(res);
                 }
             }
-        });
+        }));
 
         return future;
     }
@@ -440,6 +697,13 @@ public class LogSession {
 
         executions.clear();
 
+        tailPosition = null;
+
+        cancelPrefetch();
+
+        if (cursors != null)
+            cursors.close();
+
         if (logChangeNotifier != null)
             logChangeNotifier.close();
     }
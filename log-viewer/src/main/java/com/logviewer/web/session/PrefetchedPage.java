@@ -0,0 +1,94 @@
+package com.logviewer.web.session;
+
+import com.logviewer.data2.LogRecord;
+import com.logviewer.data2.Position;
+import com.logviewer.utils.Pair;
+import com.logviewer.web.session.tasks.LoadNextResponse;
+import com.logviewer.web.session.tasks.LoadRecordTask;
+import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The page following the page sent to the UI, loaded in the background before the UI requests it. When the user
+ * scrolls, the UI requests the records starting at the end of the last loaded record (or at the start of the first one
+ * when scrolling up), the request is served by the prefetched page if the position, the direction and the hashes are
+ * the same and the prefetched page is not shorter than the requested one.
+ */
+class PrefetchedPage {
+
+    private final long stateVersion;
+
+    private final Position start;
+    private final boolean backward;
+    private final int recordCount;
+
+    @Nullable
+    private final Map<String, String> hashes;
+
+    private final LoadRecordTask task;
+
+    private final CompletableFuture<LoadNextResponse> future = new CompletableFuture<>();
+
+    PrefetchedPage(long stateVersion, @NonNull LoadRecordTask task) {
+        this.stateVersion = stateVersion;
+        this.task = task;
+
+        start = Objects.requireNonNull(task.getStart());
+        backward = task.isBackward();
+        recordCount = task.getRecordCount();
+        hashes = task.getHashes();
+    }
+
+    /**
+     * @return the position the next page is loaded from after {@code res}, {@code null} if there are no more records in
+     * the loading direction.
+     */
+    @Nullable
+    static Position nextPageStart(@NonNull LoadNextResponse res, boolean backward) {
+        List<Pair<LogRecord, Throwable>> data = res.getData();
+
+        if (!res.hasNextLine() || data.isEmpty())
+            return null;
+
+        if (res.getStatuses().values().stream().anyMatch(s -> s.getError() != null))
+            return null;
+
+        // The records of a backward page are sorted in chronological order too
+        return backward ? new Position(data.get(0).getFirst(), true) : new Position(data.get(data.size() - 1).getFirst(), false);
+    }
+
+    void start() {
+        task.execute((res, e) -> {
+            if (e != null) {
+                future.completeExceptionally(e);
+            } else {
+                future.complete(res);
+            }
+        });
+    }
+
+    boolean matches(long stateVersion, Position start, boolean backward, int recordCount, @Nullable Map<String, String> hashes) {
+        return this.stateVersion == stateVersion && this.start.equals(start) && this.backward == backward
+                && recordCount <= this.recordCount && Objects.equals(this.hashes, hashes);
+    }
+
+    LoadRecordTask getTask() {
+        return task;
+    }
+
+    /**
+     * @return the future of the prefetched page cut to {@code recordCount} records.
+     */
+    CompletableFuture<LoadNextResponse> getPage(int recordCount) {
+        return future.thenApply(res -> res.limit(recordCount, backward));
+    }
+
+    void cancel() {
+        task.cancel();
+    }
+}
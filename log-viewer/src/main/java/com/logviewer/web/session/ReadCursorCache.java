@@ -0,0 +1,143 @@
+package com.logviewer.web.session;
+
+import com.logviewer.data2.Snapshot;
+import com.logviewer.utils.LvTimer;
+import org.springframework.lang.NonNull;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the snapshots of the logs open between the page loads of a session. When the user scrolls, the pages are loaded
+ * one by one near the position where the previous page stopped. A reused snapshot doesn't reopen the file, doesn't
+ * validate the hash again and keeps the pages of the file read by the previous load.
+ *
+ * A snapshot is used by one loader at a time. The cursors are dropped when the logs change, when the state of the
+ * session changes, and after {@link #ttl} milliseconds of idleness.
+ */
+public class ReadCursorCache implements AutoCloseable {
+
+    private final LvTimer timer;
+
+    private final long ttl;
+
+    private final Map<String, Cursor> cursors = new HashMap<>();
+
+    /**
+     * The snapshots taken by the loaders and the {@link #version} at the moment of taking.
+     */
+    private final Map<Snapshot, Long> leased = new IdentityHashMap<>();
+
+    /**
+     * Incremented on every invalidation, a snapshot taken before an invalidation is not returned to the cache.
+     */
+    private long version;
+
+    private boolean closed;
+
+    public ReadCursorCache(@NonNull LvTimer timer, long ttl) {
+        this.timer = timer;
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return the cached snapshot of the log or a new snapshot created by the factory. The snapshot must be passed to
+     * {@link #release(Snapshot, boolean)} after using.
+     */
+    @NonNull
+    public Snapshot take(@NonNull String logId, @NonNull Supplier<Snapshot> factory) {
+        long takeVersion;
+
+        synchronized (this) {
+            Cursor cursor = cursors.remove(logId);
+
+            if (cursor != null) {
+                if (System.currentTimeMillis() - cursor.lastUsed < ttl) {
+                    leased.put(cursor.snapshot, version);
+                    return cursor.snapshot;
+                }
+
+                cursor.snapshot.close();
+            }
+
+            takeVersion = version;
+        }
+
+        Snapshot res = factory.get();
+
+        synchronized (this) {
+            leased.put(res, takeVersion);
+        }
+
+        return res;
+    }
+
+    /**
+     * Returns the snapshot to the cache, the snapshot is closed if the log has been changed since the snapshot was
+     * taken.
+     *
+     * @param reusable {@code false} if the loading has failed, the snapshot may be broken. A loading stopped by
+     *                 {@link com.logviewer.data2.CancellationToken} leaves the snapshot reusable.
+     */
+    public void release(@NonNull Snapshot snapshot, boolean reusable) {
+        synchronized (this) {
+            Long takeVersion = leased.remove(snapshot);
+
+            if (reusable && !closed && takeVersion != null && takeVersion == version && snapshot.getError() == null) {
+                Cursor old = cursors.put(snapshot.getView().getId(), new Cursor(snapshot));
+                if (old != null)
+                    old.snapshot.close();
+
+                timer.scheduleTask(this, this::closeExpired, ttl);
+                return;
+            }
+        }
+
+        snapshot.close();
+    }
+
+    public synchronized void invalidate(@NonNull Collection<String> logIds) {
+        version++;
+
+        for (String logId : logIds) {
+            Cursor cursor = cursors.remove(logId);
+            if (cursor != null)
+                cursor.snapshot.close();
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        invalidate(new ArrayList<>(cursors.keySet()));
+    }
+
+    private synchronized void closeExpired() {
+        long now = System.currentTimeMillis();
+
+        for (Iterator<Cursor> itr = cursors.values().iterator(); itr.hasNext(); ) {
+            Cursor cursor = itr.next();
+
+            if (now - cursor.lastUsed >= ttl) {
+                cursor.snapshot.close();
+                itr.remove();
+            }
+        }
+
+        if (!cursors.isEmpty())
+            timer.scheduleTask(this, this::closeExpired, ttl);
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        invalidateAll();
+    }
+
+    private static class Cursor {
+        private final Snapshot snapshot;
+        private final long lastUsed = System.currentTimeMillis();
+
+        Cursor(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+    }
+}
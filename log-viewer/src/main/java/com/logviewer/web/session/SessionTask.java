@@ -1,5 +1,6 @@
 package com.logviewer.web.session;
 
+import com.logviewer.data2.LogTaskScheduler;
 import com.logviewer.data2.LogView;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,5 +25,12 @@ public abstract class SessionTask<T> {
 
     public abstract void execute(BiConsumer<T, Throwable> consumer);
 
+    /**
+     * @return the class of the tasks reading the logs on behalf of this task, see {@link LogTaskScheduler}.
+     */
+    public LogTaskScheduler.Priority getPriority() {
+        return LogTaskScheduler.Priority.INTERACTIVE;
+    }
+
     public abstract void cancel();
 }
@@ -4,6 +4,8 @@ import com.logviewer.data2.LogRecord;
 import com.logviewer.utils.Pair;
 import com.logviewer.web.session.Status;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -29,4 +31,25 @@ public class LoadNextResponse {
     public boolean hasNextLine() {
         return !eof;
     }
+
+    /**
+     * @return the response containing the first {@code recordCount} records in the loading direction.
+     */
+    public LoadNextResponse limit(int recordCount, boolean backward) {
+        if (data.size() <= recordCount)
+            return this;
+
+        List<Pair<LogRecord, Throwable>> res = backward
+                ? data.subList(data.size() - recordCount, data.size())
+                : data.subList(0, recordCount);
+
+        return new LoadNextResponse(new ArrayList<>(res), statuses, false);
+    }
+
+    /**
+     * @return the response with its own lists of records and statuses, used to send the same data to several sessions.
+     */
+    public LoadNextResponse copy() {
+        return new LoadNextResponse(new ArrayList<>(data), new HashMap<>(statuses), eof);
+    }
 }
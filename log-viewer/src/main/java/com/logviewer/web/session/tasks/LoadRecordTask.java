@@ -32,6 +32,9 @@ public class LoadRecordTask extends SessionTask<LoadNextResponse> {
 
     protected final Comparator<Pair<LogRecord, Throwable>> comparator;
 
+    @Nullable
+    protected final ReadCursorCache cursors;
+
     protected final Map<LogView, LogProcess> loaders = new IdentityHashMap<>();
 
     protected final Map<String, Status> statuses = new HashMap<>();
@@ -41,9 +44,19 @@ public class LoadRecordTask extends SessionTask<LoadNextResponse> {
 
     public LoadRecordTask(@NonNull SessionAdapter sender, @NonNull LogView[] logs, int recordCount, RecordPredicate filter,
                           @Nullable Position start, boolean backward, @Nullable Map<String, String> hashes) {
+        this(sender, logs, recordCount, filter, start, backward, hashes, null);
+    }
+
+    /**
+     * @param cursors the snapshots kept open by the session between the loadings, see {@link ReadCursorCache}.
+     */
+    public LoadRecordTask(@NonNull SessionAdapter sender, @NonNull LogView[] logs, int recordCount, RecordPredicate filter,
+                          @Nullable Position start, boolean backward, @Nullable Map<String, String> hashes,
+                          @Nullable ReadCursorCache cursors) {
         super(sender, logs);
 
         this.recordCount = recordCount;
+        this.cursors = cursors;
         this.start = start;
         this.hashes = hashes;
         assert recordCount > 0;
@@ -72,7 +85,7 @@ public class LoadRecordTask extends SessionTask<LoadNextResponse> {
             String hash = hashes == null ? null : hashes.get(log.getId());
 
             LogProcess loader = log.loadRecords(filter, recordCount,
-                    start, backward, hash, MAX_BATCH_SIZE,
+                    start, backward, hash, MAX_BATCH_SIZE, cursors,
                     new MyLogDataListener(log, logs, consumer));
 
             loaders.put(log, loader);
@@ -95,6 +108,10 @@ public class LoadRecordTask extends SessionTask<LoadNextResponse> {
         return backward;
     }
 
+    public int getRecordCount() {
+        return recordCount;
+    }
+
     public RecordPredicate getFilter() {
         return filter;
     }
@@ -143,21 +160,16 @@ public class LoadRecordTask extends SessionTask<LoadNextResponse> {
                 LogRecord oldLastRecord = data.size() == recordCount ? data.get(recordCount - 1).getFirst() : null;
 
                 if (logs.length > 1) {
-                    for (Pair<LogRecord, Throwable> newRecord : newRecords) {
-                        if (newRecord.getFirst().hasTime()) // Ignore records without time on log merging
-                            data.add(newRecord);
-                    }
-
-                    data.sort(comparator);
+                    merge(newRecords);
                 } else {
                     data.addAll(newRecords);
-                }
 
-                if (data.size() > recordCount) {
-                    eof = false;
-                    do {
-                        data.remove(data.size() - 1);
-                    } while (data.size() > recordCount);
+                    if (data.size() > recordCount) {
+                        eof = false;
+                        do {
+                            data.remove(data.size() - 1);
+                        } while (data.size() > recordCount);
+                    }
                 }
 
                 if (data.size() == recordCount) {
@@ -170,6 +182,38 @@ public class LoadRecordTask extends SessionTask<LoadNextResponse> {
             }
         }
 
+        /**
+         * Inserts the records into {@link #data} keeping it sorted and not longer than {@link #recordCount}. The batch is
+         * sorted first, so once a record doesn't fit, the rest of the batch is dropped without a lookup.
+         */
+        private void merge(RecordList newRecords) {
+            List<Pair<LogRecord, Throwable>> batch = new ArrayList<>(newRecords.size());
+
+            for (Pair<LogRecord, Throwable> newRecord : newRecords) {
+                if (newRecord.getFirst().hasTime()) // Ignore records without time on log merging
+                    batch.add(newRecord);
+            }
+
+            batch.sort(comparator);
+
+            for (int i = 0; i < batch.size(); i++) {
+                Pair<LogRecord, Throwable> record = batch.get(i);
+
+                if (data.size() == recordCount && comparator.compare(record, data.get(recordCount - 1)) >= 0) {
+                    eof = false;
+                    break;
+                }
+
+                int idx = Collections.binarySearch(data, record, comparator);
+                data.add(idx < 0 ? -idx - 1 : idx, record);
+
+                if (data.size() > recordCount) {
+                    eof = false;
+                    data.remove(recordCount);
+                }
+            }
+        }
+
         @Override
         public void onFinish(@NonNull Status status, boolean eof) {
             synchronized (LoadRecordTask.this) {
@@ -21,6 +21,18 @@ public class SearchPattern implements Serializable {
         this.regex = regex;
     }
 
+    public String getText() {
+        return s;
+    }
+
+    public boolean isMatchCase() {
+        return matchCase;
+    }
+
+    public boolean isRegex() {
+        return regex;
+    }
+
     public Predicate<String> matcher() {
         if (regex) {
             Pattern pattern = Pattern.compile(s, matchCase ? 0 : Pattern.CASE_INSENSITIVE);
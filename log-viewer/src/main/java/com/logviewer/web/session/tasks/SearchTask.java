@@ -1,6 +1,7 @@
 package com.logviewer.web.session.tasks;
 
 import com.logviewer.data2.LogRecord;
+import com.logviewer.data2.LogTaskScheduler;
 import com.logviewer.data2.LogView;
 import com.logviewer.data2.Position;
 import com.logviewer.data2.RecordList;
@@ -43,6 +44,11 @@ public class SearchTask extends SessionTask<SearchTask.SearchResponse> {
         this.hashes = hashes;
     }
 
+    @Override
+    public LogTaskScheduler.Priority getPriority() {
+        return LogTaskScheduler.Priority.SEARCH;
+    }
+
     @Override
     public synchronized void execute(BiConsumer<SearchResponse, Throwable> consumer) {
         Map<String, Status> statuses = new HashMap<>();
@@ -0,0 +1,43 @@
+package com.logviewer.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.lang.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to the virtual threads, the Java 21 version of the class. The class is packed to
+ * {@code META-INF/versions/21} of the multi-release jar, the public API must be the same as the API of the Java 17
+ * version.
+ */
+public final class VirtualThreads {
+
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreads.class);
+
+    public static final String ENABLED_PROPERTY = "log-viewer.virtual-threads.enabled";
+    public static final String MAX_RUNNING_TASKS_PROPERTY = "log-viewer.virtual-threads.max-running-tasks";
+
+    private VirtualThreads() {
+
+    }
+
+    /**
+     * @return {@code true} if the JVM supports the virtual threads.
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates an executor that starts a new virtual thread for each task.
+     */
+    @NonNull
+    public static ExecutorService newThreadPerTaskExecutor(@NonNull String threadNamePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+                .name(threadNamePrefix, 1)
+                .uncaughtExceptionHandler((t, e) -> LOG.error("Unhandled error", e))
+                .factory());
+    }
+}
@@ -35,7 +35,7 @@ public class CustomPathResolverTest extends LogSessionTestBase {
         Files.write(tempDir.resolve("a.txt"), new byte[0]);
 
         ApplicationContext ctx = createContext(MyConfig.class);
-        LogSession session = LogSession.fromContext(adapter, ctx);
+        LogSession session = createSession(ctx);
 
         session.init(LogList.of("abc", getTestLog("multilog/server-a.log")));
         session.scrollToEdge(3, 2, null, false);
@@ -22,7 +22,7 @@ public class FailedLogTest extends LogSessionTestBase {
     public void workWithBrokenLog() throws Exception {
         ApplicationContext ctx = createContext(MultifileConfiguration.class);
 
-        LogSession session = LogSession.fromContext(adapter, ctx);
+        LogSession session = createSession(ctx);
 
         session.init(LogList.of(getTestLog("log.log"), "/unexisting-log.log"));
         session.scrollToEdge(3, 2, null, false);
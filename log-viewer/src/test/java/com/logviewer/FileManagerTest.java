@@ -2,8 +2,11 @@ package com.logviewer;
 
 import com.logviewer.api.LvFileNavigationManager;
 import com.logviewer.data2.DirectoryNotVisibleException;
+import com.logviewer.data2.Log;
 import com.logviewer.data2.LogService;
 import com.logviewer.data2.Snapshot;
+import com.logviewer.files.ArchiveMember;
+import com.logviewer.files.ArchiveMemberTest;
 import com.logviewer.impl.LvFileNavigationManagerImpl;
 import com.logviewer.services.LvFileAccessManagerImpl;
 import com.logviewer.services.PathPattern;
@@ -12,9 +15,11 @@ import org.junit.Test;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
-import java.util.List;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.*;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 
 @SuppressWarnings("Convert2MethodRef")
@@ -82,5 +87,61 @@ public class FileManagerTest extends AbstractLogTest {
         }
     }
 
+    @Test
+    public void archiveMembers() throws IOException {
+        LvFileNavigationManagerImpl manager = getCommonContext().getBean(LvFileNavigationManagerImpl.class);
+
+        Path tmpDir = createTempDirectory();
+
+        Path archive = tmpDir.resolve("logs.tar.gz");
+
+        Map<String, String> content = new LinkedHashMap<>();
+        content.put("app/server.log", "150101 10:00:00 first\n150101 10:00:01 second");
+        content.put("app/access.log", "150101 10:00:00 GET /\n");
+        Files.write(archive, ArchiveMemberTest.createTarGz(content));
+
+        List<LvFileNavigationManager.LvFsItem> items = manager.getChildren(tmpDir, null);
+        assertEquals(1, items.size());
+        assert items.get(0).isDirectory();
+
+        Path serverLog = Paths.get(archive + ArchiveMember.SEPARATOR, "app", "server.log");
+        Path accessLog = Paths.get(archive + ArchiveMember.SEPARATOR, "app", "access.log");
+
+        List<LvFileNavigationManager.LvFsItem> members = manager.getChildren(archive, null);
+        TestUtils.assertEqualsUnorder(members, f -> f.getPath(), serverLog, accessLog);
+        assert members.stream().noneMatch(LvFileNavigationManager.LvFsItem::isDirectory);
+
+        // The cached listing is not used after the archive is changed
+        content.put("app/error.log", "150101 10:00:02 error\n");
+        Files.write(archive, ArchiveMemberTest.createTarGz(content));
+
+        Path errorLog = Paths.get(archive + ArchiveMember.SEPARATOR, "app", "error.log");
+        TestUtils.assertEqualsUnorder(manager.getChildren(archive, null), f -> f.getPath(), serverLog, accessLog, errorLog);
 
+        // The members are searched in the archive content, the members are not opened as logs
+        LvFileNavigationManager.Filter filter = new LvFileNavigationManager.Filter("10:00:0", LocalDate.MIN, LocalDate.MAX);
+        TestUtils.assertEqualsUnorder(manager.getChildren(archive, filter), f -> f.getPath(), serverLog, accessLog, errorLog);
+
+        filter = new LvFileNavigationManager.Filter("error", LocalDate.MIN, LocalDate.MAX);
+        TestUtils.assertEqualsUnorder(manager.getChildren(archive, filter), f -> f.getPath(), errorLog);
+
+        TestUtils.withSystemProp(Log.UNPACK_GZ_ARCHIVES, "true", () -> {
+            try (Snapshot snapshot = getLogService().openLog(serverLog.toString(), LogService.DEFAULT_FORMAT).createSnapshot()) {
+                assertNull(snapshot.getError());
+
+                List<String> records = new ArrayList<>();
+                snapshot.processRecords(0, r -> records.add(r.getMessage()));
+                assertEquals(Arrays.asList("150101 10:00:00 first", "150101 10:00:01 second"), records);
+            }
+        });
+
+        LvFileAccessManagerImpl accessManager = getCommonContext().getBean(LvFileAccessManagerImpl.class);
+        accessManager.setPaths(Collections.singletonList(PathPattern.directory(tmpDir.resolve("subdir"))));
+
+        TestUtils.assertError(SecurityException.class, () -> manager.getChildren(archive, null));
+
+        try (Snapshot snapshot = getLogService().openLog(serverLog.toString(), LogService.DEFAULT_FORMAT).createSnapshot()) {
+            assert snapshot.getError() instanceof DirectoryNotVisibleException;
+        }
+    }
 }
@@ -40,7 +40,7 @@ public class LogSessionRemoteTest extends LogSessionTest {
     private void connectionProblem(String invalidUrl) throws InterruptedException {
         ConfigurableApplicationContext context = createContext(MultifileConfiguration.class);
 
-        LogSession session = LogSession.fromContext(adapter,context);
+        LogSession session = createSession(context);
 
         session.init(LogList.of(super.getTestLog("multilog/server-a.log"), invalidUrl));
         session.scrollToEdge(2, 2, null, false);
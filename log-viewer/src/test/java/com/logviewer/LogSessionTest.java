@@ -13,6 +13,9 @@ import org.junit.Test;
 import org.springframework.context.ApplicationContext;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Map;
 import java.util.function.Consumer;
 import java.util.regex.Pattern;
@@ -41,7 +44,7 @@ public class LogSessionTest extends LogSessionTestBase {
     @Test
     public void testScrollDown() throws InterruptedException {
         ApplicationContext ctx = createContext(MultifileConfiguration.class);
-        LogSession session = LogSession.fromContext(adapter, ctx);
+        LogSession session = createSession(ctx);
 
         session.init(LogList.of(getTestLog("multilog/server-a.log"), getTestLog("multilog/server-b.log")));
         session.scrollToEdge(3, 2, null, false);
@@ -63,7 +66,9 @@ public class LogSessionTest extends LogSessionTestBase {
     @Test
     public void testLoadNext() throws InterruptedException, IOException {
         ApplicationContext ctx = createContext(MultifileConfiguration.class);
-        LogSession session = LogSession.fromContext(adapter, ctx);
+        LogSession session = createSession(ctx);
+        // The prefetched page is filtered by the same TestPredicate, the records it passes would satisfy waitForRecord() below
+        session.setPrefetchEnabled(false);
 
         session.init(LogList.of(createMultifileLog(getTestLog("multilog/multilog.log"))));
         session.scrollToEdge(3, 2, new RecordPredicate[]{new TestPredicate()}, false);
@@ -147,7 +152,7 @@ public class LogSessionTest extends LogSessionTestBase {
     @Test
     public void testSearch() throws InterruptedException, IOException {
         ApplicationContext ctx = createContext(MultifileConfiguration.class);
-        LogSession session = LogSession.fromContext(adapter, ctx);
+        LogSession session = createSession(ctx);
 
         session.init(LogList.of(createMultifileLog(getTestLog("multilog/search.log"))));
         session.scrollToEdge(3, 2, new RecordPredicate[]{new TestPredicate()}, false);
@@ -245,7 +250,7 @@ public class LogSessionTest extends LogSessionTestBase {
     @Test
     public void test2tailLopader() throws InterruptedException, IOException {
         ApplicationContext ctx = createContext(MultifileConfiguration.class);
-        LogSession session = LogSession.fromContext(adapter, ctx);
+        LogSession session = createSession(ctx);
 
         session.init(LogList.of(createMultifileLog(getTestLog("multilog/search3.log"))));
         session.scrollToEdge(3, 2, new RecordPredicate[]{new TestPredicate()}, false);
@@ -260,10 +265,53 @@ public class LogSessionTest extends LogSessionTestBase {
         adapter.check(EventSearchResponse.class, stateVersion(2), reqId(2), searchResult(true, "150101 10:00:06 a", "150101 10:00:06 ccc c"));
     }
 
+    @Test
+    public void liveTail() throws InterruptedException, IOException {
+        Path file = createTempFile();
+        Files.write(file, "150101 10:00:01 a\n150101 10:00:02 b".getBytes());
+
+        ApplicationContext ctx = createContext(MultifileConfiguration.class);
+        LogSession session = createSession(ctx);
+
+        session.init(LogList.of(file.toString()));
+        session.scrollToEdge(10, 2, null, false);
+
+        EventScrollToEdgeResponse init = adapter.waitForType(EventScrollToEdgeResponse.class);
+        records("150101 10:00:01 a", "150101 10:00:02 b").accept(init);
+
+        // The appended records are pushed to the UI without a request
+        Files.write(file, "\n150101 10:00:03 c\n150101 10:00:04 d".getBytes(), StandardOpenOption.APPEND);
+        adapter.check(EventNextDataLoaded.class, noError(), stateVersion(2), records("150101 10:00:03 c", "150101 10:00:04 d"), hasNext(false));
+
+        Files.write(file, "\n150101 10:00:05 e".getBytes(), StandardOpenOption.APPEND);
+        adapter.check(EventNextDataLoaded.class, noError(), stateVersion(2), records("150101 10:00:05 e"), hasNext(false));
+
+        // The UI scrolls up and may drop the bottom records, the changes are notified instead of pushed
+        session.loadNext(new Position(file.getFileName().toString(), TestUtils.date(0, 1), 0), true, 10, statuses(init.statuses), 2);
+        adapter.check(EventNextDataLoaded.class, noError(), stateVersion(2), records(), hasNext(false));
+
+        Files.write(file, "\n150101 10:00:06 f".getBytes(), StandardOpenOption.APPEND);
+        adapter.check(EventLogChanged.class);
+
+        // The end of the log is loaded again
+        session.scrollToEdge(10, 3, null, false);
+        adapter.skipAndCheck(EventScrollToEdgeResponse.class, noError(), stateVersion(3));
+
+        Files.write(file, "\n150101 10:00:07 g".getBytes(), StandardOpenOption.APPEND);
+        adapter.check(EventNextDataLoaded.class, noError(), stateVersion(3), records("150101 10:00:07 g"), hasNext(false));
+
+        // The UI doesn't show the end of the log
+        session.scrollToEdge(2, 4, null, true);
+        adapter.check(EventScrollToEdgeResponse.class, stateVersion(4), records("150101 10:00:01 a", "150101 10:00:02 b"), hasNext());
+
+        Files.write(file, "\n150101 10:00:08 h".getBytes(), StandardOpenOption.APPEND);
+        adapter.check(EventLogChanged.class);
+    }
+
     @Test
     public void testCanceling() throws InterruptedException {
         ApplicationContext ctx = createContext(MultifileConfiguration.class);
-        LogSession session = LogSession.fromContext(adapter, ctx);
+        LogSession session = createSession(ctx);
 
         session.init(LogList.of(getTestLog("multilog/server-a.log")));
         session.scrollToEdge(3, 2, new RecordPredicate[]{new TestPredicate()}, false);
@@ -284,10 +332,50 @@ public class LogSessionTest extends LogSessionTestBase {
         TestPredicate.unlock(lock);
     }
 
+    @Test
+    public void testPrefetchNextPage() throws InterruptedException, IOException {
+        Path log = createTempFile();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= 8; i++) {
+            if (sb.length() > 0)
+                sb.append('\n');
+            sb.append("150101 10:00:0").append(i).append(" r").append(i).append(" a");
+        }
+
+        Files.write(log, sb.toString().getBytes());
+
+        ApplicationContext ctx = createContext(MultifileConfiguration.class);
+        LogSession session = createSession(ctx);
+        session.setPrefetchEnabled(true);
+
+        TestPredicate.clear();
+
+        session.init(LogList.of(createMultifileLog(log.toString())));
+        session.scrollToEdge(2, 2, new RecordPredicate[]{new TestPredicate()}, true);
+
+        EventScrollToEdgeResponse init = adapter.waitForType(EventScrollToEdgeResponse.class);
+        Map<String, String> hashes = statuses(init.statuses);
+
+        // The records are 20 chars long, the page starts at the end of the last loaded record
+        session.loadNext(new Position("a.log", TestUtils.date(0, 2), 21 + 20), false, 2, hashes, 2);
+        adapter.check(EventNextDataLoaded.class, stateVersion(2), records("150101 10:00:03 r3 a", "150101 10:00:04 r4 a"), hasNext());
+
+        // The following page is loaded in the background
+        TestPredicate.waitForRecord("150101 10:00:06 r6 a");
+
+        Object lock = TestPredicate.lock(Pattern.compile(".* r[56] a"));
+
+        session.loadNext(new Position("a.log", TestUtils.date(0, 4), 21 * 3 + 20), false, 2, hashes, 2);
+        adapter.check(EventNextDataLoaded.class, stateVersion(2), records("150101 10:00:05 r5 a", "150101 10:00:06 r6 a"), hasNext());
+
+        TestPredicate.unlock(lock);
+    }
+
     @Test
     public void testNoSystemPropertiesOnUI() throws InterruptedException, IOException {
         ApplicationContext ctx = createContext(MultifileConfiguration.class);
-        LogSession session = LogSession.fromContext(adapter, ctx);
+        LogSession session = createSession(ctx);
 
         session.init(LogList.of(createMultifileLog(getTestLog("multilog/multilog.log"))));
 
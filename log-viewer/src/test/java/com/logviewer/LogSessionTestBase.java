@@ -10,22 +10,44 @@ import com.logviewer.utils.FilterPanelState.JsFilter;
 import com.logviewer.utils.TestLogIdGenerator;
 import com.logviewer.utils.TestSessionAdapter;
 import com.logviewer.web.dto.RestStatus;
+import com.logviewer.web.session.LogSession;
+import org.junit.After;
 import org.junit.Before;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class LogSessionTestBase extends AbstractLogTest {
 
     protected TestSessionAdapter adapter = new TestSessionAdapter();
 
+    private final List<LogSession> sessions = new ArrayList<>();
+
     @Before
     public void before() {
         Log.setLogIdGenerator(TestLogIdGenerator.INSTANCE);
     }
 
+    @After
+    public void shutdownSessions() {
+        sessions.forEach(LogSession::shutdown);
+        sessions.clear();
+    }
+
+    /**
+     * Creates a session sending the events to {@link #adapter}, the session is shut down after the test.
+     */
+    protected LogSession createSession(ApplicationContext ctx) {
+        LogSession res = LogSession.fromContext(adapter, ctx);
+        sessions.add(res);
+        return res;
+    }
+
     protected static Map<String, String> statuses(Map<String, RestStatus> map) {
         Map<String, String> res = new HashMap<>();
 
@@ -8,13 +8,18 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class BufferedFileTest extends AbstractLogTest {
 
@@ -164,10 +169,197 @@ public class BufferedFileTest extends AbstractLogTest {
         checkLine(line, 2, 2, "");
     }
 
+    @Test
+    public void testMappedFile() throws IOException {
+        Path tmpFile = createTempFile();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < ParserConfig.WINDOW_SIZE * 3; i++) {
+            sb.append("line-").append(i).append(i % 7 == 0 ? "\r\n" : "\n");
+        }
+
+        Files.write(tmpFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        FileMapping mapping = new FileMapping(tmpFile);
+
+        long size = Files.size(tmpFile);
+        compareLines(tmpFile, size, new MappedBufferedFile(mapping.map(size), size));
+
+        Files.write(tmpFile, "tail-line\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        long newSize = Files.size(tmpFile);
+        MappedByteBuffer[] regions = mapping.map(newSize);
+        compareLines(tmpFile, newSize, new MappedBufferedFile(regions, newSize));
+
+        // An older snapshot reuses the regions mapped for the bigger size
+        MappedByteBuffer[] oldRegions = mapping.map(size);
+        assertSame(regions[0], oldRegions[0]);
+
+        compareLines(tmpFile, size, new MappedBufferedFile(oldRegions, size));
+
+        mapping.release();
+        mapping.release();
+
+        // The regions are kept while the mapping has users
+        assertSame(regions[0], mapping.map(size)[0]);
+
+        mapping.release();
+        mapping.release();
+
+        // The last user has released the mapping, the regions are mapped again
+        MappedByteBuffer[] newRegions = mapping.map(newSize);
+        assertNotSame(regions[0], newRegions[0]);
+        compareLines(tmpFile, newSize, new MappedBufferedFile(newRegions, newSize));
+
+        mapping.release();
+    }
+
+    @Test
+    public void testPageCache() throws IOException {
+        Path tmpFile = createTempFile();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < ParserConfig.WINDOW_SIZE * 3; i++) {
+            sb.append("line-").append(i).append('\n');
+        }
+
+        Files.write(tmpFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+        long size = Files.size(tmpFile);
+
+        PageCache pageCache = new PageCache(10 * ParserConfig.WINDOW_SIZE);
+
+        try (SeekableByteChannel channel1 = Files.newByteChannel(tmpFile)) {
+            BufferedFile file = new BufferedFile(channel1, size);
+            file.setPageCache(pageCache, "log", "hash");
+
+            compareLines(tmpFile, size, file);
+            assertEquals(4, pageCache.getMissCount()); // each page is read from the disk only once
+        }
+
+        long hitCount = pageCache.getHitCount();
+
+        try (SeekableByteChannel channel2 = Files.newByteChannel(tmpFile)) {
+            BufferedFile file2 = new BufferedFile(channel2, size);
+            file2.setPageCache(pageCache, "log", "hash");
+
+            compareLines(tmpFile, size, file2);
+            assertEquals(4, pageCache.getMissCount());
+            assert pageCache.getHitCount() >= hitCount + 4;
+        }
+
+        // The page cached partially must not be used when the file grows.
+        Files.write(tmpFile, "tail-line\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (SeekableByteChannel channel2 = Files.newByteChannel(tmpFile)) {
+            BufferedFile file2 = new BufferedFile(channel2, Files.size(tmpFile));
+            file2.setPageCache(pageCache, "log", "hash");
+
+            compareLines(tmpFile, Files.size(tmpFile), file2);
+        }
+    }
+
+    @Test
+    public void testReadAhead() throws IOException {
+        Path tmpFile = createTempFile();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < ParserConfig.WINDOW_SIZE * 8; i++) {
+            sb.append("line-").append(i).append('\n');
+        }
+
+        Files.write(tmpFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+        long size = Files.size(tmpFile);
+        int pageCount = (int) ((size + ParserConfig.WINDOW_SIZE - 1) / ParserConfig.WINDOW_SIZE);
+
+        PageCache pageCache = new PageCache(20 * ParserConfig.WINDOW_SIZE);
+        PageReadAhead readAhead = new PageReadAhead(4, 2);
+
+        try (FileChannel channel = FileChannel.open(tmpFile, StandardOpenOption.READ)) {
+            BufferedFile file = new BufferedFile(channel, size);
+            file.setPageCache(pageCache, "log", "hash");
+            file.setReadAhead(readAhead);
+
+            compareLines(bufferedFile(tmpFile), file);
+
+            // The pages after the first sequential ones are loaded by the read-ahead threads
+            assert pageCache.getMissCount() < pageCount : pageCache;
+        } finally {
+            readAhead.destroy();
+        }
+    }
+
+    private void compareLines(Path expectedFile, long size, BufferedFile actual) throws IOException {
+        try (SeekableByteChannel expectedChannel = Files.newByteChannel(expectedFile)) {
+            compareLines(new BufferedFile(expectedChannel, size), actual);
+        }
+    }
+
+    private void compareLines(BufferedFile expected, BufferedFile actual) throws IOException {
+        BufferedFile.Line expectedLine = new BufferedFile.Line();
+        BufferedFile.Line line = new BufferedFile.Line();
+
+        expected.loadLine(expectedLine, 0);
+        actual.loadLine(line, 0);
+
+        while (true) {
+            checkLine(line, expectedLine.getStart(), expectedLine.getEnd(), lineText(expectedLine));
+
+            boolean hasNext = expected.loadNextLine(expectedLine);
+            assertEquals(hasNext, actual.loadNextLine(line));
+
+            if (!hasNext)
+                break;
+        }
+
+        while (expected.loadPrevLine(expectedLine)) {
+            assert actual.loadPrevLine(line);
+            checkLine(line, expectedLine.getStart(), expectedLine.getEnd(), lineText(expectedLine));
+        }
+
+        assert !actual.loadPrevLine(line);
+    }
+
+    @Test
+    public void testPatternSearch() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < ParserConfig.WINDOW_SIZE * 3) {
+            sb.append("line ").append(sb.length()).append('\n');
+        }
+
+        // The occurrences crossing the window boundaries
+        for (int pos : new int[]{10, ParserConfig.WINDOW_SIZE - 3, ParserConfig.WINDOW_SIZE * 2 - 1, sb.length() - 7}) {
+            sb.replace(pos, pos + 7, "[xyzzy]");
+        }
+
+        Path path = createTempFile();
+        Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        BufferedFile file = bufferedFile(path);
+        BytePattern pattern = new BytePattern("[xyzzy]".getBytes(StandardCharsets.UTF_8));
+
+        String text = sb.toString();
+
+        for (int from : new int[]{0, 11, ParserConfig.WINDOW_SIZE - 10, ParserConfig.WINDOW_SIZE, text.length() - 7}) {
+            assertEquals(text.indexOf("[xyzzy]", from), file.indexOf(from, Long.MAX_VALUE, pattern));
+            assertEquals(text.lastIndexOf("[xyzzy]", from - 7), file.lastIndexOf(from, 0, pattern));
+        }
+
+        assertEquals(-1, file.indexOf(11, ParserConfig.WINDOW_SIZE + 3, pattern));
+        assertEquals(ParserConfig.WINDOW_SIZE - 3, file.indexOf(11, ParserConfig.WINDOW_SIZE + 4, pattern));
+
+        assertEquals(-1, file.lastIndexOf(text.length(), text.length() - 6, pattern));
+        assertEquals(text.length() - 7, file.lastIndexOf(text.length(), text.length() - 7, pattern));
+        assertEquals(ParserConfig.WINDOW_SIZE * 2 - 1, file.lastIndexOf(text.length() - 1, 0, pattern));
+    }
+
     private void checkLine(BufferedFile.Line line, long start, long end, String data) {
         assertEquals(start, line.getStart());
         assertEquals(end, line.getEnd());
-        assertEquals(data, new String(line.getBuf(), line.getBufOffset(), line.getDataLength()));
+        assertEquals(data, lineText(line));
+    }
+
+    private static String lineText(BufferedFile.Line line) {
+        return new String(line.getBuf(), line.getBufOffset(), line.getDataLength());
     }
 
     private BufferedFile bufferedFile(String name) throws URISyntaxException, IOException {
@@ -0,0 +1,262 @@
+package com.logviewer.data2;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.filters.*;
+import com.logviewer.formats.RegexLogFormat;
+import com.logviewer.formats.RegexLogFormat.RegexField;
+import com.logviewer.mocks.TestConfigDirHolder;
+import com.logviewer.web.session.tasks.SearchPattern;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FieldIndexTest extends AbstractLogTest {
+
+    private static final LogFormat FORMAT = new RegexLogFormat(StandardCharsets.UTF_8,
+            "(\\w+) \\[(\\S+)\\] (\\S+) - (.*)", false,
+            new RegexField("level", 1, FieldTypes.LEVEL),
+            new RegexField("thread", 2, FieldTypes.THREAD),
+            new RegexField("logger", 3, FieldTypes.JAVA_CLASS),
+            new RegexField("msg", 4));
+
+    private static final int BLOCK_SIZE = 16 * 1024;
+
+    @Test
+    public void skipsBlocks() throws IOException {
+        Log log = getLogService().openLog(generateLog(), FORMAT);
+
+        try (Snapshot snapshot = log.createSnapshot()) {
+            FieldIndex index = createIndex(log, snapshot);
+
+            recordAll(index, snapshot);
+
+            assert index.getBlockCount() > 10;
+
+            RecordPredicate[] filters = {
+                    new FieldValueSetPredicate(FieldTypes.LEVEL, Collections.singletonList("ERROR")),
+                    new ThreadPredicate(new String[]{"worker-9*"}, null),
+                    new FieldArgPredicate("logger", "com.c.Special"),
+                    new NotPredicate(new FieldValueSetPredicate(FieldTypes.LEVEL, Arrays.asList("INFO", "DEBUG"))),
+                    new CompositeRecordPredicate(true,
+                            new FieldValueSetPredicate(FieldTypes.LEVEL, Collections.singletonList("ERROR")),
+                            new SubstringPredicate(new SearchPattern("record"))),
+                    new CompositeRecordPredicate(false,
+                            new FieldValueSetPredicate(FieldTypes.LEVEL, Collections.singletonList("ERROR")),
+                            new FieldArgPredicate("logger", "com.c.Special")),
+            };
+
+            for (RecordPredicate filter : filters) {
+                RegionFilter regionFilter = index.createRegionFilter(filter);
+                assertNotNull(regionFilter);
+
+                checkScans(log, snapshot, filter, regionFilter);
+            }
+
+            // The filters that cannot be checked by the index
+            assertNull(index.createRegionFilter(new SubstringPredicate(new SearchPattern("ERROR"))));
+            assertNull(index.createRegionFilter(new CompositeRecordPredicate(false,
+                    new FieldValueSetPredicate(FieldTypes.LEVEL, Collections.singletonList("ERROR")),
+                    new SubstringPredicate(new SearchPattern("record")))));
+
+            // All blocks contain INFO records
+            assertNull(index.createRegionFilter(new FieldValueSetPredicate(FieldTypes.LEVEL, Collections.singletonList("INFO"))));
+        }
+    }
+
+    @Test
+    public void adjacentRunsMerged() throws IOException {
+        Log log = getLogService().openLog(generateLog(), FORMAT);
+
+        try (Snapshot snapshot = log.createSnapshot()) {
+            FieldIndex fullIndex = createIndex(log, snapshot);
+            recordAll(fullIndex, snapshot);
+
+            // Two chunks of a parallel scan, the boundary is in the middle of a block
+            FieldIndex index = createIndex(log, snapshot);
+            FieldIndex.Recording recording = index.startRecording(snapshot.getSize());
+
+            FieldIndex.RunRecorder first = recording.createRunRecorder();
+            FieldIndex.RunRecorder second = recording.createRunRecorder();
+
+            long boundary = snapshot.getSize() / 2 + BLOCK_SIZE / 2;
+
+            snapshot.processRecords(0, false, r -> {
+                (r.getStart() < boundary ? first : second).record(r);
+                return true;
+            });
+
+            assertTrue(recording.finish());
+
+            assertEquals(fullIndex.getBlockCount(), index.getBlockCount());
+
+            // The skipped records are not indexed
+            FieldIndex partialIndex = createIndex(log, snapshot);
+            recording = partialIndex.startRecording(snapshot.getSize());
+            FieldIndex.RunRecorder recorder = recording.createRunRecorder();
+
+            snapshot.processRecords(0, false, r -> {
+                if (r.getStart() % 10 != 0)
+                    recorder.record(r);
+                return true;
+            });
+
+            recording.finish();
+
+            assert partialIndex.getBlockCount() < fullIndex.getBlockCount() / 2;
+        }
+    }
+
+    @Test
+    public void persistentIndex() throws IOException {
+        String path = generateLog();
+
+        TestConfigDirHolder configDir = new TestConfigDirHolder(null);
+
+        try {
+            FieldIndexStorage storage = new FieldIndexStorage(configDir, BLOCK_SIZE);
+            String fingerprint = TimeIndexStorage.formatFingerprint(FORMAT);
+
+            Log log = getLogService().openLog(path, FORMAT);
+
+            try (Snapshot snapshot = log.createSnapshot()) {
+                FieldIndex index = new FieldIndex(log, storage, fingerprint, snapshot.getHash(), snapshot.getSize(), BLOCK_SIZE);
+
+                recordAll(index, snapshot);
+                assertTrue(index.isModified());
+
+                // The storage has no timer, the index is saved explicitly
+                index.save();
+                assertFalse(index.isModified());
+
+                FieldIndex restored = storage.load(log, fingerprint, snapshot);
+                assertNotNull(restored);
+
+                assertEquals(index.getBlockCount(), restored.getBlockCount());
+                assertEquals(index.getBlocks().keySet(), restored.getBlocks().keySet());
+
+                for (int i = 0; i < index.getFields().length; i++) {
+                    assertEquals(index.getDictionary(i), restored.getDictionary(i));
+                }
+
+                RecordPredicate filter = new FieldValueSetPredicate(FieldTypes.LEVEL, Collections.singletonList("ERROR"));
+                checkScans(log, snapshot, filter, restored.createRegionFilter(filter));
+
+                // The index of another format is not used.
+                assertNull(storage.load(log, "another-format", snapshot));
+            }
+
+            // The index is not used if the file is rewritten.
+            List<String> lines = Files.readAllLines(log.getFile());
+            lines.set(0, "INFO [main] com.a.A - rewritten");
+            Files.write(log.getFile(), lines);
+
+            try (Snapshot snapshot = log.createSnapshot()) {
+                assertNull(storage.load(log, fingerprint, snapshot));
+            }
+        } finally {
+            configDir.destroy();
+        }
+    }
+
+    private static FieldIndex createIndex(Log log, Snapshot snapshot) {
+        return new FieldIndex(log, null, TimeIndexStorage.formatFingerprint(FORMAT), snapshot.getHash(),
+                snapshot.getSize(), BLOCK_SIZE);
+    }
+
+    private static void recordAll(FieldIndex index, Snapshot snapshot) throws IOException {
+        FieldIndex.Recording recording = index.startRecording(snapshot.getSize());
+        FieldIndex.RunRecorder recorder = recording.createRunRecorder();
+
+        snapshot.processRecords(0, false, r -> {
+            recorder.record(r);
+            return true;
+        });
+
+        assertTrue(recording.finish());
+    }
+
+    private static void checkScans(Log log, Snapshot snapshot, RecordPredicate filter, RegionFilter regionFilter) throws IOException {
+        LvPredicateChecker ctx = new LvPredicateChecker(log);
+
+        for (long position : new long[]{0, 1, 54_321, snapshot.getSize() / 2, snapshot.getSize() - 30_000, snapshot.getSize()}) {
+            for (boolean backward : new boolean[]{false, true}) {
+                AtomicInteger allVisited = new AtomicInteger();
+                List<String> expected = scan(snapshot, filter, ctx, position, backward, allVisited);
+
+                snapshot.setRegionFilter(regionFilter);
+
+                AtomicInteger visited = new AtomicInteger();
+                List<String> res;
+
+                try {
+                    res = scan(snapshot, filter, ctx, position, backward, visited);
+                } finally {
+                    snapshot.setRegionFilter(null);
+                }
+
+                assertEquals(expected, res);
+
+                if (allVisited.get() > 1000)
+                    assertTrue(visited.get() < allVisited.get() / 2);
+            }
+        }
+    }
+
+    private static List<String> scan(Snapshot snapshot, RecordPredicate filter, LogFilterContext ctx, long position,
+                                     boolean backward, AtomicInteger visited) throws IOException {
+        List<String> res = new ArrayList<>();
+
+        if (backward) {
+            snapshot.processRecordsBack(position, false, r -> {
+                visited.incrementAndGet();
+                if (filter.test(r, ctx))
+                    res.add(r.getStart() + ": " + r.getMessage());
+                return true;
+            });
+        } else {
+            snapshot.processRecords(Math.min(position, snapshot.getSize() - 1), false, r -> {
+                visited.incrementAndGet();
+                if (filter.test(r, ctx))
+                    res.add(r.getStart() + ": " + r.getMessage());
+                return true;
+            });
+        }
+
+        return res;
+    }
+
+    /**
+     * Generates a mostly-INFO log, the errors, the "worker-9x" threads and the "com.c.Special" logger appear in a few
+     * places only.
+     */
+    private String generateLog() throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        Random rnd = new Random(1);
+
+        for (int i = 0; sb.length() < 1_000_000; i++) {
+            boolean rare = rnd.nextInt(2000) == 0;
+
+            sb.append(rare ? "ERROR" : (rnd.nextBoolean() ? "INFO" : "DEBUG"))
+                    .append(" [").append(rare && rnd.nextBoolean() ? "worker-9" + rnd.nextInt(10) : "worker-" + rnd.nextInt(8))
+                    .append("] ").append(rare && rnd.nextBoolean() ? "com.c.Special" : (rnd.nextBoolean() ? "com.a.A" : "com.b.B"))
+                    .append(" - record ").append(i);
+
+            if (rnd.nextInt(10) == 0)
+                sb.append("\n    at line ").append(i);
+
+            sb.append('\n');
+        }
+
+        Path res = createTempFile();
+        Files.write(res, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return res.toString();
+    }
+}
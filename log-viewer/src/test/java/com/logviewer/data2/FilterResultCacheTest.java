@@ -0,0 +1,245 @@
+package com.logviewer.data2;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.filters.CompositeRecordPredicate;
+import com.logviewer.filters.RecordPredicate;
+import com.logviewer.filters.SubstringPredicate;
+import com.logviewer.web.session.tasks.SearchPattern;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class FilterResultCacheTest extends AbstractLogTest {
+
+    private static final RecordPredicate MATCH = new SubstringPredicate(new SearchPattern("match"));
+
+    // No search pattern can be extracted from the filter, the records are skipped by the region filter only
+    private static final RecordPredicate MATCH_OR_RECORD_77 = new CompositeRecordPredicate(false,
+            new SubstringPredicate(new SearchPattern("match")), new SubstringPredicate(new SearchPattern("record 77 ")));
+
+    @Test
+    public void skipsRejectedRecords() throws IOException {
+        Path path = generateLog();
+
+        for (RecordPredicate filter : new RecordPredicate[]{MATCH, MATCH_OR_RECORD_77}) {
+            FilterResultCache cache = new FilterResultCache(1024 * 1024);
+
+            try (Snapshot log = log(path, LogIterationForwardTest.FORMAT)) {
+                assertNull(cache.startRecording(log, filter).getRegionFilter());
+
+                record(cache, log, filter, 0, log.getSize());
+
+                FilterResultCache.Recording recording = cache.startRecording(log, filter);
+                assertNotNull(recording.getRegionFilter());
+                assertEquals(1, cache.getHitCount());
+
+                checkScans(log, filter, recording.getRegionFilter(), true);
+            }
+        }
+    }
+
+    @Test
+    public void partialResults() throws IOException {
+        Path path = generateLog();
+
+        FilterResultCache cache = new FilterResultCache(1024 * 1024);
+
+        try (Snapshot log = log(path, LogIterationForwardTest.FORMAT)) {
+            record(cache, log, MATCH, log.getSize() / 5, log.getSize() * 2 / 5);
+            record(cache, log, MATCH, log.getSize() * 3 / 5, log.getSize() * 4 / 5);
+
+            checkScans(log, MATCH, cache.startRecording(log, MATCH).getRegionFilter(), false);
+
+            // The ranges are merged with the ranges checked before
+            record(cache, log, MATCH, log.getSize() / 3, log.getSize() * 2 / 3);
+
+            checkScans(log, MATCH, cache.startRecording(log, MATCH).getRegionFilter(), false);
+        }
+    }
+
+    @Test
+    public void growingFile() throws IOException {
+        // The hash of the log covers the first 255 bytes, it doesn't change when the file grows
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; header.length() < 300; i++) {
+            header.append("[INFO] header ").append(i).append('\n');
+        }
+
+        Path path = createTempFile();
+        Files.write(path, (header + "[INFO] record 1\n[INFO] record 2 match\n[INFO] record 3\n").getBytes(StandardCharsets.UTF_8));
+
+        FilterResultCache cache = new FilterResultCache(1024 * 1024);
+
+        try (Snapshot log = log(path, LogIterationForwardTest.FORMAT)) {
+            record(cache, log, MATCH, 0, log.getSize());
+        }
+
+        // The last record is continued, it may match the filter now
+        Files.write(path, "    match\n[INFO] record 4\n[INFO] record 5 match\n".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        try (Snapshot log = log(path, LogIterationForwardTest.FORMAT)) {
+            RegionFilter regionFilter = cache.startRecording(log, MATCH).getRegionFilter();
+            assertNotNull(regionFilter);
+
+            log.setRegionFilter(regionFilter);
+
+            List<String> res = new ArrayList<>();
+            log.processRecords(0, false, null, r -> {
+                if (MATCH.test(r, null))
+                    res.add(r.getMessage());
+                return true;
+            });
+
+            assertEquals(3, res.size());
+            assertEquals("[INFO] record 3\n    match", res.get(1));
+        }
+
+        // The file is rewritten, the results of the shorter file are not used
+        Files.write(path, (header + "[INFO] record 1\n").getBytes(StandardCharsets.UTF_8));
+
+        try (Snapshot log = log(path, LogIterationForwardTest.FORMAT)) {
+            assertNull(cache.startRecording(log, MATCH).getRegionFilter());
+        }
+    }
+
+    @Test
+    public void fingerprint() {
+        LogFormat format = LogIterationForwardTest.FORMAT;
+
+        RecordPredicate a = new SubstringPredicate(new SearchPattern("a"));
+        RecordPredicate b = new SubstringPredicate(new SearchPattern("b"));
+
+        String ab = FilterResultCache.fingerprint(format, new CompositeRecordPredicate(true, a, b));
+
+        assertEquals(ab, FilterResultCache.fingerprint(format, new CompositeRecordPredicate(true, b, a)));
+        assertNotEquals(ab, FilterResultCache.fingerprint(format, new CompositeRecordPredicate(false, a, b)));
+        assertNotEquals(ab, FilterResultCache.fingerprint(LogIterationForwardTest.FORMAT_NO_APPEND,
+                new CompositeRecordPredicate(true, a, b)));
+
+        assertNull(FilterResultCache.fingerprint(format, null));
+    }
+
+    @Test
+    public void memoryLimit() throws IOException {
+        Path path = generateLog();
+
+        FilterResultCache cache = new FilterResultCache(1024);
+
+        try (Snapshot log = log(path, LogIterationForwardTest.FORMAT)) {
+            // Every record matches, the results don't fit the limit
+            RecordPredicate all = new SubstringPredicate(new SearchPattern("record"));
+
+            record(cache, log, all, 0, log.getSize());
+
+            assertNull(cache.startRecording(log, all).getRegionFilter());
+        }
+    }
+
+    /**
+     * Checks the records with the starts within {@code [from, to)} as a scan does.
+     */
+    private static void record(FilterResultCache cache, Snapshot log, RecordPredicate filter, long from, long to) throws IOException {
+        FilterResultCache.Recording recording = cache.startRecording(log, filter);
+        FilterResultCache.ChunkRecorder recorder = recording.createChunkRecorder();
+
+        log.processRecords(0, false, r -> {
+            if (r.getStart() >= from && r.getStart() < to) {
+                recorder.record(r, filter.test(r, null));
+            } else {
+                recorder.interrupt();
+            }
+
+            return true;
+        });
+
+        recording.finish();
+    }
+
+    private static void checkScans(Snapshot log, RecordPredicate filter, RegionFilter regionFilter, boolean expectSkipped) throws IOException {
+        SearchPattern prefilter = filter instanceof SubstringPredicate ? ((SubstringPredicate) filter).getSearch() : null;
+
+        for (long position : new long[]{0, 1, 54_321, log.getSize() / 2, log.getSize() - 30_000, log.getSize()}) {
+            for (boolean backward : new boolean[]{false, true}) {
+                AtomicInteger allVisited = new AtomicInteger();
+                List<String> expected = scan(log, filter, position, backward, prefilter, allVisited);
+
+                log.setRegionFilter(regionFilter);
+
+                AtomicInteger visited = new AtomicInteger();
+                List<String> res;
+
+                try {
+                    res = scan(log, filter, position, backward, prefilter, visited);
+                } finally {
+                    log.setRegionFilter(null);
+                }
+
+                assertEquals(expected, res);
+
+                if (expectSkipped && prefilter == null && allVisited.get() > 100)
+                    assertTrue(visited.get() < allVisited.get() / 10);
+            }
+        }
+    }
+
+    private static List<String> scan(Snapshot log, RecordPredicate filter, long position, boolean backward,
+                                     SearchPattern prefilter, AtomicInteger visited) throws IOException {
+        List<String> res = new ArrayList<>();
+
+        if (backward) {
+            log.processRecordsBack(position, false, prefilter, r -> {
+                visited.incrementAndGet();
+                if (filter.test(r, null))
+                    res.add(r.getStart() + ": " + r.getMessage());
+                return true;
+            });
+        } else {
+            log.processRecords(Math.min(position, log.getSize() - 1), false, prefilter, r -> {
+                visited.incrementAndGet();
+                if (filter.test(r, null))
+                    res.add(r.getStart() + ": " + r.getMessage());
+                return true;
+            });
+        }
+
+        return res;
+    }
+
+    /**
+     * Generates a log with multiline records and unparsed lines at the start.
+     */
+    private Path generateLog() throws IOException {
+        StringBuilder sb = new StringBuilder("not-a-record\nnot-a-record2\n");
+
+        Random rnd = new Random(1);
+
+        for (int i = 0; sb.length() < 300_000; i++) {
+            sb.append(rnd.nextBoolean() ? "[INFO] " : "[DEBUG] ").append("record ").append(i).append(' ');
+
+            if (rnd.nextInt(100) == 0)
+                sb.append(" match");
+
+            int extraLines = rnd.nextInt(10) == 0 ? rnd.nextInt(5) : 0;
+            for (int j = 0; j < extraLines; j++) {
+                sb.append("\n    at line ").append(j);
+            }
+
+            sb.append('\n');
+        }
+
+        Path res = createTempFile();
+        Files.write(res, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return res;
+    }
+}
@@ -0,0 +1,201 @@
+package com.logviewer.data2;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.mocks.TestConfigDirHolder;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class GzipIndexStorageTest extends AbstractLogTest {
+
+    private final TestConfigDirHolder configDir = new TestConfigDirHolder(null);
+
+    @After
+    public void destroyConfigDir() {
+        configDir.destroy();
+    }
+
+    @Test
+    public void randomAccess() throws IOException {
+        byte[] content = generateContent(1);
+        Path gz = createGzip(content);
+
+        GzipIndexStorage storage = new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE);
+
+        try (SeekableByteChannel channel = storage.openChannel(gz)) {
+            assertEquals(content.length, channel.size());
+            assert storage.getIndex(gz).getBlockCount() > 5;
+
+            Random rnd = new Random(2);
+
+            for (int i = 0; i < 300; i++) {
+                int position = rnd.nextInt(content.length);
+                int length = rnd.nextInt(3 * ParserConfig.WINDOW_SIZE);
+
+                ByteBuffer buf = ByteBuffer.allocate(length);
+                channel.position(position);
+                while (buf.hasRemaining() && channel.read(buf) >= 0) {
+                    // read fully
+                }
+
+                int expectedLength = Math.min(length, content.length - position);
+                assertEquals(expectedLength, buf.position());
+                assertArrayEquals(Arrays.copyOfRange(content, position, position + expectedLength),
+                        Arrays.copyOf(buf.array(), buf.position()));
+            }
+
+            channel.position(content.length);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+        }
+    }
+
+    @Test
+    public void persistentIndex() throws IOException {
+        byte[] content = generateContent(1);
+        Path gz = createGzip(content);
+
+        GzipIndexStorage storage = new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE);
+        Path dataFile = storage.getIndex(gz).getDataFile();
+
+        Files.setLastModifiedTime(dataFile, FileTime.fromMillis(0));
+
+        // The index stored by another instance is used.
+        GzipIndexStorage restoredStorage = new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE);
+        assertArrayEquals(content, readAll(restoredStorage, gz));
+        assertEquals(0, Files.getLastModifiedTime(dataFile).toMillis());
+
+        // The index is rebuilt if the archive is rewritten.
+        byte[] newContent = generateContent(2);
+        Files.write(gz, gzip(newContent));
+        Files.setLastModifiedTime(gz, FileTime.fromMillis(Files.getLastModifiedTime(gz).toMillis() + 5000));
+
+        assertArrayEquals(newContent, readAll(restoredStorage, gz));
+        assertArrayEquals(newContent, readAll(new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE), gz));
+        assert Files.getLastModifiedTime(dataFile).toMillis() > 0;
+    }
+
+    @Test
+    public void multipleMembers() throws IOException {
+        byte[] content = generateContent(3);
+
+        int middle = content.length / 2;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(gzip(Arrays.copyOf(content, middle)));
+        out.write(gzip(Arrays.copyOfRange(content, middle, content.length)));
+
+        Path gz = createTempFile();
+        Files.write(gz, out.toByteArray());
+
+        assertArrayEquals(content, readAll(new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE), gz));
+    }
+
+    @Test
+    public void emptyArchive() throws IOException {
+        Path gz = createGzip(new byte[0]);
+
+        try (SeekableByteChannel channel = new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE).openChannel(gz)) {
+            assertEquals(0, channel.size());
+            assertEquals(-1, channel.read(ByteBuffer.allocate(10)));
+        }
+    }
+
+    @Test
+    public void diskLimit() throws IOException {
+        byte[] content1 = generateContent(1);
+        byte[] content2 = generateContent(2);
+
+        Path gz1 = createGzip(content1);
+        Path gz2 = createGzip(content2);
+
+        long dataSize = new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE).getIndex(gz1).getDataSize();
+
+        GzipIndexStorage storage = new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE, dataSize * 3 / 2);
+
+        Path dataFile1 = storage.getIndex(gz1).getDataFile();
+        Path dataFile2 = storage.getIndex(gz2).getDataFile();
+
+        // The least recently used index is deleted
+        assert !Files.exists(dataFile1);
+        assert Files.exists(dataFile2);
+
+        assertArrayEquals(content1, readAll(storage, gz1));
+
+        assert Files.exists(dataFile1);
+        assert !Files.exists(dataFile2);
+    }
+
+    @Test
+    public void deletedSourceCleanedUp() throws IOException {
+        Path gz1 = createGzip(generateContent(1));
+        Path gz2 = createGzip(generateContent(2));
+
+        GzipIndexStorage storage = new GzipIndexStorage(configDir, ParserConfig.WINDOW_SIZE);
+
+        Path dataFile1 = storage.getIndex(gz1).getDataFile();
+
+        Files.delete(gz1);
+
+        Path dataFile2 = storage.getIndex(gz2).getDataFile();
+
+        assert !Files.exists(dataFile1);
+        assert !Files.exists(dataFile1.resolveSibling(dataFile1.getFileName().toString().replace(".gzd", ".gzi")));
+        assert Files.exists(dataFile2);
+    }
+
+    private static byte[] readAll(GzipIndexStorage storage, Path gz) throws IOException {
+        try (SeekableByteChannel channel = storage.openChannel(gz)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+            while (buf.hasRemaining() && channel.read(buf) >= 0) {
+                // read fully
+            }
+
+            assert !buf.hasRemaining();
+            return buf.array();
+        }
+    }
+
+    private Path createGzip(byte[] content) throws IOException {
+        Path res = createTempFile();
+        Files.write(res, gzip(content));
+        return res;
+    }
+
+    private static byte[] gzip(byte[] content) throws IOException {
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+
+        try (OutputStream out = new GZIPOutputStream(res)) {
+            out.write(content);
+        }
+
+        return res.toByteArray();
+    }
+
+    private static byte[] generateContent(int seed) {
+        StringBuilder sb = new StringBuilder();
+
+        Random rnd = new Random(seed);
+
+        for (int i = 0; sb.length() < 500_000; i++) {
+            sb.append("150101 10:00:00 [").append(rnd.nextBoolean() ? "INFO" : "DEBUG").append("] record ").append(i)
+                    .append(' ').append(Long.toHexString(rnd.nextLong())).append('\n');
+        }
+
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
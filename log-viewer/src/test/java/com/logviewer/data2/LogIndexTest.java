@@ -2,6 +2,7 @@ package com.logviewer.data2;
 
 import com.logviewer.AbstractLogTest;
 import com.logviewer.TestUtils;
+import com.logviewer.mocks.TestConfigDirHolder;
 import org.junit.Test;
 
 import java.io.IOException;
@@ -12,6 +13,7 @@ import java.util.*;
 import static com.logviewer.TestUtils.MULTIFILE_LOG_FORMAT;
 import static com.logviewer.TestUtils.date;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 public class LogIndexTest extends AbstractLogTest {
@@ -138,6 +140,215 @@ public class LogIndexTest extends AbstractLogTest {
         }
     }
 
+    @Test
+    public void persistentIndex() throws IOException {
+        Path tempFile = createTempFile();
+
+        List<String> content = new ArrayList<>();
+        for (int i = 0; i < 3600; i++) {
+            content.add(String.format("150101 10:%02d:%02d record-%d ..............................", i / 60, i % 60, i));
+        }
+
+        Files.write(tempFile, content);
+
+        TestConfigDirHolder configDir = new TestConfigDirHolder(null);
+
+        try {
+            TimeIndexStorage storage = new TimeIndexStorage(configDir);
+            String fingerprint = TimeIndexStorage.formatFingerprint(MULTIFILE_LOG_FORMAT);
+
+            try (Snapshot snapshot = log(tempFile, MULTIFILE_LOG_FORMAT)) {
+                LogIndex index = new LogIndex(storage, "test-log", fingerprint);
+
+                LogRecord first = index.findRecordBound(date(20, 31), false, snapshot);
+                LogRecord last = index.findRecordBound(date(40, 7), true, snapshot);
+                assertEquals("150101 10:20:31 record-1231", first.getMessage().substring(0, 27));
+                assertEquals("150101 10:40:07 record-2407", last.getMessage().substring(0, 27));
+                assert index.getProbeCount() > 0;
+
+                // The storage has no timer, save the index explicitly
+                index.saveTimeIndex();
+
+                // The index created after restart finds the same records without bisection.
+                LogIndex restoredIndex = new LogIndex(storage, "test-log", fingerprint);
+                assertEquals(first.getStart(), restoredIndex.findRecordBound(date(20, 31), false, snapshot).getStart());
+                assertEquals(last.getStart(), restoredIndex.findRecordBound(date(40, 7), true, snapshot).getStart());
+                assertEquals(0, restoredIndex.getProbeCount());
+
+                // The index of another format is not used.
+                LogIndex otherFormatIndex = new LogIndex(storage, "test-log", "another-format");
+                assertEquals(first.getStart(), otherFormatIndex.findRecordBound(date(20, 31), false, snapshot).getStart());
+                assert otherFormatIndex.getProbeCount() > 0;
+            }
+
+            // The index is not used if the file is rewritten.
+            content.set(0, "150101 10:00:00 rewritten ..............................");
+            Files.write(tempFile, content);
+
+            try (Snapshot snapshot = log(tempFile, MULTIFILE_LOG_FORMAT)) {
+                assertNull(storage.load("test-log", fingerprint, snapshot));
+            }
+        } finally {
+            configDir.destroy();
+        }
+    }
+
+    @Test
+    public void scanRecording() throws IOException {
+        Path tempFile = createTempFile();
+
+        List<String> content = new ArrayList<>();
+        String padding = String.join("", Collections.nCopies(1000, "."));
+        for (int i = 0; i < 3600; i++) {
+            content.add(String.format("150101 10:%02d:%02d record-%d %s", i / 60, i % 60, i, padding));
+        }
+
+        Files.write(tempFile, content);
+
+        TestConfigDirHolder configDir = new TestConfigDirHolder(null);
+
+        try {
+            TimeIndexStorage storage = new TimeIndexStorage(configDir);
+            String fingerprint = TimeIndexStorage.formatFingerprint(MULTIFILE_LOG_FORMAT);
+
+            try (Snapshot snapshot = log(tempFile, MULTIFILE_LOG_FORMAT)) {
+                LogIndex index = new LogIndex(storage, "test-log", fingerprint);
+
+                LogIndex.Recording recording = index.startRecording(snapshot);
+                LogIndex.Recorder recorder = recording.createRecorder();
+                snapshot.processRecords(0, false, r -> {
+                    recorder.record(r);
+                    return true;
+                });
+                recording.finish();
+
+                index.saveTimeIndex();
+
+                TimeIndex timeIndex = storage.load("test-log", fingerprint, snapshot);
+                assertEquals((snapshot.getSize() + LogIndex.RECORDING_INTERVAL - 1) / LogIndex.RECORDING_INTERVAL,
+                        timeIndex.getEntryCount());
+
+                // The search after restart starts from the range between the recorded entries
+                LogIndex restoredIndex = new LogIndex(storage, "test-log", fingerprint);
+                restoredIndex.setSearchStrategy(LogIndex.SearchStrategy.BISECTION);
+                LogRecord record = restoredIndex.findRecordBound(date(31, 7), false, snapshot);
+                assertEquals("150101 10:31:07", record.getMessage().substring(0, 15));
+
+                LogIndex noIndex = new LogIndex();
+                noIndex.setSearchStrategy(LogIndex.SearchStrategy.BISECTION);
+                assertEquals(record.getStart(), noIndex.findRecordBound(date(31, 7), false, snapshot).getStart());
+
+                assert restoredIndex.getProbeCount() < noIndex.getProbeCount();
+            }
+        } finally {
+            configDir.destroy();
+        }
+    }
+
+    @Test
+    public void storageCleanUp() throws IOException {
+        Path tempFile = createTempFile();
+        Files.write(tempFile, Arrays.asList("150101 10:00:00 a", "150101 10:00:01 b", "150101 10:00:02 c"));
+
+        TestConfigDirHolder configDir = new TestConfigDirHolder(null);
+
+        try {
+            String fingerprint = TimeIndexStorage.formatFingerprint(MULTIFILE_LOG_FORMAT);
+
+            try (Snapshot snapshot = log(tempFile, MULTIFILE_LOG_FORMAT)) {
+                TimeIndexStorage storage = new TimeIndexStorage(configDir);
+
+                LogIndex index = new LogIndex(storage, "test-log", fingerprint);
+                index.findRecordBound(date(0, 1), false, snapshot);
+                index.saveTimeIndex();
+
+                storage.cleanUp();
+                assertNotNull(storage.load("test-log", fingerprint, snapshot));
+
+                // The indexes that don't fit the size limit are deleted
+                new TimeIndexStorage(configDir, null, 0).cleanUp();
+                assertNull(storage.load("test-log", fingerprint, snapshot));
+
+                index = new LogIndex(storage, "test-log", fingerprint);
+                index.findRecordBound(date(0, 1), false, snapshot);
+                index.saveTimeIndex();
+                assertNotNull(storage.load("test-log", fingerprint, snapshot));
+
+                // The index of a deleted log is deleted
+                Files.delete(tempFile);
+                storage.cleanUp();
+                assertNull(storage.load("test-log", fingerprint, snapshot));
+            }
+        } finally {
+            configDir.destroy();
+        }
+    }
+
+    @Test
+    public void searchStrategies() throws IOException {
+        Path tempFile = createTempFile();
+
+        List<String> content = new ArrayList<>();
+        for (int i = 0; i < 3600; i++) {
+            // The first half of the hour takes most of the file, the timestamps are not distributed evenly.
+            int copies = i < 1800 ? 3 : (i % 10 == 0 ? 1 : 0);
+            for (int j = 0; j < copies; j++) {
+                content.add(String.format("150101 10:%02d:%02d record-%d-%d ..............................", i / 60, i % 60, i, j));
+            }
+        }
+
+        Files.write(tempFile, content);
+
+        try (Snapshot snapshot = log(tempFile, MULTIFILE_LOG_FORMAT)) {
+            LogIndex bisection = new LogIndex();
+            bisection.setSearchStrategy(LogIndex.SearchStrategy.BISECTION);
+
+            LogIndex interpolation = new LogIndex();
+            interpolation.setSearchStrategy(LogIndex.SearchStrategy.INTERPOLATION);
+
+            for (int i = 0; i < 3600; i += 7) {
+                for (boolean lastBound : new boolean[]{false, true}) {
+                    LogRecord expected = bisection.findRecordBound(date(i / 60, i % 60), lastBound, snapshot);
+                    LogRecord actual = interpolation.findRecordBound(date(i / 60, i % 60), lastBound, snapshot);
+
+                    assertEquals(expected == null, actual == null);
+
+                    if (expected != null)
+                        assertEquals(expected.getStart(), actual.getStart());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void interpolationProbeCount() throws IOException {
+        Path tempFile = createTempFile();
+
+        List<String> content = new ArrayList<>();
+        for (int i = 0; i < 3600; i++) {
+            content.add(String.format("150101 10:%02d:%02d record-%d ..............................", i / 60, i % 60, i));
+        }
+
+        Files.write(tempFile, content);
+
+        try (Snapshot snapshot = log(tempFile, MULTIFILE_LOG_FORMAT)) {
+            LogIndex bisection = new LogIndex();
+            bisection.setSearchStrategy(LogIndex.SearchStrategy.BISECTION);
+
+            LogIndex interpolation = new LogIndex();
+
+            for (int i = 100; i < 3500; i += 100) {
+                LogRecord expected = bisection.findRecordBound(date(i / 60, i % 60), false, snapshot);
+                LogRecord actual = interpolation.findRecordBound(date(i / 60, i % 60), false, snapshot);
+
+                assertEquals(expected.getStart(), actual.getStart());
+            }
+
+            assert interpolation.getProbeCount() < bisection.getProbeCount() / 2
+                    : interpolation.getProbeCount() + " / " + bisection.getProbeCount();
+        }
+    }
+
     private void check(long expectedPos, LogRecord record) {
         assertEquals(expectedPos, record.getStart());
     }
@@ -5,11 +5,13 @@ import com.logviewer.AbstractLogTest;
 import com.logviewer.TestUtils;
 import com.logviewer.formats.RegexLogFormat;
 import com.logviewer.formats.RegexLogFormat.RegexField;
+import com.logviewer.web.session.tasks.SearchPattern;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -191,4 +193,64 @@ public class LogIterationForwardTest extends AbstractLogTest {
         }
     }
 
+    @Test
+    public void testPrefilter() throws IOException {
+        StringBuilder sb = new StringBuilder();
+
+        for (int i = 0; sb.length() < 3 * 1024 * 1024; i++) {
+            sb.append("[INFO] record ").append(i);
+
+            if (i % 5000 == 7)
+                sb.append(" needle");
+            if (i % 7000 == 3)
+                sb.append("\nnext line needle");
+
+            sb.append('\n');
+        }
+
+        Path path = createTempFile();
+        Files.write(path, sb.toString().getBytes(StandardCharsets.UTF_8));
+
+        SearchPattern prefilter = new SearchPattern("needle");
+
+        try (Snapshot log = log(path, FORMAT)) {
+            List<String> expected = new ArrayList<>();
+            assert log.processRecords(0, false, r -> {
+                if (r.getMessage().contains("needle"))
+                    expected.add(r.getMessage());
+                return true;
+            });
+
+            assert expected.size() > 10;
+
+            List<String> res = new ArrayList<>();
+            assert log.processRecords(0, false, prefilter, r -> {
+                if (r.getMessage().contains("needle"))
+                    res.add(r.getMessage());
+                return true;
+            });
+
+            assertEquals(expected, res);
+
+            res.clear();
+            assert log.processRecordsBack(log.getSize(), false, prefilter, r -> {
+                if (r.getMessage().contains("needle"))
+                    res.add(r.getMessage());
+                return true;
+            });
+
+            Collections.reverse(res);
+            assertEquals(expected, res);
+
+            // The prefilter is not applicable to case-insensitive search
+            res.clear();
+            assert log.processRecords(0, false, new SearchPattern("NEEDLE", false, false), r -> {
+                res.add(r.getMessage());
+                return true;
+            });
+
+            assert res.size() > expected.size();
+        }
+    }
+
 }
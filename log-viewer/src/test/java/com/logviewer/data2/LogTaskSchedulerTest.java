@@ -0,0 +1,144 @@
+package com.logviewer.data2;
+
+import com.logviewer.data2.LogTaskScheduler.Priority;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogTaskSchedulerTest {
+
+    private LogTaskScheduler scheduler;
+
+    @After
+    public void shutdown() throws InterruptedException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void classLimit() throws InterruptedException {
+        scheduler = new LogTaskScheduler("test-scheduler-", 2, 2, 2, 2, 1);
+
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 3; i++) {
+            LogTaskScheduler.runAs(Priority.BULK, null, () -> scheduler.execute(() -> await(release)));
+        }
+
+        assertEquals(1, scheduler.getRunningCount(Priority.BULK));
+        assertEquals(2, scheduler.getQueueDepth(Priority.BULK));
+
+        // The interactive task doesn't wait for the bulk tasks
+        CountDownLatch interactive = new CountDownLatch(1);
+        scheduler.execute(interactive::countDown);
+
+        assertTrue(interactive.await(10, TimeUnit.SECONDS));
+
+        release.countDown();
+
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(0, scheduler.getQueueDepth(Priority.BULK));
+    }
+
+    @Test
+    public void ownersInTurn() throws InterruptedException {
+        scheduler = new LogTaskScheduler("test-scheduler-", 1, 1, 1, 1, 1);
+
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.execute(() -> await(release));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+        Object sessionA = new Object();
+        Object sessionB = new Object();
+
+        LogTaskScheduler.runAs(Priority.INTERACTIVE, sessionA, () -> {
+            scheduler.execute(() -> order.add("a1"));
+            scheduler.execute(() -> order.add("a2"));
+            scheduler.execute(() -> order.add("a3"));
+        });
+
+        LogTaskScheduler.runAs(Priority.INTERACTIVE, sessionB, () -> scheduler.execute(() -> order.add("b1")));
+
+        assertEquals(4, scheduler.getQueueDepth(Priority.INTERACTIVE));
+
+        release.countDown();
+
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("a1", "b1", "a2", "a3"), order);
+    }
+
+    @Test
+    public void nestedTaskInheritsClass() throws Exception {
+        scheduler = new LogTaskScheduler("test-scheduler-", 2, 2, 2, 2, 2);
+
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch nestedSubmitted = new CountDownLatch(1);
+
+        LogTaskScheduler.runAs(Priority.SEARCH, null, () -> scheduler.execute(() -> {
+            scheduler.execute(() -> await(release));
+            nestedSubmitted.countDown();
+            await(release);
+        }));
+
+        assertTrue(nestedSubmitted.await(10, TimeUnit.SECONDS));
+        assertEquals(2, scheduler.getRunningCount(Priority.SEARCH) + scheduler.getQueueDepth(Priority.SEARCH));
+        assertEquals(0, scheduler.getRunningCount(Priority.INTERACTIVE));
+
+        release.countDown();
+    }
+
+    @Test
+    public void customPool() throws InterruptedException {
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+
+        ExecutorService pool = Executors.newCachedThreadPool(run -> new Thread(run, "custom-pool"));
+
+        scheduler = new LogTaskScheduler(pool, 2, 2, 2, 2, 2);
+
+        CountDownLatch release = new CountDownLatch(1);
+
+        for (int i = 0; i < 4; i++) {
+            scheduler.execute(() -> {
+                threads.add(Thread.currentThread().getName());
+                await(release);
+            });
+        }
+
+        assertEquals(2, scheduler.getRunningCount(Priority.INTERACTIVE));
+        assertEquals(2, scheduler.getQueueDepth(Priority.INTERACTIVE));
+
+        release.countDown();
+
+        scheduler.shutdown();
+        assertTrue(scheduler.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertTrue(pool.isShutdown());
+        assertEquals(Collections.nCopies(4, "custom-pool"), threads);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.logviewer.data2;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.web.session.tasks.SearchPattern;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+
+public class ParallelLogScannerTest extends AbstractLogTest {
+
+    private final ParallelLogScanner scanner = new ParallelLogScanner(4, 10_000);
+
+    @After
+    public void destroyScanner() {
+        scanner.destroy();
+    }
+
+    @Test
+    public void sameOrderAsSequential() throws IOException {
+        Path path = generateLog();
+
+        Set<String> threads = ConcurrentHashMap.newKeySet();
+
+        for (LogFormat format : new LogFormat[]{LogIterationForwardTest.FORMAT, LogIterationForwardTest.FORMAT_NO_APPEND}) {
+            try (Snapshot log = log(path, format)) {
+                for (long position : new long[]{0, 1, 54_321, log.getSize() / 2, log.getSize() - 30_000, log.getSize()}) {
+                    for (boolean backward : new boolean[]{false, true}) {
+                        LogRecord first = firstRecord(log, position, backward);
+
+                        List<String> expected = new ArrayList<>();
+                        assert ParallelLogScanner.SEQUENTIAL.<String>scan(log, first, backward, null, () -> (record, out) -> {
+                            out.add(record.getStart() + ": " + record.getMessage());
+                            return true;
+                        }, expected::add);
+
+                        List<String> res = new ArrayList<>();
+                        assert scanner.<String>scan(log, first, backward, null, () -> (record, out) -> {
+                            threads.add(Thread.currentThread().getName());
+                            out.add(record.getStart() + ": " + record.getMessage());
+                            return true;
+                        }, res::add);
+
+                        assertEquals(expected, res);
+                    }
+                }
+            }
+        }
+
+        assert threads.stream().anyMatch(name -> name.startsWith("log-parallel-scan-")) : threads;
+    }
+
+    @Test
+    public void stopAtNearestMatch() throws IOException {
+        Path path = generateLog();
+
+        try (Snapshot log = log(path, LogIterationForwardTest.FORMAT)) {
+            for (boolean backward : new boolean[]{false, true}) {
+                LogRecord first = firstRecord(log, backward ? log.getSize() : 0, backward);
+
+                for (SearchPattern prefilter : new SearchPattern[]{null, new SearchPattern("match")}) {
+                    List<String> res = new ArrayList<>();
+
+                    boolean completed = scanner.<String>scan(log, first, backward, prefilter, () -> (record, out) -> {
+                        if (!record.getMessage().contains("match"))
+                            return true;
+
+                        out.add(record.getMessage());
+                        return out.size() < 3;
+                    }, res::add);
+
+                    assert !completed;
+
+                    List<String> expected = new ArrayList<>();
+                    log.processRecords(0, false, r -> {
+                        if (r.getMessage().contains("match"))
+                            expected.add(r.getMessage());
+                        return true;
+                    });
+
+                    assert expected.size() > 10;
+
+                    if (backward) {
+                        assertEquals(expected.subList(expected.size() - 3, expected.size()), reversed(res));
+                    } else {
+                        assertEquals(expected.subList(0, 3), res);
+                    }
+
+                    // The consumer stops the scan
+                    res.clear();
+
+                    completed = scanner.<String>scan(log, first, backward, prefilter, () -> (record, out) -> {
+                        if (record.getMessage().contains("match"))
+                            out.add(record.getMessage());
+                        return true;
+                    }, msg -> {
+                        res.add(msg);
+                        return res.size() < 5;
+                    });
+
+                    assert !completed;
+
+                    if (backward) {
+                        assertEquals(expected.subList(expected.size() - 5, expected.size()), reversed(res));
+                    } else {
+                        assertEquals(expected.subList(0, 5), res);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void firstChunkOnCallerThread() throws IOException {
+        Path path = generateLog();
+
+        try (Snapshot log = log(path, LogIterationForwardTest.FORMAT)) {
+            LogRecord first = firstRecord(log, 0, false);
+
+            Set<Thread> threads = ConcurrentHashMap.newKeySet();
+            List<String> res = new ArrayList<>();
+
+            // The matches are found in the first chunk, the pool is not used
+            boolean completed = scanner.<String>scan(log, first, false, new SearchPattern("match"), () -> (record, out) -> {
+                threads.add(Thread.currentThread());
+
+                if (record.getMessage().contains("match"))
+                    out.add(record.getMessage());
+
+                return out.size() < 2;
+            }, res::add);
+
+            assert !completed;
+            assertEquals(2, res.size());
+            assertEquals(Collections.singleton(Thread.currentThread()), threads);
+        }
+    }
+
+    private static List<String> reversed(List<String> list) {
+        List<String> res = new ArrayList<>(list);
+        Collections.reverse(res);
+        return res;
+    }
+
+    private static LogRecord firstRecord(Snapshot log, long position, boolean backward) throws IOException {
+        LogRecord[] res = new LogRecord[1];
+
+        if (backward) {
+            log.processRecordsBack(position, false, r -> {
+                res[0] = r;
+                return false;
+            });
+        } else {
+            log.processRecords(Math.min(position, log.getSize() - 1), false, r -> {
+                res[0] = r;
+                return false;
+            });
+        }
+
+        return res[0];
+    }
+
+    /**
+     * Generates a log with multiline records and unparsed lines at the start.
+     */
+    private Path generateLog() throws IOException {
+        StringBuilder sb = new StringBuilder("not-a-record\nnot-a-record2\n");
+
+        Random rnd = new Random(1);
+
+        for (int i = 0; sb.length() < 300_000; i++) {
+            sb.append(rnd.nextBoolean() ? "[INFO] " : "[DEBUG] ").append("record ").append(i);
+
+            if (rnd.nextInt(100) == 0)
+                sb.append(" match");
+
+            int extraLines = rnd.nextInt(10) == 0 ? rnd.nextInt(5) : 0;
+            for (int j = 0; j < extraLines; j++) {
+                sb.append("\n    at line ").append(j);
+            }
+
+            sb.append('\n');
+        }
+
+        Path res = createTempFile();
+        Files.write(res, sb.toString().getBytes(StandardCharsets.UTF_8));
+        return res;
+    }
+}
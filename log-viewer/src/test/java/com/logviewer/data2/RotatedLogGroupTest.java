@@ -0,0 +1,170 @@
+package com.logviewer.data2;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.logLibs.logback.LogbackLogFormat;
+import com.logviewer.utils.Utils;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class RotatedLogGroupTest extends AbstractLogTest {
+
+    private static final LogFormat FORMAT = new LogbackLogFormat("%d{yyyy-MM-dd HH:mm:ss} %m");
+
+    @Test
+    public void rotationSets() {
+        List<Path> paths = Arrays.asList(Paths.get("/logs/app.log.1"), Paths.get("/logs/app.log"),
+                Paths.get("/logs/app.log.10"), Paths.get("/logs/app.log.2"), Paths.get("/logs/other.log"),
+                Paths.get("/logs/day.log.2020-01-02"), Paths.get("/logs/day.log.2020-01-01"),
+                Paths.get("/logs/day.log"), Paths.get("/logs/mixed.log.1"), Paths.get("/logs/mixed.log.2020-01-01"),
+                Paths.get("/logs/mixed.log"), Paths.get("/logs/node.1"), Paths.get("/logs/node.2"));
+
+        // "node.1" and "node.2" are not grouped, the active file is not opened
+        assertEquals(Arrays.asList(
+                Arrays.asList(Paths.get("/logs/app.log.10"), Paths.get("/logs/app.log.2"), Paths.get("/logs/app.log.1"), Paths.get("/logs/app.log")),
+                Arrays.asList(Paths.get("/logs/day.log.2020-01-01"), Paths.get("/logs/day.log.2020-01-02"), Paths.get("/logs/day.log"))
+        ), RotatedLogGroup.findRotationSets(paths));
+    }
+
+    @Test
+    public void singleAddressSpace() throws IOException {
+        RotatedLogGroup group = createGroup();
+
+        try (Snapshot snapshot = group.createSnapshot()) {
+            assertEquals(group.getSegments().stream().mapToLong(s -> s.getFile().toFile().length()).sum(), snapshot.getSize());
+
+            List<LogRecord> all = new ArrayList<>();
+            assert snapshot.processRecords(0, false, all::add);
+
+            assertEquals(expectedMessages(0, 30), all.stream().map(r -> r.getMessage().trim()).collect(Collectors.toList()));
+
+            for (int i = 0; i < all.size(); i++) {
+                assertEquals(group.getId(), all.get(i).getLogId());
+
+                if (i > 0)
+                    assert all.get(i).getStart() >= all.get(i - 1).getEnd();
+            }
+
+            List<LogRecord> back = new ArrayList<>();
+            assert snapshot.processRecordsBack(snapshot.getSize(), false, back::add);
+            Collections.reverse(back);
+            assertEquals(toString(all), toString(back));
+
+            // The cursor crosses the segment boundaries
+            for (int i = 0; i < all.size(); i++) {
+                LogRecord record = all.get(i);
+
+                assertEquals(toString(all.subList(i, all.size())), toString(load(c -> snapshot.processRecords(record.getStart(), false, c))));
+                assertEquals(toString(all.subList(i + 1, all.size())), toString(load(c -> snapshot.processRecords(record.getEnd(), true, c))));
+
+                List<LogRecord> before = load(c -> snapshot.processRecordsBack(record.getStart(), true, c));
+                Collections.reverse(before);
+                assertEquals(toString(all.subList(0, i)), toString(before));
+            }
+        }
+    }
+
+    @Test
+    public void searchByTime() throws IOException {
+        RotatedLogGroup group = createGroup();
+
+        try (Snapshot snapshot = group.createSnapshot()) {
+            List<LogRecord> all = load(c -> snapshot.processRecords(0, false, c));
+
+            for (int i = 0; i < 30; i++) {
+                long time = time(i);
+
+                assertEquals(toString(all.subList(i, all.size())), toString(load(c -> snapshot.processFromTime(time, c))));
+
+                List<LogRecord> before = load(c -> snapshot.processFromTimeBack(time, c));
+                Collections.reverse(before);
+                assertEquals(toString(all.subList(0, i + 1)), toString(before));
+            }
+
+            assertEquals(toString(all), toString(load(c -> snapshot.processFromTime(time(0) - 1000_000_000L, c))));
+            assertEquals(0, load(c -> snapshot.processFromTimeBack(time(0) - 1000_000_000L, c)).size());
+            assertEquals(0, load(c -> snapshot.processFromTime(time(29) + 1000_000_000L, c)).size());
+        }
+    }
+
+    @Test
+    public void openLogsCreatesGroup() throws IOException {
+        RotatedLogGroup group = createGroup();
+
+        List<LogPath> paths = group.getSegments().stream().map(Log::getPath).collect(Collectors.toList());
+
+        Map<String, LogView> logs = Utils.safeGet(getLogService().openLogs(paths));
+        assertEquals(1, logs.size());
+
+        LogView log = logs.values().iterator().next();
+        assert log instanceof RotatedLogGroup;
+        assertEquals(group.getSegments().get(2).getPath(), log.getPath());
+    }
+
+    private interface RecordSource {
+        void process(Predicate<LogRecord> consumer) throws IOException;
+    }
+
+    private static List<LogRecord> load(RecordSource source) throws IOException {
+        List<LogRecord> res = new ArrayList<>();
+        source.process(res::add);
+        return res;
+    }
+
+    private static List<String> toString(List<LogRecord> records) {
+        return records.stream().map(r -> r.getStart() + ":" + r.getMessage().trim()).collect(Collectors.toList());
+    }
+
+    private static List<String> expectedMessages(int from, int to) {
+        List<String> res = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            res.add(message(i));
+        }
+        return res;
+    }
+
+    private static String message(int i) {
+        return String.format("2020-01-01 10:%02d:00 record-%d", i, i);
+    }
+
+    private static long time(int i) {
+        return LocalDateTime.of(2020, 1, 1, 10, i).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() * 1000_000L;
+    }
+
+    /**
+     * Three files of 10 records each: app.log.2 contains the records 0..9, app.log.1 - 10..19, app.log - 20..29.
+     */
+    private RotatedLogGroup createGroup() throws IOException {
+        Path dir = createTempDirectory();
+
+        List<Path> files = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            Path file = dir.resolve(i == 2 ? "app.log" : "app.log." + (2 - i));
+
+            StringBuilder sb = new StringBuilder();
+            for (int j = i * 10; j < i * 10 + 10; j++) {
+                sb.append(message(j)).append('\n');
+            }
+
+            Files.write(file, sb.toString().getBytes());
+            files.add(file);
+        }
+
+        assertEquals(Collections.singletonList(files), RotatedLogGroup.findRotationSets(files));
+
+        List<Log> segments = files.stream().map(f -> getLogService().openLog(f, FORMAT)).collect(Collectors.toList());
+
+        return new RotatedLogGroup(segments, getLogService().getExecutor());
+    }
+}
@@ -0,0 +1,190 @@
+package com.logviewer.files;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class ArchiveMemberTest {
+
+    @Test
+    public void fromPath() {
+        ArchiveMember member = ArchiveMember.fromPath(Paths.get("/var/log/logs.tar.gz!/app/server.log"));
+        assertNotNull(member);
+        assertEquals(Paths.get("/var/log/logs.tar.gz"), member.getArchive());
+        assertEquals("app/server.log", member.getName());
+        assertEquals(Paths.get("/var/log/logs.tar.gz!/app/server.log"), member.toPath());
+
+        member = ArchiveMember.fromPath(Paths.get("/var/log/a!/logs.zip!/server.log"));
+        assertNotNull(member);
+        assertEquals(Paths.get("/var/log/a!/logs.zip"), member.getArchive());
+        assertEquals("server.log", member.getName());
+
+        assertNull(ArchiveMember.fromPath(Paths.get("/var/log/server.log")));
+        assertNull(ArchiveMember.fromPath(Paths.get("/var/log/logs.tar.gz")));
+        assertNull(ArchiveMember.fromPath(Paths.get("/var/log/logs.tar.gz!")));
+        assertNull(ArchiveMember.fromPath(Paths.get("/var/log/logs.txt!/server.log")));
+    }
+
+    @Test
+    public void tarGz() throws IOException {
+        Map<String, String> content = content();
+
+        Path archive = Files.createTempFile("archive-test-", ".tar.gz");
+
+        try {
+            Files.write(archive, createTarGz(content));
+
+            checkArchive(archive, content);
+        } finally {
+            Files.delete(archive);
+        }
+    }
+
+    @Test
+    public void zip() throws IOException {
+        Map<String, String> content = content();
+
+        Path archive = Files.createTempFile("archive-test-", ".zip");
+
+        try {
+            ByteArrayOutputStream res = new ByteArrayOutputStream();
+
+            try (ZipOutputStream out = new ZipOutputStream(res)) {
+                out.putNextEntry(new ZipEntry("dir/"));
+                out.closeEntry();
+
+                for (Map.Entry<String, String> entry : content.entrySet()) {
+                    out.putNextEntry(new ZipEntry(entry.getKey()));
+                    out.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                    out.closeEntry();
+                }
+            }
+
+            Files.write(archive, res.toByteArray());
+
+            checkArchive(archive, content);
+        } finally {
+            Files.delete(archive);
+        }
+    }
+
+    private static void checkArchive(Path archive, Map<String, String> content) throws IOException {
+        List<ArchiveMember.Entry> entries = ArchiveMember.list(archive);
+
+        assertEquals(Arrays.asList(content.keySet().toArray()),
+                entries.stream().map(e -> e.getMember().getName()).collect(Collectors.toList()));
+
+        for (ArchiveMember.Entry entry : entries) {
+            String expected = content.get(entry.getMember().getName());
+            assertEquals(expected.getBytes(StandardCharsets.UTF_8).length, entry.getSize());
+
+            ArchiveMember member = ArchiveMember.fromPath(entry.getMember().toPath());
+            assertEquals(entry.getMember(), member);
+
+            try (InputStream in = member.openStream()) {
+                assertEquals(expected, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        try {
+            new ArchiveMember(archive, "missing.log").openStream().close();
+            fail();
+        } catch (NoSuchFileException ignored) {
+
+        }
+    }
+
+    private static Map<String, String> content() {
+        Map<String, String> res = new LinkedHashMap<>();
+
+        res.put("server.log", "150101 10:00:00 first\n150101 10:00:01 second\n");
+        res.put("dir/empty.log", "");
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            sb.append("150101 10:00:00 record ").append(i).append('\n');
+        }
+        res.put("dir/" + "long-name-".repeat(12) + ".log", sb.toString());
+
+        return res;
+    }
+
+    /**
+     * Creates a tar archive using GNU long name entries for the names longer than 100 bytes.
+     */
+    public static byte[] createTarGz(Map<String, String> content) throws IOException {
+        ByteArrayOutputStream res = new ByteArrayOutputStream();
+
+        try (OutputStream out = new GZIPOutputStream(res)) {
+            out.write(tarHeader("dir/", 0, '5'));
+
+            for (Map.Entry<String, String> entry : content.entrySet()) {
+                byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+
+                if (name.length > 100) {
+                    out.write(tarHeader("././@LongLink", name.length, 'L'));
+                    writePadded(out, name);
+                }
+
+                byte[] data = entry.getValue().getBytes(StandardCharsets.UTF_8);
+                out.write(tarHeader(entry.getKey(), data.length, '0'));
+                writePadded(out, data);
+            }
+
+            out.write(new byte[1024]);
+        }
+
+        return res.toByteArray();
+    }
+
+    private static void writePadded(OutputStream out, byte[] data) throws IOException {
+        out.write(data);
+        out.write(new byte[(512 - data.length % 512) % 512]);
+    }
+
+    private static byte[] tarHeader(String name, long size, char type) {
+        byte[] res = new byte[512];
+
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(nameBytes, 0, res, 0, Math.min(nameBytes.length, 100));
+
+        putString(res, 100, "0000644");
+        putString(res, 124, String.format("%011o", size));
+        putString(res, 136, String.format("%011o", 1420106400L));
+        res[156] = (byte) type;
+        putString(res, 257, "ustar");
+        putString(res, 263, "00");
+
+        Arrays.fill(res, 148, 156, (byte) ' ');
+        int checksum = 0;
+        for (byte b : res) {
+            checksum += b & 0xff;
+        }
+        putString(res, 148, String.format("%06o", checksum));
+
+        return res;
+    }
+
+    private static void putString(byte[] res, int offset, String str) {
+        byte[] bytes = str.getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(bytes, 0, res, offset, bytes.length);
+    }
+}
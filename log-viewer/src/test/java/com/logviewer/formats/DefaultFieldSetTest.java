@@ -2,6 +2,7 @@ package com.logviewer.formats;
 
 import com.logviewer.AbstractLogTest;
 import com.logviewer.data2.*;
+import com.logviewer.filters.FieldArgPredicate;
 import com.logviewer.formats.utils.*;
 import org.junit.Test;
 
@@ -246,6 +247,100 @@ public class DefaultFieldSetTest extends AbstractLogTest {
         assertEquals("INFO", record.getFieldText("f"));
     }
 
+    @Test
+    public void testNonAsciiLines() {
+        LogReader reader = format.createReader();
+
+        String ascii = "2016-12-02_16:05:11.333 [main] INFO  com.behavox.App - started";
+        String nonAscii = "2016-12-02_16:05:12.333 [поток-1] WARN  com.behavox.App - сообщение";
+
+        assertTrue(reader.parseRecord(new BufferedFile.Line(ascii)));
+        assertTrue(reader.hasParsedRecord());
+
+        // the multibyte line is parsed as a string
+        byte[] nonAsciiBytes = nonAscii.getBytes(StandardCharsets.UTF_8);
+        assertTrue(reader.parseRecord(nonAsciiBytes, 0, nonAsciiBytes.length, 0, nonAsciiBytes.length));
+
+        LogRecord record = reader.buildRecord();
+        assertEquals(nonAscii, record.getMessage());
+        assertEquals("поток-1", record.getFieldText("thread"));
+        assertEquals("сообщение", record.getFieldText("msg"));
+
+        assertTrue(reader.parseRecord(new BufferedFile.Line(ascii)));
+
+        byte[] tail = "\n  at com.behavox.App.main(App.java:10)".getBytes(StandardCharsets.UTF_8);
+        reader.appendTail(tail, 0, tail.length, tail.length);
+
+        record = reader.buildRecord();
+        assertEquals(ascii + "\n  at com.behavox.App.main(App.java:10)", record.getMessage());
+        assertEquals("started\n  at com.behavox.App.main(App.java:10)", record.getFieldText("msg"));
+        assertFalse(reader.hasParsedRecord());
+    }
+
+    @Test
+    public void testSingleByteCharset() {
+        DefaultFieldSet format = new DefaultFieldSet(StandardCharsets.ISO_8859_1, true,
+                new LvLayoutSimpleDateNode("yyyy-MM-dd_HH:mm:ss.SSS"),
+                LvLayoutTextNode.of(" "),
+                new LvLayoutClassNode(),
+                LvLayoutTextNode.of(" - "),
+                LvLayoutStretchNode.messageNode());
+
+        String s = "2016-12-02_16:05:11.333 com.app.Ma\u00efn - caf\u00e9";
+        byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+
+        LogReader reader = format.createReader();
+        assertTrue(reader.parseRecord(bytes, 0, bytes.length, 0, bytes.length));
+
+        LogRecord record = reader.buildRecord();
+        assertEquals(s, record.getMessage());
+        assertEquals("com.app.Ma\u00efn", record.getFieldText("logger"));
+        assertEquals("caf\u00e9", record.getFieldText("msg"));
+    }
+
+    @Test
+    public void testCompiledLayout() {
+        DefaultFieldSet doubleStretch = new DefaultFieldSet(StandardCharsets.UTF_8, true,
+                LvLayoutStretchNode.threadNode(),
+                LvLayoutTextNode.of(" "),
+                new LvLayoutStretchNode("f", "f", false, 2),
+                LvLayoutTextNode.of(" - "),
+                LvLayoutStretchNode.messageNode());
+
+        String[] lines = {
+                "2016-12-02_16:05:11.333 [main] INFO  com.behavox.App - started",
+                "2016-12-02_16:05:11.333 [main - x] ERROR com.behavox.App -  - started - ",
+                "2016-12-02_16:05:11.333 [main]  INFO com.behavox.App - ",
+                "2016-12-02_16:05:11.333 [main] FATAL com.behavox.App - started",
+                "2016-12-02_16:05:11.333 [main] INFO  com.behavox.App",
+                "2016-12-02_16:05:11 [main] INFO  com.behavox.App - started",
+                "t1 ab - msg",
+                "t1 a - msg - b",
+                "t1 xx yy - zz - ",
+                "",
+        };
+
+        for (DefaultFieldSet fieldSet : new DefaultFieldSet[]{format, doubleStretch}) {
+            for (String line : lines) {
+                assertEquals(line, parseBytes(fieldSet, line, false), parseBytes(fieldSet, line, true));
+            }
+        }
+    }
+
+    private static String parseBytes(DefaultFieldSet format, String s, boolean compile) {
+        LogReader reader = new DefaultFieldSet(format.getEncoding(), true, compile, format.getLayout()).createReader();
+
+        byte[] bytes = ("xx" + s + "yy").getBytes(StandardCharsets.UTF_8);
+        if (!reader.parseRecord(bytes, 2, bytes.length - 4, 0, bytes.length - 4))
+            return null;
+
+        LogRecord record = reader.buildRecord();
+
+        return Arrays.stream(format.getFields())
+                .map(f -> f.name() + '=' + record.getFieldText(f.name()))
+                .collect(Collectors.joining(", "));
+    }
+
     private static void buildFailed(DefaultFieldSet format, String s) {
         LogReader reader = format.createReader();
         assertFalse(reader.parseRecord(new BufferedFile.Line(s)));
@@ -312,4 +407,22 @@ public class DefaultFieldSetTest extends AbstractLogTest {
 
         assertEquals("2016-12-02_16:05:11.333", new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss.SSS").format(new Date(record.getTimeMillis())));
     }
+
+    @Test
+    public void lazyMessage() {
+        LogReader reader = format.createReader();
+
+        assertTrue(reader.parseRecord(new BufferedFile.Line("2016-12-02_16:05:11.333 [main] INFO com.behavox.App - started")));
+        LogRecord record = reader.buildRecord().setLogId("log");
+
+        // The fields are read from the encoded text
+        assertEquals("main", record.getFieldText("thread"));
+        assertEquals("started", record.getFieldText("msg"));
+        assertTrue(new FieldArgPredicate("level", "INFO").test(record, null));
+
+        assertEquals("2016-12-02_16:05:11.333 [main] INFO com.behavox.App - started", record.getMessage());
+        assertEquals("main", record.getFieldText("thread"));
+
+        assertEquals(record, buildRecord(format, "2016-12-02_16:05:11.333 [main] INFO com.behavox.App - started").setLogId("log"));
+    }
 }
@@ -0,0 +1,110 @@
+package com.logviewer.formats.utils;
+
+import com.logviewer.utils.LvDateUtils;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+import static org.junit.Assert.*;
+
+public class CachingDateParserTest {
+
+    @Test
+    public void cacheablePatterns() {
+        assertNotNull(CachingDateParser.forPattern("yyyy-MM-dd HH:mm:ss"));
+        assertNotNull(CachingDateParser.forPattern("yyyy-MM-dd HH:mm:ss.SSS"));
+        assertNotNull(CachingDateParser.forPattern("yyyy-MM-dd HH:mm:ss,SSSSSS"));
+        assertNotNull(CachingDateParser.forPattern("yyyyMMddHHmmssSSS"));
+
+        assertNull(CachingDateParser.forPattern("yyyy-MM-dd HH:mm:s"));
+        assertNull(CachingDateParser.forPattern("yyyy-MM-dd HH:mm:ss.SSS Z"));
+        assertNull(CachingDateParser.forPattern("yyyy-MM-dd HH:mm:ss z"));
+        assertNull(CachingDateParser.forPattern("yyyy-MM-dd HH:mm"));
+        assertNull(CachingDateParser.forPattern("ss.SSS 'at' yyyy-MM-dd HH:mm"));
+    }
+
+    @Test
+    public void cachedPrefix() {
+        CachingDateParser parser = CachingDateParser.forPattern("yyyy-MM-dd HH:mm:ss.SSS");
+
+        assertEquals(CachingDateParser.PARSE_FAILED, parser.parse("2020-01-01 10:00:05.123", 0, 23));
+
+        parser.remember("2020-01-01 10:00:05.123", 0, 23, nanos("2020-01-01T10:00:05.123"));
+        assertEquals(nanos("2020-01-01T10:00:05.123"), parser.getTime());
+
+        String s = "__2020-01-01 10:00:59.007 msg";
+        assertEquals(25, parser.parse(s, 2, s.length()));
+        assertEquals(nanos("2020-01-01T10:00:59.007"), parser.getTime());
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        assertEquals(25, parser.parse(bytes, 2, bytes.length));
+        assertEquals(nanos("2020-01-01T10:00:59.007"), parser.getTime());
+
+        // another minute
+        assertEquals(CachingDateParser.PARSE_FAILED, parser.parse("2020-01-01 10:01:05.123", 0, 23));
+        // invalid suffix
+        assertEquals(CachingDateParser.PARSE_FAILED, parser.parse("2020-01-01 10:00:60.123", 0, 23));
+        assertEquals(CachingDateParser.PARSE_FAILED, parser.parse("2020-01-01 10:00:05,123", 0, 23));
+        assertEquals(CachingDateParser.PARSE_FAILED, parser.parse("2020-01-01 10:00:05.12x", 0, 23));
+        assertEquals(CachingDateParser.PARSE_FAILED, parser.parse("2020-01-01 10:00:05.12", 0, 22));
+
+        parser.clear();
+        assertEquals(CachingDateParser.PARSE_FAILED, parser.parse(s, 2, s.length()));
+    }
+
+    @Test
+    public void nonAsciiPrefix() {
+        CachingDateParser parser = CachingDateParser.forPattern("yyyy MMM dd HH:mm:ss");
+
+        String s = "2020 \u00ff 01 10:00:05";
+        parser.remember(s, 0, s.length(), 1000);
+
+        assertEquals(s.length(), parser.parse(s, 0, s.length()));
+
+        byte[] bytes = s.getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals(CachingDateParser.PARSE_FAILED, parser.parse(bytes, 0, bytes.length));
+    }
+
+    @Test
+    public void simpleDateNode() {
+        checkSequence(new LvLayoutSimpleDateNode("yyyy-MM-dd HH:mm:ss.SSS"), "yyyy-MM-dd HH:mm:ss.SSS");
+        checkSequence(new LvLayoutSimpleDateNode("yyyy-MM-dd HH:mm:ss"), "yyyy-MM-dd HH:mm:ss");
+        checkSequence(new LvLayoutLog4jISO8601Date(3, false), "yyyy-MM-dd'T'HH:mm:ss,SSS");
+        checkSequence(new LvLayoutLog4jISO8601Date(0, false), "yyyy-MM-dd HH:mm:ss");
+    }
+
+    private static void checkSequence(LvLayoutDateNode node, String pattern) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern(pattern);
+
+        LocalDateTime time = LocalDateTime.of(2020, 3, 29, 1, 58, 30, 0);
+
+        for (int i = 0; i < 300; i++) {
+            time = time.plusNanos(i * 7_000_000L + 900_000_000L);
+
+            String s = formatter.format(time) + " msg";
+            int dateLength = s.length() - 4;
+
+            long expected = nanos(time.withNano(time.getNano() / 1000_000 * 1000_000));
+            if (!pattern.contains("S"))
+                expected = nanos(time.withNano(0));
+
+            assertEquals(dateLength, node.parse(s, 0, s.length()));
+            assertEquals(s, expected, node.getCurrentDate());
+
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            assertEquals(dateLength, node.parse(bytes, 0, bytes.length));
+            assertEquals(s, expected, node.getCurrentDate());
+        }
+    }
+
+    private static long nanos(String localTime) {
+        return nanos(LocalDateTime.parse(localTime));
+    }
+
+    private static long nanos(LocalDateTime time) {
+        return LvDateUtils.toNanos(time.atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
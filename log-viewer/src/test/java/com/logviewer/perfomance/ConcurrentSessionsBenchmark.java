@@ -0,0 +1,187 @@
+package com.logviewer.perfomance;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.config.LvTestConfig;
+import com.logviewer.data2.*;
+import com.logviewer.data2.LogTaskScheduler.Priority;
+import com.logviewer.formats.RegexLogFormat;
+import com.logviewer.utils.TestSessionAdapter;
+import com.logviewer.utils.VirtualThreads;
+import com.logviewer.web.session.tasks.LoadNextResponse;
+import com.logviewer.web.session.tasks.LoadRecordTask;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the throughput of page loading when many sessions load pages at the same time, with the platform threads
+ * and, if the JVM supports them, with the virtual threads (see {@link VirtualThreads#ENABLED_PROPERTY}). Each session
+ * loads the pages one after another from random positions, as a user scrolling the log.
+ *
+ * The number of sessions is specified by "lv.bench.sessions" system property (300 by default), the number of pages
+ * loaded by each session - by "lv.bench.pages" (10 by default), the number of log files - by "lv.bench.logs"
+ * (20 by default).
+ *
+ * Note: the Java 21 version of {@link VirtualThreads} is used only when the classes are loaded from the multi-release
+ * jar, so the virtual thread mode is measured when the benchmark is run against the packaged jar on JDK 21+.
+ */
+@Ignore
+public class ConcurrentSessionsBenchmark extends AbstractLogTest {
+
+    private static final LogFormat FORMAT = new RegexLogFormat(StandardCharsets.UTF_8,
+            "(\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3}) (.*)", false,
+            "yyyy-MM-dd HH:mm:ss.SSS", "date",
+            new RegexLogFormat.RegexField("date", 1, FieldTypes.DATE),
+            new RegexLogFormat.RegexField("msg", 2, "message")
+    );
+
+    private static final long START_TIME = new Date(120, 0, 1).getTime();
+
+    private static final int RECORDS_PER_LOG = 100_000;
+
+    private static final int PAGE_SIZE = 100;
+
+    @Test
+    public void concurrentSessions() throws Exception {
+        int sessionCount = Integer.getInteger("lv.bench.sessions", 300);
+        int pageCount = Integer.getInteger("lv.bench.pages", 10);
+        int logCount = Integer.getInteger("lv.bench.logs", 20);
+
+        Path dir = createTempDirectory();
+
+        List<Path> files = new ArrayList<>();
+        for (int i = 0; i < logCount; i++) {
+            Path file = dir.resolve("server-" + i + ".log");
+            generateLog(file);
+            files.add(file);
+        }
+
+        run(false, files, sessionCount, pageCount);
+
+        if (VirtualThreads.isSupported()) {
+            run(true, files, sessionCount, pageCount);
+        } else {
+            System.out.println("Virtual threads are not supported, run the benchmark on JDK 21+ against the packaged jar");
+        }
+    }
+
+    private void run(boolean virtualThreads, List<Path> files, int sessionCount, int pageCount) throws Exception {
+        System.setProperty(VirtualThreads.ENABLED_PROPERTY, String.valueOf(virtualThreads));
+
+        try {
+            LogService logService = createLogServiceWithContext(LvTestConfig.class);
+
+            LogView[] logs = new LogView[files.size()];
+            for (int i = 0; i < logs.length; i++) {
+                logs[i] = logService.openLog(files.get(i).toString(), FORMAT);
+            }
+
+            for (int iteration = 0; iteration < 5; iteration++) {
+                AtomicLong totalLatency = new AtomicLong();
+                AtomicLong maxLatency = new AtomicLong();
+
+                long startTime = System.nanoTime();
+
+                List<CompletableFuture<Void>> sessions = new ArrayList<>();
+
+                for (int i = 0; i < sessionCount; i++) {
+                    Session session = new Session(logs[i % logs.length], pageCount, new Random(i), totalLatency, maxLatency);
+                    sessions.add(session.done);
+                    session.loadNextPage();
+                }
+
+                CompletableFuture.allOf(sessions.toArray(new CompletableFuture[0])).get();
+
+                long time = System.nanoTime() - startTime;
+                long pages = (long) sessionCount * pageCount;
+
+                System.out.printf("virtualThreads: %s, sessions: %d, pages: %d, time: %dms, throughput: %.1f pages/s, "
+                                + "avg latency: %.1fms, max latency: %dms%n",
+                        logService.isVirtualThreads(), sessionCount, pages, TimeUnit.NANOSECONDS.toMillis(time),
+                        pages * 1e9 / time,
+                        (double) totalLatency.get() / pages / TimeUnit.MILLISECONDS.toNanos(1),
+                        TimeUnit.NANOSECONDS.toMillis(maxLatency.get()));
+            }
+
+            System.out.println(logService.getScheduler());
+        } finally {
+            System.clearProperty(VirtualThreads.ENABLED_PROPERTY);
+            destroyContexts();
+        }
+    }
+
+    private static void generateLog(Path file) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < RECORDS_PER_LOG; i++) {
+                writer.write(dateFormat.format(new Date(START_TIME + i)));
+                writer.write(" record ");
+                writer.write(String.valueOf(i));
+                writer.newLine();
+            }
+        }
+    }
+
+    private static class Session {
+        private final TestSessionAdapter adapter = new TestSessionAdapter();
+
+        private final LogView log;
+        private final Random rnd;
+
+        private final AtomicLong totalLatency;
+        private final AtomicLong maxLatency;
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private int remainingPages;
+
+        Session(LogView log, int pageCount, Random rnd, AtomicLong totalLatency, AtomicLong maxLatency) {
+            this.log = log;
+            this.remainingPages = pageCount;
+            this.rnd = rnd;
+            this.totalLatency = totalLatency;
+            this.maxLatency = maxLatency;
+        }
+
+        void loadNextPage() {
+            if (remainingPages-- == 0) {
+                done.complete(null);
+                return;
+            }
+
+            long time = START_TIME + rnd.nextInt(RECORDS_PER_LOG - PAGE_SIZE);
+            Position start = new Position("", TimeUnit.MILLISECONDS.toNanos(time), 0);
+
+            LoadRecordTask task = new LoadRecordTask(adapter, new LogView[]{log}, PAGE_SIZE, null, start, false, null);
+
+            long startTime = System.nanoTime();
+
+            LogTaskScheduler.runAs(Priority.INTERACTIVE, this, () -> task.execute((LoadNextResponse res, Throwable e) -> {
+                if (e != null) {
+                    done.completeExceptionally(e);
+                    return;
+                }
+
+                long latency = System.nanoTime() - startTime;
+                totalLatency.addAndGet(latency);
+                maxLatency.accumulateAndGet(latency, Math::max);
+
+                loadNextPage();
+            }));
+        }
+    }
+}
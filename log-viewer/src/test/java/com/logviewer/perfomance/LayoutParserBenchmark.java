@@ -0,0 +1,79 @@
+package com.logviewer.perfomance;
+
+import com.logviewer.data2.LogReader;
+import com.logviewer.formats.DefaultFieldSet;
+import com.logviewer.formats.DefaultFieldSetTest;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+
+/**
+ * Compares the throughput of the interpreted layout parsing and the parsing with the text nodes inlined, see
+ * {@link com.logviewer.formats.utils.LvLayoutParser#LvLayoutParser(com.logviewer.formats.utils.LvLayoutNode[], boolean)}.
+ *
+ * The number of parsed lines is specified by "lv.bench.lines" system property (10M by default).
+ */
+@Ignore
+public class LayoutParserBenchmark {
+
+    private static final String[] LEVELS = {"ERROR", "WARN", "INFO", "DEBUG", "TRACE"};
+
+    @Test
+    public void parseLines() {
+        int lineCount = Integer.getInteger("lv.bench.lines", 10_000_000);
+
+        byte[][] lines = generateLines(4096);
+
+        for (int iteration = 0; iteration < 3; iteration++) {
+            for (boolean compile : new boolean[]{false, true}) {
+                LogReader reader = createReader(DefaultFieldSetTest.format, compile);
+
+                long startTime = System.nanoTime();
+
+                int parsed = 0;
+
+                for (int i = 0; i < lineCount; i++) {
+                    byte[] line = lines[i & (lines.length - 1)];
+
+                    if (reader.parseRecord(line, 0, line.length, 0, line.length))
+                        parsed++;
+                }
+
+                long time = (System.nanoTime() - startTime) / 1_000_000;
+
+                System.out.printf("%s: lines: %d, parsed: %d, time: %dms, %.1f lines/ms%n",
+                        compile ? "compiled" : "interpreted", lineCount, parsed, time, (double) lineCount / Math.max(time, 1));
+            }
+        }
+    }
+
+    private static LogReader createReader(DefaultFieldSet format, boolean compile) {
+        return new DefaultFieldSet(format.getEncoding(), true, compile, format.getLayout()).createReader();
+    }
+
+    private static byte[][] generateLines(int count) {
+        Random rnd = new Random(0);
+
+        byte[][] res = new byte[count][];
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH:mm:ss.SSS");
+
+        long time = new Date(116, 11, 2, 16, 0).getTime();
+
+        for (int i = 0; i < count; i++) {
+            time += rnd.nextInt(100);
+
+            String line = String.format("%s [thread-%d] %-5s com.behavox.service.Service%d - record %d some text",
+                    dateFormat.format(new Date(time)), rnd.nextInt(16),
+                    LEVELS[rnd.nextInt(LEVELS.length)], rnd.nextInt(100), i);
+
+            res[i] = line.getBytes(StandardCharsets.UTF_8);
+        }
+
+        return res;
+    }
+}
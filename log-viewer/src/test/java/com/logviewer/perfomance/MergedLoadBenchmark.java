@@ -0,0 +1,109 @@
+package com.logviewer.perfomance;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.data2.*;
+import com.logviewer.formats.RegexLogFormat;
+import com.logviewer.utils.TestSessionAdapter;
+import com.logviewer.web.session.tasks.LoadNextResponse;
+import com.logviewer.web.session.tasks.LoadRecordTask;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time of loading a page of merged logs, all loaders deliver the records to the same
+ * {@link LoadRecordTask} concurrently.
+ *
+ * The number of logs is specified by "lv.bench.logs" system property (40 by default), the page size - by
+ * "lv.bench.records" (500 by default).
+ */
+@Ignore
+public class MergedLoadBenchmark extends AbstractLogTest {
+
+    private static final LogFormat FORMAT = new RegexLogFormat(StandardCharsets.UTF_8,
+            "(\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3}) (.*)", false,
+            "yyyy-MM-dd HH:mm:ss.SSS", "date",
+            new RegexLogFormat.RegexField("date", 1, FieldTypes.DATE),
+            new RegexLogFormat.RegexField("msg", 2, "message")
+    );
+
+    private static final long START_TIME = new Date(120, 0, 1).getTime();
+
+    private static final int RECORDS_PER_LOG = 20_000;
+
+    @Test
+    public void loadMergedLogs() throws Exception {
+        int logCount = Integer.getInteger("lv.bench.logs", 40);
+        int recordCount = Integer.getInteger("lv.bench.records", 500);
+
+        Path dir = createTempDirectory();
+
+        LogView[] logs = new LogView[logCount];
+
+        for (int i = 0; i < logCount; i++) {
+            Path file = dir.resolve("server-" + i + ".log");
+            generateLog(file, i, logCount);
+
+            logs[i] = getLogService().openLog(file.toString(), FORMAT);
+        }
+
+        TestSessionAdapter adapter = new TestSessionAdapter();
+
+        for (int iteration = 0; iteration < 10; iteration++) {
+            long startTime = System.nanoTime();
+
+            int loaded = 0;
+
+            for (int page = 0; page < 20; page++) {
+                long pageTime = START_TIME + (long) page * recordCount * 10;
+                Position start = new Position("", TimeUnit.MILLISECONDS.toNanos(pageTime), 0);
+
+                LoadRecordTask task = new LoadRecordTask(adapter, logs, recordCount, null, start, false, null);
+
+                CompletableFuture<LoadNextResponse> res = new CompletableFuture<>();
+                task.execute((r, e) -> {
+                    if (e != null) {
+                        res.completeExceptionally(e);
+                    } else {
+                        res.complete(r);
+                    }
+                });
+
+                loaded += res.get().getData().size();
+            }
+
+            System.out.printf("logs: %d, page: %d, loaded records: %d, time: %dms%n", logCount, recordCount, loaded,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+        }
+    }
+
+    /**
+     * The records of all logs are interleaved, a record of the log {@code logIdx} is written every {@code logCount}
+     * milliseconds.
+     */
+    private static void generateLog(Path file, int logIdx, int logCount) throws IOException {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < RECORDS_PER_LOG; i++) {
+                long time = START_TIME + (long) i * logCount + logIdx;
+
+                writer.write(dateFormat.format(new Date(time)));
+                writer.write(" record ");
+                writer.write(String.valueOf(i));
+                writer.write(" of server-");
+                writer.write(String.valueOf(logIdx));
+                writer.newLine();
+            }
+        }
+    }
+}
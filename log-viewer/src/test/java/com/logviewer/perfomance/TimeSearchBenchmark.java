@@ -0,0 +1,195 @@
+package com.logviewer.perfomance;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.data2.*;
+import com.logviewer.formats.RegexLogFormat;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Compares the number of probes and the number of parsed bytes required to find a record by time using
+ * {@link LogIndex.SearchStrategy#BISECTION} and {@link LogIndex.SearchStrategy#INTERPOLATION}.
+ *
+ * The size of the generated log is specified by "lv.bench.size" system property (1Gb by default), "lv.bench.file"
+ * may point to an existing file generated by the previous run.
+ */
+@Ignore
+public class TimeSearchBenchmark extends AbstractLogTest {
+
+    private static final LogFormat FORMAT = new RegexLogFormat(StandardCharsets.UTF_8,
+            "(\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3}) (.*)", false,
+            "yyyy-MM-dd HH:mm:ss.SSS", "date",
+            new RegexLogFormat.RegexField("date", 1, FieldTypes.DATE),
+            new RegexLogFormat.RegexField("msg", 2, "message")
+    );
+
+    private static final long START_TIME = new Date(120, 0, 1).getTime();
+
+    private static final int SEARCH_COUNT = 200;
+
+    @Test
+    public void searchByTime() throws IOException {
+        long size = Long.getLong("lv.bench.size", 1L << 30);
+
+        String existingFile = System.getProperty("lv.bench.file");
+        Path file = existingFile != null ? Paths.get(existingFile) : generateLog(size);
+
+        Log log = getLogService().openLog(file.toString(), FORMAT);
+
+        long endTime;
+
+        try (Snapshot snapshot = log.createSnapshot()) {
+            LogRecord[] last = new LogRecord[1];
+            snapshot.processRecordsBack(snapshot.getSize(), false, r -> {
+                last[0] = r;
+                return false;
+            });
+            endTime = TimeUnit.NANOSECONDS.toMillis(last[0].getTime());
+        }
+
+        for (LogIndex.SearchStrategy strategy : LogIndex.SearchStrategy.values()) {
+            Random rnd = new Random(1);
+
+            CountingSnapshot counter;
+
+            long startTime = System.currentTimeMillis();
+
+            try (Snapshot snapshot = log.createSnapshot()) {
+                counter = new CountingSnapshot(snapshot);
+
+                for (int i = 0; i < SEARCH_COUNT; i++) {
+                    LogIndex index = new LogIndex(); // The index without cache, every search starts from scratch
+                    index.setSearchStrategy(strategy);
+
+                    long time = START_TIME + (long) (rnd.nextDouble() * (endTime - START_TIME));
+
+                    index.findRecordBound(TimeUnit.MILLISECONDS.toNanos(time), rnd.nextBoolean(), counter);
+                }
+            }
+
+            long executionTime = System.currentTimeMillis() - startTime;
+
+            System.out.printf("%s: file size: %dMb, searches: %d, probes per search: %.2f, bytes parsed per search: %d, time: %dms%n",
+                    strategy, Files.size(file) >> 20, SEARCH_COUNT, (double) counter.probes / SEARCH_COUNT,
+                    counter.bytes / SEARCH_COUNT, executionTime);
+        }
+    }
+
+    /**
+     * Generates a log with uneven record rate: the records are written in bursts, the rate changes during the day.
+     */
+    private Path generateLog(long size) throws IOException {
+        Path file = createTempFile();
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+
+        Random rnd = new Random(0);
+
+        long time = START_TIME;
+        long written = 0;
+
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int i = 0; written < size; i++) {
+                double rate = 1.2 + Math.sin(i / 100_000d);
+                time += (long) (rnd.nextInt(20) / rate);
+
+                String line = dateFormat.format(new Date(time)) + " [thread-" + rnd.nextInt(16) + "] record " + i
+                        + " some text of variable length " + "abcdefghij".substring(rnd.nextInt(10)) + '\n';
+
+                writer.write(line);
+                written += line.length();
+            }
+        }
+
+        return file;
+    }
+
+    private static class CountingSnapshot implements Snapshot {
+
+        private final Snapshot snapshot;
+
+        private long probes;
+        private long bytes;
+
+        CountingSnapshot(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        private Predicate<LogRecord> count(Predicate<LogRecord> consumer) {
+            return r -> {
+                bytes += r.getEnd() - r.getStart();
+                return consumer.test(r);
+            };
+        }
+
+        @Override
+        public boolean processRecords(long position, boolean fromNextLine, Predicate<LogRecord> consumer) throws IOException {
+            if (!fromNextLine && position > 0)
+                probes++;
+
+            return snapshot.processRecords(position, fromNextLine, count(consumer));
+        }
+
+        @Override
+        public boolean processRecordsBack(long position, boolean fromNextLine, Predicate<LogRecord> consumer) throws IOException {
+            return snapshot.processRecordsBack(position, fromNextLine, count(consumer));
+        }
+
+        @Override
+        public long getSize() {
+            return snapshot.getSize();
+        }
+
+        @Override
+        public long getLastModification() {
+            return snapshot.getLastModification();
+        }
+
+        @Override
+        public boolean processFromTimeBack(long time, Predicate<LogRecord> consumer) throws IOException {
+            return snapshot.processFromTimeBack(time, consumer);
+        }
+
+        @Override
+        public boolean processFromTime(long time, Predicate<LogRecord> consumer) throws IOException {
+            return snapshot.processFromTime(time, consumer);
+        }
+
+        @Override
+        public Exception getError() {
+            return snapshot.getError();
+        }
+
+        @Override
+        public Log getLog() {
+            return snapshot.getLog();
+        }
+
+        @Override
+        public boolean isValidHash(String hash) {
+            return snapshot.isValidHash(hash);
+        }
+
+        @Override
+        public String getHash() {
+            return snapshot.getHash();
+        }
+
+        @Override
+        public void close() {
+            snapshot.close();
+        }
+    }
+}
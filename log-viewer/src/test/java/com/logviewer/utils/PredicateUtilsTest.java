@@ -3,7 +3,11 @@ package com.logviewer.utils;
 import com.logviewer.filters.CompositeRecordPredicate;
 import com.logviewer.filters.DatePredicate;
 import com.logviewer.filters.FieldValueSetPredicate;
+import com.logviewer.filters.JsPredicate;
+import com.logviewer.filters.NotPredicate;
 import com.logviewer.filters.RecordPredicate;
+import com.logviewer.filters.SubstringPredicate;
+import com.logviewer.web.session.tasks.SearchPattern;
 import org.junit.Test;
 
 import java.util.Calendar;
@@ -95,4 +99,21 @@ public class PredicateUtilsTest {
         assert PredicateUtils.extractTimeLimit(pr, false) == null;
     }
 
+    @Test
+    public void testExtractSearchPattern() {
+        SearchPattern pattern = new SearchPattern("foo");
+        RecordPredicate substring = new SubstringPredicate(pattern);
+
+        assert PredicateUtils.extractSearchPattern(null) == null;
+        assert PredicateUtils.extractSearchPattern(substring) == pattern;
+        assert PredicateUtils.extractSearchPattern(new NotPredicate(substring)) == null;
+
+        assert PredicateUtils.extractSearchPattern(new CompositeRecordPredicate(true, new DatePredicate(B, true), substring)) == pattern;
+        assert PredicateUtils.extractSearchPattern(new CompositeRecordPredicate(false, new DatePredicate(B, true), substring)) == null;
+
+        // The records failed with a script error must be passed to the filter
+        assert PredicateUtils.extractSearchPattern(new CompositeRecordPredicate(true, new JsPredicate("true"), substring)) == null;
+        assert PredicateUtils.extractSearchPattern(new CompositeRecordPredicate(true, substring, new JsPredicate("true"))) == pattern;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.logviewer.web.session;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.TestUtils;
+import com.logviewer.data2.LogView;
+import com.logviewer.utils.TestSessionAdapter;
+import com.logviewer.web.session.tasks.LoadNextResponse;
+import com.logviewer.web.session.tasks.LoadRecordTask;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+import static org.junit.Assert.*;
+
+public class LoadCoalescerTest extends AbstractLogTest {
+
+    @Test
+    public void identicalLoadsShared() throws Exception {
+        LogView log = createLog();
+
+        LoadCoalescer coalescer = new LoadCoalescer();
+
+        DeferredTask a = new DeferredTask(log, 2);
+        DeferredTask b = new DeferredTask(log, 2);
+
+        CompletableFuture<LoadNextResponse> resA = execute(coalescer.coalesce(a));
+        CompletableFuture<LoadNextResponse> resB = execute(coalescer.coalesce(b));
+
+        assertEquals(1, a.executions);
+        assertEquals(0, b.executions);
+        assertEquals(1, coalescer.getLoadCount());
+        assertEquals(1, coalescer.getCoalescedCount());
+
+        a.complete();
+
+        assertEquals(2, resA.get().getData().size());
+        assertEquals("150101 10:00:03 c", resA.get().getData().get(0).getFirst().getMessage());
+        assertEquals("150101 10:00:04 d", resA.get().getData().get(1).getFirst().getMessage());
+        assertNull(resA.get().getData().get(1).getSecond());
+        assertNotSame(resA.get().getData(), resB.get().getData());
+        assertEquals(resA.get().getData(), resB.get().getData());
+        assertNotSame(resA.get().getStatuses(), resB.get().getStatuses());
+
+        assertEquals(0, coalescer.getLoadCount());
+
+        // The loading has finished, the next identical task is executed
+        DeferredTask c = new DeferredTask(log, 2);
+        execute(coalescer.coalesce(c));
+        assertEquals(1, c.executions);
+    }
+
+    @Test
+    public void differentLoadsNotShared() throws IOException {
+        LogView log = createLog();
+
+        LoadCoalescer coalescer = new LoadCoalescer();
+
+        DeferredTask a = new DeferredTask(log, 2);
+        DeferredTask b = new DeferredTask(log, 3);
+
+        execute(coalescer.coalesce(a));
+        execute(coalescer.coalesce(b));
+
+        assertEquals(1, a.executions);
+        assertEquals(1, b.executions);
+        assertEquals(2, coalescer.getLoadCount());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void cancelledWhenAllWaitersCancelled() throws IOException {
+        LogView log = createLog();
+
+        LoadCoalescer coalescer = new LoadCoalescer();
+
+        DeferredTask a = new DeferredTask(log, 2);
+
+        SessionTask<LoadNextResponse> taskA = coalescer.coalesce(a);
+        SessionTask<LoadNextResponse> taskB = coalescer.coalesce(new DeferredTask(log, 2));
+
+        execute(taskA);
+        execute(taskB);
+
+        taskA.cancel();
+        assertFalse(a.cancelled); // The task is still waited by the second session
+
+        taskB.cancel();
+        assertTrue(a.cancelled);
+
+        assertEquals(0, coalescer.getLoadCount());
+    }
+
+    private LogView createLog() throws IOException {
+        Path file = createTempFile();
+        Files.write(file, "150101 10:00:01 a\n150101 10:00:02 b\n150101 10:00:03 c\n150101 10:00:04 d".getBytes());
+
+        return getLogService().openLog(file, TestUtils.MULTIFILE_LOG_FORMAT);
+    }
+
+    private static CompletableFuture<LoadNextResponse> execute(SessionTask<LoadNextResponse> task) {
+        CompletableFuture<LoadNextResponse> res = new CompletableFuture<>();
+
+        task.execute((r, e) -> {
+            if (e != null) {
+                res.completeExceptionally(e);
+            } else {
+                res.complete(r);
+            }
+        });
+
+        return res;
+    }
+
+    /**
+     * The task that starts loading only when {@link #complete()} is called.
+     */
+    private static class DeferredTask extends LoadRecordTask {
+
+        private int executions;
+        private boolean cancelled;
+
+        private BiConsumer<LoadNextResponse, Throwable> consumer;
+
+        DeferredTask(LogView log, int recordCount) {
+            super(new TestSessionAdapter(), new LogView[]{log}, recordCount, null, null, true, null);
+        }
+
+        @Override
+        public synchronized void execute(BiConsumer<LoadNextResponse, Throwable> consumer) {
+            executions++;
+            this.consumer = consumer;
+        }
+
+        void complete() {
+            super.execute(consumer);
+        }
+
+        @Override
+        public synchronized void cancel() {
+            cancelled = true;
+            super.cancel();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.logviewer.web.session;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.TestUtils;
+import com.logviewer.data2.*;
+import com.logviewer.filters.RecordPredicate;
+import com.logviewer.utils.LvTimer;
+import com.logviewer.utils.Pair;
+import com.logviewer.utils.RuntimeInterruptedException;
+import org.junit.Test;
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class LocalFileRecordLoaderTest extends AbstractLogTest {
+
+    @Test
+    public void batchDelivery() throws IOException, InterruptedException {
+        int recordCount = 5000;
+
+        Log log = getLogService().openLog(createLog(recordCount), TestUtils.MULTIFILE_LOG_FORMAT);
+
+        List<RecordList> batches = new ArrayList<>();
+        Status[] status = new Status[1];
+        CountDownLatch finished = new CountDownLatch(1);
+
+        LogProcess process = log.loadRecords(null, Integer.MAX_VALUE, new Position(log.getId(), 0, 0), false, null,
+                Long.MAX_VALUE, new LogDataListener() {
+                    @Override
+                    public void onData(@NonNull RecordList data) {
+                        batches.add(data);
+                    }
+
+                    @Override
+                    public void onFinish(@NonNull Status s, boolean eof) {
+                        status[0] = s;
+                        finished.countDown();
+                    }
+                });
+
+        process.start();
+        finished.await();
+
+        assertNull(status[0].getError());
+
+        // The first record goes alone, so the loading task can limit the time range of other logs early
+        assertEquals(1, batches.get(0).size());
+
+        assert batches.size() < recordCount / 10 : batches.size();
+
+        int idx = 0;
+        for (RecordList batch : batches) {
+            for (Pair<LogRecord, Throwable> pair : batch) {
+                assertEquals("record " + idx++, pair.getFirst().getFieldText("msg"));
+            }
+        }
+
+        assertEquals(recordCount, idx);
+    }
+
+    @Test
+    public void batchTimeBudgetWithoutMatches() throws IOException, InterruptedException {
+        int recordCount = 200;
+
+        Log log = getLogService().openLog(createLog(recordCount), TestUtils.MULTIFILE_LOG_FORMAT);
+
+        List<RecordList> batches = new ArrayList<>();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        LogProcess process = log.loadRecords(new SlowSparsePredicate(), Integer.MAX_VALUE, new Position(log.getId(), 0, 0),
+                false, null, Long.MAX_VALUE, new LogDataListener() {
+                    @Override
+                    public void onData(@NonNull RecordList data) {
+                        batches.add(data);
+                    }
+
+                    @Override
+                    public void onFinish(@NonNull Status s, boolean eof) {
+                        finished.countDown();
+                    }
+                });
+
+        process.start();
+        finished.await();
+
+        // The records rejected by the filter take longer than the time budget, "record 1" is delivered without
+        // waiting for the next found record
+        assertEquals(3, batches.size());
+        assertEquals("record 1", batches.get(1).get(0).getFirst().getFieldText("msg"));
+        assertEquals(1, batches.get(1).size());
+        assertEquals("record 199", batches.get(2).get(0).getFirst().getFieldText("msg"));
+    }
+
+    @Test
+    public void cancellationKeepsSnapshotOpen() throws IOException, InterruptedException {
+        Log log = getLogService().openLog(createLog(5000), TestUtils.MULTIFILE_LOG_FORMAT);
+
+        long releaseCount = CancellationToken.getReleaseCount();
+
+        CountDownLatch firstBatch = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(1);
+        Status[] status = new Status[1];
+
+        try (ReadCursorCache cursors = new ReadCursorCache(new LvTimer(), 60_000)) {
+            LogProcess process = log.loadRecords(null, Integer.MAX_VALUE, new Position(log.getId(), 0, 0), false, null,
+                    Long.MAX_VALUE, cursors, new LogDataListener() {
+                        @Override
+                        public void onData(@NonNull RecordList data) {
+                            firstBatch.countDown();
+
+                            try {
+                                cancelled.await();
+                            } catch (InterruptedException e) {
+                                throw new RuntimeInterruptedException(e);
+                            }
+                        }
+
+                        @Override
+                        public void onFinish(@NonNull Status s, boolean eof) {
+                            status[0] = s;
+                            finished.countDown();
+                        }
+                    });
+
+            process.start();
+            firstBatch.await();
+
+            process.cancel();
+            cancelled.countDown();
+
+            finished.await();
+
+            assertTrue(status[0].getError() instanceof CancellationException);
+            assertTrue(CancellationToken.getReleaseCount() > releaseCount);
+
+            // The channel is not closed by the cancellation, the snapshot is returned to the cache and can be read
+            Snapshot snapshot = cursors.take(log.getId(), () -> {
+                throw new AssertionError("The cached snapshot is expected");
+            });
+
+            try {
+                List<String> records = new ArrayList<>();
+
+                snapshot.processRecords(0, false, record -> {
+                    records.add(record.getMessage());
+                    return records.size() < 2;
+                });
+
+                assertEquals("150101 10:00:00 record 0", records.get(0));
+            } finally {
+                cursors.release(snapshot, true);
+            }
+        }
+    }
+
+    /**
+     * Accepts the first two records and the last one, spends 1ms on each rejected record.
+     */
+    public static class SlowSparsePredicate implements RecordPredicate {
+        @Override
+        public boolean test(LogRecord record, LogFilterContext ctx) {
+            String msg = record.getFieldText("msg");
+            if (msg.equals("record 0") || msg.equals("record 1") || msg.equals("record 199"))
+                return true;
+
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                throw new RuntimeInterruptedException(e);
+            }
+
+            return false;
+        }
+    }
+
+        private Path createLog(int recordCount) throws IOException {
+        Path file = createTempFile();
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < recordCount; i++) {
+            if (i > 0)
+                sb.append('\n');
+            sb.append(String.format("150101 10:%02d:%02d record %d", i / 60 % 60, i % 60, i));
+        }
+
+        Files.write(file, sb.toString().getBytes());
+
+        return file;
+    }
+}
@@ -0,0 +1,98 @@
+package com.logviewer.web.session;
+
+import com.logviewer.AbstractLogTest;
+import com.logviewer.TestUtils;
+import com.logviewer.data2.Log;
+import com.logviewer.data2.LogView;
+import com.logviewer.data2.Position;
+import com.logviewer.data2.Snapshot;
+import com.logviewer.utils.LvTimer;
+import com.logviewer.utils.TestSessionAdapter;
+import com.logviewer.web.session.tasks.LoadNextResponse;
+import com.logviewer.web.session.tasks.LoadRecordTask;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ReadCursorCacheTest extends AbstractLogTest {
+
+    private static final Supplier<Snapshot> NO_SNAPSHOT = () -> {
+        throw new AssertionError("The cached snapshot is expected");
+    };
+
+    @Test
+    public void snapshotReusedBetweenPages() throws Exception {
+        Path file = createTempFile();
+        Files.write(file, "150101 10:00:01 a\n150101 10:00:02 b\n150101 10:00:03 c\n150101 10:00:04 d".getBytes());
+
+        Log log = getLogService().openLog(file, TestUtils.MULTIFILE_LOG_FORMAT);
+
+        try (ReadCursorCache cursors = new ReadCursorCache(new LvTimer(), 60_000)) {
+            LoadNextResponse page = load(log, cursors, new Position(log.getId(), 0, 0));
+            assertEquals(2, page.getData().size());
+
+            Snapshot snapshot = cursors.take(log.getId(), NO_SNAPSHOT);
+            cursors.release(snapshot, true);
+
+            Position next = new Position(page.getData().get(1).getFirst(), false);
+            LoadNextResponse nextPage = load(log, cursors, next);
+            assertEquals("150101 10:00:03 c", nextPage.getData().get(0).getFirst().getMessage().trim());
+
+            assertSame(snapshot, cursors.take(log.getId(), NO_SNAPSHOT));
+            cursors.release(snapshot, true);
+
+            Files.write(file, "\n150101 10:00:05 e".getBytes(), StandardOpenOption.APPEND);
+            cursors.invalidate(Collections.singleton(log.getId()));
+
+            LoadNextResponse appended = load(log, cursors, new Position(nextPage.getData().get(1).getFirst(), false));
+            assertEquals(1, appended.getData().size());
+            assertEquals("150101 10:00:05 e", appended.getData().get(0).getFirst().getMessage());
+
+            assertNotSame(snapshot, cursors.take(log.getId(), NO_SNAPSHOT));
+        }
+    }
+
+    @Test
+    public void snapshotTakenBeforeInvalidation() throws IOException {
+        Path file = createTempFile();
+        Log log = getLogService().openLog(file, TestUtils.MULTIFILE_LOG_FORMAT);
+
+        try (ReadCursorCache cursors = new ReadCursorCache(new LvTimer(), 60_000)) {
+            Snapshot snapshot = cursors.take(log.getId(), log::createSnapshot);
+            cursors.invalidateAll();
+            cursors.release(snapshot, true);
+
+            Snapshot failed = cursors.take(log.getId(), log::createSnapshot);
+            assertNotSame(snapshot, failed);
+            cursors.release(failed, false);
+
+            assertNotSame(failed, cursors.take(log.getId(), log::createSnapshot));
+        }
+    }
+
+    private static LoadNextResponse load(LogView log, ReadCursorCache cursors, Position start) throws Exception {
+        LoadRecordTask task = new LoadRecordTask(new TestSessionAdapter(), new LogView[]{log}, 2, null, start,
+                false, null, cursors);
+
+        CompletableFuture<LoadNextResponse> res = new CompletableFuture<>();
+        task.execute((r, e) -> {
+            if (e != null) {
+                res.completeExceptionally(e);
+            } else {
+                res.complete(r);
+            }
+        });
+
+        return res.get();
+    }
+}